@@ -0,0 +1,15 @@
+package com.example.qmx.reactive;
+
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.SpringBootApplication;
+
+/**
+ * 只读查询接口的响应式服务（WebFlux + R2DBC），与主工程连接同一个库，独立部署
+ */
+@SpringBootApplication
+public class QmxReactiveApplication {
+
+    public static void main(String[] args) {
+        SpringApplication.run(QmxReactiveApplication.class, args);
+    }
+}
@@ -0,0 +1,289 @@
+package com.example.qmx.reactive.controller;
+
+import com.example.qmx.reactive.domain.DeviceStatus;
+import com.example.qmx.reactive.domain.ProductDaily;
+import com.example.qmx.reactive.domain.ProductHourly;
+import com.example.qmx.reactive.domain.QualityDetection;
+import com.example.qmx.reactive.domain.Sensor;
+import com.example.qmx.reactive.repository.DeviceStatusRepository;
+import com.example.qmx.reactive.repository.ProductDailyRepository;
+import com.example.qmx.reactive.repository.ProductHourlyRepository;
+import com.example.qmx.reactive.repository.QualityDetectionRepository;
+import com.example.qmx.reactive.repository.SensorRepository;
+import com.example.qmx.reactive.service.OverviewService;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * 主工程只读查询接口的响应式版本（路径与参数保持一致，前端只需切换地址）
+ * <p>
+ * 另外提供：按时间段流式导出（CSV / NDJSON，边查边写，不在内存中攒整表）
+ * 与按背压推送的最新值 SSE（客户端读得慢时丢弃中间轮次，只推最新一轮，不无限缓存）
+ */
+@RestController
+@CrossOrigin
+public class ReactiveReadController {
+
+    @Autowired
+    private DeviceStatusRepository deviceStatusRepository;
+
+    @Autowired
+    private SensorRepository sensorRepository;
+
+    @Autowired
+    private ProductHourlyRepository productHourlyRepository;
+
+    @Autowired
+    private ProductDailyRepository productDailyRepository;
+
+    @Autowired
+    private QualityDetectionRepository qualityDetectionRepository;
+
+    @Autowired
+    private OverviewService overviewService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    // 单次导出的最大行数
+    @Value("${qmx.export.max-rows:1000000}")
+    private long exportMaxRows;
+
+    // SSE 轮询间隔下限与默认值（毫秒）
+    @Value("${qmx.stream.min-interval-ms:500}")
+    private long streamMinIntervalMs;
+
+    @Value("${qmx.stream.default-interval-ms:2000}")
+    private long streamDefaultIntervalMs;
+
+    // SSE 心跳间隔（秒），避免代理断开空闲连接
+    @Value("${qmx.stream.heartbeat-seconds:15}")
+    private long heartbeatSeconds;
+
+    @GetMapping("/getLatestStatus")
+    public Mono<DeviceStatus> getLatestStatus(@RequestParam("devName") String devName,
+                                              @RequestParam(value = "unitId", required = false, defaultValue = "1") Integer unitId) {
+        return deviceStatusRepository.findLatest(unitId, devName);
+    }
+
+    @GetMapping("/getLatestSensor")
+    public Mono<Sensor> getLatestSensor(@RequestParam("devName") String devName,
+                                        @RequestParam(value = "unitId", required = false, defaultValue = "1") Integer unitId) {
+        return sensorRepository.findLatest(unitId, devName);
+    }
+
+    @GetMapping("/getLatestProductHourly")
+    public Mono<ProductHourly> getLatestProductHourly(@RequestParam(value = "unitId", required = false, defaultValue = "1") Integer unitId) {
+        return productHourlyRepository.findLatest(unitId);
+    }
+
+    @GetMapping("/getLatestProductDaily")
+    public Mono<ProductDaily> getLatestProductDaily(@RequestParam(value = "unitId", required = false, defaultValue = "1") Integer unitId) {
+        return productDailyRepository.findLatest(unitId);
+    }
+
+    @GetMapping("/getLatestQualityResult")
+    public Mono<QualityDetection> getLatestQualityResult() {
+        return qualityDetectionRepository.findLatest();
+    }
+
+    @GetMapping("/getDashboardOverview")
+    public Mono<Map<String, Object>> getDashboardOverview(@RequestParam(value = "unitId", required = false, defaultValue = "1") Integer unitId) {
+        return overviewService.overview(unitId);
+    }
+
+    @GetMapping("/getProductHourlyHistory")
+    public Flux<ProductHourly> getProductHourlyHistory(@RequestParam(value = "limit", required = false, defaultValue = "24") Integer limit,
+                                                       @RequestParam(value = "unitId", required = false, defaultValue = "1") Integer unitId) {
+        return productHourlyRepository.findRecent(unitId, clampLimit(limit, 24));
+    }
+
+    @GetMapping("/getProductWeekHistory")
+    public Flux<ProductDaily> getProductWeekHistory(@RequestParam(value = "limit", required = false, defaultValue = "12") Integer limit,
+                                                    @RequestParam(value = "unitId", required = false, defaultValue = "1") Integer unitId) {
+        return productDailyRepository.findRecent(unitId, clampLimit(limit, 12));
+    }
+
+    @GetMapping("/getProductHourlyOnHourHistory")
+    public Flux<ProductHourly> getProductHourlyOnHourHistory(@RequestParam(value = "limit", required = false, defaultValue = "24") Integer limit,
+                                                             @RequestParam(value = "unitId", required = false, defaultValue = "1") Integer unitId) {
+        return productHourlyRepository.findHourlyLatestByHour(unitId, clampLimit(limit, 24));
+    }
+
+    @GetMapping("/getProductDailyAtMidnightHistory")
+    public Flux<ProductDaily> getProductDailyAtMidnightHistory(@RequestParam(value = "limit", required = false, defaultValue = "30") Integer limit,
+                                                               @RequestParam(value = "unitId", required = false, defaultValue = "1") Integer unitId) {
+        return productDailyRepository.findDailyLatestByDay(unitId, clampLimit(limit, 30));
+    }
+
+    @GetMapping("/getBatchLatestStatus")
+    public Flux<DeviceStatus> getBatchLatestStatus(@RequestParam("devNames") List<String> devNames,
+                                                   @RequestParam(value = "unitId", required = false, defaultValue = "1") Integer unitId) {
+        List<String> names = nonEmpty(devNames);
+        return names.isEmpty() ? Flux.empty() : deviceStatusRepository.findLatestIn(unitId, names);
+    }
+
+    @GetMapping("/getBatchLatestSensor")
+    public Flux<Sensor> getBatchLatestSensor(@RequestParam("devNames") List<String> devNames,
+                                             @RequestParam(value = "unitId", required = false, defaultValue = "1") Integer unitId) {
+        List<String> names = nonEmpty(devNames);
+        return names.isEmpty() ? Flux.empty() : sensorRepository.findLatestIn(unitId, names);
+    }
+
+    @GetMapping("/getGunPressureLast15Minutes")
+    public Mono<Map<String, Object>> getGunPressureLast15Minutes(@RequestParam(value = "unitId", required = false, defaultValue = "1") Integer unitId) {
+        LocalDateTime fromTime = LocalDateTime.now().minusMinutes(15);
+        Mono<List<Sensor>> gun1 = sensorRepository.findLatestByMinuteInRange(unitId, "喷涂管路1压力", fromTime, 15).collectList();
+        Mono<List<Sensor>> gun2 = sensorRepository.findLatestByMinuteInRange(unitId, "喷涂管路2压力", fromTime, 15).collectList();
+        return Mono.zip(gun1, gun2).map(t -> {
+            Map<String, Object> result = new HashMap<>();
+            result.put("gun1", t.getT1());
+            result.put("gun2", t.getT2());
+            return result;
+        });
+    }
+
+    /**
+     * 设备状态导出：format=csv（默认）或 ndjson，时间段默认最近 24 小时
+     */
+    @GetMapping("/export/deviceStatus")
+    public ResponseEntity<Flux<String>> exportDeviceStatus(
+            @RequestParam(value = "unitId", required = false, defaultValue = "1") Integer unitId,
+            @RequestParam(value = "from", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(value = "to", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(value = "format", required = false, defaultValue = "csv") String format) {
+        LocalDateTime end = to != null ? to : LocalDateTime.now();
+        LocalDateTime start = from != null ? from : end.minusDays(1);
+        return export("device_status", format, "id,unitId,devName,status,time",
+                deviceStatusRepository.streamRange(unitId, start, end),
+                d -> d.getId() + "," + d.getUnitId() + "," + csv(d.getDevName()) + "," + d.getStatus() + "," + d.getTime());
+    }
+
+    /**
+     * 传感器导出：format=csv（默认）或 ndjson，时间段默认最近 24 小时
+     */
+    @GetMapping("/export/sensor")
+    public ResponseEntity<Flux<String>> exportSensor(
+            @RequestParam(value = "unitId", required = false, defaultValue = "1") Integer unitId,
+            @RequestParam(value = "from", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(value = "to", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(value = "format", required = false, defaultValue = "csv") String format) {
+        LocalDateTime end = to != null ? to : LocalDateTime.now();
+        LocalDateTime start = from != null ? from : end.minusDays(1);
+        return export("sensor", format, "id,unitId,devName,value,time",
+                sensorRepository.streamRange(unitId, start, end),
+                s -> s.getId() + "," + s.getUnitId() + "," + csv(s.getDevName()) + "," + s.getValue() + "," + s.getTime());
+    }
+
+    /**
+     * 设备最新状态推送：按 intervalMs 查询，结果变化时推送 status 事件
+     * 客户端消费不过来时丢弃中间轮次（同一时刻只有一次查询在途），定期发送心跳注释
+     */
+    @GetMapping(value = "/stream/latestStatus", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<List<DeviceStatus>>> streamLatestStatus(
+            @RequestParam("devNames") List<String> devNames,
+            @RequestParam(value = "unitId", required = false, defaultValue = "1") Integer unitId,
+            @RequestParam(value = "intervalMs", required = false) Long intervalMs) {
+        List<String> names = nonEmpty(devNames);
+        return poll("status", intervalMs, () -> names.isEmpty()
+                ? Mono.just(new ArrayList<>()) : deviceStatusRepository.findLatestIn(unitId, names).collectList());
+    }
+
+    /**
+     * 传感器最新值推送，规则同 /stream/latestStatus
+     */
+    @GetMapping(value = "/stream/latestSensor", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<List<Sensor>>> streamLatestSensor(
+            @RequestParam("devNames") List<String> devNames,
+            @RequestParam(value = "unitId", required = false, defaultValue = "1") Integer unitId,
+            @RequestParam(value = "intervalMs", required = false) Long intervalMs) {
+        List<String> names = nonEmpty(devNames);
+        return poll("sensor", intervalMs, () -> names.isEmpty()
+                ? Mono.just(new ArrayList<>()) : sensorRepository.findLatestIn(unitId, names).collectList());
+    }
+
+    private <T> Flux<ServerSentEvent<T>> poll(String event, Long intervalMs, Supplier<Mono<T>> query) {
+        long interval = Math.max(streamMinIntervalMs, intervalMs != null ? intervalMs : streamDefaultIntervalMs);
+        AtomicLong seq = new AtomicLong();
+        Flux<ServerSentEvent<T>> data = Flux.interval(Duration.ZERO, Duration.ofMillis(interval))
+                .onBackpressureDrop()
+                .concatMap(tick -> query.get(), 1)
+                .distinctUntilChanged()
+                .map(v -> ServerSentEvent.<T>builder(v).event(event).id(String.valueOf(seq.incrementAndGet())).build());
+        Flux<ServerSentEvent<T>> heartbeat = Flux.interval(Duration.ofSeconds(heartbeatSeconds))
+                .onBackpressureDrop()
+                .map(tick -> ServerSentEvent.<T>builder().comment("keepalive").build());
+        return Flux.merge(data, heartbeat);
+    }
+
+    // 导出：逐行编码后交给 WebFlux 按下游需求写出，R2DBC 侧随之按需拉取
+    private <T> ResponseEntity<Flux<String>> export(String name, String format, String csvHeader, Flux<T> rows,
+                                                    Function<T, String> toCsv) {
+        boolean ndjson = "ndjson".equalsIgnoreCase(format);
+        Flux<String> body = rows.take(exportMaxRows).map(r -> (ndjson ? toJson(r) : toCsv.apply(r)) + "\n");
+        if (!ndjson) {
+            body = Flux.concat(Flux.just(csvHeader + "\n"), body);
+        }
+        return ResponseEntity.ok()
+                .contentType(ndjson ? MediaType.APPLICATION_NDJSON : new MediaType("text", "csv", java.nio.charset.StandardCharsets.UTF_8))
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=" + name + (ndjson ? ".ndjson" : ".csv"))
+                .body(body);
+    }
+
+    private static int clampLimit(Integer limit, int def) {
+        return (limit == null || limit <= 0) ? def : Math.min(limit, 1000);
+    }
+
+    private static List<String> nonEmpty(List<String> names) {
+        List<String> out = new ArrayList<>();
+        if (names != null) {
+            for (String n : names) {
+                if (n != null && !n.isEmpty()) {
+                    out.add(n);
+                }
+            }
+        }
+        return out;
+    }
+
+    private static String csv(String s) {
+        if (s == null) {
+            return "";
+        }
+        if (s.indexOf(',') < 0 && s.indexOf('"') < 0 && s.indexOf('\n') < 0) {
+            return s;
+        }
+        return "\"" + s.replace("\"", "\"\"") + "\"";
+    }
+
+    private String toJson(Object row) {
+        try {
+            return objectMapper.writeValueAsString(row);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.example.qmx.reactive.domain;
+
+import lombok.Data;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.relational.core.mapping.Column;
+import org.springframework.data.relational.core.mapping.Table;
+
+import java.time.LocalDateTime;
+
+@Data
+@Table("device_status")
+public class DeviceStatus {
+
+    @Id
+    @Column("id")
+    private Long id;
+
+    @Column("unitId")
+    private Integer unitId;
+
+    @Column("devName")
+    private String devName;
+
+    @Column("status")
+    private Integer status;
+
+    @Column("time")
+    private LocalDateTime time;
+}
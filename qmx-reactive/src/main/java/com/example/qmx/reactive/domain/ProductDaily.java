@@ -0,0 +1,26 @@
+package com.example.qmx.reactive.domain;
+
+import lombok.Data;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.relational.core.mapping.Column;
+import org.springframework.data.relational.core.mapping.Table;
+
+import java.time.LocalDateTime;
+
+@Data
+@Table("product_daily")
+public class ProductDaily {
+
+    @Id
+    @Column("id")
+    private Long id;
+
+    @Column("unitId")
+    private Integer unitId;
+
+    @Column("numDaily")
+    private Integer numDaily;
+
+    @Column("time")
+    private LocalDateTime time;
+}
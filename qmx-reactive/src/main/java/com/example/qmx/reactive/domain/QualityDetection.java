@@ -0,0 +1,32 @@
+package com.example.qmx.reactive.domain;
+
+import lombok.Data;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.relational.core.mapping.Column;
+import org.springframework.data.relational.core.mapping.Table;
+
+import java.time.LocalDateTime;
+
+@Data
+@Table("quality_result")
+public class QualityDetection {
+
+    @Id
+    @Column("id")
+    private Long id;
+
+    @Column("unitId")
+    private Integer unitId;
+
+    @Column("resultId")
+    private String resultId;
+
+    @Column("source")
+    private String source;
+
+    @Column("result")
+    private Integer result;
+
+    @Column("time")
+    private LocalDateTime time;
+}
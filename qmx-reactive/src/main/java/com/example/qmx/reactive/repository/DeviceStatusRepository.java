@@ -0,0 +1,27 @@
+package com.example.qmx.reactive.repository;
+
+import com.example.qmx.reactive.domain.DeviceStatus;
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.r2dbc.repository.R2dbcRepository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+
+public interface DeviceStatusRepository extends R2dbcRepository<DeviceStatus, Long> {
+
+    // 根据网关号与设备名查询最新状态
+    @Query("SELECT * FROM device_status WHERE unitId = :unitId AND devName = :devName ORDER BY id DESC LIMIT 1")
+    Mono<DeviceStatus> findLatest(int unitId, String devName);
+
+    // 多个设备的最新状态一次查询（每个设备取最大 id）
+    @Query("SELECT * FROM device_status WHERE id IN (" +
+            "SELECT MAX(id) FROM device_status WHERE unitId = :unitId AND devName IN (:devNames) GROUP BY devName) " +
+            "ORDER BY devName")
+    Flux<DeviceStatus> findLatestIn(int unitId, Collection<String> devNames);
+
+    // 导出：时间段内全部记录（走 unitId,devName,time 索引之外按 id 顺序流式读取）
+    @Query("SELECT * FROM device_status WHERE unitId = :unitId AND time >= :from AND time < :to ORDER BY id")
+    Flux<DeviceStatus> streamRange(int unitId, LocalDateTime from, LocalDateTime to);
+}
@@ -0,0 +1,25 @@
+package com.example.qmx.reactive.repository;
+
+import com.example.qmx.reactive.domain.ProductDaily;
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.r2dbc.repository.R2dbcRepository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+public interface ProductDailyRepository extends R2dbcRepository<ProductDaily, Long> {
+
+    @Query("SELECT * FROM product_daily WHERE unitId = :unitId ORDER BY time DESC, id DESC LIMIT 1")
+    Mono<ProductDaily> findLatest(int unitId);
+
+    // 最近 limit 条日产量，按时间升序
+    @Query("SELECT * FROM (SELECT * FROM product_daily WHERE unitId = :unitId ORDER BY time DESC LIMIT :limit) t " +
+            "ORDER BY time ASC")
+    Flux<ProductDaily> findRecent(int unitId, int limit);
+
+    // 每天最新一条（主工程入库时 upsert 到 production_series），最近 limit 天，按时间升序
+    @Query("SELECT * FROM ( " +
+            "    SELECT sourceId AS id, unitId, num AS numDaily, time FROM production_series " +
+            "    WHERE unitId = :unitId AND granularity = 'D' ORDER BY bucket DESC LIMIT :limit " +
+            ") t ORDER BY time ASC")
+    Flux<ProductDaily> findDailyLatestByDay(int unitId, int limit);
+}
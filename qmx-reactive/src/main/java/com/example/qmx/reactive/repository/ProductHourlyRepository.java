@@ -0,0 +1,26 @@
+package com.example.qmx.reactive.repository;
+
+import com.example.qmx.reactive.domain.ProductHourly;
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.r2dbc.repository.R2dbcRepository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+public interface ProductHourlyRepository extends R2dbcRepository<ProductHourly, Long> {
+
+    // 查询网关最新产品小时记录
+    @Query("SELECT * FROM product_hourly WHERE unitId = :unitId ORDER BY time DESC, id DESC LIMIT 1")
+    Mono<ProductHourly> findLatest(int unitId);
+
+    // 最近 limit 条小时产量，按时间升序
+    @Query("SELECT * FROM (SELECT * FROM product_hourly WHERE unitId = :unitId ORDER BY time DESC LIMIT :limit) t " +
+            "ORDER BY time ASC")
+    Flux<ProductHourly> findRecent(int unitId, int limit);
+
+    // 每小时最新一条（主工程入库时 upsert 到 production_series），最近 limit 个小时，按时间升序
+    @Query("SELECT * FROM ( " +
+            "    SELECT sourceId AS id, unitId, num AS numHourly, time FROM production_series " +
+            "    WHERE unitId = :unitId AND granularity = 'H' ORDER BY bucket DESC LIMIT :limit " +
+            ") t ORDER BY time ASC")
+    Flux<ProductHourly> findHourlyLatestByHour(int unitId, int limit);
+}
@@ -0,0 +1,15 @@
+package com.example.qmx.reactive.repository;
+
+import com.example.qmx.reactive.domain.QualityDetection;
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.r2dbc.repository.R2dbcRepository;
+import reactor.core.publisher.Mono;
+
+public interface QualityDetectionRepository extends R2dbcRepository<QualityDetection, Long> {
+
+    @Query("SELECT * FROM quality_result ORDER BY id DESC LIMIT 1")
+    Mono<QualityDetection> findLatest();
+
+    @Query("SELECT * FROM quality_result WHERE unitId = :unitId ORDER BY id DESC LIMIT 1")
+    Mono<QualityDetection> findLatestByUnit(int unitId);
+}
@@ -0,0 +1,35 @@
+package com.example.qmx.reactive.repository;
+
+import com.example.qmx.reactive.domain.Sensor;
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.r2dbc.repository.R2dbcRepository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+
+public interface SensorRepository extends R2dbcRepository<Sensor, Long> {
+
+    // 根据网关号与设备名查询最新传感器记录
+    @Query("SELECT * FROM sensor WHERE unitId = :unitId AND devName = :devName ORDER BY id DESC LIMIT 1")
+    Mono<Sensor> findLatest(int unitId, String devName);
+
+    // 多个设备的最新记录一次查询（每个设备取最大 id）
+    @Query("SELECT * FROM sensor WHERE id IN (" +
+            "SELECT MAX(id) FROM sensor WHERE unitId = :unitId AND devName IN (:devNames) GROUP BY devName) " +
+            "ORDER BY devName")
+    Flux<Sensor> findLatestIn(int unitId, Collection<String> devNames);
+
+    // 时间段内每分钟最新一条，按时间升序（同主工程 SensorMapper.getLatestByMinuteInRange）
+    @Query("SELECT s.* FROM sensor s JOIN ( " +
+            "    SELECT DATE_FORMAT(time, '%Y-%m-%d %H:%i:00') AS minute_key, MAX(id) AS max_id " +
+            "    FROM sensor WHERE unitId = :unitId AND devName = :devName AND time >= :fromTime " +
+            "    GROUP BY minute_key ORDER BY minute_key DESC LIMIT :limit " +
+            ") t ON s.id = t.max_id ORDER BY s.time ASC")
+    Flux<Sensor> findLatestByMinuteInRange(int unitId, String devName, LocalDateTime fromTime, int limit);
+
+    // 导出：时间段内全部记录，按 id 顺序流式读取
+    @Query("SELECT * FROM sensor WHERE unitId = :unitId AND time >= :from AND time < :to ORDER BY id")
+    Flux<Sensor> streamRange(int unitId, LocalDateTime from, LocalDateTime to);
+}
@@ -0,0 +1,75 @@
+package com.example.qmx.reactive.service;
+
+import com.example.qmx.reactive.repository.ProductDailyRepository;
+import com.example.qmx.reactive.repository.ProductHourlyRepository;
+import com.example.qmx.reactive.repository.QualityDetectionRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * 大屏总览：7 个查询并发发出（各占连接池中一条连接），全部返回后组装，期间不占用请求线程
+ * <p>
+ * 字段与主工程 /getDashboardOverview 一致；累计值改由 SQL 聚合，不再把整表读回内存求和
+ */
+@Service
+public class OverviewService {
+
+    @Autowired
+    private DatabaseClient db;
+
+    @Autowired
+    private ProductHourlyRepository productHourlyRepository;
+
+    @Autowired
+    private ProductDailyRepository productDailyRepository;
+
+    @Autowired
+    private QualityDetectionRepository qualityDetectionRepository;
+
+    public Mono<Map<String, Object>> overview(int unitId) {
+        Mono<Optional<Integer>> latestHourly = productHourlyRepository.findLatest(unitId)
+                .map(ph -> Optional.ofNullable(ph.getNumHourly())).defaultIfEmpty(Optional.empty());
+        Mono<Optional<Integer>> latestDaily = productDailyRepository.findLatest(unitId)
+                .map(pd -> Optional.ofNullable(pd.getNumDaily())).defaultIfEmpty(Optional.empty());
+        Mono<Optional<Integer>> latestQuality = qualityDetectionRepository.findLatestByUnit(unitId)
+                .map(qd -> Optional.ofNullable(qd.getResult())).defaultIfEmpty(Optional.empty());
+        Mono<Long> totalHourly = scalar("SELECT SUM(numHourly) FROM product_hourly WHERE unitId = :unitId", unitId);
+        Mono<Long> totalDaily = scalar("SELECT SUM(numDaily) FROM product_daily WHERE unitId = :unitId", unitId);
+        Mono<Long> qualityCount = scalar("SELECT COUNT(*) FROM quality_result WHERE unitId = :unitId", unitId);
+        Mono<Long> passCount = scalar("SELECT COUNT(*) FROM quality_result WHERE unitId = :unitId AND result = 1", unitId);
+
+        return Mono.zip(latestHourly, latestDaily, latestQuality, totalHourly, totalDaily, qualityCount, passCount)
+                .map(t -> {
+                    Map<String, Object> result = new HashMap<>();
+                    result.put("latestHourlyOutput", t.getT1().orElse(null));
+                    result.put("latestDailyOutput", t.getT2().orElse(null));
+                    result.put("latestQualityResult", t.getT3().orElse(null));
+                    result.put("totalHourlyOutput", t.getT4());
+                    result.put("totalDailyOutput", t.getT5());
+                    result.put("totalQualityCount", t.getT6());
+                    result.put("totalPassQualityCount", t.getT7());
+                    return result;
+                });
+    }
+
+    // 单值聚合；SUM 在空表上为 NULL，按 0 处理
+    private Mono<Long> scalar(String sql, Integer unitId) {
+        DatabaseClient.GenericExecuteSpec spec = db.sql(sql);
+        if (unitId != null) {
+            spec = spec.bind("unitId", unitId);
+        }
+        return spec.map(row -> {
+                    Object v = row.get(0);
+                    return Optional.ofNullable(v instanceof Number ? ((Number) v).longValue() : null);
+                })
+                .one()
+                .map(v -> v.orElse(0L))
+                .defaultIfEmpty(0L);
+    }
+}
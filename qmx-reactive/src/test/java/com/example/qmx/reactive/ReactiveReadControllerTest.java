@@ -0,0 +1,135 @@
+package com.example.qmx.reactive;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "spring.r2dbc.url=r2dbc:h2:mem:///qmx_reactive?options=DB_CLOSE_DELAY=-1;MODE=MySQL;NON_KEYWORDS=VALUE",
+        "spring.r2dbc.username=sa",
+        "spring.r2dbc.password=",
+        "spring.sql.init.mode=always",
+        "qmx.stream.min-interval-ms=50"
+})
+@AutoConfigureWebTestClient
+class ReactiveReadControllerTest {
+
+    @Autowired
+    private WebTestClient client;
+
+    @Autowired
+    private DatabaseClient db;
+
+    @BeforeEach
+    void seed() {
+        for (String table : new String[]{"device_status", "sensor", "product_hourly", "product_daily", "quality_result", "production_series"}) {
+            db.sql("DELETE FROM " + table).then().block();
+        }
+        exec("INSERT INTO device_status (unitId, devName, status) VALUES (1, '喷枪1', 0), (1, '喷枪2', 1), (1, '喷枪1', 1), (2, '喷枪1', 0)");
+        exec("INSERT INTO sensor (unitId, devName, value) VALUES (1, '喷涂管路1压力', 0.5), (1, '喷涂管路1压力', 0.7)");
+        exec("INSERT INTO product_hourly (unitId, numHourly) VALUES (1, 10), (1, 20), (2, 99)");
+        exec("INSERT INTO product_daily (unitId, numDaily) VALUES (1, 100)");
+        exec("INSERT INTO quality_result (resultId, result) VALUES ('r1', 1), ('r2', 0), ('r3', 1)");
+        exec("INSERT INTO production_series (unitId, granularity, bucket, num, sourceId, time) VALUES "
+                + "(1, 'H', '2024-05-01 08:00:00', 5, 11, '2024-05-01 08:59:00'), "
+                + "(1, 'H', '2024-05-01 09:00:00', 7, 14, '2024-05-01 09:30:00'), "
+                + "(1, 'H', '2024-05-01 10:00:00', 9, 20, '2024-05-01 10:05:00'), "
+                + "(1, 'D', '2024-05-01 00:00:00', 90, 21, '2024-05-01 10:05:00')");
+    }
+
+    private void exec(String sql) {
+        db.sql(sql).then().block();
+    }
+
+    @Test
+    void batchLatestStatusReturnsOneRowPerDevice() {
+        List<Map<String, Object>> rows = client.get()
+                .uri(b -> b.path("/getBatchLatestStatus").queryParam("devNames", "喷枪1,喷枪2").queryParam("unitId", 1).build())
+                .exchange()
+                .expectStatus().isOk()
+                .expectBodyList(new ParameterizedTypeReference<Map<String, Object>>() { })
+                .returnResult().getResponseBody();
+        assertEquals(2, rows.size());
+        assertEquals(1, rows.get(0).get("status"));
+        assertEquals(1, rows.get(1).get("status"));
+    }
+
+    @Test
+    void overviewAggregatesInSql() {
+        Map<String, Object> m = client.get().uri("/getDashboardOverview?unitId=1")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(new ParameterizedTypeReference<Map<String, Object>>() { })
+                .returnResult().getResponseBody();
+        assertEquals(20, m.get("latestHourlyOutput"));
+        assertEquals(30, m.get("totalHourlyOutput"));
+        assertEquals(100, m.get("totalDailyOutput"));
+        assertEquals(1, m.get("latestQualityResult"));
+        assertEquals(3, m.get("totalQualityCount"));
+        assertEquals(2, m.get("totalPassQualityCount"));
+    }
+
+    @Test
+    void onHourHistoryReadsProductionSeries() {
+        List<Map<String, Object>> rows = client.get().uri("/getProductHourlyOnHourHistory?unitId=1&limit=2")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBodyList(new ParameterizedTypeReference<Map<String, Object>>() { })
+                .returnResult().getResponseBody();
+        assertEquals(2, rows.size());
+        assertEquals(14, rows.get(0).get("id"));
+        assertEquals(7, rows.get(0).get("numHourly"));
+        assertEquals(9, rows.get(1).get("numHourly"));
+    }
+
+    @Test
+    void sensorExportStreamsCsvWithHeader() {
+        String csv = client.get().uri("/export/sensor?unitId=1")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentTypeCompatibleWith(new MediaType("text", "csv"))
+                .expectBody(String.class)
+                .returnResult().getResponseBody();
+        String[] lines = csv.split("\n");
+        assertEquals("id,unitId,devName,value,time", lines[0]);
+        assertEquals(3, lines.length);
+        assertTrue(lines[2].contains("喷涂管路1压力,0.7"), lines[2]);
+    }
+
+    @Test
+    void latestStatusStreamPushesOnlyOnChange() {
+        Flux<ServerSentEvent<List<Map<String, Object>>>> events = client.get()
+                .uri("/stream/latestStatus?devNames=喷枪2&unitId=1&intervalMs=50")
+                .accept(MediaType.TEXT_EVENT_STREAM)
+                .exchange()
+                .expectStatus().isOk()
+                .returnResult(new ParameterizedTypeReference<ServerSentEvent<List<Map<String, Object>>>>() { })
+                .getResponseBody();
+
+        StepVerifier.create(events.filter(e -> e.data() != null))
+                .assertNext(e -> {
+                    assertEquals("status", e.event());
+                    assertEquals(1, e.data().get(0).get("status"));
+                    exec("INSERT INTO device_status (unitId, devName, status) VALUES (1, '喷枪2', 0)");
+                })
+                .assertNext(e -> assertEquals(0, e.data().get(0).get("status")))
+                .thenCancel()
+                .verify(Duration.ofSeconds(10));
+    }
+}
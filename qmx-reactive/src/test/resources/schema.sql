@@ -0,0 +1,44 @@
+create table if not exists device_status(
+    id        bigint primary key auto_increment,
+    unitId    int default 1 not null,
+    devName   varchar(64)   not null,
+    status    int           not null,
+    time      timestamp default current_timestamp not null
+);
+create table if not exists sensor(
+    id        bigint primary key auto_increment,
+    unitId    int default 1 not null,
+    devName   varchar(64)   not null,
+    value     real          null,
+    time      timestamp default current_timestamp not null
+);
+create table if not exists product_hourly(
+    id        bigint primary key auto_increment,
+    unitId    int default 1 not null,
+    numHourly int           null,
+    time      timestamp default current_timestamp not null
+);
+create table if not exists product_daily(
+    id        bigint primary key auto_increment,
+    unitId    int default 1 not null,
+    numDaily  int           null,
+    time      timestamp default current_timestamp not null
+);
+create table if not exists quality_result(
+    id        bigint primary key auto_increment,
+    unitId    int default 1 not null,
+    resultId  varchar(64)   null,
+    source    varchar(64)   null,
+    result    int           not null,
+    time      timestamp default current_timestamp not null
+);
+create table if not exists production_series(
+    id          bigint primary key auto_increment,
+    unitId      int default 1 not null,
+    granularity char(1)       not null,
+    bucket      timestamp     not null,
+    num         int           null,
+    sourceId    bigint        not null,
+    time        timestamp     not null
+);
+create unique index if not exists uk_production_series_unit_bucket on production_series(unitId, granularity, bucket);
@@ -0,0 +1,132 @@
+package com.example.qmx.bench;
+
+import com.example.qmx.server.DataResponse;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 确认帧与下发帧组帧
+ * <p>
+ * 上报帧按现场布局构造（约 260 字节数据内容）；参数下发分单项修改与整套 14 项两种；
+ * 配合 -prof gc 看每次组帧的分配字节数
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DataResponseBenchmark {
+
+    private final DataResponse dataResponse = new DataResponse();
+
+    private byte[] uploadMbap;
+    private byte[] uploadPdu;
+    private List<DataResponse.ConfigItem> singleItem;
+    private List<DataResponse.ConfigItem> fullConfig;
+    private List<DataResponse.TypedSegment> typedSegments;
+    private int[] registers10;
+    private int[] registers100;
+    private int txId;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random rnd = new Random(42);
+        // 报警 3B + 状态 20B + 传感器 24B + 喷涂 6B + 产量 104B + 控制参数 45B，每段另有 2B 段头
+        int dataLen = (2 + 3) + (2 + 20) + (2 + 24) + (2 + 6) + (2 + 104) + (2 + 45);
+        uploadPdu = new byte[3 + dataLen];
+        uploadPdu[0] = 0x03;
+        uploadPdu[1] = (byte) (dataLen >> 8);
+        uploadPdu[2] = (byte) dataLen;
+        for (int i = 3; i < uploadPdu.length; i++) {
+            uploadPdu[i] = (byte) rnd.nextInt();
+        }
+        int length = uploadPdu.length + 1;
+        uploadMbap = new byte[]{0x00, 0x01, 0x00, 0x00, (byte) (length >> 8), (byte) length, 0x01};
+
+        singleItem = Arrays.asList(DataResponse.ConfigItem.ofReal(0x07, 125.5));
+        fullConfig = new ArrayList<>();
+        for (int id = 0x01; id <= 0x03; id++) {
+            fullConfig.add(DataResponse.ConfigItem.ofChar(id, 1));
+        }
+        fullConfig.add(DataResponse.ConfigItem.ofInt(0x04, 30));
+        for (int id = 0x05; id <= 0x0E; id++) {
+            fullConfig.add(DataResponse.ConfigItem.ofReal(id, 100 + id));
+        }
+
+        List<Boolean> bools = new ArrayList<>();
+        for (int i = 0; i < 16; i++) {
+            bools.add(rnd.nextBoolean());
+        }
+        List<Integer> ints = Arrays.asList(1, 2, 3, 4, 5, 6);
+        List<Double> reals = Arrays.asList(0.35, 0.42, 55.0, 48.5, 120.0, 3.5);
+        typedSegments = Arrays.asList(
+                DataResponse.TypedSegment.ofBools(bools),
+                DataResponse.TypedSegment.ofInt16(ints),
+                DataResponse.TypedSegment.ofReal32(reals));
+
+        registers10 = new int[10];
+        registers100 = new int[100];
+        for (int i = 0; i < registers100.length; i++) {
+            registers100[i] = rnd.nextInt(0x10000);
+            if (i < registers10.length) {
+                registers10[i] = registers100[i];
+            }
+        }
+    }
+
+    private int nextTxId() {
+        txId = (txId + 1) & 0xFFFF;
+        return txId;
+    }
+
+    @Benchmark
+    public byte[] ackFrame() {
+        return dataResponse.buildAckFrame(uploadMbap, uploadPdu);
+    }
+
+    @Benchmark
+    public byte[] responseFrame() {
+        return dataResponse.buildResponseFrame(uploadMbap, uploadPdu);
+    }
+
+    @Benchmark
+    public byte[] configFrameSingleItem() {
+        return dataResponse.buildConfigDataFrameV2(nextTxId(), 1, 0x10, singleItem);
+    }
+
+    @Benchmark
+    public byte[] configFrameFullSet() {
+        return dataResponse.buildConfigDataFrameV2(nextTxId(), 1, 0x10, fullConfig);
+    }
+
+    @Benchmark
+    public byte[] customTypedFrame() {
+        return dataResponse.buildCustomDataFrameTyped(1, 0x10, 0x0100, nextTxId(), typedSegments);
+    }
+
+    @Benchmark
+    public byte[] writeMultipleRegisters10() {
+        return dataResponse.buildWriteMultipleRegistersFrame(nextTxId(), 1, 0, registers10);
+    }
+
+    @Benchmark
+    public byte[] writeMultipleRegisters100() {
+        return dataResponse.buildWriteMultipleRegistersFrame(nextTxId(), 1, 0, registers100);
+    }
+}
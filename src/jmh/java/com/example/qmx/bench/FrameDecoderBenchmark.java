@@ -0,0 +1,131 @@
+package com.example.qmx.bench;
+
+import com.example.qmx.server.ProtocolDispatchTable;
+import com.example.qmx.server.ProtocolSchema;
+import com.example.qmx.server.ProtocolSchemaService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 上报帧解码：通用解释器与按布局生成的专用解码类
+ * <p>
+ * 帧布局与现场网关一致（报警 19 位、状态 20、传感器 6、喷涂 3、产量 31、控制参数定长 14 字段）；
+ * mixed 系列按现场帧比例轮流解码几种布局：整帧（产量条数不同）与只带报警/传感器的心跳帧
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FrameDecoderBenchmark {
+
+    private ProtocolDispatchTable table;
+    private byte[] frame;
+    private byte[][] mix;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        ProtocolSchema schema;
+        try (InputStream in = FrameDecoderBenchmark.class.getResourceAsStream("/protocol-schema.json")) {
+            schema = new ObjectMapper().readValue(in, ProtocolSchema.class);
+        }
+        ProtocolSchemaService service = new ProtocolSchemaService();
+        service.apply(schema);
+        table = service.defaultTable();
+
+        Random rnd = new Random(42);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        segment(out, rnd, 0x00, 19, 3);
+        segment(out, rnd, 0x01, 20, 20);
+        segment(out, rnd, 0x02, 6, 24);
+        segment(out, rnd, 0x03, 3, 6);
+        segment(out, rnd, 0x04, 31, 62);
+        segment(out, rnd, 0x05, 14, 45);
+        frame = out.toByteArray();
+
+        byte[] fullFrame52 = fullFrame(rnd, 52);
+        byte[] fullFrame8 = fullFrame(rnd, 8);
+        out.reset();
+        segment(out, rnd, 0x00, 19, 3);
+        segment(out, rnd, 0x02, 6, 24);
+        byte[] heartbeat = out.toByteArray();
+        // 心跳帧占多数，整帧中产量条数随班次变化
+        mix = new byte[][]{heartbeat, frame, heartbeat, fullFrame52, heartbeat, heartbeat, fullFrame8, frame};
+
+        // 连续几帧相同布局后生成专用解码类
+        for (byte[] f : new byte[][]{frame, heartbeat, fullFrame52, fullFrame8}) {
+            for (int i = 0; i < 3; i++) {
+                table.decode(f, 0, f.length);
+            }
+        }
+        if (table.getSpecializedCount() != 4) {
+            throw new IllegalStateException("专用解码类未生成");
+        }
+    }
+
+    private static byte[] fullFrame(Random rnd, int productionCount) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        segment(out, rnd, 0x00, 19, 3);
+        segment(out, rnd, 0x01, 20, 20);
+        segment(out, rnd, 0x02, 6, 24);
+        segment(out, rnd, 0x03, 3, 6);
+        segment(out, rnd, 0x04, productionCount, productionCount * 2);
+        segment(out, rnd, 0x05, 14, 45);
+        return out.toByteArray();
+    }
+
+    private byte[] nextFrame() {
+        byte[] f = mix[next];
+        next = (next + 1) % mix.length;
+        return f;
+    }
+
+    private static void segment(ByteArrayOutputStream out, Random rnd, int typeId, int count, int bytes) {
+        out.write(typeId);
+        out.write(count);
+        byte[] data = new byte[bytes];
+        rnd.nextBytes(data);
+        out.write(data, 0, data.length);
+    }
+
+    @Benchmark
+    public Map<Integer, List<Long>> generic() {
+        return table.decodeGeneric(frame, 0, frame.length);
+    }
+
+    @Benchmark
+    public Map<Integer, List<Long>> generated() {
+        return table.decode(frame, 0, frame.length);
+    }
+
+    @Benchmark
+    public Map<Integer, List<Long>> mixedGeneric() {
+        byte[] f = nextFrame();
+        return table.decodeGeneric(f, 0, f.length);
+    }
+
+    @Benchmark
+    public Map<Integer, List<Long>> mixedGenerated() {
+        byte[] f = nextFrame();
+        return table.decode(f, 0, f.length);
+    }
+}
@@ -0,0 +1,109 @@
+package com.example.qmx.bench;
+
+import com.example.qmx.server.PollRegisterMap;
+import com.example.qmx.server.RegisterBlock;
+import com.example.qmx.server.RegisterBlockOptimizer;
+import com.example.qmx.utils.ModbusPipelineClient;
+import com.example.qmx.utils.ModbusSlaveSimulator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 读块划分对一次完整轮询耗时的影响
+ * <p>
+ * 本地模拟从站每个请求 200µs 往返、每寄存器 2µs；
+ * naive 只合并紧邻点位，optimized 使用代价模型跨空闲地址合并
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RegisterBlockBenchmark {
+
+    // 点位间距（寄存器）
+    @Param({"2", "8", "32"})
+    public int stride;
+
+    private ModbusSlaveSimulator slave;
+    private ScheduledExecutorService scheduler;
+    private ModbusPipelineClient client;
+    private List<PollRegisterMap.Point> points;
+    private RegisterBlockOptimizer optimizer;
+    private List<RegisterBlock> naiveBlocks;
+    private List<RegisterBlock> optimizedBlocks;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        slave = new ModbusSlaveSimulator(200, 2);
+        scheduler = Executors.newSingleThreadScheduledExecutor();
+        client = new ModbusPipelineClient("127.0.0.1", slave.getPort(), 1000, 5000, 1, scheduler);
+        points = new ArrayList<>();
+        for (int i = 0; i < 64; i++) {
+            PollRegisterMap.Point p = new PollRegisterMap.Point();
+            p.setTypeId(0x02);
+            p.setIndex(i);
+            p.setAddress(i * stride);
+            p.setDataType("uint16");
+            points.add(p);
+        }
+        optimizer = new RegisterBlockOptimizer(0.2, 0.002, 0.1);
+        naiveBlocks = RegisterBlock.merge(points, 0);
+        optimizedBlocks = optimizer.optimize("sim", points);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        client.close();
+        slave.close();
+        scheduler.shutdownNow();
+    }
+
+    @Benchmark
+    public void pollNaive(Blackhole bh) throws Exception {
+        readAll(naiveBlocks, bh);
+    }
+
+    @Benchmark
+    public void pollOptimized(Blackhole bh) throws Exception {
+        readAll(optimizedBlocks, bh);
+    }
+
+    /**
+     * 仅划分计算本身的开销（定期重新划分时付出的代价）
+     */
+    @Benchmark
+    public List<RegisterBlock> planOnly() {
+        return optimizer.optimize("sim", points);
+    }
+
+    private void readAll(List<RegisterBlock> blocks, Blackhole bh) throws Exception {
+        List<CompletableFuture<int[]>> futures = new ArrayList<>(blocks.size());
+        for (RegisterBlock b : blocks) {
+            futures.add(client.readHoldingRegisters(1, b.getStart(), b.getQuantity()));
+        }
+        for (CompletableFuture<int[]> f : futures) {
+            bh.consume(f.get());
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package com.example.qmx.config;
+
+import com.example.qmx.server.ClusterService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class ClusterConfig {
+
+    /**
+     * 集群模式下按网关号转发的接口：依赖本节点内存状态（最新值缓存、网关连接）的接口
+     */
+    @Bean
+    public FilterRegistrationBean<ClusterForwardFilter> clusterForwardFilter(
+            ClusterService clusterService,
+            @Value("${cluster.forward-paths:/getLatestStatus,/getLatestSensor,/getBatchLatestStatus,/getBatchLatestSensor,/unit/latest,/sendConfigDataV2}") String[] paths) {
+        FilterRegistrationBean<ClusterForwardFilter> bean = new FilterRegistrationBean<>(new ClusterForwardFilter(clusterService));
+        bean.addUrlPatterns(paths);
+        bean.setName("clusterForwardFilter");
+        return bean;
+    }
+}
@@ -0,0 +1,190 @@
+package com.example.qmx.config;
+
+import com.example.qmx.server.ClusterService;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.util.StreamUtils;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ReadListener;
+import javax.servlet.ServletException;
+import javax.servlet.ServletInputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 集群模式下把按网关号路由的请求转发到负责该网关的节点
+ * <p>
+ * 网关号取查询参数 unitId，没有时取 JSON 请求体顶层的 unitId，都没有时按接口默认值 1；
+ * 转发失败时：只读请求（GET）在连接不上目标节点时退回本节点处理（最新值查询会回源共享数据库）；
+ * 写请求（如参数下发）不退回，避免本节点没有网关连接或与目标节点重复下发，连接失败返回 502，
+ * 等待响应超时返回 504（目标节点可能已经执行，由调用方确认后再决定是否重试）
+ */
+public class ClusterForwardFilter extends OncePerRequestFilter {
+
+    private static final Logger log = LoggerFactory.getLogger(ClusterForwardFilter.class);
+
+    private static final int DEFAULT_UNIT_ID = 1;
+
+    private final ClusterService clusterService;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    public ClusterForwardFilter(ClusterService clusterService) {
+        this.clusterService = clusterService;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !clusterService.isEnabled() || request.getHeader(ClusterService.FORWARDED_HEADER) != null;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        byte[] body = null;
+        Integer unitId = parseInt(request.getParameter("unitId"));
+        if (unitId == null && request.getContentLength() != 0 && !"GET".equals(request.getMethod())) {
+            body = StreamUtils.copyToByteArray(request.getInputStream());
+            unitId = bodyUnitId(body);
+            request = new CachedBodyRequest(request, body);
+        }
+        int unit = unitId != null ? unitId : DEFAULT_UNIT_ID;
+        String target = clusterService.route(unit);
+        if (target.equals(clusterService.getNodeId())) {
+            chain.doFilter(request, response);
+            return;
+        }
+
+        if (body == null && !"GET".equals(request.getMethod())) {
+            body = StreamUtils.copyToByteArray(request.getInputStream());
+            request = new CachedBodyRequest(request, body);
+        }
+        String pathAndQuery = request.getRequestURI()
+                + (request.getQueryString() != null ? "?" + request.getQueryString() : "");
+        ResponseEntity<byte[]> resp;
+        try {
+            resp = clusterService.forward(target, HttpMethod.resolve(request.getMethod()), pathAndQuery,
+                    body, request.getContentType());
+        } catch (Exception e) {
+            boolean connectFailed = hasCause(e, ConnectException.class);
+            if (connectFailed && isReadOnly(request)) {
+                log.warn("连接节点 {} 失败，改为本节点处理: {} {}, err={}", target, request.getMethod(), pathAndQuery, e.getMessage());
+                chain.doFilter(request, response);
+                return;
+            }
+            int status = !connectFailed && hasCause(e, SocketTimeoutException.class)
+                    ? HttpServletResponse.SC_GATEWAY_TIMEOUT : HttpServletResponse.SC_BAD_GATEWAY;
+            log.warn("转发到节点 {} 失败，返回 {}: {} {}, err={}", target, status, request.getMethod(), pathAndQuery, e.getMessage());
+            writeError(response, status, status == HttpServletResponse.SC_GATEWAY_TIMEOUT
+                    ? "节点 " + target + " 响应超时，请求可能已执行，请确认后再重试"
+                    : "节点 " + target + " 不可达，请求未执行");
+            return;
+        }
+        response.setStatus(resp.getStatusCodeValue());
+        String contentType = resp.getHeaders().getFirst(HttpHeaders.CONTENT_TYPE);
+        if (contentType != null) {
+            response.setContentType(contentType);
+        }
+        response.setHeader(ClusterService.FORWARDED_HEADER, target);
+        if (resp.getBody() != null) {
+            response.getOutputStream().write(resp.getBody());
+        }
+    }
+
+    private static boolean isReadOnly(HttpServletRequest request) {
+        return "GET".equals(request.getMethod()) || "HEAD".equals(request.getMethod());
+    }
+
+    private static boolean hasCause(Throwable e, Class<? extends Throwable> type) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (type.isInstance(t)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void writeError(HttpServletResponse response, int status, String msg) throws IOException {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("ok", false);
+        body.put("msg", msg);
+        response.setStatus(status);
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        response.getOutputStream().write(objectMapper.writeValueAsBytes(body));
+    }
+
+    private Integer bodyUnitId(byte[] body) {
+        try {
+            JsonNode node = objectMapper.readTree(body);
+            JsonNode u = node != null ? node.get("unitId") : null;
+            return u != null && u.canConvertToInt() ? u.asInt() : null;
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    private static Integer parseInt(String s) {
+        if (s == null || s.isEmpty()) {
+            return null;
+        }
+        try {
+            return Integer.valueOf(s.trim());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 已读出请求体的请求，后续处理仍可再次读取
+     */
+    private static final class CachedBodyRequest extends HttpServletRequestWrapper {
+        private final byte[] body;
+
+        CachedBodyRequest(HttpServletRequest request, byte[] body) {
+            super(request);
+            this.body = body;
+        }
+
+        @Override
+        public ServletInputStream getInputStream() {
+            ByteArrayInputStream in = new ByteArrayInputStream(body);
+            return new ServletInputStream() {
+                @Override
+                public boolean isFinished() {
+                    return in.available() == 0;
+                }
+
+                @Override
+                public boolean isReady() {
+                    return true;
+                }
+
+                @Override
+                public void setReadListener(ReadListener listener) {
+                    throw new UnsupportedOperationException();
+                }
+
+                @Override
+                public int read() {
+                    return in.read();
+                }
+            };
+        }
+    }
+}
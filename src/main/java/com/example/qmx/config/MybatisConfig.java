@@ -20,4 +20,12 @@ public class MybatisConfig {
         interceptor.addInnerInterceptor(new PaginationInnerInterceptor(DbType.MYSQL));
         return interceptor;
     }
+
+    /**
+     * 按调用线程设置语句超时（大屏子查询），见 QueryTimeoutInterceptor
+     */
+    @Bean
+    public QueryTimeoutInterceptor queryTimeoutInterceptor() {
+        return new QueryTimeoutInterceptor();
+    }
 }
@@ -0,0 +1,60 @@
+package com.example.qmx.config;
+
+import org.apache.ibatis.executor.statement.StatementHandler;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.plugin.Intercepts;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.plugin.Signature;
+
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.concurrent.Callable;
+
+/**
+ * 按调用线程设置 JDBC 语句超时
+ * <p>
+ * Future.cancel(true) 中断不了阻塞在 socket 读上的 JDBC 查询，线程和连接会一直占到查询结束。
+ * 在 {@link #call} 作用域内执行的 SQL 会设置 Statement.setQueryTimeout（秒，向上取整，至少 1 秒），
+ * 由驱动在数据库侧取消超时的查询；作用域外的 SQL 不受影响
+ */
+@Intercepts(@Signature(type = StatementHandler.class, method = "prepare", args = {Connection.class, Integer.class}))
+public class QueryTimeoutInterceptor implements Interceptor {
+
+    // 当前线程 SQL 的截止时刻（System.nanoTime）
+    private static final ThreadLocal<Long> DEADLINE = new ThreadLocal<>();
+
+    /**
+     * 在截止时刻之前执行 task，其中的 SQL 按剩余时间设置语句超时
+     *
+     * @param deadlineNanos 截止时刻（System.nanoTime）
+     */
+    public static <T> T call(long deadlineNanos, Callable<T> task) throws Exception {
+        Long outer = DEADLINE.get();
+        DEADLINE.set(deadlineNanos);
+        try {
+            return task.call();
+        } finally {
+            if (outer != null) {
+                DEADLINE.set(outer);
+            } else {
+                DEADLINE.remove();
+            }
+        }
+    }
+
+    @Override
+    public Object intercept(Invocation invocation) throws Throwable {
+        Object result = invocation.proceed();
+        Long deadline = DEADLINE.get();
+        if (deadline != null && result instanceof Statement) {
+            long remainingMs = Math.max(0L, (deadline - System.nanoTime()) / 1_000_000L);
+            int seconds = (int) Math.max(1L, (remainingMs + 999L) / 1000L);
+            Statement statement = (Statement) result;
+            int current = statement.getQueryTimeout();
+            if (current == 0 || seconds < current) {
+                statement.setQueryTimeout(seconds);
+            }
+        }
+        return result;
+    }
+}
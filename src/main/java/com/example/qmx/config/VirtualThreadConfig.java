@@ -0,0 +1,57 @@
+package com.example.qmx.config;
+
+import com.example.qmx.utils.ModbusUtils;
+import com.example.qmx.utils.VirtualThreads;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.annotation.PostConstruct;
+
+/**
+ * 虚拟线程执行模式（threads.virtual.enabled=true，需 Java 21 及以上，见 pom 中 java21 profile）
+ * <p>
+ * 开启后：网关连接读/写线程（DataServer）、直采轮询（ModbusPollService）、ModbusUtils 共享执行器
+ * 与 Tomcat 请求线程均改为每任务一个虚拟线程；JDK 不支持时记录告警并保持平台线程
+ */
+@Configuration
+public class VirtualThreadConfig {
+
+    private static final Logger log = LoggerFactory.getLogger(VirtualThreadConfig.class);
+
+    @Value("${threads.virtual.enabled:false}")
+    private boolean enabled;
+
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            return;
+        }
+        if (!VirtualThreads.isSupported()) {
+            log.warn("已配置 threads.virtual.enabled=true，但当前 JVM（{}）不支持虚拟线程，继续使用平台线程",
+                    System.getProperty("java.version"));
+            return;
+        }
+        ModbusUtils.setIoExecutor(VirtualThreads.newPerTaskExecutor("modbus-io"));
+        log.info("虚拟线程执行模式已开启（JVM {}）", System.getProperty("java.version"));
+    }
+
+    /**
+     * Tomcat 请求处理改为每请求一个虚拟线程（MyBatis 查询等阻塞在 JDBC 上时不占平台线程）
+     */
+    @Bean
+    @ConditionalOnProperty(name = "threads.virtual.enabled", havingValue = "true")
+    @ConditionalOnClass(name = "org.apache.coyote.ProtocolHandler")
+    public TomcatProtocolHandlerCustomizer<?> virtualThreadProtocolHandlerCustomizer() {
+        return protocolHandler -> {
+            if (VirtualThreads.isSupported()) {
+                protocolHandler.setExecutor(VirtualThreads.newPerTaskExecutor("tomcat-handler"));
+            }
+        };
+    }
+}
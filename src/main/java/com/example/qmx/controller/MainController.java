@@ -1,6 +1,5 @@
 package com.example.qmx.controller;
 
-import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.example.qmx.common.PageR;
 import com.example.qmx.domain.*;
 import com.example.qmx.dto.*;
@@ -12,12 +11,16 @@ import io.swagger.annotations.ApiOperation;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import javax.annotation.Resource;
@@ -40,6 +43,8 @@ public class MainController {
     @Autowired
     private ProductDailyMapper productDailyMapper;
     @Autowired
+    private ProductionSeriesMapper productionSeriesMapper;
+    @Autowired
     private SensorMapper sensorMapper;
     @Autowired
     private SprayRecordMapper sprayRecordMapper;
@@ -68,11 +73,44 @@ public class MainController {
     @Resource
     private SprayRecordService sprayRecordService;
 
+    @Resource
+    private QualityResultWriter qualityResultWriter;
+
+    @Resource
+    private DataResponse dataResponse;
+
+    @Resource
+    private ProtocolSchemaService protocolSchemaService;
+
+    @Resource
+    private LatestValueCache latestValueCache;
+
+    @Resource
+    private ClusterService clusterService;
+
+    @Resource
+    private FrameCaptureService frameCaptureService;
+
+    @Resource
+    private JfrRecordingService jfrRecordingService;
+
+    @Resource
+    private DashboardService dashboardService;
+
+    @Resource
+    private HistoryResponseCache historyResponseCache;
+
     @Value("${config.auth.username:}")
     private String configAuthUsername;
     @Value("${config.auth.password:}")
     private String configAuthPassword;
 
+    // 下发接口最长等待：确认超时 + 排队与写出的余量，网关或写线程异常时也能按时返回
+    @Value("${downlink.ack-timeout-ms:3000}")
+    private long downlinkAckTimeoutMs;
+    @Value("${downlink.wait-slack-ms:2000}")
+    private long downlinkWaitSlackMs;
+
     @Autowired
     public MainController(DataServer dataServer, DataToObj dataToObj) {
         this.dataServer = dataServer;
@@ -174,26 +212,26 @@ public class MainController {
 
     @GetMapping(value = "/getLatestStatus")
     @ApiOperation(value = "获取设备状态", notes = "返回对应设备的最新状态")
-    public DeviceStatus getLatestStatus(String devName) {
-        return deviceStatusMapper.getLatestStatus(devName);
+    public DeviceStatus getLatestStatus(String devName, @RequestParam(value = "unitId", required = false, defaultValue = "1") Integer unitId) {
+        return latestValueCache.latestStatus(unitId, devName);
     }
 
     @GetMapping(value = "/getLatestProductHourly")
     @ApiOperation(value = "获取产品小时记录", notes = "返回最新产品小时记录")
-    public ProductHourly getLatestProductHourly() {
-        return productHourlyMapper.getLatestProductHourly();
+    public ProductHourly getLatestProductHourly(@RequestParam(value = "unitId", required = false, defaultValue = "1") Integer unitId) {
+        return productHourlyMapper.getLatestProductHourly(unitId);
     }
 
     @GetMapping(value = "/getLatestProductDaily")
     @ApiOperation(value = "获取产品日记录", notes = "返回最新产品日记录")
-    public ProductDaily getLatestProductDaily() {
-        return productDailyMapper.getLatestProductDaily();
+    public ProductDaily getLatestProductDaily(@RequestParam(value = "unitId", required = false, defaultValue = "1") Integer unitId) {
+        return productDailyMapper.getLatestProductDaily(unitId);
     }
 
     @GetMapping(value = "/getLatestSensor")
     @ApiOperation(value = "获取传感器记录", notes = "返回对应设备的最新传感器记录")
-    public Sensor getLatestSensor(String devName) {
-        return sensorMapper.getLatestSensor(devName);
+    public Sensor getLatestSensor(String devName, @RequestParam(value = "unitId", required = false, defaultValue = "1") Integer unitId) {
+        return latestValueCache.latestSensor(unitId, devName);
     }
 
     @GetMapping(value = "/getLatestQualityResult")
@@ -202,106 +240,149 @@ public class MainController {
         return qualityDetectionMapper.getLatestResult();
     }
 
-    @GetMapping(value = "/getDashboardOverview")
-    @ApiOperation(value = "获取大屏总览数据", notes = "返回喷涂产量和质量聚合数据")
-    public Map<String, Object> getDashboardOverview() {
-        Map<String, Object> result = new HashMap<>();
-
-        ProductHourly latestHourly = productHourlyMapper.getLatestProductHourly();
-        ProductDaily latestDay = productDailyMapper.getLatestProductDaily();
-        QualityDetection latestQuality = qualityDetectionMapper.getLatestResult();
-
-        Integer latestHourlyOutput = latestHourly != null ? latestHourly.getNumHourly() : null;
-        Integer latestDailyOutput = latestDay != null ? latestDay.getNumDaily() : null;
-        Integer latestQualityResult = latestQuality != null ? latestQuality.getResult() : null;
-
-        List<ProductHourly> allHourly = productHourlyMapper.selectList(null);
-        int totalHourlyOutput = 0;
-        for (ProductHourly ph : allHourly) {
-            if (ph.getNumHourly() != null) {
-                totalHourlyOutput += ph.getNumHourly();
-            }
+    @PostMapping(value = "/qualityResult/push")
+    @ApiOperation(value = "质检结果推送", notes = "质检服务产生结果后主动推送，按 resultId 去重后批量入库；"
+            + "ok=true 表示已进入写入队列（入库失败时服务端有限次重试），不表示已落库；"
+            + "写入队列已满时返回 503 且 retry=true，推送方应稍后重试")
+    public ResponseEntity<Map<String, Object>> pushQualityResult(@RequestBody QualityResultPushReq req) {
+        Map<String, Object> resp = new HashMap<>();
+        if (req == null || req.getResult() == null) {
+            resp.put("ok", false);
+            resp.put("msg", "参数不完整：需要 result");
+            return ResponseEntity.ok(resp);
         }
-
-        List<ProductDaily> allDay = productDailyMapper.selectList(null);
-        int totalDailyOutput = 0;
-        for (ProductDaily pw : allDay) {
-            if (pw.getNumDaily() != null) {
-                totalDailyOutput += pw.getNumDaily();
-            }
+        QualityDetection qd = new QualityDetection();
+        qd.setUnitId(req.getUnitId() != null ? req.getUnitId() : 1);
+        qd.setResultId(req.getResultId());
+        qd.setResult(req.getResult());
+        qd.setSource(req.getSource());
+        qd.setTime(req.getTime() != null
+                ? java.time.LocalDateTime.ofInstant(req.getTime().toInstant(), java.time.ZoneId.systemDefault())
+                : java.time.LocalDateTime.now());
+        QualityResultWriter.SubmitResult result = qualityResultWriter.submit(qd);
+        if (result == QualityResultWriter.SubmitResult.QUEUE_FULL) {
+            resp.put("ok", false);
+            resp.put("retry", true);
+            resp.put("msg", "写入队列已满，请稍后重试");
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(resp);
         }
+        boolean duplicate = result == QualityResultWriter.SubmitResult.DUPLICATE;
+        resp.put("ok", true);
+        resp.put("duplicate", duplicate);
+        resp.put("msg", duplicate ? "重复结果，已忽略" : "已接收，等待入库");
+        return ResponseEntity.ok(resp);
+    }
 
-        List<QualityDetection> allQuality = qualityDetectionMapper.selectList(null);
-        int totalQualityCount = allQuality.size();
-        int totalPassQualityCount = 0;
-        for (QualityDetection qd : allQuality) {
-            if (qd.getResult() != null && qd.getResult() == 1) {
-                totalPassQualityCount++;
-            }
-        }
+    @GetMapping(value = "/modbus/poolMetrics")
+    @ApiOperation(value = "Modbus连接池指标", notes = "返回连接数、各设备熔断状态、失败/快速失败次数与延迟直方图")
+    public Map<String, Object> getModbusPoolMetrics() {
+        return com.example.qmx.utils.ModbusUtils.getPoolMetrics();
+    }
 
-        result.put("latestHourlyOutput", latestHourlyOutput);
-        result.put("latestDailyOutput", latestDailyOutput);
-        result.put("totalHourlyOutput", totalHourlyOutput);
-        result.put("totalDailyOutput", totalDailyOutput);
-        result.put("latestQualityResult", latestQualityResult);
-        result.put("totalQualityCount", totalQualityCount);
-        result.put("totalPassQualityCount", totalPassQualityCount);
+    @GetMapping(value = "/getDashboardOverview")
+    @ApiOperation(value = "获取大屏总览数据", notes = "返回指定网关的喷涂产量和质量聚合数据；子查询并行执行，超时的字段为 null")
+    public Map<String, Object> getDashboardOverview(@RequestParam(value = "unitId", required = false, defaultValue = "1") Integer unitId) {
+        return dashboardService.overview(unitId);
+    }
 
-        return result;
+    @GetMapping(value = "/getDashboard")
+    @ApiOperation(value = "获取大屏全部数据", notes = "一次返回总览、整点小时/0点日产量历史、喷枪压力与设备最新状态；子查询并行执行，"
+            + "超时或失败的部分为 null，partial=true 且 errors 中注明原因")
+    public Map<String, Object> getDashboard(@RequestParam(value = "unitId", required = false, defaultValue = "1") Integer unitId,
+            @RequestParam(value = "devNames", required = false) List<String> devNames,
+            @RequestParam(value = "hourlyLimit", required = false, defaultValue = "24") Integer hourlyLimit,
+            @RequestParam(value = "dailyLimit", required = false, defaultValue = "30") Integer dailyLimit) {
+        int hl = (hourlyLimit == null || hourlyLimit <= 0) ? 24 : Math.min(hourlyLimit, 1000);
+        int dl = (dailyLimit == null || dailyLimit <= 0) ? 30 : Math.min(dailyLimit, 1000);
+        return dashboardService.dashboard(unitId, devNames, hl, dl);
     }
 
     @GetMapping(value = "/getProductHourlyHistory")
-    @ApiOperation(value = "获取小时产量历史", notes = "按时间升序返回最近N条小时产量数据")
-    public List<ProductHourly> getProductHourlyHistory(@RequestParam(value = "limit", required = false, defaultValue = "24") Integer limit) {
+    @ApiOperation(value = "获取小时产量历史", notes = "按时间升序返回最近N条小时产量数据；支持 If-None-Match / If-Modified-Since，未入库新数据时返回 304")
+    public ResponseEntity<byte[]> getProductHourlyHistory(@RequestParam(value = "limit", required = false, defaultValue = "24") Integer limit,
+            @RequestParam(value = "unitId", required = false, defaultValue = "1") Integer unitId, WebRequest request) {
         int l = (limit == null || limit <= 0) ? 24 : Math.min(limit, 1000);
-        List<ProductHourly> list = productHourlyMapper.getRecentProductHourly(l);
-        if (list == null || list.isEmpty()) {
-            return new ArrayList<>();
-        }
-        list.sort(java.util.Comparator.comparing(ProductHourly::getTime));
-        return list;
+        return history(request, "hourly", IngestWriter.TABLE_PRODUCT_HOURLY, unitId, l, () -> {
+            List<ProductHourly> list = productHourlyMapper.getRecentProductHourly(unitId, l);
+            if (list == null || list.isEmpty()) {
+                return new ArrayList<>();
+            }
+            list.sort(java.util.Comparator.comparing(ProductHourly::getTime));
+            return list;
+        });
     }
 
     @GetMapping(value = "/getProductWeekHistory")
-    @ApiOperation(value = "获取日产量历史", notes = "按时间升序返回最近N条日产量数据")
-    public List<ProductDaily> getProductWeekHistory(@RequestParam(value = "limit", required = false, defaultValue = "12") Integer limit) {
+    @ApiOperation(value = "获取日产量历史", notes = "按时间升序返回最近N条日产量数据；支持 If-None-Match / If-Modified-Since，未入库新数据时返回 304")
+    public ResponseEntity<byte[]> getProductWeekHistory(@RequestParam(value = "limit", required = false, defaultValue = "12") Integer limit,
+            @RequestParam(value = "unitId", required = false, defaultValue = "1") Integer unitId, WebRequest request) {
         int l = (limit == null || limit <= 0) ? 12 : Math.min(limit, 1000);
-        List<ProductDaily> list = productDailyMapper.getRecentProductDaily(l);
-        if (list == null || list.isEmpty()) {
-            return new ArrayList<>();
-        }
-        list.sort(java.util.Comparator.comparing(ProductDaily::getTime));
-        return list;
+        return history(request, "daily", IngestWriter.TABLE_PRODUCT_DAILY, unitId, l, () -> {
+            List<ProductDaily> list = productDailyMapper.getRecentProductDaily(unitId, l);
+            if (list == null || list.isEmpty()) {
+                return new ArrayList<>();
+            }
+            list.sort(java.util.Comparator.comparing(ProductDaily::getTime));
+            return list;
+        });
     }
 
     @GetMapping(value = "/getProductHourlyOnHourHistory")
-    @ApiOperation(value = "获取整点小时产量历史", notes = "返回最近N条每小时整点的小时产量数据，按时间升序")
-    public List<ProductHourly> getProductHourlyOnHourHistory(@RequestParam(value = "limit", required = false, defaultValue = "24") Integer limit) {
+    @ApiOperation(value = "获取整点小时产量历史", notes = "返回最近N条每小时整点的小时产量数据，按时间升序；支持 If-None-Match / If-Modified-Since")
+    public ResponseEntity<byte[]> getProductHourlyOnHourHistory(@RequestParam(value = "limit", required = false, defaultValue = "24") Integer limit,
+            @RequestParam(value = "unitId", required = false, defaultValue = "1") Integer unitId, WebRequest request) {
         int l = (limit == null || limit <= 0) ? 24 : Math.min(limit, 1000);
-        List<ProductHourly> list = productHourlyMapper.getHourlyLatestByHour(l);
-        if (list == null || list.isEmpty()) {
-            return new ArrayList<>();
-        }
-        list.sort(java.util.Comparator.comparing(ProductHourly::getTime));
-        return list;
+        return history(request, "hourlyOnHour", IngestWriter.TABLE_PRODUCT_HOURLY, unitId, l, () -> {
+            List<ProductHourly> list = productionSeriesMapper.getHourlyLatestByHour(unitId, l);
+            if (list == null || list.isEmpty()) {
+                return new ArrayList<>();
+            }
+            list.sort(java.util.Comparator.comparing(ProductHourly::getTime));
+            return list;
+        });
     }
 
     @GetMapping(value = "/getProductDailyAtMidnightHistory")
-    @ApiOperation(value = "获取0点日产量历史", notes = "返回最近N条每天0点的日产量数据，按时间升序")
-    public List<ProductDaily> getProductDailyAtMidnightHistory(@RequestParam(value = "limit", required = false, defaultValue = "30") Integer limit) {
+    @ApiOperation(value = "获取0点日产量历史", notes = "返回最近N条每天0点的日产量数据，按时间升序；支持 If-None-Match / If-Modified-Since")
+    public ResponseEntity<byte[]> getProductDailyAtMidnightHistory(@RequestParam(value = "limit", required = false, defaultValue = "30") Integer limit,
+            @RequestParam(value = "unitId", required = false, defaultValue = "1") Integer unitId, WebRequest request) {
         int l = (limit == null || limit <= 0) ? 30 : Math.min(limit, 1000);
-        List<ProductDaily> list = productDailyMapper.getDailyLatestByDay(l);
-        if (list == null || list.isEmpty()) {
-            return new ArrayList<>();
+        return history(request, "dailyAtMidnight", IngestWriter.TABLE_PRODUCT_DAILY, unitId, l, () -> {
+            List<ProductDaily> list = productionSeriesMapper.getDailyLatestByDay(unitId, l);
+            if (list == null || list.isEmpty()) {
+                return new ArrayList<>();
+            }
+            list.sort(java.util.Comparator.comparing(ProductDaily::getTime));
+            return list;
+        });
+    }
+
+    /**
+     * 产量历史的条件 GET：ETag/Last-Modified 取自入库水位线，客户端版本未过期时返回 304（不查库）；
+     * 否则返回按水位线缓存的已序列化响应体
+     */
+    private ResponseEntity<byte[]> history(WebRequest request, String endpoint, String table, int unitId, int limit,
+            java.util.function.Supplier<List<?>> loader) {
+        if (!historyResponseCache.isEnabled()) {
+            return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON)
+                    .body(historyResponseCache.serialize(endpoint, loader.get()));
         }
-        list.sort(java.util.Comparator.comparing(ProductDaily::getTime));
-        return list;
+        HistoryResponseCache.Watermark w = historyResponseCache.watermark(table, unitId);
+        String etag = historyResponseCache.etag(endpoint, unitId, limit, w);
+        long lastModified = w.lastModifiedMillis > 0 ? w.lastModifiedMillis : -1L;
+        if (request.checkNotModified(etag, lastModified)) {
+            return null;
+        }
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .cacheControl(CacheControl.noCache())
+                .body(historyResponseCache.body(endpoint, unitId, limit, w, loader));
     }
 
     @GetMapping(value = "/getBatchLatestStatus")
     @ApiOperation(value = "批量获取设备状态", notes = "根据设备名列表返回最新状态")
-    public List<DeviceStatus> getBatchLatestStatus(@RequestParam("devNames") List<String> devNames) {
+    public List<DeviceStatus> getBatchLatestStatus(@RequestParam("devNames") List<String> devNames,
+            @RequestParam(value = "unitId", required = false, defaultValue = "1") Integer unitId) {
         List<DeviceStatus> list = new ArrayList<>();
         if (devNames == null) {
             return list;
@@ -310,7 +391,7 @@ public class MainController {
             if (devName == null || devName.isEmpty()) {
                 continue;
             }
-            DeviceStatus status = deviceStatusMapper.getLatestStatus(devName);
+            DeviceStatus status = latestValueCache.latestStatus(unitId, devName);
             if (status != null) {
                 list.add(status);
             }
@@ -320,7 +401,8 @@ public class MainController {
 
     @GetMapping(value = "/getBatchLatestSensor")
     @ApiOperation(value = "批量获取传感器记录", notes = "根据设备名列表返回最新传感器记录")
-    public List<Sensor> getBatchLatestSensor(@RequestParam("devNames") List<String> devNames) {
+    public List<Sensor> getBatchLatestSensor(@RequestParam("devNames") List<String> devNames,
+            @RequestParam(value = "unitId", required = false, defaultValue = "1") Integer unitId) {
         List<Sensor> list = new ArrayList<>();
         if (devNames == null) {
             return list;
@@ -329,7 +411,7 @@ public class MainController {
             if (devName == null || devName.isEmpty()) {
                 continue;
             }
-            Sensor sensor = sensorMapper.getLatestSensor(devName);
+            Sensor sensor = latestValueCache.latestSensor(unitId, devName);
             if (sensor != null) {
                 list.add(sensor);
             }
@@ -339,13 +421,13 @@ public class MainController {
 
     @GetMapping(value = "/getGunPressureLast15Minutes")
     @ApiOperation(value = "获取喷枪压力最近15分钟数据", notes = "返回喷涂管路1和喷涂管路2在最近15分钟的传感器记录")
-    public Map<String, Object> getGunPressureLast15Minutes() {
+    public Map<String, Object> getGunPressureLast15Minutes(@RequestParam(value = "unitId", required = false, defaultValue = "1") Integer unitId) {
         long nowMillis = System.currentTimeMillis();
         java.util.Date fromTime = new java.util.Date(nowMillis - 15L * 60L * 1000L);
 
         int limit = 15;
-        List<Sensor> gun1 = sensorMapper.getLatestByMinuteInRange("喷涂管路1压力", fromTime, limit);
-        List<Sensor> gun2 = sensorMapper.getLatestByMinuteInRange("喷涂管路2压力", fromTime, limit);
+        List<Sensor> gun1 = sensorMapper.getLatestByMinuteInRange(unitId, "喷涂管路1压力", fromTime, limit);
+        List<Sensor> gun2 = sensorMapper.getLatestByMinuteInRange(unitId, "喷涂管路2压力", fromTime, limit);
 
         Map<String, Object> result = new HashMap<>();
         result.put("gun1", gun1);
@@ -493,14 +575,16 @@ public class MainController {
             resp.put("msg", "参数不完整：需要 unitId、functionCode、params");
             return resp;
         }
-        if (!dataServer.isGatewayConnected()) {
+        if (!dataServer.isGatewayConnected(req.unitId)) {
             resp.put("ok", false);
-            resp.put("msg", "网关未连接，无法下发配置");
+            resp.put("msg", "网关 " + req.unitId + " 未连接，无法下发配置");
             return resp;
         }
 
+        ProtocolDispatchTable configTable = protocolSchemaService.table(req.unitId);
         java.util.List<com.example.qmx.server.DataResponse.ConfigItem> items = new java.util.ArrayList<>();
-        java.util.List<ControlParameter> snapshots = new java.util.ArrayList<>();
+        // dataId -> 本次下发值的快照
+        java.util.Map<Integer, ControlParameter> snapshots = new java.util.LinkedHashMap<>();
         try {
             for (ConfigParamDto dto : req.params) {
                 if (dto == null || dto.dataId == null) {
@@ -510,9 +594,10 @@ public class MainController {
                 }
                 int dataId = dto.dataId;
                 Object v = dto.value;
-                 String name = mapDataIdToName(dataId);
+                 String name = configTable.configName(dataId);
                  if (name != null) {
                      ControlParameter cp = new ControlParameter();
+                     cp.setUnitId(req.unitId);
                      cp.setName(name);
                      double val;
                 if (dataId >= 0x01 && dataId <= 0x05) {
@@ -527,7 +612,7 @@ public class MainController {
                      }
                      cp.setValue(val);
                      cp.setTime(java.time.LocalDateTime.now());
-                     snapshots.add(cp);
+                     snapshots.put(dataId, cp);
                  }
                 if (dataId >= 0x01 && dataId <= 0x03) {
                     int iv = v == null ? 0 : Integer.parseInt(String.valueOf(v));
@@ -550,72 +635,55 @@ public class MainController {
             return resp;
         }
 
-        boolean ok = dataServer.sendConfigItemsV2(req.unitId, req.functionCode, items);
+        // 等待网关确认帧（按事务ID关联，超时时间见 downlink.ack-timeout-ms，外加 downlink.wait-slack-ms 余量）
+        boolean ok;
+        String msg;
+        try {
+            com.example.qmx.server.GatewayWriter.ConfigAck ack = dataServer.sendConfigItemsV2Async(req.unitId, req.functionCode, items)
+                    .get(downlinkAckTimeoutMs + downlinkWaitSlackMs, java.util.concurrent.TimeUnit.MILLISECONDS);
+            int ackCount = dataResponse.parseConfigAckCount(ack.getPdu());
+            // 写队列会把未发出的同 dataId 请求合并为一帧，确认数量是合并后的数量，不小于本次的不同 dataId 数
+            long distinct = items.stream().mapToInt(it -> it.dataId).distinct().count();
+            ok = ackCount >= distinct;
+            msg = ok ? "下发成功，网关已确认" : "网关拒绝或确认数量不符: " + ackCount;
+            resp.put("ackCount", ackCount);
+            // 发出前被后来的请求覆盖的项：设备上是后来的值，不记录本次的快照
+            snapshots.keySet().removeAll(ack.getSuperseded());
+            if (!ack.getSuperseded().isEmpty()) {
+                resp.put("superseded", ack.getSuperseded());
+            }
+        } catch (java.util.concurrent.ExecutionException e) {
+            ok = false;
+            msg = e.getCause() instanceof java.util.concurrent.TimeoutException
+                    ? "已发送，但等待网关确认超时"
+                    : "发送失败: " + e.getCause().getMessage();
+        } catch (java.util.concurrent.TimeoutException e) {
+            ok = false;
+            msg = "等待网关确认超时（" + (downlinkAckTimeoutMs + downlinkWaitSlackMs) + "ms 内未发出或未确认）";
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            ok = false;
+            msg = "等待网关确认被中断";
+        }
         if (ok) {
-            for (ControlParameter cp : snapshots) {
+            for (ControlParameter cp : snapshots.values()) {
                 controlParameterMapper.insert(cp);
             }
         }
         resp.put("ok", ok);
-        resp.put("msg", ok ? "发送成功" : "发送失败");
+        resp.put("msg", msg);
         return resp;
     }
 
-    private String mapDataIdToName(int dataId) {
-        switch (dataId) {
-            case 0x01:
-                return "人工一键清洗";
-            case 0x02:
-                return "枪头清洗控制";
-            case 0x03:
-                return "供料桶切换";
-            case 0x04:
-                return "现场运行控制";
-            case 0x05:
-                return "机器人喷涂速度";
-            case 0x06:
-                return "定时清洗间隔";
-            case 0x07:
-                return "喷涂管路1压力报警阈值";
-            case 0x08:
-                return "喷涂管路2压力报警阈值";
-            case 0x09:
-                return "清洗泵压力报警阈值";
-            case 0x0A:
-                return "搅拌器1转速";
-            case 0x0B:
-                return "搅拌器2转速";
-            case 0x0C:
-                return "液位传感器1报警阈值";
-            case 0x0D:
-                return "液位传感器2报警阈值";
-            default:
-                return null;
-        }
-    }
-
     @GetMapping("/getConfigData")
-    @ApiOperation(value = "获取当前配置参数", notes = "返回最新的控制参数配置")
-    public java.util.Map<String, Object> getConfigData() {
+    @ApiOperation(value = "获取当前配置参数", notes = "返回最新的控制参数配置；参数名称取自网关对应固件版本的协议描述")
+    public java.util.Map<String, Object> getConfigData(@RequestParam(value = "unitId", required = false, defaultValue = "1") Integer unitId) {
         java.util.Map<String, Object> resp = new java.util.HashMap<>();
         java.util.Map<String, Object> data = new java.util.HashMap<>();
-        String[] keys = new String[]{
-                "人工一键清洗",
-                "枪头清洗控制",
-                "供料桶切换",
-                "现场运行控制",
-                "机器人喷涂速度",
-                "定时清洗间隔",
-                "喷涂管路1压力报警阈值",
-                "喷涂管路2压力报警阈值",
-                "清洗泵压力报警阈值",
-                "搅拌器1转速",
-                "搅拌器2转速",
-                "液位传感器1报警阈值",
-                "液位传感器2报警阈值"
-        };
+        ProtocolDispatchTable table = protocolSchemaService.table(unitId);
+        List<String> keys = table.configNames();
         for (String key : keys) {
-            ControlParameter latest = controlParameterMapper.selectLatestByName(key);
+            ControlParameter latest = controlParameterMapper.selectLatestByName(unitId, key);
             if (latest != null) {
                 data.put(key, latest.getValue());
             }
@@ -629,10 +697,15 @@ public class MainController {
     @PostMapping("/listen")
     public java.util.Map<String, Object> startGatewayListen() {
         java.util.Map<String, Object> resp = new java.util.HashMap<>();
+        if (dataServer.isServing()) {
+            resp.put("ok", true);
+            resp.put("msg", "网关监听已在运行");
+            return resp;
+        }
         new Thread(() -> {
             try {
-                // 启动服务端监听并阻塞直到有客户端接入
-                dataServer.fetchData();
+                // 启动服务端监听，持续接受网关接入
+                dataServer.serve();
             } catch (Exception e) {
                 e.printStackTrace();
             }
@@ -642,6 +715,97 @@ public class MainController {
         return resp;
     }
 
+    @GetMapping("/units")
+    @ApiOperation(value = "网关列表", notes = "返回当前网关连接及各网关号最近一帧上报时间")
+    public Map<String, Object> getUnits() {
+        Map<String, Object> resp = new HashMap<>();
+        resp.put("ok", true);
+        resp.put("connections", dataServer.getConnections());
+        resp.put("units", latestValueCache.units());
+        return resp;
+    }
+
+    @GetMapping("/capture/status")
+    @ApiOperation(value = "抓包状态", notes = "返回网关帧抓包是否开启、已写帧数与当前段文件")
+    public Map<String, Object> getCaptureStatus() {
+        Map<String, Object> resp = new HashMap<>();
+        resp.put("ok", true);
+        resp.put("data", frameCaptureService.status());
+        return resp;
+    }
+
+    @PostMapping("/jfr/start")
+    @ApiOperation(value = "开始 JFR 录制", notes = "settings 为 JDK 预置配置名（default/profile），为空时取 jfr.settings；已在录制时返回当前状态")
+    public Map<String, Object> startJfr(@RequestParam(value = "settings", required = false) String settings) {
+        Map<String, Object> resp = new HashMap<>();
+        try {
+            resp.put("data", jfrRecordingService.start(settings));
+            resp.put("ok", true);
+            resp.put("msg", "JFR 录制已开始");
+        } catch (Exception e) {
+            resp.put("ok", false);
+            resp.put("msg", "开始 JFR 录制失败: " + e.getMessage());
+        }
+        return resp;
+    }
+
+    @PostMapping("/jfr/dump")
+    @ApiOperation(value = "导出 JFR 录制", notes = "把进行中的录制导出为 .jfr 文件，录制继续")
+    public Map<String, Object> dumpJfr() {
+        Map<String, Object> resp = new HashMap<>();
+        try {
+            resp.put("data", jfrRecordingService.dump().toAbsolutePath().toString());
+            resp.put("ok", true);
+            resp.put("msg", "JFR 录制已导出");
+        } catch (Exception e) {
+            resp.put("ok", false);
+            resp.put("msg", "导出 JFR 录制失败: " + e.getMessage());
+        }
+        return resp;
+    }
+
+    @PostMapping("/jfr/stop")
+    @ApiOperation(value = "停止 JFR 录制", notes = "停止录制并导出 .jfr 文件，返回文件路径")
+    public Map<String, Object> stopJfr() {
+        Map<String, Object> resp = new HashMap<>();
+        try {
+            resp.put("data", jfrRecordingService.stop().toAbsolutePath().toString());
+            resp.put("ok", true);
+            resp.put("msg", "JFR 录制已停止");
+        } catch (Exception e) {
+            resp.put("ok", false);
+            resp.put("msg", "停止 JFR 录制失败: " + e.getMessage());
+        }
+        return resp;
+    }
+
+    @GetMapping("/jfr/status")
+    @ApiOperation(value = "JFR 录制状态", notes = "返回是否在录制、录制大小与导出目录")
+    public Map<String, Object> getJfrStatus() {
+        Map<String, Object> resp = new HashMap<>();
+        resp.put("ok", true);
+        resp.put("data", jfrRecordingService.status());
+        return resp;
+    }
+
+    @GetMapping("/cluster/members")
+    @ApiOperation(value = "集群成员", notes = "返回集群成员、网关认领情况与本节点持有连接的网关号")
+    public Map<String, Object> getClusterMembers() {
+        Map<String, Object> resp = new HashMap<>();
+        resp.put("ok", true);
+        resp.put("data", clusterService.describe());
+        return resp;
+    }
+
+    @GetMapping("/unit/latest")
+    @ApiOperation(value = "网关最新数据", notes = "返回指定网关号缓存的全部最新点位值")
+    public Map<String, Object> getUnitLatest(@RequestParam("unitId") Integer unitId) {
+        Map<String, Object> resp = new HashMap<>();
+        resp.put("ok", true);
+        resp.put("data", latestValueCache.snapshot(unitId));
+        return resp;
+    }
+
     // 升级文件请求体
     public static class UpgradeRequest {
         public String fileName;
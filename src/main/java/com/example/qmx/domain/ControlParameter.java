@@ -15,6 +15,9 @@ public class ControlParameter {
     @TableId(value = "id", type = IdType.AUTO)
     private Long id;
 
+    @TableField("unitId")
+    private Integer unitId;
+
     @TableField("name")
     private String name;
 
@@ -15,6 +15,9 @@ public class ProductDaily {
     @TableId(value = "id", type = IdType.AUTO)
     private Long id;
 
+    @TableField("unitId")
+    private Integer unitId;
+
     @TableField("numDaily")
     private Integer numDaily;
 
@@ -15,6 +15,9 @@ public class ProductHourly {
     @TableId(value = "id", type = IdType.AUTO)
     private Long id;
 
+    @TableField("unitId")
+    private Integer unitId;
+
     @TableField("numHourly")
     private Integer numHourly;
 
@@ -0,0 +1,44 @@
+package com.example.qmx.domain;
+
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableField;
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * 产量时间序列：每个网关每小时/每天一行，保存该桶内最新一次上报的产量
+ */
+@Data
+@TableName(value = "production_series")
+public class ProductionSeries {
+
+    public static final String HOURLY = "H";
+    public static final String DAILY = "D";
+
+    @TableId(value = "id", type = IdType.AUTO)
+    private Long id;
+
+    @TableField("unitId")
+    private Integer unitId;
+
+    // H 小时 / D 日
+    @TableField("granularity")
+    private String granularity;
+
+    // 桶起点：整点 / 0 点
+    @TableField("bucket")
+    private LocalDateTime bucket;
+
+    @TableField("num")
+    private Integer num;
+
+    // 对应的 product_hourly / product_daily 明细 id
+    @TableField("sourceId")
+    private Long sourceId;
+
+    @TableField("time")
+    private LocalDateTime time;
+}
@@ -14,6 +14,15 @@ public class QualityDetection {
     @TableId(value = "id", type = IdType.AUTO)
     private Long id;
 
+    @TableField("unitId")
+    private Integer unitId;
+
+    @TableField("resultId")
+    private String resultId;
+
+    @TableField("source")
+    private String source;
+
     @TableField("result")
     private Integer result;
 
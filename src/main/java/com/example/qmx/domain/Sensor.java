@@ -15,6 +15,9 @@ public class Sensor {
     @TableId(value = "id", type = IdType.AUTO)
     private Long id;
 
+    @TableField("unitId")
+    private Integer unitId;
+
     @TableField("devName")
     private String devName;
 
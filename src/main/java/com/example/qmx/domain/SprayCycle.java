@@ -0,0 +1,68 @@
+package com.example.qmx.domain;
+
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableField;
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * 喷涂周期事实表：一条质检结果对应一个喷涂周期，冗余该周期的控制参数与压力统计
+ */
+@Data
+@TableName(value = "spray_cycle")
+public class SprayCycle {
+
+    @TableId(value = "id", type = IdType.AUTO)
+    private Long id;
+
+    @TableField("unitId")
+    private Integer unitId;
+
+    @TableField("qualityId")
+    private Long qualityId;
+
+    @TableField("result")
+    private Integer result;
+
+    @TableField("qualityTime")
+    private LocalDateTime qualityTime;
+
+    @TableField("robot")
+    private String robot;
+
+    @TableField("startTime")
+    private LocalDateTime startTime;
+
+    @TableField("endTime")
+    private LocalDateTime endTime;
+
+    @TableField("durationSec")
+    private Long durationSec;
+
+    @TableField("spraySpeed")
+    private Double spraySpeed;
+
+    @TableField("cleanInterval")
+    private Double cleanInterval;
+
+    @TableField("stirrer1Speed")
+    private Double stirrer1Speed;
+
+    @TableField("stirrer2Speed")
+    private Double stirrer2Speed;
+
+    @TableField("pipe1PressureAvg")
+    private Double pipe1PressureAvg;
+
+    @TableField("pipe1PressureMax")
+    private Double pipe1PressureMax;
+
+    @TableField("pipe2PressureAvg")
+    private Double pipe2PressureAvg;
+
+    @TableField("pipe2PressureMax")
+    private Double pipe2PressureMax;
+}
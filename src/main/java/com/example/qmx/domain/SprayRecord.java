@@ -15,6 +15,9 @@ public class SprayRecord {
     @TableId(value = "id", type = IdType.AUTO)
     private Long id;
 
+    @TableField("unitId")
+    private Integer unitId;
+
     @TableField("devName")
     private String devName;
 
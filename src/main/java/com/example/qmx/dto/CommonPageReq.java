@@ -19,6 +19,11 @@ public class CommonPageReq {
      */
     private String endTime;
 
+    /**
+     * 网关号（为空时查询全部网关）
+     */
+    private Integer unitId;
+
     /**
      * 名称列表（设备名或参数名）
      */
@@ -12,6 +12,9 @@ import java.util.Date;
 public class ProductDailySheetReq implements Serializable {
     private static final long serialVersionUID = 1L;
 
+    @ApiModelProperty(value = "网关号（为空时查询全部网关）")
+    private Integer unitId;
+
     @ApiModelProperty(value = "开始时间")
     private Date startTime;
 
@@ -0,0 +1,29 @@
+package com.example.qmx.dto;
+
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+import lombok.Data;
+
+import java.io.Serializable;
+import java.util.Date;
+
+@Data
+@ApiModel(description = "质检结果推送请求")
+public class QualityResultPushReq implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    @ApiModelProperty(value = "网关号（质检相机所在产线的网关，为空则为 1）")
+    private Integer unitId;
+
+    @ApiModelProperty(value = "结果ID（质检服务生成，用于去重）")
+    private String resultId;
+
+    @ApiModelProperty(value = "检测结果：0/1")
+    private Integer result;
+
+    @ApiModelProperty(value = "检测时间（为空则使用接收时间）")
+    private Date time;
+
+    @ApiModelProperty(value = "来源（相机编号或地址）")
+    private String source;
+}
@@ -13,6 +13,9 @@ import java.util.List;
 public class SensorSheetReq implements Serializable {
     private static final long serialVersionUID = 1L;
 
+    @ApiModelProperty(value = "网关号（为空时查询全部网关）")
+    private Integer unitId;
+
     @ApiModelProperty(value = "设备名称列表")
     private List<String> devNames;
 
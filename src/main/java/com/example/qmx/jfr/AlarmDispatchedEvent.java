@@ -0,0 +1,30 @@
+package com.example.qmx.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * 一帧中置位的报警已推送（SSE 与 alarm.notify.url）；持续时间为推送与 HTTP 上报耗时
+ */
+@Name("com.example.qmx.AlarmDispatched")
+@Label("Alarm Dispatched")
+@Description("报警推送与上报完成（持续时间为推送与 HTTP 上报耗时）")
+@Category({"QMX", "Ingest"})
+@StackTrace(false)
+public class AlarmDispatchedEvent extends Event {
+
+    @Label("Unit Id")
+    public int unitId;
+
+    @Label("Alarm Count")
+    @Description("本帧置位的报警项数")
+    public int alarmCount;
+
+    @Label("Notify Status")
+    @Description("HTTP 上报响应码；未配置上报地址为 0，上报失败为 -1")
+    public int notifyStatus;
+}
@@ -0,0 +1,33 @@
+package com.example.qmx.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * 采集数据按表写库一次；持续时间为该次（批量）插入耗时
+ */
+@Name("com.example.qmx.DbBatchFlushed")
+@Label("DB Batch Flushed")
+@Description("采集数据按表写库一次（持续时间为插入耗时）")
+@Category({"QMX", "Ingest"})
+@StackTrace(false)
+public class DbBatchFlushedEvent extends Event {
+
+    @Label("Table")
+    public String table;
+
+    @Label("Rows")
+    @Description("提交插入的行数")
+    public int rows;
+
+    @Label("Inserted")
+    @Description("受影响行数；失败为 0")
+    public int inserted;
+
+    @Label("Success")
+    public boolean success;
+}
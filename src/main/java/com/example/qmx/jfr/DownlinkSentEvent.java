@@ -0,0 +1,38 @@
+package com.example.qmx.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * 下发帧（参数下发、写寄存器等）已写出 socket；持续时间为所在批次的写出与 flush 耗时
+ */
+@Name("com.example.qmx.DownlinkSent")
+@Label("Downlink Sent")
+@Description("下发帧已写出 socket（持续时间为所在批次的写出耗时）")
+@Category({"QMX", "Downlink"})
+@StackTrace(false)
+public class DownlinkSentEvent extends Event {
+
+    @Label("Transaction Id")
+    public int txId;
+
+    @Label("Unit Id")
+    public int unitId;
+
+    @Label("Function Code")
+    public int functionCode;
+
+    @Label("Frame Bytes")
+    public int frameBytes;
+
+    @Label("Batch Acks")
+    @Description("同一批次一起写出的 ACK 帧数")
+    public int batchAcks;
+
+    @Label("Gateway")
+    public String gateway;
+}
@@ -0,0 +1,37 @@
+package com.example.qmx.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * 上报帧按协议描述解码完成；持续时间为帧校验与数据段解码耗时
+ */
+@Name("com.example.qmx.FrameDecoded")
+@Label("Frame Decoded")
+@Description("上报帧按协议描述解码完成（持续时间为校验与解码耗时）")
+@Category({"QMX", "Ingest"})
+@StackTrace(false)
+public class FrameDecodedEvent extends Event {
+
+    @Label("Transaction Id")
+    public int txId;
+
+    @Label("Unit Id")
+    public int unitId;
+
+    @Label("Data Length")
+    @Description("PDU 数据段字节数")
+    public int dataLen;
+
+    @Label("Type Count")
+    @Description("解出的数据类型个数")
+    public int typeCount;
+
+    @Label("Value Count")
+    @Description("解出的点位值总数")
+    public int valueCount;
+}
@@ -0,0 +1,35 @@
+package com.example.qmx.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * 网关上报帧读取完成；持续时间为读完 MBAP 头之后读取 PDU 的耗时
+ */
+@Name("com.example.qmx.FrameReceived")
+@Label("Frame Received")
+@Description("网关上报帧读取完成（持续时间为 PDU 读取耗时）")
+@Category({"QMX", "Ingest"})
+@StackTrace(false)
+public class FrameReceivedEvent extends Event {
+
+    @Label("Transaction Id")
+    public int txId;
+
+    @Label("Unit Id")
+    public int unitId;
+
+    @Label("Function Code")
+    public int functionCode;
+
+    @Label("Frame Bytes")
+    @Description("MBAP + PDU 字节数")
+    public int frameBytes;
+
+    @Label("Gateway")
+    public String gateway;
+}
@@ -11,15 +11,22 @@ import java.util.List;
 
 @Mapper
 public interface ControlParameterMapper extends BaseMapper<ControlParameter> {
-    // 按照name查最新的一条记录
-    @Select("SELECT * FROM control_param WHERE name = #{name} ORDER BY id DESC LIMIT 1")
-    ControlParameter selectLatestByName(String name);
+    // 按照网关号与name查最新的一条记录
+    @Select("SELECT * FROM control_param WHERE unitId = #{unitId} AND name = #{name} ORDER BY id DESC LIMIT 1")
+    ControlParameter selectLatestByName(@Param("unitId") int unitId, @Param("name") String name);
+
+    // 按照网关号与name查指定时间点生效的参数（time 之前最新一条）
+    @Select("SELECT * FROM control_param WHERE unitId = #{unitId} AND name = #{name} AND time <= #{time} " +
+            "ORDER BY time DESC LIMIT 1")
+    ControlParameter selectLatestByNameBefore(@Param("unitId") int unitId,
+                                              @Param("name") String name,
+                                              @Param("time") java.time.LocalDateTime time);
 
     @Insert({
             "<script>",
-            "INSERT INTO control_param (name, value, time) VALUES",
+            "INSERT INTO control_param (unitId, name, value, time) VALUES",
             "<foreach collection='list' item='item' separator=','>",
-            "(#{item.name}, #{item.value}, #{item.time})",
+            "(#{item.unitId}, #{item.name}, #{item.value}, #{item.time})",
             "</foreach>",
             "</script>"
     })
@@ -11,15 +11,15 @@ import java.util.List;
 
 @Mapper
 public interface DeviceStatusMapper extends BaseMapper<DeviceStatus> {
-    // 根据设备名查询最新状态
-    @Select("SELECT * FROM device_status WHERE devName = #{devName} ORDER BY id DESC LIMIT 1")
-    DeviceStatus getLatestStatus(String devName);
+    // 根据网关号与设备名查询最新状态
+    @Select("SELECT * FROM device_status WHERE unitId = #{unitId} AND devName = #{devName} ORDER BY id DESC LIMIT 1")
+    DeviceStatus getLatestStatus(@Param("unitId") int unitId, @Param("devName") String devName);
 
     @Insert({
             "<script>",
-            "INSERT INTO device_status (devName, status, time) VALUES",
+            "INSERT INTO device_status (unitId, devName, status, time) VALUES",
             "<foreach collection='list' item='item' separator=','>",
-            "(#{item.devName}, #{item.status}, #{item.time})",
+            "(#{item.unitId}, #{item.devName}, #{item.status}, #{item.time})",
             "</foreach>",
             "</script>"
     })
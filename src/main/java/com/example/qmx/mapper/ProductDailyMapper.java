@@ -10,27 +10,21 @@ import java.util.Date;
 
 @Mapper
 public interface ProductDailyMapper extends BaseMapper<ProductDaily> {
-    @Select("SELECT * FROM product_daily WHERE time = (SELECT MAX(time) FROM product_daily)")
-    ProductDaily getLatestProductDaily();
+    @Select("SELECT * FROM product_daily WHERE unitId = #{unitId} ORDER BY time DESC, id DESC LIMIT 1")
+    ProductDaily getLatestProductDaily(@Param("unitId") int unitId);
 
-    @Select("SELECT * FROM product_daily ORDER BY time DESC LIMIT #{limit}")
-    java.util.List<ProductDaily> getRecentProductDaily(@Param("limit") int limit);
+    // 网关日产量明细合计；没有记录时为 0
+    @Select("SELECT COALESCE(SUM(numDaily), 0) FROM product_daily WHERE unitId = #{unitId}")
+    long sumNumDaily(@Param("unitId") int unitId);
 
-    @Select("SELECT * FROM product_daily " +
-            "ORDER BY ABS(TIMESTAMPDIFF(SECOND, time, #{targetTime})) ASC " +
-            "LIMIT 1")
-    ProductDaily getNearestDailyByTime(@Param("targetTime") Date targetTime);
+    @Select("SELECT * FROM product_daily WHERE unitId = #{unitId} ORDER BY time DESC LIMIT #{limit}")
+    java.util.List<ProductDaily> getRecentProductDaily(@Param("unitId") int unitId, @Param("limit") int limit);
 
-    @Select("SELECT pd.* " +
-            "FROM product_daily pd " +
-            "JOIN ( " +
-            "    SELECT DATE(time) AS day_key, " +
-            "           MAX(id) AS max_id " +
-            "    FROM product_daily " +
-            "    GROUP BY day_key " +
-            "    ORDER BY day_key DESC " +
-            "    LIMIT #{limit} " +
-            ") t ON pd.id = t.max_id " +
-            "ORDER BY pd.time ASC")
-    java.util.List<ProductDaily> getDailyLatestByDay(@Param("limit") int limit);
+    // 与 targetTime 最接近的一条：两侧各按 (unitId, time) 索引取一行，再比较距离
+    @Select("SELECT * FROM ( " +
+            "    (SELECT * FROM product_daily WHERE unitId = #{unitId} AND time <= #{targetTime} ORDER BY time DESC LIMIT 1) " +
+            "    UNION ALL " +
+            "    (SELECT * FROM product_daily WHERE unitId = #{unitId} AND time >= #{targetTime} ORDER BY time ASC LIMIT 1) " +
+            ") t ORDER BY ABS(TIMESTAMPDIFF(SECOND, time, #{targetTime})) ASC LIMIT 1")
+    ProductDaily getNearestDailyByTime(@Param("unitId") int unitId, @Param("targetTime") Date targetTime);
 }
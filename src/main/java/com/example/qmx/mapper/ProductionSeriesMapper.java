@@ -0,0 +1,40 @@
+package com.example.qmx.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.example.qmx.domain.ProductDaily;
+import com.example.qmx.domain.ProductHourly;
+import com.example.qmx.domain.ProductionSeries;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+
+import java.util.List;
+
+@Mapper
+public interface ProductionSeriesMapper extends BaseMapper<ProductionSeries> {
+    // 按 (unitId, granularity, bucket) 写入；桶已存在时只在明细 id 更新时覆盖（乱序/重放的旧行不回退）
+    @Insert("INSERT INTO production_series (unitId, granularity, bucket, num, sourceId, time) " +
+            "VALUES (#{unitId}, #{granularity}, #{bucket}, #{num}, #{sourceId}, #{time}) " +
+            "ON DUPLICATE KEY UPDATE " +
+            "num = CASE WHEN VALUES(sourceId) > sourceId THEN VALUES(num) ELSE num END, " +
+            "time = CASE WHEN VALUES(sourceId) > sourceId THEN VALUES(time) ELSE time END, " +
+            "sourceId = GREATEST(sourceId, VALUES(sourceId))")
+    int upsert(ProductionSeries series);
+
+    // 最近 limit 个小时每小时最新一条，按时间升序（id 为明细 id）
+    @Select("SELECT * FROM ( " +
+            "    SELECT sourceId AS id, unitId, num AS numHourly, time FROM production_series " +
+            "    WHERE unitId = #{unitId} AND granularity = 'H' " +
+            "    ORDER BY bucket DESC LIMIT #{limit} " +
+            ") t ORDER BY time ASC")
+    List<ProductHourly> getHourlyLatestByHour(@Param("unitId") int unitId, @Param("limit") int limit);
+
+    // 最近 limit 天每天最新一条，按时间升序（id 为明细 id）
+    @Select("SELECT * FROM ( " +
+            "    SELECT sourceId AS id, unitId, num AS numDaily, time FROM production_series " +
+            "    WHERE unitId = #{unitId} AND granularity = 'D' " +
+            "    ORDER BY bucket DESC LIMIT #{limit} " +
+            ") t ORDER BY time ASC")
+    List<ProductDaily> getDailyLatestByDay(@Param("unitId") int unitId, @Param("limit") int limit);
+}
@@ -2,11 +2,46 @@ package com.example.qmx.mapper;
 
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import com.example.qmx.domain.QualityDetection;
+import org.apache.ibatis.annotations.Insert;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
 import org.apache.ibatis.annotations.Select;
 
+import java.util.List;
+
 @Mapper
 public interface QualityDetectionMapper extends BaseMapper<QualityDetection> {
     @Select("SELECT * FROM quality_result ORDER BY id DESC LIMIT 1")
     QualityDetection getLatestResult();
+
+    @Select("SELECT * FROM quality_result WHERE unitId = #{unitId} ORDER BY id DESC LIMIT 1")
+    QualityDetection getLatestResultByUnit(@Param("unitId") int unitId);
+
+    // 网关的质检总数
+    @Select("SELECT COUNT(*) FROM quality_result WHERE unitId = #{unitId}")
+    long countByUnit(@Param("unitId") int unitId);
+
+    // 网关的合格数（result = 1）
+    @Select("SELECT COUNT(*) FROM quality_result WHERE unitId = #{unitId} AND result = 1")
+    long countPassByUnit(@Param("unitId") int unitId);
+
+    // 有质检结果的网关号
+    @Select("SELECT DISTINCT unitId FROM quality_result")
+    List<Integer> selectUnitIds();
+
+    // 按网关、按ID增量读取：只按 id 过滤，time 由推送方给出、与 id 顺序无关，关联延迟由调用方按行判断
+    @Select("SELECT * FROM quality_result WHERE unitId = #{unitId} AND id > #{afterId} ORDER BY id ASC LIMIT #{limit}")
+    List<QualityDetection> selectAfterIdByUnit(@Param("unitId") int unitId, @Param("afterId") long afterId,
+                                               @Param("limit") int limit);
+
+    // 批量写入，resultId 重复的记录由唯一索引忽略
+    @Insert({
+            "<script>",
+            "INSERT IGNORE INTO quality_result (unitId, resultId, source, result, time) VALUES",
+            "<foreach collection='list' item='item' separator=','>",
+            "(#{item.unitId}, #{item.resultId}, #{item.source}, #{item.result}, #{item.time})",
+            "</foreach>",
+            "</script>"
+    })
+    int insertIgnoreBatch(@Param("list") List<QualityDetection> list);
 }
@@ -11,9 +11,9 @@ import java.util.List;
 
 @Mapper
 public interface SensorMapper extends BaseMapper<Sensor> {
-    // 根据设备名查询最新传感器记录
-    @Select("SELECT * FROM sensor WHERE devName = #{devName} ORDER BY id DESC LIMIT 1")
-    Sensor getLatestSensor(String devName);
+    // 根据网关号与设备名查询最新传感器记录
+    @Select("SELECT * FROM sensor WHERE unitId = #{unitId} AND devName = #{devName} ORDER BY id DESC LIMIT 1")
+    Sensor getLatestSensor(@Param("unitId") int unitId, @Param("devName") String devName);
 
     @Select("SELECT s.* " +
             "FROM sensor s " +
@@ -21,22 +21,32 @@ public interface SensorMapper extends BaseMapper<Sensor> {
             "    SELECT DATE_FORMAT(time, '%Y-%m-%d %H:%i:00') AS minute_key, " +
             "           MAX(id) AS max_id " +
             "    FROM sensor " +
-            "    WHERE devName = #{devName} " +
+            "    WHERE unitId = #{unitId} " +
+            "      AND devName = #{devName} " +
             "      AND time >= #{fromTime} " +
             "    GROUP BY minute_key " +
             "    ORDER BY minute_key DESC " +
             "    LIMIT #{limit} " +
             ") t ON s.id = t.max_id " +
             "ORDER BY s.time ASC")
-    List<Sensor> getLatestByMinuteInRange(@Param("devName") String devName,
+    List<Sensor> getLatestByMinuteInRange(@Param("unitId") int unitId,
+                                          @Param("devName") String devName,
                                           @Param("fromTime") java.util.Date fromTime,
                                           @Param("limit") int limit);
 
+    // 指定时间段内的均值与最大值（走 unitId,devName,time 索引）
+    @Select("SELECT AVG(value) AS avgValue, MAX(value) AS maxValue FROM sensor " +
+            "WHERE unitId = #{unitId} AND devName = #{devName} AND time BETWEEN #{from} AND #{to}")
+    java.util.Map<String, Object> getStatsInRange(@Param("unitId") int unitId,
+                                                  @Param("devName") String devName,
+                                                  @Param("from") java.time.LocalDateTime from,
+                                                  @Param("to") java.time.LocalDateTime to);
+
     @Insert({
             "<script>",
-            "INSERT INTO sensor (devName, value, time) VALUES",
+            "INSERT INTO sensor (unitId, devName, value, time) VALUES",
             "<foreach collection='list' item='item' separator=','>",
-            "(#{item.devName}, #{item.value}, #{item.time})",
+            "(#{item.unitId}, #{item.devName}, #{item.value}, #{item.time})",
             "</foreach>",
             "</script>"
     })
@@ -0,0 +1,31 @@
+package com.example.qmx.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.example.qmx.domain.SprayCycle;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+
+import java.util.List;
+
+@Mapper
+public interface SprayCycleMapper extends BaseMapper<SprayCycle> {
+    // 该网关已关联到的最大质检结果ID（按网关增量关联的水位线）
+    @Select("SELECT COALESCE(MAX(qualityId), 0) FROM spray_cycle WHERE unitId = #{unitId}")
+    long getQualityWatermark(@Param("unitId") int unitId);
+
+    @Insert({
+            "<script>",
+            "INSERT IGNORE INTO spray_cycle (unitId, qualityId, result, qualityTime, robot, startTime, endTime, durationSec,",
+            " spraySpeed, cleanInterval, stirrer1Speed, stirrer2Speed,",
+            " pipe1PressureAvg, pipe1PressureMax, pipe2PressureAvg, pipe2PressureMax) VALUES",
+            "<foreach collection='list' item='item' separator=','>",
+            "(#{item.unitId}, #{item.qualityId}, #{item.result}, #{item.qualityTime}, #{item.robot}, #{item.startTime}, #{item.endTime}, #{item.durationSec},",
+            " #{item.spraySpeed}, #{item.cleanInterval}, #{item.stirrer1Speed}, #{item.stirrer2Speed},",
+            " #{item.pipe1PressureAvg}, #{item.pipe1PressureMax}, #{item.pipe2PressureAvg}, #{item.pipe2PressureMax})",
+            "</foreach>",
+            "</script>"
+    })
+    int insertBatch(@Param("list") List<SprayCycle> list);
+}
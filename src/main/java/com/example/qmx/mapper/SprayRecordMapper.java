@@ -12,14 +12,31 @@ import java.util.List;
 @Mapper
 public interface SprayRecordMapper extends BaseMapper<SprayRecord> {
     // 查询最新喷涂记录
-    @Select("SELECT * FROM spray_record WHERE devName = #{devName} ORDER BY id DESC LIMIT 1")
-    SprayRecord getLatestRecord(String devName);
+    @Select("SELECT * FROM spray_record WHERE unitId = #{unitId} AND devName = #{devName} ORDER BY id DESC LIMIT 1")
+    SprayRecord getLatestRecord(@Param("unitId") int unitId, @Param("devName") String devName);
+
+    // 指定时间之前最近一条进度达到阈值的记录（喷涂周期结束点）
+    @Select("SELECT * FROM spray_record WHERE unitId = #{unitId} AND devName = #{devName} " +
+            "AND time <= #{before} AND time >= #{after} AND rate >= #{rate} ORDER BY time DESC LIMIT 1")
+    SprayRecord getLastReachedBefore(@Param("unitId") int unitId,
+                                     @Param("devName") String devName,
+                                     @Param("after") java.time.LocalDateTime after,
+                                     @Param("before") java.time.LocalDateTime before,
+                                     @Param("rate") double rate);
+
+    // 指定时间之前最近一条进度归零的记录（喷涂周期起始点）
+    @Select("SELECT * FROM spray_record WHERE unitId = #{unitId} AND devName = #{devName} " +
+            "AND time <= #{before} AND time >= #{after} AND rate <= 0 ORDER BY time DESC LIMIT 1")
+    SprayRecord getLastResetBefore(@Param("unitId") int unitId,
+                                   @Param("devName") String devName,
+                                   @Param("after") java.time.LocalDateTime after,
+                                   @Param("before") java.time.LocalDateTime before);
 
     @Insert({
             "<script>",
-            "INSERT INTO spray_record (devName, rate, time) VALUES",
+            "INSERT INTO spray_record (unitId, devName, rate, time) VALUES",
             "<foreach collection='list' item='item' separator=','>",
-            "(#{item.devName}, #{item.rate}, #{item.time})",
+            "(#{item.unitId}, #{item.devName}, #{item.rate}, #{item.time})",
             "</foreach>",
             "</script>"
     })
@@ -76,56 +76,62 @@ use QMXdatabase;
 -- 0x01 设备状态
 create table if not exists device_status(
     id        bigint primary key auto_increment,
+    unitId    int default 1                   not null comment '网关号（MBAP 单元标识符）',
     devName   varchar(64)                     not null comment '设备名',
     status    int                             not null comment '设备状态：0/1',
     time      datetime default current_timestamp not null comment '采集时间'
 ) engine=InnoDB default charset=utf8mb4 comment='0x01 设备状态';
-create index idx_device_status_dev_time on device_status(devName, time);
+create index idx_device_status_unit_dev_time on device_status(unitId, devName, time);
 
 -- 0x02 传感器
 create table if not exists sensor(
     id           bigint primary key auto_increment,
+    unitId       int default 1                   not null comment '网关号（MBAP 单元标识符）',
     devName      varchar(64)                     not null comment '设备名',
     value        float                          null     comment '指标值',
     time         datetime default current_timestamp not null comment '采集时间'
 ) engine=InnoDB default charset=utf8mb4 comment='0x02 实时传感器（KV）';
-create index idx_sensor_dev_time on sensor(devName, time);
+create index idx_sensor_unit_dev_time on sensor(unitId, devName, time);
 
 -- 0x03 喷涂情况
 create table if not exists spray_record (
     id           bigint primary key auto_increment,
+    unitId       int default 1                   not null comment '网关号（MBAP 单元标识符）',
     devName      varchar(64)                     null     comment '设备',
     stage        int                             null     comment '喷涂阶段',
     rate         double                          null     comment '喷涂合格率',
     time         datetime default current_timestamp not null comment '采集时间'
 ) engine=InnoDB default charset=utf8mb4 comment='0x03 喷涂记录';
-create index idx_spray_record_dev_time on spray_record(devName, time);
+create index idx_spray_record_unit_dev_time on spray_record(unitId, devName, time);
 
 -- 0x04 喷涂产量（小时）
 create table if not exists product_hourly(
     id         bigint primary key auto_increment,
+    unitId         int default 1               not null comment '网关号（MBAP 单元标识符）',
     numHourly      int                         null     comment '该小时产量',
     time       datetime default current_timestamp not null comment '采集时间'
 ) engine=InnoDB default charset=utf8mb4 comment='0x04 小时产量明细';
-create index idx_product_hourly_time on product_hourly(time);
+create index idx_product_hourly_unit_time on product_hourly(unitId, time);
 
 -- 0x04 喷涂产量（日）
 create table if not exists product_daily(
     id         bigint primary key auto_increment,
+    unitId    int default 1                   not null comment '网关号（MBAP 单元标识符）',
     numDaily  int                             null     comment '该日产量',
     time       datetime default current_timestamp not null comment '采集时间'
 ) engine=InnoDB default charset=utf8mb4 comment='0x04 日产量明细';
-create index idx_product_daily_time on product_daily(time);
+create index idx_product_daily_unit_time on product_daily(unitId, time);
 
 
 -- 0x05 控制参数（KV）
 create table if not exists control_param (
     id    bigint primary key auto_increment,
+    unitId int default 1                   not null comment '网关号（MBAP 单元标识符）',
     name  varchar(64)                     not null comment '参数名，比如 mode01/pressure10 等',
     value double                          null     comment '参数值（char/int/real 最终都存成数值）',
     time  datetime default current_timestamp not null comment '记录时间'
 ) engine=InnoDB default charset=utf8mb4 comment='前端/PLC 控制参数快照';
-create index idx_control_param_name_time on control_param(name, time);
+create index idx_control_param_unit_name_time on control_param(unitId, name, time);
 
 -- 0x06 运动参数（KV）
 -- create table if not exists motion_param_06 (
@@ -143,6 +149,92 @@ create index idx_control_param_name_time on control_param(name, time);
 -- 质量检测结果
 create table if not exists quality_result (
     id         bigint primary key auto_increment,
+    unitId     int default 1                   not null comment '网关号（质检相机所在产线的网关）',
+    resultId   varchar(64)                     null     comment '质检服务结果ID（用于去重）',
+    source     varchar(128)                    null     comment '结果来源（相机地址/推送方）',
     result     int                             not null comment '检测结果：0/1',
     time       datetime default current_timestamp not null comment '采集时间'
 ) engine=InnoDB default charset=utf8mb4 comment='质量检测结果';
+create unique index uk_quality_result_result_id on quality_result(resultId);
+create index idx_quality_result_time on quality_result(time);
+create index idx_quality_result_unit_result on quality_result(unitId, result);
+create index idx_quality_result_unit_id on quality_result(unitId, id);
+-- 已有库升级：质检结果增加去重ID与来源（旧数据 resultId 为空，不受唯一索引约束）
+-- alter table quality_result add column resultId varchar(64)  null comment '质检服务结果ID（用于去重）' after id;
+-- alter table quality_result add column source   varchar(128) null comment '结果来源（相机地址/推送方）' after resultId;
+-- create unique index uk_quality_result_result_id on quality_result(resultId);
+-- create index idx_quality_result_time on quality_result(time);
+-- 已有库升级：质检结果按网关号统计（历史数据归入 1 号网关）
+-- alter table quality_result add column unitId int default 1 not null comment '网关号（质检相机所在产线的网关）' after id;
+-- create index idx_quality_result_unit_result on quality_result(unitId, result);
+-- create index idx_quality_result_unit_id on quality_result(unitId, id);
+
+-- 喷涂周期事实表（质检结果 + 该周期生效的控制参数/压力统计，按网关、按 qualityId 增量关联）
+create table if not exists spray_cycle (
+    id                bigint primary key auto_increment,
+    unitId            int default 1                   not null comment '网关号（同 quality_result.unitId）',
+    qualityId         bigint                          not null comment 'quality_result.id',
+    result            int                             not null comment '检测结果：0/1',
+    qualityTime       datetime                        not null comment '质检时间',
+    robot             varchar(64)                     null     comment '完成该周期的机器人进度点名',
+    startTime         datetime                        null     comment '周期开始（进度归零）',
+    endTime           datetime                        null     comment '周期结束（进度完成）',
+    durationSec       bigint                          null     comment '周期时长（秒）',
+    spraySpeed        double                          null     comment '机器人喷涂速度',
+    cleanInterval     double                          null     comment '定时清洗间隔',
+    stirrer1Speed     double                          null     comment '搅拌器1转速',
+    stirrer2Speed     double                          null     comment '搅拌器2转速',
+    pipe1PressureAvg  double                          null     comment '喷涂管路1压力均值',
+    pipe1PressureMax  double                          null     comment '喷涂管路1压力最大值',
+    pipe2PressureAvg  double                          null     comment '喷涂管路2压力均值',
+    pipe2PressureMax  double                          null     comment '喷涂管路2压力最大值'
+) engine=InnoDB default charset=utf8mb4 comment='喷涂周期事实表';
+create unique index uk_spray_cycle_quality_id on spray_cycle(qualityId);
+create index idx_spray_cycle_result_start on spray_cycle(result, startTime);
+create index idx_spray_cycle_start on spray_cycle(startTime);
+create index idx_spray_cycle_unit_quality on spray_cycle(unitId, qualityId);
+-- 已有库升级：喷涂周期按网关关联（历史数据归入 1 号网关）
+-- alter table spray_cycle add column unitId int default 1 not null comment '网关号（同 quality_result.unitId）' after id;
+-- create index idx_spray_cycle_unit_quality on spray_cycle(unitId, qualityId);
+
+-- 产量时间序列：每个网关每小时(H)/每天(D)一行，取桶内最新一次上报（入库时 upsert），历史曲线按 bucket 范围读取
+create table if not exists production_series (
+    id          bigint primary key auto_increment,
+    unitId      int default 1                   not null comment '网关号（MBAP 单元标识符）',
+    granularity char(1)                         not null comment 'H 小时 / D 日',
+    bucket      datetime                        not null comment '桶起点：整点 / 0 点',
+    num         int                             null     comment '桶内最新一次上报的产量',
+    sourceId    bigint                          not null comment '该行对应的 product_hourly / product_daily 明细 id',
+    time        datetime                        not null comment '桶内最新一次上报的采集时间'
+) engine=InnoDB default charset=utf8mb4 comment='小时/日产量时间序列';
+create unique index uk_production_series_unit_bucket on production_series(unitId, granularity, bucket);
+
+-- 已有库升级：各采集表按网关号隔离（历史数据归入 1 号网关）
+-- alter table device_status  add column unitId int default 1 not null comment '网关号（MBAP 单元标识符）' after id;
+-- alter table sensor         add column unitId int default 1 not null comment '网关号（MBAP 单元标识符）' after id;
+-- alter table spray_record   add column unitId int default 1 not null comment '网关号（MBAP 单元标识符）' after id;
+-- alter table product_hourly add column unitId int default 1 not null comment '网关号（MBAP 单元标识符）' after id;
+-- alter table product_daily  add column unitId int default 1 not null comment '网关号（MBAP 单元标识符）' after id;
+-- alter table control_param  add column unitId int default 1 not null comment '网关号（MBAP 单元标识符）' after id;
+-- drop index idx_device_status_dev_time on device_status;
+-- drop index idx_sensor_dev_time on sensor;
+-- drop index idx_spray_record_dev_time on spray_record;
+-- drop index idx_product_hourly_time on product_hourly;
+-- drop index idx_product_daily_time on product_daily;
+-- drop index idx_control_param_name_time on control_param;
+-- create index idx_device_status_unit_dev_time on device_status(unitId, devName, time);
+-- create index idx_sensor_unit_dev_time on sensor(unitId, devName, time);
+-- create index idx_spray_record_unit_dev_time on spray_record(unitId, devName, time);
+-- create index idx_product_hourly_unit_time on product_hourly(unitId, time);
+-- create index idx_product_daily_unit_time on product_daily(unitId, time);
+-- create index idx_control_param_unit_name_time on control_param(unitId, name, time);
+
+-- 已有库升级：由明细表回填产量时间序列（每桶取最大 id 一行；须在上面的 unitId 升级之后执行）
+-- insert into production_series (unitId, granularity, bucket, num, sourceId, time)
+-- select ph.unitId, 'H', t.bucket, ph.numHourly, ph.id, ph.time from product_hourly ph
+-- join (select max(id) as max_id, str_to_date(date_format(time, '%Y-%m-%d %H:00:00'), '%Y-%m-%d %H:%i:%s') as bucket
+--       from product_hourly group by unitId, bucket) t on ph.id = t.max_id;
+-- insert into production_series (unitId, granularity, bucket, num, sourceId, time)
+-- select pd.unitId, 'D', t.bucket, pd.numDaily, pd.id, pd.time from product_daily pd
+-- join (select max(id) as max_id, cast(date(time) as datetime) as bucket
+--       from product_daily group by unitId, bucket) t on pd.id = t.max_id;
@@ -0,0 +1,325 @@
+package com.example.qmx.server;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.SetOperations;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.DefaultResponseErrorHandler;
+import org.springframework.web.client.RestTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Function;
+
+/**
+ * 集群模式：多个后端实例按网关号一致性哈希分担网关
+ * <p>
+ * 1. 成员来源：static 为配置的固定节点列表；redis 为各节点定时心跳续期的带过期时间的键，超过 node-ttl-ms 未心跳的节点由 Redis 过期删除
+ * 2. 哈希属主负责该网关的直采轮询；网关 TCP 连接可能接到任一节点，接入节点通过心跳在 Redis 中认领该网关号
+ * 3. 最新值查询与参数下发按“本节点持有连接 &gt; 共享状态中的认领节点 &gt; 哈希属主”路由，非本节点时由 ClusterForwardFilter 转发
+ * 历史数据在共享数据库中，任一节点直接查询即可，不需要转发
+ */
+@Service
+public class ClusterService {
+
+    private static final Logger log = LoggerFactory.getLogger(ClusterService.class);
+
+    // 转发请求携带的来源节点头，收到带该头的请求一律本地处理，避免成员视图不一致时来回转发
+    public static final String FORWARDED_HEADER = "X-Qmx-Forwarded-By";
+
+    @Value("${cluster.enabled:false}")
+    private boolean enabled;
+
+    @Value("${cluster.node-id:}")
+    private String nodeId;
+
+    // 其他节点转发请求时使用的本节点地址，如 http://10.0.0.11:8080
+    @Value("${cluster.self-url:}")
+    private String selfUrl;
+
+    // static | redis
+    @Value("${cluster.membership:static}")
+    private String membership;
+
+    // 固定成员：node-1=http://10.0.0.11:8080,node-2=http://10.0.0.12:8080
+    @Value("${cluster.static-nodes:}")
+    private String staticNodes;
+
+    @Value("${cluster.virtual-nodes:160}")
+    private int virtualNodes;
+
+    @Value("${cluster.node-ttl-ms:10000}")
+    private long nodeTtlMs;
+
+    @Value("${cluster.redis-key-prefix:qmx:cluster}")
+    private String redisKeyPrefix;
+
+    @Value("${cluster.forward-timeout-ms:5000}")
+    private int forwardTimeoutMs;
+
+    @Autowired(required = false)
+    private DataServer dataServer;
+
+    @Autowired(required = false)
+    private ObjectProvider<StringRedisTemplate> redisProvider;
+
+    private StringRedisTemplate redis;
+    private RestTemplate forwarder;
+
+    // 节点ID -> 地址
+    private volatile Map<String, String> members = Collections.emptyMap();
+    private volatile ConsistentHashRing ring = new ConsistentHashRing(Collections.<String>emptySet(), 0);
+    // 网关号 -> 持有其 TCP 连接的节点（仅 redis 成员模式）
+    private volatile Map<Integer, String> claims = Collections.emptyMap();
+
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            return;
+        }
+        if (nodeId == null || nodeId.isEmpty() || selfUrl == null || selfUrl.isEmpty()) {
+            throw new IllegalStateException("集群模式需要配置 cluster.node-id 与 cluster.self-url");
+        }
+        SimpleClientHttpRequestFactory factory = new SimpleClientHttpRequestFactory();
+        factory.setConnectTimeout(forwardTimeoutMs);
+        factory.setReadTimeout(forwardTimeoutMs);
+        forwarder = new RestTemplate(factory);
+        // 属主节点返回的错误状态码原样透传给调用方
+        forwarder.setErrorHandler(new DefaultResponseErrorHandler() {
+            @Override
+            public boolean hasError(ClientHttpResponse response) {
+                return false;
+            }
+        });
+
+        if ("redis".equals(membership)) {
+            redis = redisProvider != null ? redisProvider.getIfAvailable() : null;
+            if (redis == null) {
+                throw new IllegalStateException("cluster.membership=redis 但 Redis 不可用");
+            }
+            heartbeat();
+        } else {
+            Map<String, String> m = new TreeMap<>();
+            for (String item : staticNodes.split(",")) {
+                String[] kv = item.trim().split("=", 2);
+                if (kv.length == 2 && !kv[0].trim().isEmpty()) {
+                    m.put(kv[0].trim(), kv[1].trim());
+                }
+            }
+            m.put(nodeId, selfUrl);
+            applyMembers(m);
+        }
+        log.info("集群模式已启用: nodeId={}, membership={}, 成员={}", nodeId, membership, members.keySet());
+    }
+
+    /**
+     * redis 成员模式下的心跳：每个节点、每个认领的网关号各一个带 PX 过期时间的键，
+     * 节点停止心跳后由 Redis 过期删除，不依赖各节点的时钟；另用集合记录键名以便枚举，集合中键已过期的项顺带移除。
+     * Redis 暂不可用时保留上一次的成员视图
+     */
+    @Scheduled(fixedDelayString = "${cluster.heartbeat-ms:3000}")
+    public void heartbeat() {
+        if (!enabled || redis == null) {
+            return;
+        }
+        try {
+            Duration ttl = Duration.ofMillis(nodeTtlMs);
+            ValueOperations<String, String> values = redis.opsForValue();
+            SetOperations<String, String> sets = redis.opsForSet();
+            values.set(nodeKey(nodeId), selfUrl, ttl);
+            sets.add(nodesIndexKey(), nodeId);
+            if (dataServer != null) {
+                for (Integer unitId : dataServer.boundUnits()) {
+                    values.set(unitKey(unitId), nodeId, ttl);
+                    sets.add(unitsIndexKey(), String.valueOf(unitId));
+                }
+            }
+
+            Map<String, String> live = new TreeMap<>(readIndexed(nodesIndexKey(), this::nodeKey));
+            Map<Integer, String> c = new HashMap<>();
+            for (Map.Entry<String, String> e : readIndexed(unitsIndexKey(), this::unitKey).entrySet()) {
+                if (live.containsKey(e.getValue())) {
+                    c.put(Integer.valueOf(e.getKey()), e.getValue());
+                }
+            }
+            applyMembers(live);
+            claims = c;
+        } catch (Exception e) {
+            log.warn("集群心跳失败，沿用上次成员视图: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 读出索引集合中各项对应键的值；键已过期的项从集合中移除（节点下次心跳会重新加入）
+     */
+    private Map<String, String> readIndexed(String indexKey, Function<String, String> keyOf) {
+        Set<String> ids = redis.opsForSet().members(indexKey);
+        Map<String, String> out = new HashMap<>();
+        if (ids == null || ids.isEmpty()) {
+            return out;
+        }
+        List<String> idList = new ArrayList<>(ids);
+        List<String> keys = new ArrayList<>(idList.size());
+        for (String id : idList) {
+            keys.add(keyOf.apply(id));
+        }
+        List<String> vals = redis.opsForValue().multiGet(keys);
+        List<Object> expired = new ArrayList<>();
+        for (int i = 0; i < idList.size(); i++) {
+            String v = vals != null ? vals.get(i) : null;
+            if (v != null) {
+                out.put(idList.get(i), v);
+            } else {
+                expired.add(idList.get(i));
+            }
+        }
+        if (!expired.isEmpty()) {
+            redis.opsForSet().remove(indexKey, expired.toArray());
+        }
+        return out;
+    }
+
+    @PreDestroy
+    public void leave() {
+        if (!enabled || redis == null) {
+            return;
+        }
+        try {
+            redis.delete(nodeKey(nodeId));
+            redis.opsForSet().remove(nodesIndexKey(), nodeId);
+            if (dataServer != null) {
+                for (Integer unitId : dataServer.boundUnits()) {
+                    // 只删除仍由本节点认领的网关号，网关已重连到其他节点时保留对方的认领
+                    if (nodeId.equals(redis.opsForValue().get(unitKey(unitId)))) {
+                        redis.delete(unitKey(unitId));
+                    }
+                }
+            }
+        } catch (Exception e) {
+            log.warn("退出集群时清理 Redis 失败: {}", e.getMessage());
+        }
+    }
+
+    // 与旧版本的成员哈希（:nodes / :units）使用不同键名，滚动升级期间互不干扰
+    private String nodesIndexKey() {
+        return redisKeyPrefix + ":node-index";
+    }
+
+    private String unitsIndexKey() {
+        return redisKeyPrefix + ":unit-index";
+    }
+
+    private String nodeKey(String id) {
+        return redisKeyPrefix + ":node:" + id;
+    }
+
+    private String unitKey(Object unitId) {
+        return redisKeyPrefix + ":unit:" + unitId;
+    }
+
+    private void applyMembers(Map<String, String> m) {
+        if (m.equals(members)) {
+            return;
+        }
+        members = Collections.unmodifiableMap(m);
+        ring = new ConsistentHashRing(m.keySet(), virtualNodes);
+        log.info("集群成员变更: {}", m.keySet());
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    /**
+     * 网关号在哈希环上的属主节点
+     */
+    public String ringOwner(int unitId) {
+        return ring.owner(unitId);
+    }
+
+    /**
+     * 本节点是否负责该网关的直采轮询；未启用集群时总是 true
+     */
+    public boolean ownsUnit(int unitId) {
+        if (!enabled) {
+            return true;
+        }
+        String owner = ringOwner(unitId);
+        return owner == null || owner.equals(nodeId);
+    }
+
+    /**
+     * 该网关的查询与下发应由哪个节点处理
+     */
+    public String route(int unitId) {
+        if (!enabled || (dataServer != null && dataServer.isBound(unitId))) {
+            return nodeId;
+        }
+        String claimed = claims.get(unitId);
+        if (claimed != null && members.containsKey(claimed)) {
+            return claimed;
+        }
+        String owner = ringOwner(unitId);
+        return owner != null ? owner : nodeId;
+    }
+
+    public boolean isLocal(int unitId) {
+        return !enabled || nodeId.equals(route(unitId));
+    }
+
+    /**
+     * 把请求原样转发给目标节点，返回其响应（含错误状态码）
+     *
+     * @param pathAndQuery 以 / 开头的路径，查询串保持已编码形式
+     */
+    public ResponseEntity<byte[]> forward(String targetNode, HttpMethod method, String pathAndQuery,
+                                          byte[] body, String contentType) {
+        String url = members.get(targetNode);
+        if (url == null) {
+            throw new IllegalStateException("未知的集群节点: " + targetNode);
+        }
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(FORWARDED_HEADER, nodeId);
+        if (contentType != null) {
+            headers.set(HttpHeaders.CONTENT_TYPE, contentType);
+        }
+        return forwarder.exchange(URI.create(url + pathAndQuery), method, new HttpEntity<>(body, headers), byte[].class);
+    }
+
+    public Map<String, Object> describe() {
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("enabled", enabled);
+        out.put("nodeId", nodeId);
+        out.put("membership", membership);
+        out.put("members", members);
+        out.put("claims", new TreeMap<>(claims));
+        out.put("localUnits", dataServer != null ? dataServer.boundUnits() : Collections.emptySet());
+        return out;
+    }
+}
@@ -0,0 +1,256 @@
+package com.example.qmx.server;
+
+import com.example.qmx.config.QueryTimeoutInterceptor;
+import com.example.qmx.domain.DeviceStatus;
+import com.example.qmx.domain.ProductDaily;
+import com.example.qmx.domain.ProductHourly;
+import com.example.qmx.domain.QualityDetection;
+import com.example.qmx.domain.Sensor;
+import com.example.qmx.mapper.ProductDailyMapper;
+import com.example.qmx.mapper.ProductHourlyMapper;
+import com.example.qmx.mapper.ProductionSeriesMapper;
+import com.example.qmx.mapper.QualityDetectionMapper;
+import com.example.qmx.mapper.SensorMapper;
+import com.example.qmx.utils.VirtualThreads;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * 大屏数据并行查询
+ * <p>
+ * 1. 总览的 6 个子查询及历史曲线、喷枪压力、设备状态互不依赖，提交到有界线程池并行执行，
+ *    冷启动耗时约等于最慢的一个查询而不是全部之和
+ * 2. 每个子查询从提交起最多等待 dashboard.query-timeout-ms，超时则取消；
+ *    子查询中的 SQL 按剩余时间设置 JDBC 语句超时，由数据库侧取消，查询线程与连接不会被卡住的查询一直占用；
+ *    线程池队列已满时直接拒绝，不在请求线程里排队
+ * 3. 超时、拒绝或出错的子查询对应字段为 null，其余结果照常返回（partial=true，errors 中注明原因）
+ */
+@Service
+public class DashboardService {
+
+    private static final Logger log = LoggerFactory.getLogger(DashboardService.class);
+
+    private static final String GUN1_PRESSURE = "喷涂管路1压力";
+    private static final String GUN2_PRESSURE = "喷涂管路2压力";
+
+    @Autowired
+    private ProductHourlyMapper productHourlyMapper;
+
+    @Autowired
+    private ProductDailyMapper productDailyMapper;
+
+    @Autowired
+    private QualityDetectionMapper qualityDetectionMapper;
+
+    @Autowired
+    private ProductionSeriesMapper productionSeriesMapper;
+
+    @Autowired
+    private SensorMapper sensorMapper;
+
+    @Autowired
+    private LatestValueCache latestValueCache;
+
+    // 查询线程数（同时占用的数据库连接数上限，应小于连接池大小）
+    @Value("${dashboard.threads:6}")
+    private int threads;
+
+    // 等待执行的子查询上限，超出时直接记为 rejected
+    @Value("${dashboard.queue-capacity:64}")
+    private int queueCapacity;
+
+    // 单个子查询从提交起的最长等待时间
+    @Value("${dashboard.query-timeout-ms:2000}")
+    private long queryTimeoutMs;
+
+    @Value("${threads.virtual.enabled:false}")
+    private boolean virtualThreads;
+
+    private ThreadPoolExecutor executor;
+
+    @PostConstruct
+    public void start() {
+        executor = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                VirtualThreads.factory("dashboard-query", virtualThreads),
+                new ThreadPoolExecutor.AbortPolicy());
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * 总览数据（字段与原 getDashboardOverview 一致），子查询并行执行
+     */
+    public Map<String, Object> overview(int unitId) {
+        Fanout f = new Fanout();
+        submitOverview(f, unitId);
+        return collectOverview(f);
+    }
+
+    /**
+     * 大屏一次取全：总览、小时/日产量历史、喷枪压力、设备最新状态
+     *
+     * @param devNames    需要最新状态的设备名，为空时不返回 latestStatus
+     * @param hourlyLimit 整点小时产量条数
+     * @param dailyLimit  0 点日产量条数
+     */
+    public Map<String, Object> dashboard(int unitId, List<String> devNames, int hourlyLimit, int dailyLimit) {
+        Fanout f = new Fanout();
+        submitOverview(f, unitId);
+        f.submit("hourlyHistory", () -> ascending(productionSeriesMapper.getHourlyLatestByHour(unitId, hourlyLimit),
+                Comparator.comparing(ProductHourly::getTime)));
+        f.submit("dailyHistory", () -> ascending(productionSeriesMapper.getDailyLatestByDay(unitId, dailyLimit),
+                Comparator.comparing(ProductDaily::getTime)));
+        Date fromTime = new Date(System.currentTimeMillis() - 15L * 60L * 1000L);
+        f.submit("gunPressure.gun1", () -> sensorMapper.getLatestByMinuteInRange(unitId, GUN1_PRESSURE, fromTime, 15));
+        f.submit("gunPressure.gun2", () -> sensorMapper.getLatestByMinuteInRange(unitId, GUN2_PRESSURE, fromTime, 15));
+        if (devNames != null && !devNames.isEmpty()) {
+            f.submit("latestStatus", () -> {
+                List<DeviceStatus> list = new ArrayList<>();
+                for (String devName : devNames) {
+                    if (devName == null || devName.isEmpty()) {
+                        continue;
+                    }
+                    DeviceStatus status = latestValueCache.latestStatus(unitId, devName);
+                    if (status != null) {
+                        list.add(status);
+                    }
+                }
+                return list;
+            });
+        }
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("unitId", unitId);
+        result.put("overview", collectOverview(f));
+        result.put("hourlyHistory", f.get("hourlyHistory"));
+        result.put("dailyHistory", f.get("dailyHistory"));
+        Map<String, Object> gunPressure = new LinkedHashMap<>();
+        gunPressure.put("gun1", f.get("gunPressure.gun1"));
+        gunPressure.put("gun2", f.get("gunPressure.gun2"));
+        result.put("gunPressure", gunPressure);
+        if (f.submitted("latestStatus")) {
+            result.put("latestStatus", f.get("latestStatus"));
+        }
+        result.put("partial", !f.errors.isEmpty());
+        result.put("errors", f.errors);
+        result.put("elapsedMs", (System.nanoTime() - f.startNanos) / 1_000_000L);
+        return result;
+    }
+
+    private void submitOverview(Fanout f, int unitId) {
+        f.submit("latestHourlyOutput", () -> {
+            ProductHourly ph = productHourlyMapper.getLatestProductHourly(unitId);
+            return ph != null ? ph.getNumHourly() : null;
+        });
+        f.submit("latestDailyOutput", () -> {
+            ProductDaily pd = productDailyMapper.getLatestProductDaily(unitId);
+            return pd != null ? pd.getNumDaily() : null;
+        });
+        f.submit("latestQualityResult", () -> {
+            QualityDetection qd = qualityDetectionMapper.getLatestResultByUnit(unitId);
+            return qd != null ? qd.getResult() : null;
+        });
+        // 合计与计数在数据库中聚合，不把明细行读回应用
+        f.submit("totalHourlyOutput", () -> productHourlyMapper.sumNumHourly(unitId));
+        f.submit("totalDailyOutput", () -> productDailyMapper.sumNumDaily(unitId));
+        f.submit("qualityCount", () -> new long[]{
+                qualityDetectionMapper.countByUnit(unitId), qualityDetectionMapper.countPassByUnit(unitId)});
+    }
+
+    private Map<String, Object> collectOverview(Fanout f) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("latestHourlyOutput", f.get("latestHourlyOutput"));
+        result.put("latestDailyOutput", f.get("latestDailyOutput"));
+        result.put("totalHourlyOutput", f.get("totalHourlyOutput"));
+        result.put("totalDailyOutput", f.get("totalDailyOutput"));
+        result.put("latestQualityResult", f.get("latestQualityResult"));
+        long[] quality = (long[]) f.get("qualityCount");
+        result.put("totalQualityCount", quality != null ? quality[0] : null);
+        result.put("totalPassQualityCount", quality != null ? quality[1] : null);
+        return result;
+    }
+
+    private static <T> List<T> ascending(List<T> list, Comparator<T> order) {
+        if (list == null || list.isEmpty()) {
+            return new ArrayList<>();
+        }
+        list.sort(order);
+        return list;
+    }
+
+    /**
+     * 一次请求内的并行子查询：提交时开始计时，取结果时超时/出错只记录原因，不抛出
+     */
+    private final class Fanout {
+        final long startNanos = System.nanoTime();
+        final Map<String, Future<?>> futures = new LinkedHashMap<>();
+        final Map<String, Long> deadlines = new LinkedHashMap<>();
+        final Map<String, String> errors = new LinkedHashMap<>();
+
+        void submit(String name, Callable<?> task) {
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(queryTimeoutMs);
+            try {
+                futures.put(name, executor.submit(() -> QueryTimeoutInterceptor.call(deadline, task)));
+                deadlines.put(name, deadline);
+            } catch (RejectedExecutionException e) {
+                errors.put(name, "rejected");
+                log.warn("大屏子查询 {} 被拒绝：查询线程池队列已满", name);
+            }
+        }
+
+        boolean submitted(String name) {
+            return futures.containsKey(name) || errors.containsKey(name);
+        }
+
+        Object get(String name) {
+            Future<?> future = futures.get(name);
+            if (future == null) {
+                return null;
+            }
+            try {
+                long remaining = deadlines.get(name) - System.nanoTime();
+                return future.get(Math.max(0L, remaining), TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                future.cancel(true);
+                errors.put(name, "timeout");
+                log.warn("大屏子查询 {} 超过 {}ms 未返回，已取消", name, queryTimeoutMs);
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause() != null ? e.getCause() : e;
+                errors.put(name, cause.getClass().getSimpleName() + ": " + cause.getMessage());
+                log.warn("大屏子查询 {} 失败: {}", name, cause.toString());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                future.cancel(true);
+                errors.put(name, "interrupted");
+            }
+            return null;
+        }
+    }
+}
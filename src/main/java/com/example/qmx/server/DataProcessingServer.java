@@ -1,5 +1,7 @@
 package com.example.qmx.server;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
@@ -7,6 +9,8 @@ import org.springframework.stereotype.Service;
 @Service
 public class DataProcessingServer {
 
+    private static final Logger log = LoggerFactory.getLogger(DataProcessingServer.class);
+
     private DataServer dataServer;
     private DataToObj dataToObj;
 
@@ -25,10 +29,10 @@ public class DataProcessingServer {
         Thread serverLoopThread = new Thread(() -> {
             while (!Thread.currentThread().isInterrupted()) {
                 try {
-                    String summary = dataServer.fetchData();
-                    System.out.println("接收并入队完成: " + summary);
+                    // 阻塞在 accept 循环中，每个网关连接由独立读线程处理
+                    dataServer.serve();
                 } catch (Exception e) {
-                    System.err.println("接收/解析失败: " + e.getMessage());
+                    log.error("服务端监听失败: {}", e.getMessage(), e);
                     // 简单退避，避免异常导致忙等
                     try {
                         Thread.sleep(1000);
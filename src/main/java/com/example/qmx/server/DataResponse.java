@@ -1,9 +1,12 @@
 package com.example.qmx.server;
 
+import com.example.qmx.utils.LogSampler;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.PostConstruct;
 import javax.annotation.Resource;
 import java.io.InputStream;
 import java.io.IOException;
@@ -22,6 +25,17 @@ public class DataResponse {
      * 响应数据到网关，用于确认数据包完整
      */
     private static final Logger log = LoggerFactory.getLogger(DataResponse.class);
+
+    // 逐帧确认日志每 N 帧输出一次（DEBUG）；直接 new 出来时按默认间隔抽样
+    @Value("${ingest.log.sample-every:100}")
+    private long logSampleEvery = 100;
+
+    private LogSampler ackLogSampler = new LogSampler(100);
+
+    @PostConstruct
+    public void initLogSampler() {
+        ackLogSampler = new LogSampler(logSampleEvery);
+    }
     
     public byte[] buildResponseFrame(byte[] incomingMbap, byte[] incomingPdu) {
         if (incomingMbap == null || incomingMbap.length != 7) {
@@ -85,6 +99,28 @@ public class DataResponse {
         return frame;
     }
 
+    /**
+     * 按上报帧长度校验结果构造确认帧或错误帧（只组帧不发送，由 GatewayWriter 写出）
+     */
+    public byte[] buildAckFrame(byte[] incomingMbap, byte[] incomingPdu) {
+        if (incomingMbap == null || incomingMbap.length != 7) {
+            throw new IllegalArgumentException("MBAP 头不能为空且长度必须为 7 字节");
+        }
+        if (incomingPdu == null || incomingPdu.length < 3) {
+            throw new IllegalArgumentException("PDU 不能为空且长度至少为 3 字节（功能码+数据长度2字节）");
+        }
+        int dataLen = ((incomingPdu[1] & 0xFF) << 8) | (incomingPdu[2] & 0xFF);
+        if (incomingPdu.length != 1 + 2 + dataLen) {
+            log.warn("PDU 长度不一致，回复错误帧（数据=-1），pduLen={}，dataLen={}", incomingPdu.length, dataLen);
+            return buildErrorResponseFrame(incomingMbap, incomingPdu);
+        }
+        byte[] frame = buildResponseFrame(incomingMbap, incomingPdu);
+        if (log.isDebugEnabled() && ackLogSampler.sample()) {
+            log.debug("PDU 长度一致，确认帧已组好（待写线程发出），长度={} 字节，数据长度={}", frame.length, dataLen);
+        }
+        return frame;
+    }
+
     /**
      * 发送响应帧到网关（使用 Socket）
      */
@@ -116,7 +152,9 @@ public class DataResponse {
         byte[] frame = buildResponseFrame(incomingMbap, incomingPdu);
         os.write(frame);
         os.flush();
-        log.info("PDU 长度一致，已向网关发送确认帧，长度={} 字节，数据长度={}", frame.length, dataLen);
+        if (log.isDebugEnabled() && ackLogSampler.sample()) {
+            log.debug("PDU 长度一致，已向网关发送确认帧，长度={} 字节，数据长度={}", frame.length, dataLen);
+        }
         return dataLen;
     }
 
@@ -422,6 +460,20 @@ public class DataResponse {
         return frame;
     }
 
+    /**
+     * 解析网关对参数下发的响应帧 PDU：[0x10][数据数量 2B]
+     * 成功时数据数量等于下发数量；失败时为 0xFFFF
+     *
+     * @return 网关确认的数据数量；失败或格式不对返回 -1
+     */
+    public int parseConfigAckCount(byte[] responsePdu) {
+        if (responsePdu == null || responsePdu.length < 3) {
+            return -1;
+        }
+        int count = ((responsePdu[1] & 0xFF) << 8) | (responsePdu[2] & 0xFF);
+        return count == 0xFFFF ? -1 : count;
+    }
+
     /**
      * 发送“前端参数配置下发”帧（新版：无类型标识）
      */
@@ -8,15 +8,28 @@ import org.springframework.http.*;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestTemplate;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import javax.annotation.Resource;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStream;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
-
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.example.qmx.jfr.FrameReceivedEvent;
+import com.example.qmx.utils.LogSampler;
+import com.example.qmx.utils.VirtualThreads;
 import com.serotonin.modbus4j.ModbusFactory;
 import com.serotonin.modbus4j.ModbusMaster;
 import com.serotonin.modbus4j.exception.ModbusInitException;
@@ -29,6 +42,7 @@ import com.serotonin.modbus4j.ip.IpParameters;
 public class DataServer {
 
     Logger logger = LoggerFactory.getLogger(this.getClass());
+    private static final Logger frameLog = LoggerFactory.getLogger("qmx.frame");
 
     // 通过配置读取 Modbus TCP 参数
     @Value("${modbus.host:127.0.0.1}")
@@ -50,10 +64,31 @@ public class DataServer {
     @Autowired
     private DataToObj dataToObj;
 
-    // 固定事务ID
-    private static final int FIXED_TX_ID = 0x0001;
+    // 网关上报采集数据使用的功能码，其余功能码的帧视为下发响应
+    private static final int UPLOAD_FUNCTION_CODE = 0x03;
+
+    @Autowired
+    private DownlinkManager downlinkManager;
+
+    @Autowired
+    private FrameCaptureService frameCaptureService;
+
+    @Autowired
+    private IngestMetrics ingestMetrics;
 
-    // 服务端监听端口与首次连接等待超时（毫秒）
+    @Autowired
+    private FrameFlightRecorder frameFlightRecorder;
+
+    // 逐帧 DEBUG 日志每 N 帧输出一次
+    @Value("${ingest.log.sample-every:100}")
+    private long logSampleEvery;
+
+    private LogSampler logSampler;
+
+    // qmx.frame 逐帧汇总单独抽样
+    private LogSampler frameLogSampler;
+
+    // 服务端监听端口与 accept 等待超时（毫秒，超时后检查中断再继续等待）
     @Value("${modbus.port:8088}")
     private int listenPort;
 
@@ -63,104 +98,236 @@ public class DataServer {
     @Value("${modbus.server.socket-read-timeout-ms:10000}")
     private int socketReadTimeoutMs;
 
-    // 保存与网关的当前连接（最近一次接入）
-    private volatile Socket gatewaySocket;
-    private volatile OutputStream gatewayOut;
+    // 同时接入的网关连接上限，超出时拒绝新连接
+    @Value("${modbus.server.max-connections:16}")
+    private int maxConnections;
+
+    // 每条网关连接的读/写线程使用虚拟线程（Java 21 及以上，否则退回平台线程）
+    @Value("${threads.virtual.enabled:false}")
+    private boolean virtualThreads;
+
+    // 每条网关连接的下发队列容量（帧数），队列满时拒绝新的下发
+    @Value("${modbus.server.downlink-queue-capacity:" + GatewayWriter.DEFAULT_QUEUE_CAPACITY + "}")
+    private int downlinkQueueCapacity;
+
+    // 集群模式下未上报过的网关号可能连在其他节点上，不能退回本节点的唯一连接
+    @Value("${cluster.enabled:false}")
+    private boolean clusterEnabled;
 
-    private ServerSocket serverSocket;
+    // 当前全部网关连接
+    private final Set<GatewayConnection> connections = ConcurrentHashMap.newKeySet();
+    // 网关号 -> 最近一次上报该网关号的连接，下发按此路由
+    private final Map<Integer, GatewayConnection> connectionsByUnit = new ConcurrentHashMap<>();
+
+    private final AtomicBoolean serving = new AtomicBoolean();
+
+    private volatile ServerSocket serverSocket;
 
     @Autowired
     private DataResponse dataResponse;
 
-    
+    /**
+     * 单个网关 TCP 连接：一个读线程 + 一个写队列，记录该连接上出现过的网关号
+     */
+    private static final class GatewayConnection {
+        final Socket socket;
+        final GatewayWriter writer;
+        final Set<Integer> unitIds = ConcurrentHashMap.newKeySet();
+
+        GatewayConnection(Socket socket, GatewayWriter writer) {
+            this.socket = socket;
+            this.writer = writer;
+        }
+
+        boolean isAlive() {
+            return !socket.isClosed() && writer.isRunning();
+        }
+    }
+
+    @PostConstruct
+    public void initMetrics() {
+        logSampler = new LogSampler(logSampleEvery);
+        frameLogSampler = new LogSampler(logSampleEvery);
+        ingestMetrics.gauge("qmx.gateway.connections", "当前网关连接数", connections::size);
+    }
 
     /**
-     * 采集数据：作为服务端接收网关（客户端）发来的 Modbus TCP 帧
-     * 成功连接后打印“与网关连接成功”，读取一帧并交由 DataToObj 解析与入库
-     * 返回解析后的简要 JSON（便于接口联调）
+     * 服务端接收循环：监听端口并接受网关（客户端）接入，每个连接由独立的读线程收帧、
+     * 回 ACK 并交由 DataToObj 解析入库；多个网关可同时在线，按 MBAP 单元标识符区分
+     * 已在运行时直接返回；监听端口异常时抛出，由调用方退避后重试
      */
-    public String fetchData() {
-        long tFetchStart = System.currentTimeMillis();
+    public void serve() throws IOException {
+        if (!serving.compareAndSet(false, true)) {
+            return;
+        }
         try {
-            if (serverSocket == null || serverSocket.isClosed()) {
-                serverSocket = new ServerSocket(listenPort);
-                serverSocket.setSoTimeout(initialTimeoutMs);
-                logger.info("服务端已启动，等待网关连接: 0.0.0.0:{}（首次连接超时{}ms）", listenPort, initialTimeoutMs);
+            ServerSocket ss = new ServerSocket(listenPort);
+            ss.setSoTimeout(initialTimeoutMs);
+            serverSocket = ss;
+            logger.info("服务端已启动，等待网关连接: 0.0.0.0:{}（最多{}个连接）", listenPort, maxConnections);
+            while (!Thread.currentThread().isInterrupted() && !ss.isClosed()) {
+                Socket socket;
+                try {
+                    socket = ss.accept();
+                } catch (SocketTimeoutException e) {
+                    continue;
+                }
+                accept(socket);
             }
+        } finally {
+            closeServerSocket();
+            serving.set(false);
+        }
+    }
 
-            if (gatewaySocket == null || gatewaySocket.isClosed()) {
-                Socket socket = serverSocket.accept();
-                this.gatewaySocket = socket;
-                try { socket.setKeepAlive(true); } catch (Exception ignore) {}
-                try { socket.setSoTimeout(socketReadTimeoutMs); } catch (Exception ignore) {}
-                this.gatewayOut = socket.getOutputStream();
-                String remote = socket.getInetAddress().getHostAddress() + ":" + socket.getPort();
-                logger.info("与网关连接成功: {}", remote);
-            }
+    public boolean isServing() {
+        return serving.get();
+    }
 
-            InputStream in = gatewaySocket.getInputStream();
+    private void accept(Socket socket) {
+        String remote = socket.getInetAddress().getHostAddress() + ":" + socket.getPort();
+        if (connections.size() >= maxConnections) {
+            logger.warn("网关连接数已达上限 {}，拒绝接入: {}", maxConnections, remote);
+            try {
+                socket.close();
+            } catch (IOException ignore) {
+            }
+            return;
+        }
+        GatewayConnection conn;
+        try {
+            try { socket.setKeepAlive(true); } catch (Exception ignore) {}
+            try { socket.setSoTimeout(socketReadTimeoutMs); } catch (Exception ignore) {}
+            conn = new GatewayConnection(socket, new GatewayWriter(socket, dataResponse, downlinkManager, ingestMetrics, virtualThreads,
+                    downlinkQueueCapacity));
+        } catch (IOException e) {
+            logger.error("网关连接初始化失败: {}, {}", remote, e.toString());
+            try {
+                socket.close();
+            } catch (IOException ignore) {
+            }
+            return;
+        }
+        connections.add(conn);
+        logger.info("与网关连接成功: {}（当前连接数 {}）", remote, connections.size());
+        VirtualThreads.start("gateway-reader-" + remote, virtualThreads, () -> readLoop(conn));
+    }
 
-            byte[] mbap = readFully(in, 7);
-            if (mbap == null) {
-                throw new RuntimeException("读取 MBAP 头失败（连接关闭或超时）");
+    private void readLoop(GatewayConnection conn) {
+        try {
+            InputStream in = conn.socket.getInputStream();
+            while (!Thread.currentThread().isInterrupted() && conn.isAlive()) {
+                String summary = readFrame(conn, in);
+                if (frameLog.isDebugEnabled() && frameLogSampler.sample()) {
+                    frameLog.debug("接收并入队完成: {}", summary);
+                }
             }
+        } catch (Exception e) {
+            logger.error("服务端接收或解析数据失败: gateway={}, {}", conn.writer.getName(), e.toString());
+        } finally {
+            closeConnection(conn);
+        }
+    }
 
-            int transactionId = ((mbap[0] & 0xFF) << 8) | (mbap[1] & 0xFF);
-            int protocolId = ((mbap[2] & 0xFF) << 8) | (mbap[3] & 0xFF);
-            int length = ((mbap[4] & 0xFF) << 8) | (mbap[5] & 0xFF);
-            byte unitId = mbap[6];
+    /**
+     * 从一个网关连接读取一帧：成功后回 ACK 并交由 DataToObj 解析与入库
+     * 返回解析后的简要 JSON（便于接口联调）
+     */
+    private String readFrame(GatewayConnection conn, InputStream in) throws Exception {
+        byte[] mbap = readFully(in, 7);
+        long tFetchStart = System.nanoTime();
+        FrameReceivedEvent received = new FrameReceivedEvent();
+        received.begin();
+        if (mbap == null) {
+            throw new RuntimeException("读取 MBAP 头失败（连接关闭或超时）");
+        }
 
-            int pduLength = length - 1;
-            if (pduLength <= 0) {
-                throw new RuntimeException("非法长度字段（length<=1）");
-            }
+        int transactionId = ((mbap[0] & 0xFF) << 8) | (mbap[1] & 0xFF);
+        int protocolId = ((mbap[2] & 0xFF) << 8) | (mbap[3] & 0xFF);
+        int length = ((mbap[4] & 0xFF) << 8) | (mbap[5] & 0xFF);
+        int unitId = mbap[6] & 0xFF;
 
-            byte[] pdu = readFully(in, pduLength);
-            if (pdu == null || pdu.length != pduLength) {
-                throw new RuntimeException("读取 PDU 失败（长度不匹配或连接关闭）");
-            }
+        int pduLength = length - 1;
+        if (pduLength <= 0) {
+            ingestMetrics.parseError(IngestMetrics.REASON_LENGTH);
+            frameFlightRecorder.dump("非法长度字段 length=" + length + ", unitId=" + unitId);
+            throw new RuntimeException("非法长度字段（length<=1）");
+        }
 
-            long tAfterRead = System.currentTimeMillis();
-            logger.info("E2E[接收点] txId={}, netCostMs={}", transactionId, (tAfterRead - tFetchStart));
+        byte[] pdu = readFully(in, pduLength);
+        if (pdu == null || pdu.length != pduLength) {
+            throw new RuntimeException("读取 PDU 失败（长度不匹配或连接关闭）");
+        }
+        frameCaptureService.capture(mbap, pdu);
+        frameFlightRecorder.record(mbap, pdu);
+        received.end();
+        if (received.shouldCommit()) {
+            received.txId = transactionId;
+            received.unitId = unitId;
+            received.functionCode = pdu[0] & 0xFF;
+            received.frameBytes = mbap.length + pdu.length;
+            received.gateway = conn.writer.getName();
+            received.commit();
+        }
 
-            // 校验功能码是否为采集功能码 0x03（网关返回参数下发确认帧时用，目前未使用）
-            // int functionCode = pdu[0] & 0xFF;
-            // if (functionCode != 0x03) {
-            //     logger.info("收到非采集功能码帧, txId={}, functionCode={}", transactionId, functionCode);
-            //     return "{\"transactionId\":" + transactionId + ",\"functionCode\":" + functionCode + "}";
-            // }
+        long tAfterRead = System.nanoTime();
+        ingestMetrics.recordRead(tAfterRead - tFetchStart);
+        boolean trace = logger.isDebugEnabled() && logSampler.sample();
+        if (trace) {
+            logger.debug("E2E[接收点] txId={}, unitId={}, netCostUs={}", transactionId, unitId, (tAfterRead - tFetchStart) / 1000);
+        }
 
-            try {
-                dataResponse.sendResponse(gatewaySocket, mbap, pdu);
-                logger.info("已向网关发送ACK响应帧，txId={}", transactionId);
-            } catch (IOException ackEx) {
-                logger.error("向网关发送ACK响应帧失败, txId={}, err={}", transactionId, ackEx.toString());
-            }
+        // 非采集功能码的帧：按事务ID匹配本连接发出的在途下发请求（参数下发确认帧），不回 ACK 也不入库
+        int functionCode = pdu[0] & 0xFF;
+        if (functionCode != UPLOAD_FUNCTION_CODE && downlinkManager.complete(transactionId, conn.writer, pdu)) {
+            return "{\"transactionId\":" + transactionId + ",\"functionCode\":" + functionCode + ",\"downlinkResponse\":true}";
+        }
 
-            String summary = dataToObj.handleModbusFrame(mbap, pdu);
+        ingestMetrics.frameReceived(unitId, mbap.length + pdu.length);
+        bindUnit(conn, unitId);
+        conn.writer.enqueueAck(dataResponse.buildAckFrame(mbap, pdu));
+        long ackNanos = System.nanoTime();
+        if (trace) {
+            logger.debug("ACK响应帧已入队，txId={}", transactionId);
+        }
 
-            long tAfterHandle = System.currentTimeMillis();
-            logger.info("E2E[处理完成] txId={}, handleCostMs={}, totalCostMs={}",
-                    transactionId, (tAfterHandle - tAfterRead), (tAfterHandle - tFetchStart));
+        String summary = dataToObj.handleModbusFrame(mbap, pdu, ackNanos);
 
-            return summary;
-        } catch (Exception e) {
-            logger.error("服务端接收或解析数据失败: {}", e.toString());
-            closeGatewaySocket();
-            closeServerSocket();
-            throw new RuntimeException("failed to receive/parse modbus tcp frame: " + e.getMessage(), e);
+        if (trace) {
+            long tAfterHandle = System.nanoTime();
+            logger.debug("E2E[处理完成] txId={}, handleCostUs={}, totalCostUs={}",
+                    transactionId, (tAfterHandle - tAfterRead) / 1000, (tAfterHandle - tFetchStart) / 1000);
         }
+
+        return summary;
     }
 
-    private synchronized void closeGatewaySocket() {
-        if (gatewaySocket != null) {
-            try {
-                gatewaySocket.close();
-            } catch (IOException ignore) {
+    // 网关号首次出现在某连接上（或网关换了连接重连）时更新下发路由
+    private void bindUnit(GatewayConnection conn, int unitId) {
+        if (conn.unitIds.add(unitId)) {
+            GatewayConnection prev = connectionsByUnit.put(unitId, conn);
+            if (prev != null && prev != conn) {
+                prev.unitIds.remove(unitId);
+                ingestMetrics.reconnect(unitId);
             }
+            logger.info("网关号 {} 绑定到连接 {}", unitId, conn.writer.getName());
         }
-        gatewaySocket = null;
-        gatewayOut = null;
+    }
+
+    private void closeConnection(GatewayConnection conn) {
+        if (!connections.remove(conn)) {
+            return;
+        }
+        conn.writer.close();
+        try {
+            conn.socket.close();
+        } catch (IOException ignore) {
+        }
+        for (Integer unitId : conn.unitIds) {
+            connectionsByUnit.remove(unitId, conn);
+        }
+        downlinkManager.failOwner(conn.writer, new IOException("网关连接已断开: " + conn.writer.getName()));
+        logger.info("网关连接已关闭: {}, 网关号={}（当前连接数 {}）", conn.writer.getName(), conn.unitIds, connections.size());
     }
 
     private synchronized void closeServerSocket() {
@@ -173,27 +340,113 @@ public class DataServer {
         serverSocket = null;
     }
 
+    @PreDestroy
+    public void shutdown() {
+        closeServerSocket();
+        for (GatewayConnection conn : connections) {
+            closeConnection(conn);
+        }
+    }
+
+    /**
+     * 下发使用的写队列：优先取该网关号所在的连接；网关号尚未上报过、只有一个连接且该连接也还没上报过任何网关号时使用该连接
+     * （已上报过其他网关号的连接不是这个网关；集群模式下网关可能连在其他节点，不做该退回）
+     */
+    private GatewayWriter writerFor(int unitId) {
+        GatewayConnection conn = connectionsByUnit.get(unitId);
+        if (conn == null && !clusterEnabled && connections.size() == 1) {
+            Iterator<GatewayConnection> it = connections.iterator();
+            GatewayConnection only = it.hasNext() ? it.next() : null;
+            conn = only != null && only.unitIds.isEmpty() ? only : null;
+        }
+        return conn != null && conn.isAlive() ? conn.writer : null;
+    }
+
     /**
-     * 是否与网关保持连接
+     * 是否有任一网关保持连接
      */
     public boolean isGatewayConnected() {
-        return gatewaySocket != null && !gatewaySocket.isClosed() && gatewayOut != null;
+        for (GatewayConnection conn : connections) {
+            if (conn.isAlive()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 指定网关号是否可下发
+     */
+    public boolean isGatewayConnected(int unitId) {
+        return writerFor(unitId) != null;
+    }
+
+    /**
+     * 网关号是否由本节点的某个连接上报（集群模式下据此认领网关）
+     */
+    public boolean isBound(int unitId) {
+        GatewayConnection conn = connectionsByUnit.get(unitId);
+        return conn != null && conn.isAlive();
+    }
+
+    public Set<Integer> boundUnits() {
+        Set<Integer> out = new TreeSet<>();
+        for (Map.Entry<Integer, GatewayConnection> e : connectionsByUnit.entrySet()) {
+            if (e.getValue().isAlive()) {
+                out.add(e.getKey());
+            }
+        }
+        return out;
+    }
+
+    /**
+     * 当前连接及其上报过的网关号
+     */
+    public List<Map<String, Object>> getConnections() {
+        List<Map<String, Object>> out = new ArrayList<>();
+        for (GatewayConnection conn : connections) {
+            Map<String, Object> m = new LinkedHashMap<>();
+            m.put("remote", conn.writer.getName());
+            m.put("alive", conn.isAlive());
+            m.put("unitIds", new TreeSet<>(conn.unitIds));
+            out.add(m);
+        }
+        return out;
     }
 
     /**
      * 通过当前网关连接写多个保持寄存器（功能码 0x10）
+     * 只入队、不等待网关确认；需要确认结果时用 sendWriteMultipleRegistersAsync
      */
-    public synchronized void sendWriteMultipleRegisters(int unitId, int startAddress, int[] values) throws java.io.IOException {
-        if (!isGatewayConnected()) {
-            throw new java.io.IOException("网关未连接或连接不可用，无法下发配置");
+    public void sendWriteMultipleRegisters(int unitId, int startAddress, int[] values) throws java.io.IOException {
+        enqueueWriteMultipleRegisters(unitId, startAddress, values, false);
+    }
+
+    /**
+     * 写多个保持寄存器，返回网关响应帧 PDU 的 Future（超时或断连时异常完成）
+     */
+    public java.util.concurrent.CompletableFuture<byte[]> sendWriteMultipleRegistersAsync(int unitId, int startAddress, int[] values) throws java.io.IOException {
+        return enqueueWriteMultipleRegisters(unitId, startAddress, values, true);
+    }
+
+    private java.util.concurrent.CompletableFuture<byte[]> enqueueWriteMultipleRegisters(int unitId, int startAddress, int[] values,
+                                                                                        boolean awaitAck) throws java.io.IOException {
+        GatewayWriter writer = writerFor(unitId);
+        if (writer == null) {
+            throw new java.io.IOException("网关 " + unitId + " 未连接或连接不可用，无法下发配置");
         }
-        // 使用固定事务ID
-        int transactionId = FIXED_TX_ID;
+        int transactionId = downlinkManager.allocateTxId();
         byte[] frame = dataResponse.buildWriteMultipleRegistersFrame(transactionId, unitId, startAddress, values);
-        gatewayOut.write(frame);
-        gatewayOut.flush();
-        logger.info("已向网关下发配置（0x10 写保持寄存器）：unitId={}, startAddress={}, quantity={}, frameLen={}",
-                unitId, startAddress, values != null ? values.length : 0, frame.length);
+        String description = "0x10写保持寄存器 startAddress=" + startAddress;
+        java.util.concurrent.CompletableFuture<byte[]> ack = awaitAck
+                ? downlinkManager.register(transactionId, description, writer)
+                : downlinkManager.registerNoWait(transactionId, description, writer);
+        if (!writer.enqueueFrame(transactionId, frame)) {
+            throw new java.io.IOException("网关 " + unitId + " 连接已关闭，无法下发配置");
+        }
+        logger.info("配置下发已入队（0x10 写保持寄存器）：txId={}, unitId={}, startAddress={}, quantity={}, frameLen={}",
+                transactionId, unitId, startAddress, values != null ? values.length : 0, frame.length);
+        return ack;
     }
 
     private byte[] readFully(InputStream in, int len) throws Exception {
@@ -209,17 +462,22 @@ public class DataServer {
         return buf;
     }
 
-    // 一次性发送
+    // 一次性发送：只入队、不等待网关确认（响应帧按事务ID消费，超时不告警）
     // 修改：增加 startAddress，从前端读取传递到 DataResponse
     public boolean sendTypedSegments(int unitId, int functionCode, int startAddress, java.util.List<DataResponse.TypedSegment> segments) {
         try {
-            if (!isGatewayConnected()) {
-                logger.error("网关未连接，无法发送 Typed 段自定义帧");
+            GatewayWriter writer = writerFor(unitId);
+            if (writer == null) {
+                logger.error("网关 {} 未连接，无法发送 Typed 段自定义帧", unitId);
+                return false;
+            }
+            int txId = downlinkManager.allocateTxId();
+            byte[] frame = dataResponse.buildCustomDataFrameTyped(unitId, functionCode, startAddress, txId, segments);
+            downlinkManager.registerNoWait(txId, "Typed段帧 func=0x" + Integer.toHexString(functionCode), writer);
+            if (!writer.enqueueFrame(txId, frame)) {
+                logger.error("网关 {} 连接已关闭，Typed 段自定义帧未发送", unitId);
                 return false;
             }
-            // 使用固定事务ID
-            int txId = FIXED_TX_ID;
-            dataResponse.sendCustomDataFrameTyped(gatewaySocket, unitId, functionCode, startAddress, txId, segments);
             // logger.info("已发送 Typed 段帧: txId={}, unitId={}, func=0x{}, startAddr=0x{}", txId, unitId, Integer.toHexString(functionCode), Integer.toHexString(startAddress));
             return true;
         } catch (Exception e) {
@@ -228,19 +486,36 @@ public class DataServer {
         }
     }
 
+    /**
+     * 发送配置下发帧(V2)，只入队、不等待网关确认
+     *
+     * @return true 表示已进入连接写队列（不代表网关已确认）；需要确认结果时用 sendConfigItemsV2Async
+     */
     public boolean sendConfigItemsV2(int unitId, int functionCode, java.util.List<DataResponse.ConfigItem> items) {
-        try {
-            if (!isGatewayConnected()) {
-                logger.error("网关未连接，无法发送配置下发帧(V2)");
-                return false;
-            }
-            int txId = FIXED_TX_ID;
-            dataResponse.sendConfigDataFrameV2(gatewaySocket, unitId, functionCode, txId, items);
-            logger.info("已发送配置下发帧(V2): txId={}, unitId={}, func=0x{}, itemCount={}", txId, unitId, Integer.toHexString(functionCode), items == null ? 0 : items.size());
-            return true;
-        } catch (Exception e) {
-            logger.error("发送配置下发帧(V2)失败: {}", e.getMessage());
+        GatewayWriter writer = writerFor(unitId);
+        if (writer == null || items == null || items.isEmpty()) {
+            logger.error("网关 {} 未连接或配置项为空，无法发送配置下发帧(V2)", unitId);
             return false;
         }
+        logger.info("配置下发(V2)已入队（不等待确认）: unitId={}, func=0x{}, itemCount={}", unitId, Integer.toHexString(functionCode), items.size());
+        return !writer.enqueueConfigItems(unitId, functionCode, items, false).isCompletedExceptionally();
+    }
+
+    /**
+     * 发送配置下发帧(V2)，返回网关确认结果的 Future
+     * 配置项先进入连接写队列，尚未发出的同 dataId 项会与之合并（后写覆盖），
+     * 因此确认帧中的数量是合并后实际下发的数量；被后来请求覆盖的 dataId 见 {@link GatewayWriter.ConfigAck#getSuperseded()}
+     * 发送失败、等待确认超时或连接断开时 Future 异常完成
+     */
+    public java.util.concurrent.CompletableFuture<GatewayWriter.ConfigAck> sendConfigItemsV2Async(int unitId, int functionCode, java.util.List<DataResponse.ConfigItem> items) {
+        GatewayWriter writer = writerFor(unitId);
+        if (writer == null || items == null || items.isEmpty()) {
+            java.util.concurrent.CompletableFuture<GatewayWriter.ConfigAck> failed = new java.util.concurrent.CompletableFuture<>();
+            logger.error("网关 {} 未连接或配置项为空，无法发送配置下发帧(V2)", unitId);
+            failed.completeExceptionally(new IOException("网关未连接或配置项为空"));
+            return failed;
+        }
+        logger.info("配置下发(V2)已入队: unitId={}, func=0x{}, itemCount={}", unitId, Integer.toHexString(functionCode), items.size());
+        return writer.enqueueConfigItems(unitId, functionCode, items);
     }
 }
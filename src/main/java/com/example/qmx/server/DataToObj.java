@@ -1,6 +1,8 @@
 package com.example.qmx.server;
 
 import com.example.qmx.domain.*;
+import com.example.qmx.jfr.AlarmDispatchedEvent;
+import com.example.qmx.jfr.FrameDecodedEvent;
 import com.example.qmx.mapper.*;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -33,29 +35,44 @@ import java.util.concurrent.CopyOnWriteArrayList;
 public class DataToObj {
 
     private static final Logger log = LoggerFactory.getLogger(DataToObj.class);
+    // 逐帧解码结果（DEBUG）与报警明细各用独立分类，便于在 logback-spring.xml 中分别限流/抽样
+    private static final Logger frameLog = LoggerFactory.getLogger("qmx.frame");
+    private static final Logger alarmLog = LoggerFactory.getLogger("qmx.alarm");
     @Autowired
-    private DeviceStatusMapper deviceStatusMapper;
+    private DataResponse dataResponse;
 
     @Autowired
-    private SensorMapper sensorMapper;
-
+    private QualityDetectionMapper qualityDetectionMapper;
     @Autowired
-    private SprayRecordMapper sprayRecordMapper;
+    private ProtocolSchemaService protocolSchemaService;
 
     @Autowired
-    private ProductHourlyMapper productHourlyMapper;
+    private LatestValueCache latestValueCache;
 
     @Autowired
-    private ProductDailyMapper productDailyMapper;
+    private IngestWriter ingestWriter;
 
     @Autowired
-    private ControlParameterMapper controlParameterMapper;
+    private IngestMetrics ingestMetrics;
 
     @Autowired
-    private DataResponse dataResponse;
+    private FrameFlightRecorder frameFlightRecorder;
+
+    // 逐帧 DEBUG 日志每 N 帧输出一次
+    @org.springframework.beans.factory.annotation.Value("${ingest.log.sample-every:100}")
+    private long logSampleEvery;
+
+    private com.example.qmx.utils.LogSampler logSampler;
+
+    // qmx.frame 逐帧解析结果单独抽样，先抽样再序列化
+    private com.example.qmx.utils.LogSampler frameLogSampler;
+
+    @javax.annotation.PostConstruct
+    public void initLogSampler() {
+        logSampler = new com.example.qmx.utils.LogSampler(logSampleEvery);
+        frameLogSampler = new com.example.qmx.utils.LogSampler(logSampleEvery);
+    }
 
-    @Autowired
-    private QualityDetectionMapper qualityDetectionMapper;
     private final ObjectMapper objectMapper = new ObjectMapper();
 
     @Autowired(required = false)
@@ -70,19 +87,6 @@ public class DataToObj {
 
     private final List<SseEmitter> alarmEmitters = new CopyOnWriteArrayList<>();
 
-    // 报警设备名称
-    private static final List<String> ALARM_DEVICE_NAMES = Arrays.asList(
-            "停止器1", "停止器2",
-            "锁定机构1", "锁定机构2",
-            "机器人1地轨", "机器人2地轨",
-            "机器人1", "机器人2",
-            "喷涂机1", "喷涂机2",
-            "涂料桶1进气压力", "涂料桶2进气压力", "清洗桶进气压力", "进气源压力", "备用",
-            "搅拌器1故障", "搅拌器2故障", "房间环境异常报警",
-            "禁止进入提示"
-            // "涂料桶1是否可用", "涂料桶2是否可用"
-    );
-
     public SseEmitter registerAlarmEmitter() {
         SseEmitter emitter = new SseEmitter(0L);
         alarmEmitters.add(emitter);
@@ -103,7 +107,7 @@ public class DataToObj {
         if (alarm == null || alarm.isEmpty()) {
             return;
         }
-        System.out.println("报警触发: " + alarm);
+        alarmLog.info("报警触发: {}", alarm);
         List<SseEmitter> toRemove = new ArrayList<>();
         for (SseEmitter emitter : alarmEmitters) {
             try {
@@ -138,13 +142,23 @@ public class DataToObj {
      *      0x02 传感器参数   单长=32bit（4字节）
      *      0x03 喷涂记录     单长=16bit（2字节）
      *      0x04 喷涂产量     单长=16bit（2字节）
-     *      0x05 控制参数     单长=不定（按实际协议补充）
+     *      0x05 控制参数     定长结构（3 个 char、1 个 int16、10 个 float32）
      *      0x06 运动参数     单长=32bit（4字节）
+     *    各类型的数据类型、点位名称与入库目标见 protocol-schema.json，按网关号对应的固件版本解码
      */
     public String handleModbusFrame(byte[] mbap, byte[] pdu) {
-        long tStart = System.currentTimeMillis();
+        return handleModbusFrame(mbap, pdu, System.nanoTime());
+    }
+
+    /**
+     * 同上，ackNanos 为该帧 ACK 入队时刻（System.nanoTime），用于统计 ACK 到写入完成的延迟
+     */
+    public String handleModbusFrame(byte[] mbap, byte[] pdu, long ackNanos) {
+        long tStart = System.nanoTime();
+        FrameDecodedEvent decodedEvent = new FrameDecodedEvent();
+        decodedEvent.begin();
         if (mbap == null || mbap.length != 7 || pdu == null || pdu.length < 3) {
-            throw new IllegalArgumentException("非法帧：MBAP 或 PDU 长度不正确");
+            throw frameError(IngestMetrics.REASON_LENGTH, "非法帧：MBAP 或 PDU 长度不正确");
         }
 
         int transactionId = ((mbap[0] & 0xFF) << 8) | (mbap[1] & 0xFF);
@@ -153,38 +167,66 @@ public class DataToObj {
         int unitId        = (mbap[6] & 0xFF);
 
         if (protocolId != 0x0000) {
-            throw new IllegalArgumentException("协议标识不是0x0000，非Modbus TCP帧");
+            throw frameError(IngestMetrics.REASON_PROTOCOL, "协议标识不是0x0000，非Modbus TCP帧");
         }
 
         int functionCode = pdu[0] & 0xFF;
         int dataLen      = ((pdu[1] & 0xFF) << 8) | (pdu[2] & 0xFF);
         if (pdu.length < 3 + dataLen) {
-            throw new IllegalArgumentException("PDU长度与数据长度不匹配");
+            throw frameError(IngestMetrics.REASON_LENGTH, "PDU长度与数据长度不匹配");
         }
 
         // 解析数据内容 Map<typeId, List<Long>>
-        Map<Integer, List<Long>> decoded = parseDataSegments(pdu, 3, dataLen);
+        Map<Integer, List<Long>> decoded;
+        try {
+            decoded = parseDataSegments(unitId, pdu, 3, dataLen);
+        } catch (RuntimeException e) {
+            ingestMetrics.parseError(IngestMetrics.REASON_DECODE);
+            frameFlightRecorder.dump("解码失败 unitId=" + unitId + ": " + e.getMessage());
+            throw e;
+        }
 
-        long tAfterDecode = System.currentTimeMillis();
-        log.info("E2E[入队/出队] txId={}, decodeCostMs={}", transactionId, (tAfterDecode - tStart));
+        long tAfterDecode = System.nanoTime();
+        ingestMetrics.recordDecode(tAfterDecode - tStart);
+        decodedEvent.end();
+        if (decodedEvent.shouldCommit()) {
+            int values = 0;
+            for (List<Long> v : decoded.values()) {
+                values += v.size();
+            }
+            decodedEvent.txId = transactionId;
+            decodedEvent.unitId = unitId;
+            decodedEvent.dataLen = dataLen;
+            decodedEvent.typeCount = decoded.size();
+            decodedEvent.valueCount = values;
+            decodedEvent.commit();
+        }
+        boolean trace = log.isDebugEnabled() && logSampler.sample();
+        if (trace) {
+            log.debug("E2E[解码完成] txId={}, decodeCostUs={}", transactionId, (tAfterDecode - tStart) / 1000);
+        }
 
         try {
             handleAlarmAndNotify(decoded, unitId);
         } catch (Exception e) {
-            System.err.println("报警处理/上报异常: " + e.getMessage());
+            log.error("报警处理/上报异常: unitId={}, err={}", unitId, e.getMessage());
         }
 
-        long tBeforeDb = System.currentTimeMillis();
-        log.info("E2E[开始写DB] txId={}, waitBeforeDbMs={}", transactionId, (tBeforeDb - tAfterDecode));
+        long tBeforeDb = System.nanoTime();
+        ingestMetrics.recordAlarm(tBeforeDb - tAfterDecode);
 
         try {
-            routeToDb(decoded);
+            routeToDb(unitId, decoded, ackNanos);
         } catch (Exception e) {
-            System.err.println("解析/入库过程发生异常: " + e.getMessage());
+            log.error("解析/入库过程发生异常: unitId={}, err={}", unitId, e.getMessage());
+            frameFlightRecorder.dump("入库异常 unitId=" + unitId + ": " + e.getMessage());
         }
 
-        long tAfterDb = System.currentTimeMillis();
-        log.info("E2E[写完DB] txId={}, dbCostMs={}, totalCostMs={}", transactionId, (tAfterDb - tBeforeDb), (tAfterDb - tStart));
+        if (trace) {
+            long tAfterDb = System.nanoTime();
+            log.debug("E2E[写完DB] txId={}, alarmCostUs={}, dbCostUs={}, totalCostUs={}", transactionId,
+                    (tBeforeDb - tAfterDecode) / 1000, (tAfterDb - tBeforeDb) / 1000, (tAfterDb - tStart) / 1000);
+        }
 
 //        try {
 //            processZljcData(decoded);
@@ -212,218 +254,140 @@ public class DataToObj {
     }
 
 
-    // 数据解析
-    private Map<Integer, List<Long>> parseDataSegments(byte[] pdu, int offset, int dataLen) {
-        final int end = offset + dataLen;
-        Map<Integer, List<Long>> out = new HashMap<>();
+    /**
+     * 已解码数据的报警与入库（网关帧解析后、PLC 直采轮询后共用）
+     *
+     * @param unitId  网关号（直采时为映射中配置的 unitId）
+     * @param decoded Map&lt;typeId, List&lt;Long&gt;&gt;，与 parseDataSegments 输出格式一致
+     */
+    public void handleDecoded(int unitId, Map<Integer, List<Long>> decoded) {
+        try {
+            handleAlarmAndNotify(decoded, unitId);
+        } catch (Exception e) {
+            log.error("报警处理/上报异常: unitId={}, err={}", unitId, e.getMessage());
+        }
+        try {
+            routeToDb(unitId, decoded, System.nanoTime());
+        } catch (Exception e) {
+            log.error("解析/入库过程发生异常: unitId={}, err={}", unitId, e.getMessage());
+        }
+    }
 
-        while (offset < end) {
-            if (offset + 2 > end) break; // [typeId][count]
-            int typeId = pdu[offset++] & 0xFF;
-            int count  = pdu[offset++] & 0xFF;
+    // 非法帧：计数并输出飞行记录器后返回待抛出的异常
+    private IllegalArgumentException frameError(String reason, String message) {
+        ingestMetrics.parseError(reason);
+        frameFlightRecorder.dump(message);
+        return new IllegalArgumentException(message);
+    }
 
-            List<Long> values = out.computeIfAbsent(typeId, k -> new ArrayList<>());
+    // 数据解析：按网关固件版本的分发表一遍扫描
+    private Map<Integer, List<Long>> parseDataSegments(int unitId, byte[] pdu, int offset, int dataLen) {
+        Map<Integer, List<Long>> out = protocolSchemaService.table(unitId).decode(pdu, offset, dataLen);
+        // 解析结果仅在 qmx.frame 开启 DEBUG 且抽中时序列化输出（JSON 格式；失败则使用 toString），未抽中的帧不做序列化
+        if (frameLog.isDebugEnabled() && frameLogSampler.sample()) {
+            try {
+                frameLog.debug("parseDataSegments 解析结果: unitId={}, {}", unitId, objectMapper.writeValueAsString(out));
+            } catch (com.fasterxml.jackson.core.JsonProcessingException e) {
+                frameLog.debug("parseDataSegments 解析结果: unitId={}, {}", unitId, out);
+            }
+        }
+        return out;
+    }
 
-            switch (typeId) {
-                case 0x00: { // 报警信息
-                    int bitBytes = (count + 7) / 8;
-                    if (offset + bitBytes > end) { offset = end; break; }
-                    for (int i = 0; i < count; i++) {
-                        int bIndex = i / 8;
-                        int bitIndex = i % 8; // 低位开始
-                        int bit = (pdu[offset + bIndex] >> bitIndex) & 0x01;
-                        values.add((long) bit);
-                    }
-                    offset += bitBytes;
-                    break;
-                }
-                case 0x01: { // 设备状态
-                    if (offset + count > end) { offset = end; break; }
-                    for (int i = 0; i < count; i++) {
-                        values.add((long) (pdu[offset + i] & 0xFF));
+    // 按分发表的入库目标把各数据段转换为对应表的记录，交由 IngestWriter 写入（点位名称与换算见 protocol-schema.json）
+    private void routeToDb(int unitId, Map<Integer, List<Long>> decoded, long ackNanos) {
+        ProtocolDispatchTable table = protocolSchemaService.table(unitId);
+        latestValueCache.frameReceived(unitId);
+        java.time.LocalDateTime now = java.time.LocalDateTime.now();
+        IngestWriter.FrameRows rows = new IngestWriter.FrameRows(unitId, ackNanos);
+
+        for (Map.Entry<Integer, List<Long>> e : decoded.entrySet()) {
+            ProtocolDispatchTable.TypeEntry type = table.type(e.getKey());
+            if (type == null) {
+                continue;
+            }
+            List<Long> values = e.getValue();
+            switch (type.getTarget()) {
+                case ProtocolDispatchTable.TARGET_DEVICE_STATUS:
+                    for (int idx = 0; idx < values.size(); idx++) {
+                        String devName = type.name(idx);
+                        if (devName == null || values.get(idx) == null) {
+                            continue;
+                        }
+                        DeviceStatus ds = new DeviceStatus();
+                        ds.setUnitId(unitId);
+                        ds.setDevName(devName);
+                        ds.setStatus((int) type.value(idx, values.get(idx)));
+                        ds.setTime(now);
+                        rows.add(ds);
                     }
-                    offset += count;
                     break;
-                }
-                case 0x02: { // 传感器
-                    int need = count * 4;
-                    if (offset + need > end) { offset = end; break; }
-                    for (int i = 0; i < count; i++) {
-                        int bits = ((pdu[offset] & 0xFF) << 24)
-                                 | ((pdu[offset + 1] & 0xFF) << 16)
-                                 | ((pdu[offset + 2] & 0xFF) << 8)
-                                 | (pdu[offset + 3] & 0xFF);
-                        values.add((long) bits); // 保存浮点的原始位模式
-                        offset += 4;
+                case ProtocolDispatchTable.TARGET_SENSOR:
+                    for (int idx = 0; idx < values.size(); idx++) {
+                        String devName = type.name(idx);
+                        if (devName == null || values.get(idx) == null) {
+                            continue;
+                        }
+                        Sensor s = new Sensor();
+                        s.setUnitId(unitId);
+                        s.setDevName(devName);
+                        s.setValue((float) type.value(idx, values.get(idx)));
+                        s.setTime(now);
+                        rows.add(s);
                     }
                     break;
-                }
-                case 0x03: { // 喷涂记录
-                    int need = count * 2;
-                    if (offset + need > end) { offset = end; break; }
-                    for (int i = 0; i < count; i++) {
-                        int v = ((pdu[offset] & 0xFF) << 8) | (pdu[offset + 1] & 0xFF);
-                        values.add((long) v);
-                        offset += 2;
+                case ProtocolDispatchTable.TARGET_SPRAY_RECORD:
+                    for (int idx = 0; idx < values.size(); idx++) {
+                        String devName = type.name(idx);
+                        if (devName == null || values.get(idx) == null) {
+                            continue;
+                        }
+                        SprayRecord sr = new SprayRecord();
+                        sr.setUnitId(unitId);
+                        sr.setDevName(devName);
+                        sr.setRate(type.value(idx, values.get(idx)));
+                        sr.setTime(now);
+                        rows.add(sr);
                     }
                     break;
-                }
-                case 0x04: { // 喷涂产量
-                    int need = count * 2;
-                    if (offset + need > end) { offset = end; break; }
-                    for (int i = 0; i < count; i++) {
-                        int v = ((pdu[offset] & 0xFF) << 8) | (pdu[offset + 1] & 0xFF);
-                        values.add((long) v);
-                        offset += 2;
+                case ProtocolDispatchTable.TARGET_CONTROL_PARAM:
+                    for (int idx = 0; idx < values.size(); idx++) {
+                        String name = type.name(idx);
+                        if (name == null || values.get(idx) == null) {
+                            continue;
+                        }
+                        ControlParameter cp = new ControlParameter();
+                        cp.setUnitId(unitId);
+                        cp.setName(name);
+                        cp.setValue(type.value(idx, values.get(idx)));
+                        cp.setTime(now);
+                        rows.add(cp);
                     }
                     break;
-                }
-                case 0x05: { // 控制参数（固定14个字段，按顺序：3个char，1个int16，10个float32）
-                    int expectedCount = 14;
-                    int need = 3 * 1 + 1 * 2 + 10 * 4;
-                    if (count != expectedCount || offset + need > end) {
-                        offset = end;
-                        break;
-                    }
-                    for (int i = 0; i < 3; i++) {
-                        int v = pdu[offset] & 0xFF;
-                        values.add((long) v);
-                        offset += 1;
-                    }
-                    int iv = ((pdu[offset] & 0xFF) << 8) | (pdu[offset + 1] & 0xFF);
-                    if ((iv & 0x8000) != 0) {
-                        iv |= 0xFFFF0000;
-                    }
-                    values.add((long) iv);
-                    offset += 2;
-                    for (int i = 0; i < 10; i++) {
-                        int bits = ((pdu[offset] & 0xFF) << 24)
-                                 | ((pdu[offset + 1] & 0xFF) << 16)
-                                 | ((pdu[offset + 2] & 0xFF) << 8)
-                                 | (pdu[offset + 3] & 0xFF);
-                        values.add((long) bits);
-                        offset += 4;
-                    }
+                case ProtocolDispatchTable.TARGET_PRODUCTION:
+                    addProduction(rows, unitId, values, now);
                     break;
-                }
-                // case 0x06: { // 运动参数
-                //     int need = count * 4;
-                //     if (offset + need > end) { offset = end; break; }
-                //     for (int i = 0; i < count; i++) {
-                //         long v = ((long)(pdu[offset] & 0xFF) << 24)
-                //                | ((long)(pdu[offset + 1] & 0xFF) << 16)
-                //                | ((long)(pdu[offset + 2] & 0xFF) << 8)
-                //                | ((long)(pdu[offset + 3] & 0xFF));
-                //         values.add(v);
-                //         offset += 4;
-                //     }
-                //     break;
-                // }
-                default: {
-
-                    offset = end;
+                default:
+                    // 报警位在 handleAlarmAndNotify 中处理
                     break;
-                }
             }
         }
-        // 在返回前打印解析后的数据（JSON 格式；失败则使用 toString）
-        try {
-            System.out.println("parseDataSegments 解析结果: " + objectMapper.writeValueAsString(out));
-        } catch (com.fasterxml.jackson.core.JsonProcessingException e) {
-            System.out.println("parseDataSegments 解析结果: " + out);
-        }
-        return out;
-    }
-
-    // 0x01 设备状态
-    private void routeToDb(Map<Integer, List<Long>> decoded) {
-        List<Long> deviceStatus = decoded.getOrDefault(0x01, Collections.emptyList());
-        List<Long> sensors      = decoded.getOrDefault(0x02, Collections.emptyList());
-        List<Long> paintRecord  = decoded.getOrDefault(0x03, Collections.emptyList());
-        List<Long> production   = decoded.getOrDefault(0x04, Collections.emptyList());
-        List<Long> controlParams = decoded.getOrDefault(0x05, Collections.emptyList());
-
-        String[] statusDevNames = new String[]{
-                "停止器1", "停止器2", "锁定机构1", "锁定机构2", "喷枪1", "喷枪2", 
-                "喷涂管路1压力", "喷涂管路2压力", "清洗泵压力", "进气源压力",
-                "搅拌器1", "搅拌器2", "现场运行模式",
-                // "备用",
-                "进料门", "出料门", "现场运行状态",  "机器人1", "机器人2",
-                "涂料桶1是否可用", "涂料桶2是否可用"
-        };
-        java.time.LocalDateTime now = java.time.LocalDateTime.now();
-        List<DeviceStatus> deviceStatusEntities = new ArrayList<>(deviceStatus.size());
-        for (int idx = 0; idx < deviceStatus.size(); idx++) {
-            int status = deviceStatus.get(idx).intValue();
-            String devName = idx < statusDevNames.length ? statusDevNames[idx] : ("设备" + (idx + 1));
-
-            DeviceStatus ds = new DeviceStatus();
-            ds.setDevName(devName);
-            ds.setStatus(status);
-            ds.setTime(now);
-            deviceStatusEntities.add(ds);
-        }
-        if (!deviceStatusEntities.isEmpty()) {
-            int inserted = deviceStatusMapper.insertBatch(deviceStatusEntities);
-            System.out.println("device_status 批量插入: " + deviceStatusEntities.size() + " 条, 受影响行数=" + inserted);
-        }
-
-        // 0x02 传感器
-        String[] sensorDevNames = new String[]{
-                "涂料桶1液位", "涂料桶2液位", "喷涂管路1压力", "喷涂管路2压力", "清洗泵压力", "进气源压力"
-        };
-        List<Sensor> sensorEntities = new ArrayList<>(sensors.size());
-        for (int idx = 0; idx < sensors.size(); idx++) {
-            long rawBits = sensors.get(idx);
-            float f = Float.intBitsToFloat((int) rawBits);
-            float value = f;
-
-            String devName = idx < sensorDevNames.length ? sensorDevNames[idx] : ("传感器" + (idx + 1));
-
-            Sensor s = new Sensor();
-            s.setDevName(devName);
-            s.setValue(value);
-            s.setTime(now);
-            sensorEntities.add(s);
-        }
-        if (!sensorEntities.isEmpty()) {
-            int inserted = sensorMapper.insertBatch(sensorEntities);
-            System.out.println("sensor 批量插入: " + sensorEntities.size() + " 条, 受影响行数=" + inserted);
-        }
 
-        // 0x03 喷涂情况
-        String[] sprayDevNames = new String[]{
-                "机器人1进度", "机器人2进度", "相机"
-        };
-        List<SprayRecord> sprayEntities = new ArrayList<>(paintRecord.size());
-        for (int idx = 0; idx < paintRecord.size(); idx++) {
-            double rate = paintRecord.get(idx);
-            SprayRecord sr = new SprayRecord();
-            sr.setDevName(sprayDevNames[idx]);
-            sr.setRate(rate);
-            sr.setTime(now);
-            sprayEntities.add(sr);
-        }
-        if (!sprayEntities.isEmpty()) {
-            int inserted = sprayRecordMapper.insertBatch(sprayEntities);
-            System.out.println("spray_record 批量插入: " + sprayEntities.size() + " 条, 受影响行数=" + inserted);
-        }
+        ingestWriter.submit(rows);
+    }
 
+    // 喷涂产量：下标 0-23 为当天各小时产量，下标 24 起为本周各天产量（周一起）
+    private void addProduction(IngestWriter.FrameRows rows, int unitId, List<Long> production, java.time.LocalDateTime nowTime) {
         if (production.size() >= 24) {
-            java.time.LocalDateTime nowTime = java.time.LocalDateTime.now();
             int hourOfDay = nowTime.getHour();
             int hourlyIndex = hourOfDay;
             int numHourly = production.get(hourlyIndex).intValue();
             if (numHourly != 0) {
                 ProductHourly ph = new ProductHourly();
+                ph.setUnitId(unitId);
                 ph.setNumHourly(numHourly);
                 ph.setTime(nowTime);
-                int n = productHourlyMapper.insert(ph);
-                if (n > 0) {
-                    System.out.println("product_hourly 插入成功: index=" + hourlyIndex + " numHourly=" + numHourly);
-                } else {
-                    System.out.println("product_hourly 插入失败: index=" + hourlyIndex + " numHourly=" + numHourly);
-                }
+                rows.add(ph);
             }
 
 
@@ -433,48 +397,13 @@ public class DataToObj {
                 int numDaily = production.get(dailyIndex).intValue();
                 if (numDaily != 0) {
                     ProductDaily pw = new ProductDaily();
+                    pw.setUnitId(unitId);
                     pw.setNumDaily(numDaily);
                     pw.setTime(nowTime);
-                    int n = productDailyMapper.insert(pw);
-                    if (n > 0) {
-                        System.out.println("product_daily 插入成功(日产量): index=" + dailyIndex + " numDaily=" + numDaily);
-                    } else {
-                        System.out.println("product_daily 插入失败(日产量): index=" + dailyIndex + " numDaily=" + numDaily);
-                    }
+                    rows.add(pw);
                 }
             }
         }
-
-        // 0x05控制参数
-        if (!controlParams.isEmpty()) {
-            String[] names = new String[]{
-                "人工一键清洗", "枪头清洗控制", "供料桶切换",
-                "现场运行控制", "机器人喷涂速度", "定时清洗间隔",
-                "喷涂管路1压力报警阈值", "喷涂管路2压力报警阈值", "清洗泵压力报警阈值",
-                "搅拌器1转速", "搅拌器2转速", "液位传感器1报警阈值", "液位传感器2报警阈值"
-            };
-            List<ControlParameter> controlEntities = new ArrayList<>();
-            for (int idx = 0; idx < names.length && idx < controlParams.size(); idx++) {
-                String name = names[idx];
-                double val;
-                long raw = controlParams.get(idx);
-                if (idx <= 3) {
-                    val = (double) raw;
-                } else {
-                    float f = Float.intBitsToFloat((int) raw);
-                    val = f;
-                }
-                ControlParameter cp = new ControlParameter();
-                cp.setName(name);
-                cp.setValue(val);
-                cp.setTime(now);
-                controlEntities.add(cp);
-            }
-            if (!controlEntities.isEmpty()) {
-                int inserted = controlParameterMapper.insertBatch(controlEntities);
-                System.out.println("control_param 批量插入: " + controlEntities.size() + " 条, 受影响行数=" + inserted);
-            }
-        }
     }
 
 
@@ -557,29 +486,30 @@ public class DataToObj {
      }
 
     private void handleAlarmAndNotify(Map<Integer, List<Long>> decoded, int unitId) {
-        List<Long> alarms = decoded.get(0x00);
-        if (alarms == null || alarms.isEmpty()) {
-            return; // 无报警位
-         }
-    
-         // 收集触发的报警项（按位）
+         // 收集触发的报警项（按位，报警段由协议描述中 target=alarm 的类型决定）
          java.util.List<java.util.Map<String, Object>> alarmItems = new java.util.ArrayList<>();
-         for (int i = 0; i < alarms.size(); i++) {
-             Long bit = alarms.get(i);
-             if (bit != null && bit > 0) {
-                 String device = i < ALARM_DEVICE_NAMES.size()
-                         ? ALARM_DEVICE_NAMES.get(i)
-                         : ("报警设备" + (i + 1));
-                 // 控制台打印
-                 System.out.println("ALARM 触发: " + device + "（index=" + i + "，unitId=" + unitId + "）");
-    
-                java.util.Map<String, Object> item = new java.util.HashMap<>();
-                item.put("device", device);
-                item.put("index", i);
-                item.put("unitId", unitId);
-                String ts = new java.text.SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(new java.util.Date());
-                item.put("timestamp", ts);
-                alarmItems.add(item);
+         for (ProtocolDispatchTable.TypeEntry type : protocolSchemaService.table(unitId).types()) {
+             if (!ProtocolDispatchTable.TARGET_ALARM.equals(type.getTarget())) {
+                 continue;
+             }
+             List<Long> alarms = decoded.get(type.getTypeId());
+             if (alarms == null) {
+                 continue; // 无报警位
+             }
+             for (int i = 0; i < alarms.size(); i++) {
+                 Long bit = alarms.get(i);
+                 if (bit != null && bit > 0) {
+                     String device = type.name(i) != null ? type.name(i) : ("报警设备" + (i + 1));
+                     alarmLog.info("ALARM 触发: {}（index={}，unitId={}）", device, i, unitId);
+
+                     java.util.Map<String, Object> item = new java.util.HashMap<>();
+                     item.put("device", device);
+                     item.put("index", i);
+                     item.put("unitId", unitId);
+                     String ts = new java.text.SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(new java.util.Date());
+                     item.put("timestamp", ts);
+                     alarmItems.add(item);
+                 }
              }
          }
     
@@ -588,6 +518,8 @@ public class DataToObj {
              return;
          }
 
+         AlarmDispatchedEvent dispatched = new AlarmDispatchedEvent();
+         dispatched.begin();
          publishAlarms(alarmItems);
     
          // 如已配置前端接收地址，则立即上报（POST JSON）
@@ -599,13 +531,21 @@ public class DataToObj {
                          new org.springframework.http.HttpEntity<>(alarmItems, headers);
                  org.springframework.http.ResponseEntity<String> resp =
                          restTemplate.postForEntity(alarmNotifyUrl, entity, String.class);
-                 System.out.println("报警上报成功: status=" + (resp != null ? resp.getStatusCodeValue() : "null"));
+                 alarmLog.info("报警上报成功: status={}", resp != null ? resp.getStatusCodeValue() : "null");
+                 dispatched.notifyStatus = resp != null ? resp.getStatusCodeValue() : 0;
              } catch (Exception ex) {
-                 System.err.println("报警上报失败: " + ex.getMessage());
+                 alarmLog.warn("报警上报失败: {}", ex.getMessage());
+                 dispatched.notifyStatus = -1;
              }
          } else {
-             // 未配置上报地址或无 RestTemplate，仅打印
-             System.out.println("报警未上报（未配置 alarm.notify.url 或 RestTemplate 不可用），已在控制台打印触发项。");
+             // 未配置上报地址或无 RestTemplate，仅记录日志
+             alarmLog.debug("报警未上报（未配置 alarm.notify.url 或 RestTemplate 不可用），已在日志中记录触发项。");
+         }
+         dispatched.end();
+         if (dispatched.shouldCommit()) {
+             dispatched.unitId = unitId;
+             dispatched.alarmCount = alarmItems.size();
+             dispatched.commit();
          }
      }
 }
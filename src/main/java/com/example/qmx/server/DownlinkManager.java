@@ -0,0 +1,200 @@
+package com.example.qmx.server;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 下发请求/响应关联
+ * <p>
+ * 1. 为每个下发帧分配唯一事务ID（1-0xFFFF 循环，跳过仍在等待中的ID）
+ * 2. 在途请求登记到 pending 表，超时由单个调度线程统一处理
+ * 3. 接收循环读到网关响应帧时按（连接, 事务ID）完成对应的 CompletableFuture，其他网关碰巧用了相同事务ID的帧不会误完成
+ * 4. 请求记录发出它的连接，某个网关断开时只让该连接上的请求失败
+ * 5. 不等待确认的下发（registerNoWait）同样登记，网关响应帧照常被识别、不会当作采集帧入库，
+ *    只是超时与响应都只记 DEBUG，不产生无人关心的超时告警
+ * 多个配置下发因此可以流水线发送，互不混淆
+ */
+@Service
+public class DownlinkManager {
+
+    private static final Logger log = LoggerFactory.getLogger(DownlinkManager.class);
+
+    @Value("${downlink.ack-timeout-ms:3000}")
+    private long ackTimeoutMs;
+
+    private final AtomicInteger nextTxId = new AtomicInteger(1);
+
+    private final Map<Integer, PendingRequest> pending = new ConcurrentHashMap<>();
+
+    private final ScheduledExecutorService timeoutScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "downlink-timeout");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private static class PendingRequest {
+        final int txId;
+        final String description;
+        final long sentAt;
+        // 发出该请求的连接（GatewayWriter），为 null 时不随连接断开而失败
+        final Object owner;
+        // 调用方不等待确认
+        final boolean noWait;
+        final CompletableFuture<byte[]> future = new CompletableFuture<>();
+        volatile ScheduledFuture<?> timeoutTask;
+
+        PendingRequest(int txId, String description, Object owner, boolean noWait) {
+            this.txId = txId;
+            this.description = description;
+            this.owner = owner;
+            this.noWait = noWait;
+            this.sentAt = System.currentTimeMillis();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        timeoutScheduler.shutdownNow();
+        failAll(new IllegalStateException("服务关闭，下发请求取消"));
+    }
+
+    /**
+     * 分配一个当前未在途的事务ID（1-0xFFFF）
+     */
+    public int allocateTxId() {
+        for (int i = 0; i < 0xFFFF; i++) {
+            int txId = nextTxId.getAndIncrement() & 0xFFFF;
+            if (txId != 0 && !pending.containsKey(txId)) {
+                return txId;
+            }
+        }
+        throw new IllegalStateException("在途下发请求过多，无可用事务ID");
+    }
+
+    /**
+     * 登记在途请求，返回在收到响应帧时完成（PDU）或超时异常完成的 Future
+     */
+    public CompletableFuture<byte[]> register(int txId, String description) {
+        return register(txId, description, ackTimeoutMs, null);
+    }
+
+    /**
+     * 登记经由某个网关连接发出的请求，连接断开时由 failOwner 统一失败
+     */
+    public CompletableFuture<byte[]> register(int txId, String description, Object owner) {
+        return register(txId, description, ackTimeoutMs, owner);
+    }
+
+    public CompletableFuture<byte[]> register(int txId, String description, long timeoutMs) {
+        return register(txId, description, timeoutMs, null);
+    }
+
+    public CompletableFuture<byte[]> register(int txId, String description, long timeoutMs, Object owner) {
+        return register(txId, description, timeoutMs, owner, false);
+    }
+
+    /**
+     * 登记不等待确认的下发：响应帧仍按事务ID消费，超时只记 DEBUG
+     */
+    public CompletableFuture<byte[]> registerNoWait(int txId, String description, Object owner) {
+        return register(txId, description, ackTimeoutMs, owner, true);
+    }
+
+    private CompletableFuture<byte[]> register(int txId, String description, long timeoutMs, Object owner, boolean noWait) {
+        PendingRequest req = new PendingRequest(txId, description, owner, noWait);
+        PendingRequest prev = pending.put(txId, req);
+        if (prev != null) {
+            prev.future.completeExceptionally(new IllegalStateException("事务ID被复用: " + txId));
+        }
+        req.timeoutTask = timeoutScheduler.schedule(() -> {
+            if (pending.remove(txId, req)) {
+                if (noWait) {
+                    log.debug("未等待确认的下发在 {}ms 内无网关响应: txId={}, {}", timeoutMs, txId, description);
+                } else {
+                    log.warn("下发请求等待网关响应超时: txId={}, {}, timeoutMs={}", txId, description, timeoutMs);
+                }
+                req.future.completeExceptionally(new TimeoutException("等待网关响应超时, txId=" + txId));
+            }
+        }, timeoutMs, TimeUnit.MILLISECONDS);
+        return req.future;
+    }
+
+    /**
+     * 接收循环收到非采集帧时调用，按事务ID匹配在途请求；请求登记了发出连接时只接受同一连接上的响应
+     *
+     * @param owner 收到该帧的连接（GatewayWriter）
+     * @return true 表示该帧是某个下发请求的响应
+     */
+    public boolean complete(int txId, Object owner, byte[] responsePdu) {
+        PendingRequest req = pending.get(txId);
+        if (req == null || (req.owner != null && req.owner != owner) || !pending.remove(txId, req)) {
+            return false;
+        }
+        ScheduledFuture<?> t = req.timeoutTask;
+        if (t != null) {
+            t.cancel(false);
+        }
+        if (req.noWait) {
+            log.debug("收到网关下发响应: txId={}, {}, rttMs={}", txId, req.description, System.currentTimeMillis() - req.sentAt);
+        } else {
+            log.info("收到网关下发响应: txId={}, {}, rttMs={}", txId, req.description, System.currentTimeMillis() - req.sentAt);
+        }
+        req.future.complete(responsePdu);
+        return true;
+    }
+
+    /**
+     * 发送失败时取消登记
+     */
+    public void fail(int txId, Throwable cause) {
+        PendingRequest req = pending.remove(txId);
+        if (req != null) {
+            ScheduledFuture<?> t = req.timeoutTask;
+            if (t != null) {
+                t.cancel(false);
+            }
+            req.future.completeExceptionally(cause);
+        }
+    }
+
+    /**
+     * 连接断开时让所有在途请求失败
+     */
+    public void failAll(Throwable cause) {
+        for (Integer txId : pending.keySet()) {
+            fail(txId, cause);
+        }
+    }
+
+    /**
+     * 某个网关连接断开时让经由它发出的在途请求失败，其他网关的请求不受影响
+     */
+    public void failOwner(Object owner, Throwable cause) {
+        for (PendingRequest req : pending.values()) {
+            if (req.owner == owner) {
+                fail(req.txId, cause);
+            }
+        }
+    }
+
+    public boolean isPending(int txId) {
+        return pending.containsKey(txId);
+    }
+
+    public int getPendingCount() {
+        return pending.size();
+    }
+}
@@ -0,0 +1,108 @@
+package com.example.qmx.server;
+
+import com.example.qmx.utils.FrameCaptureLog;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 网关上行原始帧抓包
+ * <p>
+ * 开启后 DataServer 收到的每一帧（MBAP+PDU）连同接收时间写入 FrameCaptureLog，
+ * 离线可用 tools.FrameReplayer 按原速、N 倍速或最大速度回放到接收端口
+ * 写抓包失败只记日志，不影响正常接收；换段失败期间丢弃的帧数与最近错误见 status() 与 qmx.capture.* 指标
+ */
+@Service
+public class FrameCaptureService {
+
+    private static final Logger log = LoggerFactory.getLogger(FrameCaptureService.class);
+
+    @Value("${capture.enabled:false}")
+    private boolean enabled;
+
+    @Value("${capture.dir:capture}")
+    private String dir;
+
+    @Value("${capture.segment-size-mb:64}")
+    private int segmentSizeMb;
+
+    @Value("${capture.max-segments:16}")
+    private int maxSegments;
+
+    @Autowired
+    private IngestMetrics ingestMetrics;
+
+    private volatile FrameCaptureLog captureLog;
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        ingestMetrics.gauge("qmx.capture.dropped", "抓包换段失败期间丢弃的帧数", () -> {
+            FrameCaptureLog l = captureLog;
+            return l != null ? l.getDroppedFrames() : 0;
+        });
+        ingestMetrics.gauge("qmx.capture.failing", "抓包当前无可写段（换段失败，等待重试）为 1", () -> {
+            FrameCaptureLog l = captureLog;
+            return l != null && l.isFailing() ? 1 : 0;
+        });
+        try {
+            captureLog = new FrameCaptureLog(Paths.get(dir), segmentSizeMb * 1024 * 1024, maxSegments);
+            log.info("网关帧抓包已开启: dir={}, 段大小={}MB, 最多保留{}段", Paths.get(dir).toAbsolutePath(), segmentSizeMb, maxSegments);
+        } catch (IOException e) {
+            log.error("网关帧抓包启动失败: {}", e.getMessage());
+        }
+    }
+
+    public void capture(byte[] mbap, byte[] pdu) {
+        FrameCaptureLog l = captureLog;
+        if (l == null) {
+            return;
+        }
+        try {
+            l.append(System.currentTimeMillis(), mbap, pdu);
+        } catch (IOException e) {
+            log.warn("写抓包日志失败: {}", e.getMessage());
+        }
+    }
+
+    public Map<String, Object> status() {
+        Map<String, Object> out = new LinkedHashMap<>();
+        FrameCaptureLog l = captureLog;
+        out.put("enabled", l != null);
+        if (l != null) {
+            out.put("frames", l.getFrames());
+            Path segment = l.getCurrentSegment();
+            out.put("segment", segment != null ? segment.toString() : null);
+            out.put("healthy", !l.isFailing());
+            out.put("droppedFrames", l.getDroppedFrames());
+            out.put("rotateFailures", l.getRotateFailures());
+            out.put("lastError", l.getLastError());
+        }
+        return out;
+    }
+
+    @PreDestroy
+    public void stop() {
+        FrameCaptureLog l = captureLog;
+        captureLog = null;
+        if (l != null) {
+            try {
+                l.close();
+            } catch (IOException e) {
+                log.warn("关闭抓包日志失败: {}", e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.example.qmx.server;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+/**
+ * 最近 N 帧的环形缓冲（飞行记录器）
+ * <p>
+ * 接收线程每读完一帧就拷贝进预分配的槽位，平时不输出任何内容；
+ * 解析失败、入库异常等错误发生时把缓冲中的帧按时间顺序以十六进制输出到 qmx.flight，
+ * 便于还原出错前网关发来的原始数据。两次输出之间至少间隔 dump-interval-ms，避免错误风暴刷屏
+ */
+@Service
+public class FrameFlightRecorder {
+
+    private static final Logger log = LoggerFactory.getLogger("qmx.flight");
+
+    @Value("${flight-recorder.enabled:true}")
+    private boolean enabled;
+
+    @Value("${flight-recorder.frames:64}")
+    private int capacity;
+
+    @Value("${flight-recorder.dump-interval-ms:10000}")
+    private long dumpIntervalMs;
+
+    private Slot[] slots;
+    private long next;
+    private long lastDumpAt;
+
+    private static final class Slot {
+        long timeMillis;
+        int unitId;
+        byte[] bytes = new byte[320];
+        int length;
+    }
+
+    @PostConstruct
+    public void init() {
+        slots = new Slot[Math.max(1, capacity)];
+        for (int i = 0; i < slots.length; i++) {
+            slots[i] = new Slot();
+        }
+    }
+
+    /**
+     * 记录一帧（MBAP + PDU），槽位容量不足时扩容一次后复用
+     */
+    public void record(byte[] mbap, byte[] pdu) {
+        if (!enabled) {
+            return;
+        }
+        int len = mbap.length + pdu.length;
+        synchronized (this) {
+            Slot s = slots[(int) (next++ % slots.length)];
+            if (s.bytes.length < len) {
+                s.bytes = new byte[len];
+            }
+            System.arraycopy(mbap, 0, s.bytes, 0, mbap.length);
+            System.arraycopy(pdu, 0, s.bytes, mbap.length, pdu.length);
+            s.length = len;
+            s.unitId = mbap.length > 6 ? mbap[6] & 0xFF : -1;
+            s.timeMillis = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * 输出缓冲中的全部帧（受最小间隔限制），返回输出的帧数
+     */
+    public int dump(String reason) {
+        if (!enabled) {
+            return 0;
+        }
+        StringBuilder sb = new StringBuilder();
+        int count;
+        synchronized (this) {
+            long now = System.currentTimeMillis();
+            if (lastDumpAt != 0 && now - lastDumpAt < dumpIntervalMs) {
+                return 0;
+            }
+            lastDumpAt = now;
+            long first = Math.max(0, next - slots.length);
+            count = (int) (next - first);
+            SimpleDateFormat fmt = new SimpleDateFormat("HH:mm:ss.SSS");
+            for (long i = first; i < next; i++) {
+                Slot s = slots[(int) (i % slots.length)];
+                sb.append('\n').append(fmt.format(new Date(s.timeMillis)))
+                        .append(" unitId=").append(s.unitId)
+                        .append(" len=").append(s.length).append(' ');
+                appendHex(sb, s.bytes, s.length);
+            }
+        }
+        log.error("飞行记录器输出最近 {} 帧，原因: {}{}", count, reason, sb);
+        return count;
+    }
+
+    private static void appendHex(StringBuilder sb, byte[] b, int len) {
+        final char[] digits = "0123456789ABCDEF".toCharArray();
+        for (int i = 0; i < len; i++) {
+            sb.append(digits[(b[i] >> 4) & 0xF]).append(digits[b[i] & 0xF]);
+        }
+    }
+}
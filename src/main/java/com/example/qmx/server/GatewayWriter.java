@@ -0,0 +1,495 @@
+package com.example.qmx.server;
+
+import com.example.qmx.jfr.DownlinkSentEvent;
+import com.example.qmx.utils.VirtualThreads;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 单个网关连接的下行写队列
+ * <p>
+ * 所有写往网关的帧（ACK、参数下发、自定义帧）都只入队，由每个连接唯一的写线程发送：
+ * 1. ACK 帧优先于下发帧；下发帧（含参数下发）按入队顺序写出
+ * 2. 一次取出多帧拼接后单次 write，减少系统调用与小包
+ * 3. 尚未发出的参数下发按 (unitId, 功能码, dataId) 合并，同一 dataId 只发最新值；
+ *    合并后的帧移到队尾（即最近一次入队的位置），不会越过在它之前入队的下发帧；
+ *    被后来请求覆盖的 dataId 记在各调用方的 {@link ConfigAck#getSuperseded()} 中，调用方据此只记录实际下发的值
+ * 4. 关闭后或下发队列已满时的入队请求直接拒绝：下发帧对应的在途请求立即失败
+ * HTTP 线程与接收线程不再直接竞争 socket 输出流
+ */
+public class GatewayWriter {
+
+    private static final Logger log = LoggerFactory.getLogger(GatewayWriter.class);
+
+    /**
+     * 单次拼接写出的最大字节数
+     */
+    private static final int MAX_BATCH_BYTES = 64 * 1024;
+
+    /**
+     * 下发队列默认容量（帧数，合并中的参数下发算一帧）
+     */
+    public static final int DEFAULT_QUEUE_CAPACITY = 1024;
+
+    private static final DownlinkSentEvent DOWNLINK_PROBE = new DownlinkSentEvent();
+    private static final DownlinkSentEvent[] NO_EVENTS = new DownlinkSentEvent[0];
+
+    private final Socket socket;
+    private final OutputStream out;
+    private final String name;
+    private final DataResponse dataResponse;
+    private final DownlinkManager downlinkManager;
+    private final IngestMetrics ingestMetrics;
+    private final int queueCapacity;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+
+    private final ArrayDeque<AckFrame> ackQueue = new ArrayDeque<>();
+    // 下发队列：OutboundFrame 或尚未组帧的 PendingConfig，按入队顺序
+    private final ArrayDeque<Object> bulkQueue = new ArrayDeque<>();
+    // 仍在 bulkQueue 中、可继续合并的参数下发
+    private final Map<ConfigKey, PendingConfig> pendingConfigs = new HashMap<>();
+
+    private final Thread writerThread;
+    private volatile boolean running = true;
+
+    /**
+     * ACK 帧及其入队时刻（System.nanoTime），写出后统计排队+发送耗时
+     */
+    private static class AckFrame {
+        final byte[] frame;
+        final long enqueuedNanos;
+
+        AckFrame(byte[] frame, long enqueuedNanos) {
+            this.frame = frame;
+            this.enqueuedNanos = enqueuedNanos;
+        }
+    }
+
+    /**
+     * 已组好帧、不参与合并的下发帧（txId 用于发送失败时通知 DownlinkManager）
+     */
+    private static class OutboundFrame {
+        final int txId;
+        final byte[] frame;
+
+        OutboundFrame(int txId, byte[] frame) {
+            this.txId = txId;
+            this.frame = frame;
+        }
+    }
+
+    private static class ConfigKey {
+        final int unitId;
+        final int functionCode;
+
+        ConfigKey(int unitId, int functionCode) {
+            this.unitId = unitId;
+            this.functionCode = functionCode;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof ConfigKey)) {
+                return false;
+            }
+            ConfigKey k = (ConfigKey) o;
+            return unitId == k.unitId && functionCode == k.functionCode;
+        }
+
+        @Override
+        public int hashCode() {
+            return unitId * 31 + functionCode;
+        }
+    }
+
+    /**
+     * 参数下发结果：网关确认帧 PDU，以及本次请求中被后来请求覆盖、实际未按本次的值下发的 dataId
+     */
+    public static class ConfigAck {
+        private final byte[] pdu;
+        private final Set<Integer> superseded;
+
+        ConfigAck(byte[] pdu, Set<Integer> superseded) {
+            this.pdu = pdu;
+            this.superseded = superseded;
+        }
+
+        public byte[] getPdu() {
+            return pdu;
+        }
+
+        public Set<Integer> getSuperseded() {
+            return superseded;
+        }
+
+        public boolean isSuperseded(int dataId) {
+            return superseded.contains(dataId);
+        }
+    }
+
+    /**
+     * 等待某次参数下发结果的调用方
+     */
+    private static class ConfigWaiter {
+        final CompletableFuture<ConfigAck> future = new CompletableFuture<>();
+        final Set<Integer> dataIds = new HashSet<>();
+        final Set<Integer> superseded = new HashSet<>();
+    }
+
+    /**
+     * 待发送的参数项：dataId -> 最新值，以及等待这次下发结果的调用方
+     */
+    private static class PendingConfig {
+        final ConfigKey key;
+        final Map<Integer, DataResponse.ConfigItem> items = new LinkedHashMap<>();
+        final List<ConfigWaiter> waiters = new ArrayList<>();
+        // 合并进来的请求中有调用方等待确认
+        boolean awaited;
+
+        PendingConfig(ConfigKey key) {
+            this.key = key;
+        }
+    }
+
+    public GatewayWriter(Socket socket, DataResponse dataResponse, DownlinkManager downlinkManager) throws IOException {
+        this(socket, dataResponse, downlinkManager, null);
+    }
+
+    /**
+     * @param ingestMetrics 可为 null（不统计 ACK 发送耗时）
+     */
+    public GatewayWriter(Socket socket, DataResponse dataResponse, DownlinkManager downlinkManager,
+                         IngestMetrics ingestMetrics) throws IOException {
+        this(socket, dataResponse, downlinkManager, ingestMetrics, false);
+    }
+
+    /**
+     * @param virtualThread 写线程使用虚拟线程（Java 21 以下退回平台线程）
+     */
+    public GatewayWriter(Socket socket, DataResponse dataResponse, DownlinkManager downlinkManager,
+                         IngestMetrics ingestMetrics, boolean virtualThread) throws IOException {
+        this(socket, dataResponse, downlinkManager, ingestMetrics, virtualThread, DEFAULT_QUEUE_CAPACITY);
+    }
+
+    /**
+     * @param queueCapacity 下发队列容量，队列满时拒绝新的下发
+     */
+    public GatewayWriter(Socket socket, DataResponse dataResponse, DownlinkManager downlinkManager,
+                         IngestMetrics ingestMetrics, boolean virtualThread, int queueCapacity) throws IOException {
+        this.socket = socket;
+        this.queueCapacity = Math.max(1, queueCapacity);
+        this.out = socket.getOutputStream();
+        this.name = socket.getInetAddress().getHostAddress() + ":" + socket.getPort();
+        this.dataResponse = dataResponse;
+        this.downlinkManager = downlinkManager;
+        this.ingestMetrics = ingestMetrics;
+        this.writerThread = VirtualThreads.start("gateway-writer-" + name, virtualThread, this::writeLoop);
+    }
+
+    /**
+     * ACK 帧入队（优先发送）
+     *
+     * @return false 表示写队列已关闭，未入队
+     */
+    public boolean enqueueAck(byte[] frame) {
+        lock.lock();
+        try {
+            if (!running) {
+                log.debug("网关写队列已关闭，丢弃 ACK: gateway={}", name);
+                return false;
+            }
+            ackQueue.addLast(new AckFrame(frame, System.nanoTime()));
+            notEmpty.signal();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 已组好的下发帧入队（不合并）
+     *
+     * @return false 表示写队列已关闭或已满，未入队，txId 对应的在途请求已失败
+     */
+    public boolean enqueueFrame(int txId, byte[] frame) {
+        IOException rejected;
+        lock.lock();
+        try {
+            rejected = rejection();
+            if (rejected == null) {
+                bulkQueue.addLast(new OutboundFrame(txId, frame));
+                notEmpty.signal();
+                return true;
+            }
+        } finally {
+            lock.unlock();
+        }
+        downlinkManager.fail(txId, rejected);
+        return false;
+    }
+
+    // 调用方需持有 lock；可入队时返回 null
+    private IOException rejection() {
+        if (!running) {
+            return new IOException("网关写队列已关闭: " + name);
+        }
+        if (bulkQueue.size() >= queueCapacity) {
+            log.warn("网关下发队列已满，拒绝下发: gateway={}, capacity={}", name, queueCapacity);
+            return new IOException("网关下发队列已满: " + name);
+        }
+        return null;
+    }
+
+    /**
+     * 参数项入队，与尚未发出的同 dataId 项合并
+     *
+     * @return 实际发出的（可能已合并的）下发帧收到网关响应时完成，返回响应 PDU 与被覆盖的 dataId
+     */
+    public CompletableFuture<ConfigAck> enqueueConfigItems(int unitId, int functionCode, List<DataResponse.ConfigItem> items) {
+        return enqueueConfigItems(unitId, functionCode, items, true);
+    }
+
+    /**
+     * @param awaitAck 调用方是否等待确认；合并后的帧只要有一个请求等待就按正常下发登记，否则确认超时只记 DEBUG
+     */
+    public CompletableFuture<ConfigAck> enqueueConfigItems(int unitId, int functionCode, List<DataResponse.ConfigItem> items,
+                                                           boolean awaitAck) {
+        ConfigWaiter waiter = new ConfigWaiter();
+        lock.lock();
+        try {
+            ConfigKey key = new ConfigKey(unitId, functionCode);
+            PendingConfig pc = pendingConfigs.get(key);
+            IOException rejected = pc == null ? rejection() : running ? null : new IOException("网关写队列已关闭: " + name);
+            if (rejected != null) {
+                waiter.future.completeExceptionally(rejected);
+                return waiter.future;
+            }
+            if (pc == null) {
+                pc = new PendingConfig(key);
+                pendingConfigs.put(key, pc);
+            } else {
+                bulkQueue.remove(pc);
+            }
+            bulkQueue.addLast(pc);
+            for (DataResponse.ConfigItem item : items) {
+                // 之前合并进来的请求中同一 dataId 的值不再下发
+                if (pc.items.containsKey(item.dataId)) {
+                    for (ConfigWaiter w : pc.waiters) {
+                        if (w.dataIds.contains(item.dataId)) {
+                            w.superseded.add(item.dataId);
+                        }
+                    }
+                }
+                // 先删后放，保证合并后按最近一次写入的顺序下发
+                pc.items.remove(item.dataId);
+                pc.items.put(item.dataId, item);
+                waiter.dataIds.add(item.dataId);
+            }
+            pc.waiters.add(waiter);
+            pc.awaited |= awaitAck;
+            notEmpty.signal();
+        } finally {
+            lock.unlock();
+        }
+        return waiter.future;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    public void close() {
+        running = false;
+        writerThread.interrupt();
+        failQueued(new IOException("网关连接已关闭: " + name));
+    }
+
+    private void writeLoop() {
+        List<AckFrame> ackBatch = new ArrayList<>();
+        List<OutboundFrame> frameBatch = new ArrayList<>();
+        while (running) {
+            ackBatch.clear();
+            frameBatch.clear();
+            lock.lock();
+            try {
+                while (running && ackQueue.isEmpty() && bulkQueue.isEmpty()) {
+                    notEmpty.await();
+                }
+                int bytes = 0;
+                while (!ackQueue.isEmpty() && bytes < MAX_BATCH_BYTES) {
+                    AckFrame f = ackQueue.pollFirst();
+                    ackBatch.add(f);
+                    bytes += f.frame.length;
+                }
+                while (!bulkQueue.isEmpty() && bytes < MAX_BATCH_BYTES) {
+                    Object next = bulkQueue.pollFirst();
+                    OutboundFrame f;
+                    if (next instanceof PendingConfig) {
+                        PendingConfig pc = (PendingConfig) next;
+                        pendingConfigs.remove(pc.key);
+                        f = buildConfigFrame(pc.key, pc);
+                    } else {
+                        f = (OutboundFrame) next;
+                    }
+                    if (f != null) {
+                        frameBatch.add(f);
+                        bytes += f.frame.length;
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } finally {
+                lock.unlock();
+            }
+            writeBatch(ackBatch, frameBatch);
+        }
+    }
+
+    /**
+     * 合并后的参数项组成一个 V2 下发帧，并把调用方的 Future 挂到该帧的响应上
+     */
+    private OutboundFrame buildConfigFrame(ConfigKey key, PendingConfig pc) {
+        try {
+            int txId = downlinkManager.allocateTxId();
+            List<DataResponse.ConfigItem> items = new ArrayList<>(pc.items.values());
+            byte[] frame = dataResponse.buildConfigDataFrameV2(txId, key.unitId, key.functionCode, items);
+            String description = "配置下发(V2) itemCount=" + items.size();
+            CompletableFuture<byte[]> ack = pc.awaited
+                    ? downlinkManager.register(txId, description, this)
+                    : downlinkManager.registerNoWait(txId, description, this);
+            ack.whenComplete((pdu, err) -> {
+                for (ConfigWaiter w : pc.waiters) {
+                    if (err != null) {
+                        w.future.completeExceptionally(err);
+                    } else {
+                        w.future.complete(new ConfigAck(pdu, Collections.unmodifiableSet(w.superseded)));
+                    }
+                }
+            });
+            if (pc.waiters.size() > 1) {
+                log.info("配置下发已合并: txId={}, 请求数={}, itemCount={}", txId, pc.waiters.size(), items.size());
+            }
+            return new OutboundFrame(txId, frame);
+        } catch (Exception e) {
+            for (ConfigWaiter w : pc.waiters) {
+                w.future.completeExceptionally(e);
+            }
+            return null;
+        }
+    }
+
+    private void writeBatch(List<AckFrame> ackBatch, List<OutboundFrame> frameBatch) {
+        if (ackBatch.isEmpty() && frameBatch.isEmpty()) {
+            return;
+        }
+        int total = 0;
+        for (AckFrame f : ackBatch) {
+            total += f.frame.length;
+        }
+        for (OutboundFrame f : frameBatch) {
+            total += f.frame.length;
+        }
+        byte[] buf = new byte[total];
+        int p = 0;
+        for (AckFrame f : ackBatch) {
+            System.arraycopy(f.frame, 0, buf, p, f.frame.length);
+            p += f.frame.length;
+        }
+        for (OutboundFrame f : frameBatch) {
+            System.arraycopy(f.frame, 0, buf, p, f.frame.length);
+            p += f.frame.length;
+        }
+        DownlinkSentEvent[] events = downlinkEvents(frameBatch, ackBatch.size());
+        try {
+            out.write(buf);
+            out.flush();
+            for (DownlinkSentEvent event : events) {
+                event.commit();
+            }
+            if (ingestMetrics != null && !ackBatch.isEmpty()) {
+                long now = System.nanoTime();
+                for (AckFrame f : ackBatch) {
+                    ingestMetrics.recordAckSend(now - f.enqueuedNanos);
+                }
+            }
+            if (!frameBatch.isEmpty()) {
+                log.info("已向网关写出: ack={}, 下发帧={}, bytes={}, gateway={}", ackBatch.size(), frameBatch.size(), total, name);
+            }
+        } catch (IOException e) {
+            log.error("向网关写出失败: gateway={}, err={}", name, e.getMessage());
+            for (OutboundFrame f : frameBatch) {
+                downlinkManager.fail(f.txId, e);
+            }
+            running = false;
+            failQueued(e);
+            try {
+                socket.close();
+            } catch (IOException ignore) {
+            }
+        }
+    }
+
+    // 仅在录制开启时为每个下发帧建事件，写出前 begin、flush 后 commit
+    private DownlinkSentEvent[] downlinkEvents(List<OutboundFrame> frameBatch, int acks) {
+        if (frameBatch.isEmpty() || !DOWNLINK_PROBE.isEnabled()) {
+            return NO_EVENTS;
+        }
+        DownlinkSentEvent[] events = new DownlinkSentEvent[frameBatch.size()];
+        for (int i = 0; i < events.length; i++) {
+            byte[] frame = frameBatch.get(i).frame;
+            DownlinkSentEvent event = new DownlinkSentEvent();
+            event.txId = frameBatch.get(i).txId;
+            event.unitId = frame.length > 6 ? frame[6] & 0xFF : -1;
+            event.functionCode = frame.length > 7 ? frame[7] & 0xFF : -1;
+            event.frameBytes = frame.length;
+            event.batchAcks = acks;
+            event.gateway = name;
+            event.begin();
+            events[i] = event;
+        }
+        return events;
+    }
+
+    private void failQueued(Throwable cause) {
+        lock.lock();
+        try {
+            ackQueue.clear();
+            for (Object next : bulkQueue) {
+                if (next instanceof PendingConfig) {
+                    for (ConfigWaiter w : ((PendingConfig) next).waiters) {
+                        w.future.completeExceptionally(cause);
+                    }
+                } else {
+                    downlinkManager.fail(((OutboundFrame) next).txId, cause);
+                }
+            }
+            bulkQueue.clear();
+            pendingConfigs.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+}
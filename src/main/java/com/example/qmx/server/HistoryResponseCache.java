@@ -0,0 +1,181 @@
+package com.example.qmx.server;
+
+import com.example.qmx.domain.ProductDaily;
+import com.example.qmx.domain.ProductHourly;
+import com.example.qmx.mapper.ProductDailyMapper;
+import com.example.qmx.mapper.ProductHourlyMapper;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * 产量历史接口的响应缓存（按入库水位线判定版本）
+ * <p>
+ * 1. 水位线为 product_hourly / product_daily 每个网关最新一行的 id 与时间：IngestWriter 写入成功后推进，
+ *    进程启动后首次访问时从数据库读取一次
+ * 2. ETag 由接口名、网关号、条数与水位线 id 组成，Last-Modified 取水位线时间；
+ *    If-None-Match 命中时直接返回 304，不查库也不序列化
+ * 3. 水位线未变时复用已序列化的响应体；缓存按 LRU 保留 history-cache.max-entries 个接口+网关+条数组合
+ * 集群模式下非本节点负责的网关由其他节点入库，本节点的水位线每隔 history-cache.remote-refresh-ms 回源校验一次
+ */
+@Service
+public class HistoryResponseCache {
+
+    @Autowired
+    private ProductHourlyMapper productHourlyMapper;
+
+    @Autowired
+    private ProductDailyMapper productDailyMapper;
+
+    @Autowired(required = false)
+    private ClusterService clusterService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${history-cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${history-cache.max-entries:256}")
+    private int maxEntries;
+
+    @Value("${history-cache.remote-refresh-ms:5000}")
+    private long remoteRefreshMs;
+
+    /**
+     * 某张表某个网关的入库水位线
+     */
+    public static final class Watermark {
+        public final long id;
+        public final long lastModifiedMillis;
+        final long checkedAtMillis;
+
+        Watermark(long id, long lastModifiedMillis, long checkedAtMillis) {
+            this.id = id;
+            this.lastModifiedMillis = lastModifiedMillis;
+            this.checkedAtMillis = checkedAtMillis;
+        }
+    }
+
+    private static final class CachedBody {
+        final long watermarkId;
+        final byte[] body;
+
+        CachedBody(long watermarkId, byte[] body) {
+            this.watermarkId = watermarkId;
+            this.body = body;
+        }
+    }
+
+    // 表名|网关号 -> 水位线
+    private final Map<String, Watermark> watermarks = new ConcurrentHashMap<>();
+
+    // 接口名|网关号|条数 -> 已序列化响应
+    private final Map<String, CachedBody> entries = new LinkedHashMap<String, CachedBody>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CachedBody> eldest) {
+            return size() > maxEntries;
+        }
+    };
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 入库成功后推进水位线；id 为空（插入失败）时忽略
+     */
+    public void advance(String table, int unitId, Long id, LocalDateTime time) {
+        if (id == null) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        long modified = time != null ? toMillis(time) : now;
+        watermarks.merge(table + "|" + unitId, new Watermark(id, modified, now),
+                (old, w) -> w.id > old.id ? w : old);
+    }
+
+    /**
+     * 当前水位线；本进程尚未见过该网关的写入时从数据库读取最新一行
+     */
+    public Watermark watermark(String table, int unitId) {
+        String key = table + "|" + unitId;
+        Watermark w = watermarks.get(key);
+        long now = System.currentTimeMillis();
+        if (w != null && (clusterService == null || clusterService.isLocal(unitId)
+                || now - w.checkedAtMillis < remoteRefreshMs)) {
+            return w;
+        }
+        Watermark loaded = load(table, unitId, now);
+        watermarks.merge(key, loaded, (old, fresh) -> fresh.id >= old.id ? fresh : old);
+        return watermarks.get(key);
+    }
+
+    private Watermark load(String table, int unitId, long now) {
+        Long id = null;
+        LocalDateTime time = null;
+        if (IngestWriter.TABLE_PRODUCT_HOURLY.equals(table)) {
+            ProductHourly ph = productHourlyMapper.getLatestProductHourly(unitId);
+            if (ph != null) {
+                id = ph.getId();
+                time = ph.getTime();
+            }
+        } else if (IngestWriter.TABLE_PRODUCT_DAILY.equals(table)) {
+            ProductDaily pd = productDailyMapper.getLatestProductDaily(unitId);
+            if (pd != null) {
+                id = pd.getId();
+                time = pd.getTime();
+            }
+        } else {
+            throw new IllegalArgumentException("不支持的表: " + table);
+        }
+        return new Watermark(id != null ? id : 0L, time != null ? toMillis(time) : 0L, now);
+    }
+
+    public String etag(String endpoint, int unitId, int limit, Watermark w) {
+        return "\"" + endpoint + "-" + unitId + "-" + limit + "-" + w.id + "\"";
+    }
+
+    /**
+     * 水位线未变时返回已序列化的响应体，否则调用 loader 查询并序列化后缓存
+     */
+    public byte[] body(String endpoint, int unitId, int limit, Watermark w, Supplier<?> loader) {
+        String key = endpoint + "|" + unitId + "|" + limit;
+        CachedBody e;
+        synchronized (entries) {
+            e = entries.get(key);
+        }
+        if (e != null && e.watermarkId == w.id) {
+            return e.body;
+        }
+        byte[] body = serialize(endpoint, loader.get());
+        synchronized (entries) {
+            CachedBody current = entries.get(key);
+            if (current == null || current.watermarkId <= w.id) {
+                entries.put(key, new CachedBody(w.id, body));
+            }
+        }
+        return body;
+    }
+
+    public byte[] serialize(String endpoint, Object value) {
+        try {
+            return objectMapper.writeValueAsBytes(value);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("历史数据序列化失败: " + endpoint, e);
+        }
+    }
+
+    private static long toMillis(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+}
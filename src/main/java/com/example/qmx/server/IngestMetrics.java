@@ -0,0 +1,125 @@
+package com.example.qmx.server;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * 采集链路指标（Micrometer，经 Actuator 以 /actuator/prometheus 暴露）
+ * <p>
+ * 计时：网络读帧、解码、报警分发、各表写库、ACK 入队到写出 socket、ACK 到入库完成；
+ * 计数：各网关号帧数、解析错误（按原因）、网关重连；分布：帧字节数
+ * 直方图桶与 SLO 由 management.metrics.distribution.* 配置，不在代码中写死
+ */
+@Service
+public class IngestMetrics {
+
+    public static final String REASON_LENGTH = "length";
+    public static final String REASON_PROTOCOL = "protocol";
+    public static final String REASON_DECODE = "decode";
+
+    @Autowired(required = false)
+    private MeterRegistry registry;
+
+    private Timer readTimer;
+    private Timer decodeTimer;
+    private Timer alarmTimer;
+    private Timer ackSendTimer;
+    private Timer commitTimer;
+    private DistributionSummary frameSize;
+
+    private final Map<String, Timer> dbWriteTimers = new ConcurrentHashMap<>();
+    private final Map<Integer, Counter> framesByUnit = new ConcurrentHashMap<>();
+    private final Map<Integer, Counter> reconnectsByUnit = new ConcurrentHashMap<>();
+    private final Map<String, Counter> parseErrors = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        if (registry == null) {
+            // 未引入 Actuator 时（如压测/单测只装配采集链路）仍可计量
+            registry = new SimpleMeterRegistry();
+        }
+        readTimer = Timer.builder("qmx.ingest.read")
+                .description("MBAP 头之后读完 PDU 的耗时").register(registry);
+        decodeTimer = Timer.builder("qmx.ingest.decode")
+                .description("按协议描述解码数据段的耗时").register(registry);
+        alarmTimer = Timer.builder("qmx.ingest.alarm")
+                .description("报警位检查与推送的耗时").register(registry);
+        ackSendTimer = Timer.builder("qmx.ingest.ack.send")
+                .description("ACK 入队到写出 socket 的耗时").register(registry);
+        commitTimer = Timer.builder("qmx.ingest.commit.latency")
+                .description("ACK 入队到该帧全部写库完成的耗时").register(registry);
+        frameSize = DistributionSummary.builder("qmx.ingest.frame.size")
+                .description("上报帧字节数（MBAP+PDU）").baseUnit("bytes").register(registry);
+    }
+
+    public MeterRegistry getRegistry() {
+        return registry;
+    }
+
+    public void recordRead(long nanos) {
+        readTimer.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordDecode(long nanos) {
+        decodeTimer.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordAlarm(long nanos) {
+        alarmTimer.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordAckSend(long nanos) {
+        ackSendTimer.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordCommit(long nanos) {
+        commitTimer.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordDbWrite(String table, long nanos) {
+        dbWriteTimers.computeIfAbsent(table, t -> Timer.builder("qmx.ingest.db.write")
+                .description("按表批量写库耗时").tag("table", t).register(registry))
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * 收到一帧上报：按网关号计数并记录帧长
+     */
+    public void frameReceived(int unitId, int bytes) {
+        framesByUnit.computeIfAbsent(unitId, u -> Counter.builder("qmx.ingest.frames")
+                .description("各网关号上报帧数").tag("unitId", String.valueOf(u)).register(registry))
+                .increment();
+        frameSize.record(bytes);
+    }
+
+    public void parseError(String reason) {
+        parseErrors.computeIfAbsent(reason, r -> Counter.builder("qmx.ingest.parse.errors")
+                .description("非法帧/解码失败次数").tag("reason", r).register(registry))
+                .increment();
+    }
+
+    /**
+     * 网关号改由另一条连接上报（断线重连或换口）
+     */
+    public void reconnect(int unitId) {
+        reconnectsByUnit.computeIfAbsent(unitId, u -> Counter.builder("qmx.gateway.reconnects")
+                .description("网关号换连接次数").tag("unitId", String.valueOf(u)).register(registry))
+                .increment();
+    }
+
+    public void gauge(String name, String description, Supplier<Number> value) {
+        Gauge.builder(name, value).description(description).register(registry);
+    }
+}
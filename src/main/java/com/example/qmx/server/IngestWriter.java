@@ -0,0 +1,494 @@
+package com.example.qmx.server;
+
+import com.example.qmx.domain.ControlParameter;
+import com.example.qmx.domain.DeviceStatus;
+import com.example.qmx.domain.ProductDaily;
+import com.example.qmx.domain.ProductHourly;
+import com.example.qmx.domain.ProductionSeries;
+import com.example.qmx.domain.Sensor;
+import com.example.qmx.domain.SprayRecord;
+import com.example.qmx.jfr.DbBatchFlushedEvent;
+import com.example.qmx.mapper.ControlParameterMapper;
+import com.example.qmx.mapper.DeviceStatusMapper;
+import com.example.qmx.mapper.ProductDailyMapper;
+import com.example.qmx.mapper.ProductHourlyMapper;
+import com.example.qmx.mapper.ProductionSeriesMapper;
+import com.example.qmx.mapper.SensorMapper;
+import com.example.qmx.mapper.SprayRecordMapper;
+import com.example.qmx.utils.LatencyHistogram;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.IntSupplier;
+import java.util.function.LongConsumer;
+import java.util.function.ToIntFunction;
+
+/**
+ * 采集数据入库（网关帧与 PLC 直采共用）
+ * <p>
+ * 每帧解析出的各表记录打包为 FrameRows：
+ * 1. 默认在接收线程内同步按表批量 INSERT，写完即返回
+ * 2. ingest.write-behind.enabled=true 时入队，由单个写线程把多帧合并成按表的大批次写入；
+ *    队列满时退回同步写入，不丢数据；合并批次失败时按帧重写，一帧坏数据不拖累同批其他帧
+ * 小时/日产量明细写入后同时 upsert 到 production_series（每网关每小时/每天一行），历史曲线从该表按范围读取；
+ * upsert 失败的桶记入待补写表，由定时任务重试，补写成功前不推进该明细的最新值缓存与历史水位线；
+ * 只对已落库的记录更新最新值缓存与历史水位线，并统计各表行数与“ACK 入队 → 写入完成”延迟
+ */
+@Service
+public class IngestWriter {
+
+    private static final Logger log = LoggerFactory.getLogger(IngestWriter.class);
+
+    public static final String TABLE_DEVICE_STATUS = "device_status";
+    public static final String TABLE_SENSOR = "sensor";
+    public static final String TABLE_SPRAY_RECORD = "spray_record";
+    public static final String TABLE_CONTROL_PARAM = "control_param";
+    public static final String TABLE_PRODUCT_HOURLY = "product_hourly";
+    public static final String TABLE_PRODUCT_DAILY = "product_daily";
+    public static final String TABLE_PRODUCTION_SERIES = "production_series";
+
+    @Autowired
+    private DeviceStatusMapper deviceStatusMapper;
+
+    @Autowired
+    private SensorMapper sensorMapper;
+
+    @Autowired
+    private SprayRecordMapper sprayRecordMapper;
+
+    @Autowired
+    private ControlParameterMapper controlParameterMapper;
+
+    @Autowired
+    private ProductHourlyMapper productHourlyMapper;
+
+    @Autowired
+    private ProductDailyMapper productDailyMapper;
+
+    @Autowired
+    private ProductionSeriesMapper productionSeriesMapper;
+
+    @Autowired
+    private LatestValueCache latestValueCache;
+
+    @Autowired
+    private IngestMetrics ingestMetrics;
+
+    @Autowired
+    private HistoryResponseCache historyResponseCache;
+
+    @Value("${ingest.write-behind.enabled:false}")
+    private boolean writeBehind;
+
+    // 单次合并写入的最大帧数
+    @Value("${ingest.write-behind.batch-frames:50}")
+    private int batchFrames;
+
+    @Value("${ingest.write-behind.flush-interval-ms:200}")
+    private long flushIntervalMs;
+
+    @Value("${ingest.write-behind.queue-capacity:10000}")
+    private int queueCapacity;
+
+    // 待补写的时间序列桶上限；超出时丢弃并告警，可用 creatSQL.sql 中的回填语句由明细表重建
+    @Value("${ingest.series.max-pending:10000}")
+    private int maxPendingSeries;
+
+    private BlockingQueue<FrameRows> queue;
+
+    private Thread writerThread;
+
+    private volatile boolean running;
+
+    // 各表累计写入行数
+    private final Map<String, LongAdder> rowsByTable = new LinkedHashMap<>();
+    private final LongAdder committedFrames = new LongAdder();
+    private final LongAdder failedFrames = new LongAdder();
+    private final LatencyHistogram ackToCommit = new LatencyHistogram();
+    private volatile LongConsumer commitListener;
+
+    // upsert 失败待补写的时间序列：unitId|粒度|桶 → 该桶最新一条明细
+    private final Map<String, PendingSeries> pendingSeries = new ConcurrentHashMap<>();
+    private final LongAdder droppedSeries = new LongAdder();
+
+    public IngestWriter() {
+        for (String table : new String[]{TABLE_DEVICE_STATUS, TABLE_SENSOR, TABLE_SPRAY_RECORD,
+                TABLE_CONTROL_PARAM, TABLE_PRODUCT_HOURLY, TABLE_PRODUCT_DAILY, TABLE_PRODUCTION_SERIES}) {
+            rowsByTable.put(table, new LongAdder());
+        }
+    }
+
+    /**
+     * 一帧待入库的记录；ackNanos 为该帧 ACK 入队时刻（System.nanoTime），直采为解码时刻
+     */
+    public static final class FrameRows {
+        final int unitId;
+        final long ackNanos;
+        final List<DeviceStatus> deviceStatus = new ArrayList<>();
+        final List<Sensor> sensors = new ArrayList<>();
+        final List<SprayRecord> sprayRecords = new ArrayList<>();
+        final List<ControlParameter> controlParams = new ArrayList<>();
+        final List<ProductHourly> hourly = new ArrayList<>();
+        final List<ProductDaily> daily = new ArrayList<>();
+
+        public FrameRows(int unitId, long ackNanos) {
+            this.unitId = unitId;
+            this.ackNanos = ackNanos;
+        }
+
+        public void add(DeviceStatus ds) {
+            deviceStatus.add(ds);
+        }
+
+        public void add(Sensor s) {
+            sensors.add(s);
+        }
+
+        public void add(SprayRecord sr) {
+            sprayRecords.add(sr);
+        }
+
+        public void add(ControlParameter cp) {
+            controlParams.add(cp);
+        }
+
+        public void add(ProductHourly ph) {
+            hourly.add(ph);
+        }
+
+        public void add(ProductDaily pd) {
+            daily.add(pd);
+        }
+    }
+
+    /**
+     * 一条待补写的时间序列及对应明细；补写成功后再推进缓存与水位线
+     */
+    private static final class PendingSeries {
+        final ProductionSeries series;
+        final Object detail;
+
+        PendingSeries(ProductionSeries series, Object detail) {
+            this.series = series;
+            this.detail = detail;
+        }
+    }
+
+    @PostConstruct
+    public void start() {
+        ingestMetrics.gauge("qmx.ingest.queue.size", "write-behind 队列中待写入的帧数", this::getQueueSize);
+        ingestMetrics.gauge("qmx.ingest.series.pending", "upsert 失败待补写的产量时间序列桶数", pendingSeries::size);
+        if (!writeBehind) {
+            return;
+        }
+        queue = new ArrayBlockingQueue<>(queueCapacity);
+        running = true;
+        writerThread = new Thread(this::writeLoop, "ingest-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+        log.info("采集数据 write-behind 已启用: batchFrames={}, flushIntervalMs={}, queueCapacity={}",
+                batchFrames, flushIntervalMs, queueCapacity);
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        if (writerThread != null) {
+            writerThread.interrupt();
+            try {
+                writerThread.join(2000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        // 关闭前把队列中剩余的帧写完
+        if (queue != null) {
+            List<FrameRows> rest = new ArrayList<>();
+            queue.drainTo(rest);
+            write(rest);
+        }
+    }
+
+    /**
+     * 提交一帧记录：同步模式下直接写入；write-behind 模式下入队
+     */
+    public void submit(FrameRows rows) {
+        if (queue != null && queue.offer(rows)) {
+            return;
+        }
+        if (queue != null) {
+            log.warn("采集数据写入队列已满，改为同步写入: unitId={}", rows.unitId);
+        }
+        write(Collections.singletonList(rows));
+    }
+
+    public boolean isWriteBehind() {
+        return writeBehind;
+    }
+
+    public int getQueueSize() {
+        return queue != null ? queue.size() : 0;
+    }
+
+    /**
+     * 每帧写入完成时回调 ACK→写入完成 的纳秒数（压测统计精确分位数用）
+     */
+    public void setCommitListener(LongConsumer commitListener) {
+        this.commitListener = commitListener;
+    }
+
+    private void writeLoop() {
+        List<FrameRows> batch = new ArrayList<>(batchFrames);
+        while (running) {
+            try {
+                FrameRows first = queue.poll(flushIntervalMs, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchFrames - 1);
+                write(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    // 多帧按表合并后各写一次；某张表失败不影响其他表
+    private void write(List<FrameRows> frames) {
+        if (frames.isEmpty()) {
+            return;
+        }
+        boolean[] statusOk = insertTable(TABLE_DEVICE_STATUS, frames, f -> f.deviceStatus, rows -> deviceStatusMapper.insertBatch(rows));
+        boolean[] sensorOk = insertTable(TABLE_SENSOR, frames, f -> f.sensors, rows -> sensorMapper.insertBatch(rows));
+        boolean[] sprayOk = insertTable(TABLE_SPRAY_RECORD, frames, f -> f.sprayRecords, rows -> sprayRecordMapper.insertBatch(rows));
+        boolean[] controlOk = insertTable(TABLE_CONTROL_PARAM, frames, f -> f.controlParams, rows -> controlParameterMapper.insertBatch(rows));
+
+        long now = System.nanoTime();
+        LongConsumer listener = commitListener;
+        int committed = 0;
+        for (int i = 0; i < frames.size(); i++) {
+            FrameRows f = frames.get(i);
+            boolean ok = statusOk[i] && sensorOk[i] && sprayOk[i] && controlOk[i];
+            // 缓存与历史水位线只推进已落库的部分，读接口不会看到库里没有的数据
+            if (statusOk[i] && !f.deviceStatus.isEmpty()) {
+                latestValueCache.putStatus(f.unitId, f.deviceStatus);
+            }
+            if (sensorOk[i] && !f.sensors.isEmpty()) {
+                latestValueCache.putSensor(f.unitId, f.sensors);
+            }
+            if (sprayOk[i] && !f.sprayRecords.isEmpty()) {
+                latestValueCache.putSpray(f.unitId, f.sprayRecords);
+            }
+            if (controlOk[i] && !f.controlParams.isEmpty()) {
+                latestValueCache.putControl(f.unitId, f.controlParams);
+            }
+            // 历史曲线读 production_series：明细与时间序列都写成功后才推进缓存与水位线
+            for (ProductHourly ph : f.hourly) {
+                if (insert(TABLE_PRODUCT_HOURLY, 1, () -> productHourlyMapper.insert(ph))) {
+                    ok &= upsertSeries(f.unitId, series(f.unitId, ProductionSeries.HOURLY, ph.getId(), ph.getNumHourly(), ph.getTime()), ph);
+                } else {
+                    ok = false;
+                }
+            }
+            for (ProductDaily pd : f.daily) {
+                if (insert(TABLE_PRODUCT_DAILY, 1, () -> productDailyMapper.insert(pd))) {
+                    ok &= upsertSeries(f.unitId, series(f.unitId, ProductionSeries.DAILY, pd.getId(), pd.getNumDaily(), pd.getTime()), pd);
+                } else {
+                    ok = false;
+                }
+            }
+            if (!ok) {
+                continue;
+            }
+            committed++;
+            long latency = now - f.ackNanos;
+            ackToCommit.record(latency);
+            ingestMetrics.recordCommit(latency);
+            if (listener != null) {
+                listener.accept(latency);
+            }
+        }
+        committedFrames.add(committed);
+        failedFrames.add(frames.size() - committed);
+    }
+
+    /**
+     * 多帧同一张表合并为一条 INSERT；合并批次失败（如某帧有坏行）时退回逐帧写入，只有坏帧失败
+     *
+     * @return 各帧该表是否已落库（无该表记录的帧视为成功）
+     */
+    private <T> boolean[] insertTable(String table, List<FrameRows> frames, Function<FrameRows, List<T>> rowsOf,
+                                      ToIntFunction<List<T>> insertBatch) {
+        boolean[] ok = new boolean[frames.size()];
+        List<T> merged = new ArrayList<>();
+        for (FrameRows f : frames) {
+            merged.addAll(rowsOf.apply(f));
+        }
+        if (merged.isEmpty() || insert(table, merged.size(), () -> insertBatch.applyAsInt(merged))) {
+            Arrays.fill(ok, true);
+            return ok;
+        }
+        if (frames.size() == 1) {
+            return ok;
+        }
+        log.warn("{} 合并批次写入失败，改为逐帧写入: {} 帧", table, frames.size());
+        for (int i = 0; i < frames.size(); i++) {
+            List<T> rows = rowsOf.apply(frames.get(i));
+            ok[i] = rows.isEmpty() || insert(table, rows.size(), () -> insertBatch.applyAsInt(rows));
+        }
+        return ok;
+    }
+
+    private boolean insert(String table, int rows, IntSupplier insert) {
+        long start = System.nanoTime();
+        DbBatchFlushedEvent event = new DbBatchFlushedEvent();
+        event.begin();
+        event.table = table;
+        event.rows = rows;
+        try {
+            int inserted = insert.getAsInt();
+            ingestMetrics.recordDbWrite(table, System.nanoTime() - start);
+            event.inserted = inserted;
+            event.success = true;
+            event.commit();
+            rowsByTable.get(table).add(inserted);
+            log.debug("{} 批量插入: {} 条, 受影响行数={}", table, rows, inserted);
+            return true;
+        } catch (Exception e) {
+            log.error("{} 批量插入失败: {} 条, err={}", table, rows, e.getMessage());
+            event.commit();
+            return false;
+        }
+    }
+
+    // 明细所在小时/天的时间序列行；明细 id 或时间为空时不写时间序列
+    private static ProductionSeries series(int unitId, String granularity, Long sourceId, Integer num, LocalDateTime time) {
+        if (sourceId == null || time == null) {
+            return null;
+        }
+        ProductionSeries series = new ProductionSeries();
+        series.setUnitId(unitId);
+        series.setGranularity(granularity);
+        series.setBucket(ProductionSeries.HOURLY.equals(granularity)
+                ? time.truncatedTo(ChronoUnit.HOURS) : time.toLocalDate().atStartOfDay());
+        series.setNum(num);
+        series.setSourceId(sourceId);
+        series.setTime(time);
+        return series;
+    }
+
+    /**
+     * 明细写入成功后 upsert 时间序列；成功则推进缓存与水位线，失败则记入待补写表
+     *
+     * @return upsert 是否成功（无需写时间序列视为成功）
+     */
+    private boolean upsertSeries(int unitId, ProductionSeries series, Object detail) {
+        if (series == null) {
+            advance(unitId, detail);
+            return true;
+        }
+        String key = series.getUnitId() + "|" + series.getGranularity() + "|" + series.getBucket();
+        if (insert(TABLE_PRODUCTION_SERIES, 1, () -> productionSeriesMapper.upsert(series))) {
+            // 同一桶更早失败的明细已被本条覆盖，不必再补写
+            pendingSeries.computeIfPresent(key, (k, p) -> p.series.getSourceId() <= series.getSourceId() ? null : p);
+            advance(unitId, detail);
+            return true;
+        }
+        PendingSeries pending = new PendingSeries(series, detail);
+        if (pendingSeries.size() >= maxPendingSeries && !pendingSeries.containsKey(key)) {
+            droppedSeries.increment();
+            log.error("产量时间序列待补写已满({})，丢弃: unitId={}, granularity={}, bucket={}, sourceId={}",
+                    maxPendingSeries, series.getUnitId(), series.getGranularity(), series.getBucket(), series.getSourceId());
+            return false;
+        }
+        // 同一桶只保留最新一条明细
+        pendingSeries.merge(key, pending,
+                (old, p) -> p.series.getSourceId() > old.series.getSourceId() ? p : old);
+        return false;
+    }
+
+    /**
+     * 定时补写 upsert 失败的时间序列；补写成功后推进对应明细的缓存与水位线
+     */
+    @Scheduled(fixedDelayString = "${ingest.series.retry-interval-ms:5000}")
+    public void retryPendingSeries() {
+        if (pendingSeries.isEmpty()) {
+            return;
+        }
+        int retried = 0;
+        for (Map.Entry<String, PendingSeries> e : pendingSeries.entrySet()) {
+            PendingSeries p = e.getValue();
+            if (!insert(TABLE_PRODUCTION_SERIES, 1, () -> productionSeriesMapper.upsert(p.series))) {
+                // 数据库仍不可用，留到下一轮
+                break;
+            }
+            // 补写期间同一桶可能又记入了更新的明细，只移除本条
+            pendingSeries.remove(e.getKey(), p);
+            advance(p.series.getUnitId(), p.detail);
+            retried++;
+        }
+        log.info("产量时间序列补写: {} 条成功, 剩余 {} 条", retried, pendingSeries.size());
+    }
+
+    private void advance(int unitId, Object detail) {
+        if (detail instanceof ProductHourly) {
+            ProductHourly ph = (ProductHourly) detail;
+            latestValueCache.putHourly(unitId, ph);
+            historyResponseCache.advance(TABLE_PRODUCT_HOURLY, unitId, ph.getId(), ph.getTime());
+        } else if (detail instanceof ProductDaily) {
+            ProductDaily pd = (ProductDaily) detail;
+            latestValueCache.putDaily(unitId, pd);
+            historyResponseCache.advance(TABLE_PRODUCT_DAILY, unitId, pd.getId(), pd.getTime());
+        }
+    }
+
+    /**
+     * 各表累计写入行数
+     */
+    public Map<String, Long> rowsByTable() {
+        Map<String, Long> out = new LinkedHashMap<>();
+        for (Map.Entry<String, LongAdder> e : rowsByTable.entrySet()) {
+            out.put(e.getKey(), e.getValue().sum());
+        }
+        return out;
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("writeBehind", writeBehind);
+        m.put("queueSize", getQueueSize());
+        m.put("committedFrames", committedFrames.sum());
+        m.put("failedFrames", failedFrames.sum());
+        m.put("rowsByTable", rowsByTable());
+        m.put("pendingSeries", pendingSeries.size());
+        m.put("droppedSeries", droppedSeries.sum());
+        m.put("ackToCommitMeanMs", ackToCommit.getMeanMs());
+        m.put("ackToCommitP99Ms", ackToCommit.percentileMs(0.99));
+        m.put("ackToCommitBuckets", ackToCommit.snapshot());
+        return m;
+    }
+}
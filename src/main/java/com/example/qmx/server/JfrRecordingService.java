@@ -0,0 +1,157 @@
+package com.example.qmx.server;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.time.Duration;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 按需开启/停止 JFR 录制（采集链路自定义事件见 com.example.qmx.jfr）
+ * <p>
+ * 录制同时包含 JDK 内置事件（GC、锁竞争、线程停顿等），可在 JMC 中与帧接收、解码、写库、下发事件按时间轴对照；
+ * 停止或导出时写到 jfr.dump-dir 下，文件名带时间戳
+ */
+@Service
+public class JfrRecordingService {
+
+    private static final Logger log = LoggerFactory.getLogger(JfrRecordingService.class);
+
+    private static final String[] FRAME_EVENTS = {
+            "com.example.qmx.FrameReceived", "com.example.qmx.FrameDecoded", "com.example.qmx.DbBatchFlushed"
+    };
+
+    @Value("${jfr.settings:default}")
+    private String defaultSettings;
+
+    @Value("${jfr.max-age-minutes:30}")
+    private long maxAgeMinutes;
+
+    @Value("${jfr.max-size-mb:256}")
+    private long maxSizeMb;
+
+    @Value("${jfr.frame-threshold-ms:0}")
+    private long frameThresholdMs;
+
+    @Value("${jfr.dump-dir:jfr}")
+    private String dumpDir;
+
+    @Value("${jfr.start-on-boot:false}")
+    private boolean startOnBoot;
+
+    private Recording recording;
+
+    @PostConstruct
+    public void init() {
+        if (startOnBoot) {
+            try {
+                start(null);
+            } catch (Exception e) {
+                log.error("启动时开启 JFR 录制失败: {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 开始录制；已有录制进行中时直接返回其状态
+     *
+     * @param settings JDK 预置配置名（default 开销约 1%，profile 含方法采样约 2%），为空时取 jfr.settings
+     */
+    public synchronized Map<String, Object> start(String settings) throws IOException, ParseException {
+        if (recording != null && recording.getState() == RecordingState.RUNNING) {
+            return status();
+        }
+        String name = settings == null || settings.trim().isEmpty() ? defaultSettings : settings.trim();
+        Recording r = new Recording(Configuration.getConfiguration(name));
+        r.setName("qmx-" + name);
+        r.setMaxAge(Duration.ofMinutes(maxAgeMinutes));
+        r.setMaxSize(maxSizeMb * 1024 * 1024);
+        r.setToDisk(true);
+        // 逐帧事件量大，可设阈值只保留慢帧；报警与下发事件全部保留
+        for (String event : FRAME_EVENTS) {
+            r.enable(event).withThreshold(Duration.ofMillis(frameThresholdMs));
+        }
+        r.enable("com.example.qmx.AlarmDispatched");
+        r.enable("com.example.qmx.DownlinkSent");
+        r.start();
+        recording = r;
+        log.info("JFR 录制已开始: settings={}, maxAge={}min, maxSize={}MB, frameThreshold={}ms",
+                name, maxAgeMinutes, maxSizeMb, frameThresholdMs);
+        return status();
+    }
+
+    /**
+     * 把录制到目前为止的数据导出为文件，录制继续
+     */
+    public synchronized Path dump() throws IOException {
+        if (recording == null || recording.getState() != RecordingState.RUNNING) {
+            throw new IllegalStateException("当前没有进行中的 JFR 录制");
+        }
+        Path file = dumpFile();
+        recording.dump(file);
+        log.info("JFR 录制已导出: {}", file);
+        return file;
+    }
+
+    /**
+     * 停止录制并导出文件
+     */
+    public synchronized Path stop() throws IOException {
+        if (recording == null || recording.getState() != RecordingState.RUNNING) {
+            throw new IllegalStateException("当前没有进行中的 JFR 录制");
+        }
+        Path file = dumpFile();
+        try {
+            recording.stop();
+            recording.dump(file);
+        } finally {
+            recording.close();
+            recording = null;
+        }
+        log.info("JFR 录制已停止并导出: {}", file);
+        return file;
+    }
+
+    public synchronized Map<String, Object> status() {
+        Map<String, Object> m = new LinkedHashMap<>();
+        boolean running = recording != null && recording.getState() == RecordingState.RUNNING;
+        m.put("running", running);
+        m.put("dumpDir", Paths.get(dumpDir).toAbsolutePath().toString());
+        if (recording != null) {
+            m.put("name", recording.getName());
+            m.put("state", recording.getState().name());
+            m.put("startTime", recording.getStartTime() != null ? recording.getStartTime().toString() : null);
+            m.put("sizeBytes", recording.getSize());
+        }
+        return m;
+    }
+
+    private Path dumpFile() throws IOException {
+        Path dir = Paths.get(dumpDir);
+        Files.createDirectories(dir);
+        return dir.resolve("qmx-" + new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date()) + ".jfr");
+    }
+
+    @PreDestroy
+    public synchronized void shutdown() {
+        if (recording != null) {
+            recording.close();
+            recording = null;
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package com.example.qmx.server;
+
+import com.example.qmx.domain.ControlParameter;
+import com.example.qmx.domain.DeviceStatus;
+import com.example.qmx.domain.ProductDaily;
+import com.example.qmx.domain.ProductHourly;
+import com.example.qmx.domain.Sensor;
+import com.example.qmx.domain.SprayRecord;
+import com.example.qmx.mapper.DeviceStatusMapper;
+import com.example.qmx.mapper.SensorMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 各网关最新点位值缓存
+ * <p>
+ * 1. 以网关号为一级键，点位名称为二级键：不同网关的同名点位互不覆盖
+ * 2. 入库成功后由 DataToObj 更新；进程重启后首次查询未命中时回源数据库
+ */
+@Service
+public class LatestValueCache {
+
+    @Autowired
+    private DeviceStatusMapper deviceStatusMapper;
+
+    @Autowired
+    private SensorMapper sensorMapper;
+
+    /**
+     * 单个网关的最新值
+     */
+    private static final class UnitValues {
+        final Map<String, DeviceStatus> status = new ConcurrentHashMap<>();
+        final Map<String, Sensor> sensor = new ConcurrentHashMap<>();
+        final Map<String, SprayRecord> spray = new ConcurrentHashMap<>();
+        final Map<String, ControlParameter> control = new ConcurrentHashMap<>();
+        volatile ProductHourly hourly;
+        volatile ProductDaily daily;
+        volatile LocalDateTime lastFrameAt;
+    }
+
+    private final Map<Integer, UnitValues> units = new ConcurrentHashMap<>();
+
+    private UnitValues unit(int unitId) {
+        return units.computeIfAbsent(unitId, k -> new UnitValues());
+    }
+
+    public void frameReceived(int unitId) {
+        unit(unitId).lastFrameAt = LocalDateTime.now();
+    }
+
+    public void putStatus(int unitId, List<DeviceStatus> list) {
+        Map<String, DeviceStatus> m = unit(unitId).status;
+        for (DeviceStatus ds : list) {
+            m.put(ds.getDevName(), ds);
+        }
+    }
+
+    public void putSensor(int unitId, List<Sensor> list) {
+        Map<String, Sensor> m = unit(unitId).sensor;
+        for (Sensor s : list) {
+            m.put(s.getDevName(), s);
+        }
+    }
+
+    public void putSpray(int unitId, List<SprayRecord> list) {
+        Map<String, SprayRecord> m = unit(unitId).spray;
+        for (SprayRecord sr : list) {
+            m.put(sr.getDevName(), sr);
+        }
+    }
+
+    public void putControl(int unitId, List<ControlParameter> list) {
+        Map<String, ControlParameter> m = unit(unitId).control;
+        for (ControlParameter cp : list) {
+            m.put(cp.getName(), cp);
+        }
+    }
+
+    /**
+     * 只保留 id 最大的一条：补写成功的较早明细不会覆盖已缓存的更新值
+     */
+    public void putHourly(int unitId, ProductHourly ph) {
+        UnitValues u = unit(unitId);
+        synchronized (u) {
+            if (u.hourly == null || isNewer(ph.getId(), u.hourly.getId())) {
+                u.hourly = ph;
+            }
+        }
+    }
+
+    public void putDaily(int unitId, ProductDaily pd) {
+        UnitValues u = unit(unitId);
+        synchronized (u) {
+            if (u.daily == null || isNewer(pd.getId(), u.daily.getId())) {
+                u.daily = pd;
+            }
+        }
+    }
+
+    private static boolean isNewer(Long id, Long current) {
+        return id == null || current == null || id >= current;
+    }
+
+    /**
+     * 设备最新状态；缓存未命中时回源数据库
+     */
+    public DeviceStatus latestStatus(int unitId, String devName) {
+        Map<String, DeviceStatus> m = unit(unitId).status;
+        DeviceStatus ds = m.get(devName);
+        if (ds == null) {
+            ds = deviceStatusMapper.getLatestStatus(unitId, devName);
+            if (ds != null) {
+                m.putIfAbsent(devName, ds);
+            }
+        }
+        return ds;
+    }
+
+    /**
+     * 传感器最新值；缓存未命中时回源数据库
+     */
+    public Sensor latestSensor(int unitId, String devName) {
+        Map<String, Sensor> m = unit(unitId).sensor;
+        Sensor s = m.get(devName);
+        if (s == null) {
+            s = sensorMapper.getLatestSensor(unitId, devName);
+            if (s != null) {
+                m.putIfAbsent(devName, s);
+            }
+        }
+        return s;
+    }
+
+    /**
+     * 已收到过数据的网关号及最近一帧时间
+     */
+    public Map<Integer, LocalDateTime> units() {
+        Map<Integer, LocalDateTime> out = new TreeMap<>();
+        for (Map.Entry<Integer, UnitValues> e : units.entrySet()) {
+            out.put(e.getKey(), e.getValue().lastFrameAt);
+        }
+        return out;
+    }
+
+    /**
+     * 单个网关当前缓存的全部最新值
+     */
+    public Map<String, Object> snapshot(int unitId) {
+        UnitValues u = units.get(unitId);
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("unitId", unitId);
+        if (u == null) {
+            return out;
+        }
+        out.put("lastFrameAt", u.lastFrameAt);
+        out.put("deviceStatus", new TreeMap<>(u.status).values());
+        out.put("sensor", new TreeMap<>(u.sensor).values());
+        out.put("sprayRecord", new TreeMap<>(u.spray).values());
+        out.put("controlParam", new TreeMap<>(u.control).values());
+        out.put("productHourly", u.hourly);
+        out.put("productDaily", u.daily);
+        return out;
+    }
+}
@@ -0,0 +1,290 @@
+package com.example.qmx.server;
+
+import com.example.qmx.utils.ModbusUtils;
+import com.example.qmx.utils.TimerWheel;
+import com.example.qmx.utils.VirtualThreads;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongConsumer;
+
+/**
+ * PLC 直采轮询引擎（无网关现场）
+ * <p>
+ * 1. 启动时加载寄存器映射，由 RegisterBlockOptimizer 按代价模型划分读块，
+ *    运行中记录每个读块的耗时，定期按学到的设备延迟重新划分
+ * 2. 时间轮按各设备周期触发，首轮按设备序号错开，避免所有 PLC 同时被读
+ * 3. 同一设备的所有读块通过流水线连接同时发出，全部返回后组装成 Map&lt;typeId, List&lt;Long&gt;&gt;
+ * 4. 交给 DataToObj.handleDecoded，与网关帧共用报警/入库路径
+ * 上一轮未结束时本轮跳过，不会在慢设备上堆积请求；集群模式下每台设备只由其网关号的哈希属主节点轮询
+ */
+@Service
+public class ModbusPollService {
+
+    private static final Logger log = LoggerFactory.getLogger(ModbusPollService.class);
+
+    @Autowired
+    private DataToObj dataToObj;
+
+    @Autowired
+    private ClusterService clusterService;
+
+    @Value("${modbus.poll.enabled:false}")
+    private boolean enabled;
+
+    @Value("${modbus.poll.register-map:classpath:modbus-poll-map.json}")
+    private Resource registerMapResource;
+
+    // 时间轮精度（毫秒）
+    @Value("${modbus.poll.tick-ms:50}")
+    private long tickMs;
+
+    // 解码与入库线程数
+    @Value("${modbus.poll.threads:2}")
+    private int threads;
+
+    // 每次轮询使用一个虚拟线程（Java 21 及以上；开启后忽略 modbus.poll.threads）
+    @Value("${threads.virtual.enabled:false}")
+    private boolean virtualThreads;
+
+    // 代价模型初值与平滑系数
+    @Value("${modbus.poll.default-rtt-ms:5}")
+    private double defaultRttMs;
+
+    @Value("${modbus.poll.default-per-register-ms:0.02}")
+    private double defaultPerRegisterMs;
+
+    @Value("${modbus.poll.latency-alpha:0.1}")
+    private double latencyAlpha;
+
+    // 每隔多少轮按最新延迟重新划分读块
+    @Value("${modbus.poll.replan-every:60}")
+    private int replanEvery;
+
+    private RegisterBlockOptimizer optimizer;
+
+    private final ObjectMapper objectMapper = new ObjectMapper()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+    private final List<DevicePoller> pollers = new ArrayList<>();
+    private ExecutorService executor;
+    private TimerWheel timerWheel;
+
+    /**
+     * 单台设备的轮询状态
+     */
+    private class DevicePoller {
+        final PollRegisterMap.Device device;
+        final String key;
+        volatile List<RegisterBlock> blocks;
+        final AtomicBoolean inFlight = new AtomicBoolean();
+        volatile long nextDueNanos;
+        long rounds;
+
+        DevicePoller(PollRegisterMap.Device device, List<RegisterBlock> blocks) {
+            this.device = device;
+            this.key = device.getHost() + ":" + device.getPort() + "/" + device.getSlaveId();
+            this.blocks = blocks;
+        }
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        PollRegisterMap map;
+        try (InputStream in = registerMapResource.getInputStream()) {
+            map = objectMapper.readValue(in, PollRegisterMap.class);
+            map.validate();
+        } catch (Exception e) {
+            log.error("加载直采寄存器映射失败，直采轮询未启动: {}", e.getMessage());
+            return;
+        }
+        optimizer = new RegisterBlockOptimizer(defaultRttMs, defaultPerRegisterMs, latencyAlpha);
+        for (PollRegisterMap.Device d : map.getDevices()) {
+            List<RegisterBlock> blocks = optimizer.optimize(d.getHost() + ":" + d.getPort() + "/" + d.getSlaveId(), d.getPoints());
+            pollers.add(new DevicePoller(d, blocks));
+            log.info("直采设备: {} {}:{} slave={}, 点位={}, 读请求={}, 周期={}ms",
+                    d.getName(), d.getHost(), d.getPort(), d.getSlaveId(), d.getPoints().size(), blocks.size(), d.getIntervalMs());
+        }
+        if (pollers.isEmpty()) {
+            return;
+        }
+        if (VirtualThreads.use(virtualThreads)) {
+            // 每次轮询一个虚拟线程，阻塞在 Modbus 读写上不占平台线程
+            executor = VirtualThreads.newPerTaskExecutor("modbus-poll");
+        } else {
+            executor = Executors.newFixedThreadPool(Math.max(1, threads), VirtualThreads.factory("modbus-poll", false));
+        }
+        timerWheel = new TimerWheel("modbus-poll-wheel", tickMs, 512, executor);
+        long now = System.nanoTime();
+        for (int i = 0; i < pollers.size(); i++) {
+            DevicePoller p = pollers.get(i);
+            long offsetMs = p.device.getIntervalMs() * i / pollers.size();
+            p.nextDueNanos = now + TimeUnit.MILLISECONDS.toNanos(offsetMs);
+            timerWheel.schedule(() -> poll(p), offsetMs);
+        }
+        log.info("直采轮询已启动: 设备数={}", pollers.size());
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (timerWheel != null) {
+            timerWheel.stop();
+        }
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    private void poll(DevicePoller p) {
+        // 按固定节拍排下一轮，不受本轮耗时影响
+        p.nextDueNanos += TimeUnit.MILLISECONDS.toNanos(p.device.getIntervalMs());
+        timerWheel.schedule(() -> poll(p), TimeUnit.NANOSECONDS.toMillis(Math.max(0, p.nextDueNanos - System.nanoTime())));
+
+        // 集群模式下只轮询哈希到本节点的设备；成员变化后下一轮自动接管或让出
+        if (!clusterService.ownsUnit(p.device.getUnitId())) {
+            return;
+        }
+
+        if (!p.inFlight.compareAndSet(false, true)) {
+            log.warn("直采设备上一轮未完成，跳过本轮: {}", p.device.getName());
+            return;
+        }
+        PollRegisterMap.Device d = p.device;
+        long t0 = System.currentTimeMillis();
+        if (replanEvery > 0 && ++p.rounds % replanEvery == 0) {
+            replan(p);
+        }
+        List<RegisterBlock> blocks = p.blocks;
+        try {
+            List<CompletableFuture<Object>> reads = new ArrayList<>(blocks.size());
+            for (RegisterBlock b : blocks) {
+                // 往返时间从请求实际写出算起：超过在途上限排队等待兄弟读块的时间不计入代价模型
+                AtomicLong written = new AtomicLong();
+                CompletableFuture<Object> f = readBlock(d, b, written::set);
+                f.thenRun(() -> optimizer.recordLatency(p.key, b.getQuantity(), System.nanoTime() - written.get()));
+                reads.add(f);
+            }
+            CompletableFuture.allOf(reads.toArray(new CompletableFuture[0])).whenCompleteAsync((v, err) -> {
+                try {
+                    if (err != null) {
+                        log.warn("直采读取失败: {}, err={}", d.getName(), err.getMessage());
+                        return;
+                    }
+                    Map<Integer, List<Long>> decoded = assemble(p.device, blocks, reads);
+                    dataToObj.handleDecoded(d.getUnitId(), decoded);
+                    log.debug("直采完成: {}, 读请求={}, costMs={}", d.getName(), blocks.size(), System.currentTimeMillis() - t0);
+                } catch (Exception e) {
+                    log.error("直采数据处理失败: {}, err={}", d.getName(), e.getMessage());
+                } finally {
+                    p.inFlight.set(false);
+                }
+            }, executor);
+        } catch (Exception e) {
+            p.inFlight.set(false);
+            log.warn("直采发起读取失败: {}, err={}", d.getName(), e.getMessage());
+        }
+    }
+
+    private void replan(DevicePoller p) {
+        List<RegisterBlock> blocks = optimizer.optimize(p.key, p.device.getPoints());
+        if (blocks.size() != p.blocks.size()) {
+            RegisterBlockOptimizer.CostModel m = optimizer.model(p.key);
+            log.info("直采读块重新划分: {}, 读请求 {} -> {}, rttMs={}, perRegisterMs={}, gapThreshold={}",
+                    p.device.getName(), p.blocks.size(), blocks.size(),
+                    String.format("%.3f", m.roundTripMs()), String.format("%.4f", m.perRegisterMs()), m.gapThreshold());
+        }
+        p.blocks = blocks;
+    }
+
+    /**
+     * 经 ModbusUtils 的流水线读取，超时/出错计入该设备熔断，熔断打开时快速失败
+     */
+    @SuppressWarnings("unchecked")
+    private static CompletableFuture<Object> readBlock(PollRegisterMap.Device d, RegisterBlock b, LongConsumer onWritten) {
+        CompletableFuture<?> f;
+        switch (b.getArea()) {
+            case "coil":
+                f = ModbusUtils.readCoilsPipelined(d.getHost(), d.getPort(), d.getSlaveId(), b.getStart(), b.getQuantity(), onWritten);
+                break;
+            case "discrete":
+                f = ModbusUtils.readDiscreteInputsPipelined(d.getHost(), d.getPort(), d.getSlaveId(), b.getStart(), b.getQuantity(), onWritten);
+                break;
+            case "input":
+                f = ModbusUtils.readInputRegistersPipelined(d.getHost(), d.getPort(), d.getSlaveId(), b.getStart(), b.getQuantity(), onWritten);
+                break;
+            default:
+                f = ModbusUtils.readHoldingRegistersPipelined(d.getHost(), d.getPort(), d.getSlaveId(), b.getStart(), b.getQuantity(), onWritten);
+                break;
+        }
+        return (CompletableFuture<Object>) f;
+    }
+
+    /**
+     * 按点位的 (typeId, index) 把各读块的原始值放回上报帧格式
+     * 浮点保存原始位模式，与网关帧 0x02/0x05 的解析结果一致
+     */
+    private static Map<Integer, List<Long>> assemble(PollRegisterMap.Device device, List<RegisterBlock> blocks,
+                                                     List<CompletableFuture<Object>> reads) {
+        Map<Integer, Long[]> slots = new HashMap<>();
+        for (PollRegisterMap.Point pt : device.getPoints()) {
+            slots.computeIfAbsent(pt.getTypeId(), k -> new Long[0]);
+            Long[] arr = slots.get(pt.getTypeId());
+            if (arr.length <= pt.getIndex()) {
+                slots.put(pt.getTypeId(), Arrays.copyOf(arr, pt.getIndex() + 1));
+            }
+        }
+        for (int i = 0; i < blocks.size(); i++) {
+            RegisterBlock b = blocks.get(i);
+            Object raw = reads.get(i).join();
+            for (PollRegisterMap.Point pt : b.getPoints()) {
+                int off = pt.getAddress() - b.getStart();
+                long value = b.isBitArea() ? (((boolean[]) raw)[off] ? 1L : 0L) : decodeRegister((int[]) raw, off, pt.getDataType());
+                slots.get(pt.getTypeId())[pt.getIndex()] = value;
+            }
+        }
+        Map<Integer, List<Long>> decoded = new HashMap<>();
+        for (Map.Entry<Integer, Long[]> e : slots.entrySet()) {
+            decoded.put(e.getKey(), Arrays.asList(e.getValue()));
+        }
+        return decoded;
+    }
+
+    private static long decodeRegister(int[] regs, int off, String dataType) {
+        int r = regs[off];
+        switch (dataType) {
+            case "uint8":
+                return r & 0xFF;
+            case "int16":
+                return (short) r;
+            case "float32":
+                return (r << 16) | regs[off + 1];
+            case "float32_cdab":
+                return (regs[off + 1] << 16) | r;
+            default:
+                return r;
+        }
+    }
+}
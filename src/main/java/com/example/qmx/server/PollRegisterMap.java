@@ -0,0 +1,92 @@
+package com.example.qmx.server;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * PLC 直采寄存器映射（modbus-poll-map.json）
+ * <p>
+ * 每个点位对应网关上报帧中的一个位置 (typeId, index)，
+ * 轮询结果按同样的 Map&lt;typeId, List&lt;Long&gt;&gt; 组装后走与网关帧相同的报警/入库路径
+ */
+@Data
+public class PollRegisterMap {
+
+    private List<Device> devices = new ArrayList<>();
+
+    @Data
+    public static class Device {
+        private String name;
+        private String host;
+        private int port = 502;
+        private int slaveId = 1;
+        // 入库时使用的网关号（unitId），与网关上报的数据区分来源
+        private int unitId = 1;
+        private long intervalMs = 1000;
+        private List<Point> points = new ArrayList<>();
+    }
+
+    @Data
+    public static class Point {
+        // 对应上报帧的数据类型标识（见 protocol-schema.json）
+        private int typeId;
+        // 该类型下的序号（与协议描述中的点位下标一致）
+        private int index;
+        // coil / discrete / holding / input
+        private String area = "holding";
+        private int address;
+        // bool / uint8 / uint16 / int16 / float32 / float32_cdab（字交换）
+        private String dataType = "uint16";
+
+        /**
+         * 占用的寄存器（或位）数量
+         */
+        public int getRegisterCount() {
+            return dataType.startsWith("float32") ? 2 : 1;
+        }
+
+        public boolean isBitArea() {
+            return "coil".equals(area) || "discrete".equals(area);
+        }
+    }
+
+    /**
+     * 校验映射：区域与数据类型匹配，且每个 typeId 的 index 从 0 连续不重复（入库时按下标取点位名称）
+     */
+    public void validate() {
+        for (Device d : devices) {
+            if (d.getHost() == null || d.getHost().trim().isEmpty()) {
+                throw new IllegalArgumentException("直采设备缺少 host: " + d.getName());
+            }
+            if (d.getIntervalMs() <= 0) {
+                throw new IllegalArgumentException("直采设备轮询周期必须大于0: " + d.getName());
+            }
+            Map<Integer, TreeSet<Integer>> indexes = new HashMap<>();
+            for (Point p : d.getPoints()) {
+                if (p.getTypeId() < 0x00 || p.getTypeId() > 0xFF) {
+                    throw new IllegalArgumentException(d.getName() + " 点位 typeId 不合法: " + p.getTypeId());
+                }
+                boolean bitType = "bool".equals(p.getDataType());
+                if (!p.isBitArea() && !"holding".equals(p.getArea()) && !"input".equals(p.getArea())) {
+                    throw new IllegalArgumentException(d.getName() + " 点位区域不合法: " + p.getArea());
+                }
+                if (p.isBitArea() != bitType) {
+                    throw new IllegalArgumentException(d.getName() + " 点位区域与数据类型不匹配: " + p.getArea() + "/" + p.getDataType());
+                }
+                if (!indexes.computeIfAbsent(p.getTypeId(), k -> new TreeSet<>()).add(p.getIndex())) {
+                    throw new IllegalArgumentException(d.getName() + " 点位重复: typeId=" + p.getTypeId() + ", index=" + p.getIndex());
+                }
+            }
+            for (Map.Entry<Integer, TreeSet<Integer>> e : indexes.entrySet()) {
+                if (e.getValue().first() != 0 || e.getValue().last() != e.getValue().size() - 1) {
+                    throw new IllegalArgumentException(d.getName() + " typeId=" + e.getKey() + " 的 index 必须从0连续");
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,288 @@
+package com.example.qmx.server;
+
+import org.springframework.asm.ClassWriter;
+import org.springframework.asm.Label;
+import org.springframework.asm.MethodVisitor;
+import org.springframework.asm.Opcodes;
+import org.springframework.asm.Type;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 按固定帧布局生成专用解码类（运行时字节码生成，Spring 内置 ASM）
+ * <p>
+ * 网关每次上报的段序列 [typeId][count] 都相同，通用解释器却要逐帧重新解析段头、按类型分支读取。
+ * 对观察到的布局生成如下形式的类：
+ * <pre>
+ *   if (len != 总长 || b[off+0] != t0 || b[off+1] != c0 || ...) return null;   // 布局守卫
+ *   List l0 = new ArrayList(c0);
+ *   l0.add(Long.valueOf(u8(b, off + 2)));  l0.add(Long.valueOf(u8(b, off + 3))); ...  // 固定偏移、完全展开
+ *   map.put(Integer.valueOf(t0), l0); ...
+ * </pre>
+ * 守卫不通过时返回 null，由 ProtocolDispatchTable 回退到通用解释器
+ */
+public final class ProtocolDecoderGenerator {
+
+    /**
+     * 生成类实现的接口；布局不符时返回 null
+     */
+    public interface FrameDecoder {
+        Map<Integer, List<Long>> decode(byte[] pdu, int offset, int dataLen);
+    }
+
+    private static final AtomicInteger SEQ = new AtomicInteger();
+
+    private static final String SUPPORT = Type.getInternalName(ProtocolDecoderGenerator.class);
+
+    private ProtocolDecoderGenerator() {
+    }
+
+    /**
+     * 为给定布局生成解码器
+     *
+     * @param layout 依次为 typeId、count 的段序列
+     * @return 布局无法生成（包含未定义类型、重复类型或长度不符）时返回 null
+     */
+    public static FrameDecoder generate(ProtocolDispatchTable table, int[] layout) {
+        int segments = layout.length / 2;
+        Set<Integer> seen = new HashSet<>();
+        int total = 0;
+        for (int s = 0; s < segments; s++) {
+            ProtocolDispatchTable.TypeEntry t = table.type(layout[2 * s]);
+            if (t == null || !seen.add(layout[2 * s])) {
+                return null;
+            }
+            int need = t.byteLength(layout[2 * s + 1]);
+            if (need < 0) {
+                return null;
+            }
+            total += 2 + need;
+        }
+
+        String name = "com/example/qmx/server/generated/FrameDecoder_"
+                + table.getVersion().replaceAll("[^A-Za-z0-9_]", "_") + "_" + SEQ.incrementAndGet();
+        ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_FRAMES | ClassWriter.COMPUTE_MAXS);
+        cw.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC | Opcodes.ACC_FINAL | Opcodes.ACC_SYNTHETIC, name, null,
+                "java/lang/Object", new String[]{Type.getInternalName(FrameDecoder.class)});
+
+        MethodVisitor init = cw.visitMethod(Opcodes.ACC_PUBLIC, "<init>", "()V", null, null);
+        init.visitCode();
+        init.visitVarInsn(Opcodes.ALOAD, 0);
+        init.visitMethodInsn(Opcodes.INVOKESPECIAL, "java/lang/Object", "<init>", "()V", false);
+        init.visitInsn(Opcodes.RETURN);
+        init.visitMaxs(0, 0);
+        init.visitEnd();
+
+        // 局部变量：0=this 1=pdu 2=offset 3=dataLen 4=map 5=当前段列表
+        MethodVisitor mv = cw.visitMethod(Opcodes.ACC_PUBLIC, "decode", "([BII)Ljava/util/Map;", null, null);
+        mv.visitCode();
+        Label miss = new Label();
+
+        // 布局守卫：总长度与每个段头都必须一致
+        mv.visitVarInsn(Opcodes.ILOAD, 3);
+        pushInt(mv, total);
+        mv.visitJumpInsn(Opcodes.IF_ICMPNE, miss);
+        int pos = 0;
+        for (int s = 0; s < segments; s++) {
+            ProtocolDispatchTable.TypeEntry t = table.type(layout[2 * s]);
+            for (int h = 0; h < 2; h++) {
+                loadByte(mv, pos + h);
+                pushInt(mv, (byte) layout[2 * s + h]);
+                mv.visitJumpInsn(Opcodes.IF_ICMPNE, miss);
+            }
+            pos += 2 + t.byteLength(layout[2 * s + 1]);
+        }
+
+        mv.visitTypeInsn(Opcodes.NEW, "java/util/HashMap");
+        mv.visitInsn(Opcodes.DUP);
+        pushInt(mv, segments * 2);
+        mv.visitMethodInsn(Opcodes.INVOKESPECIAL, "java/util/HashMap", "<init>", "(I)V", false);
+        mv.visitVarInsn(Opcodes.ASTORE, 4);
+
+        pos = 0;
+        for (int s = 0; s < segments; s++) {
+            int typeId = layout[2 * s];
+            int count = layout[2 * s + 1];
+            ProtocolDispatchTable.TypeEntry t = table.type(typeId);
+            int data = pos + 2;
+
+            mv.visitTypeInsn(Opcodes.NEW, "java/util/ArrayList");
+            mv.visitInsn(Opcodes.DUP);
+            pushInt(mv, count);
+            mv.visitMethodInsn(Opcodes.INVOKESPECIAL, "java/util/ArrayList", "<init>", "(I)V", false);
+            mv.visitVarInsn(Opcodes.ASTORE, 5);
+
+            if (t.elementType(0) == ProtocolDispatchTable.BIT) {
+                for (int i = 0; i < count; i++) {
+                    mv.visitVarInsn(Opcodes.ALOAD, 5);
+                    mv.visitVarInsn(Opcodes.ALOAD, 1);
+                    pushPos(mv, data + i / 8);
+                    pushInt(mv, i % 8);
+                    mv.visitMethodInsn(Opcodes.INVOKESTATIC, SUPPORT, "bit", "([BII)J", false);
+                    addLong(mv);
+                }
+            } else {
+                int off = data;
+                for (int i = 0; i < count; i++) {
+                    int type = t.elementType(i);
+                    mv.visitVarInsn(Opcodes.ALOAD, 5);
+                    mv.visitVarInsn(Opcodes.ALOAD, 1);
+                    pushPos(mv, off);
+                    mv.visitMethodInsn(Opcodes.INVOKESTATIC, SUPPORT, READERS[type], "([BI)J", false);
+                    addLong(mv);
+                    off += ProtocolDispatchTable.width(type);
+                }
+            }
+
+            mv.visitVarInsn(Opcodes.ALOAD, 4);
+            pushInt(mv, typeId);
+            mv.visitMethodInsn(Opcodes.INVOKESTATIC, "java/lang/Integer", "valueOf", "(I)Ljava/lang/Integer;", false);
+            mv.visitVarInsn(Opcodes.ALOAD, 5);
+            mv.visitMethodInsn(Opcodes.INVOKEINTERFACE, "java/util/Map", "put",
+                    "(Ljava/lang/Object;Ljava/lang/Object;)Ljava/lang/Object;", true);
+            mv.visitInsn(Opcodes.POP);
+            pos = data + t.byteLength(count);
+        }
+        mv.visitVarInsn(Opcodes.ALOAD, 4);
+        mv.visitInsn(Opcodes.ARETURN);
+
+        mv.visitLabel(miss);
+        mv.visitInsn(Opcodes.ACONST_NULL);
+        mv.visitInsn(Opcodes.ARETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+        cw.visitEnd();
+
+        try {
+            Class<?> cls = new DecoderClassLoader(ProtocolDecoderGenerator.class.getClassLoader())
+                    .define(name.replace('/', '.'), cw.toByteArray());
+            return (FrameDecoder) cls.getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            throw new IllegalStateException("生成解码类失败: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 提取帧的段布局；同一 typeId 出现多次或帧不完整时无法用固定布局表示，返回 null
+     */
+    static int[] layoutOf(byte[] pdu, int offset, int dataLen, ProtocolDispatchTable table) {
+        final int end = offset + dataLen;
+        List<Integer> layout = new ArrayList<>();
+        Set<Integer> seen = new HashSet<>();
+        while (offset + 2 <= end) {
+            int typeId = pdu[offset] & 0xFF;
+            int count = pdu[offset + 1] & 0xFF;
+            ProtocolDispatchTable.TypeEntry t = table.type(typeId);
+            int need = t == null ? -1 : t.byteLength(count);
+            if (need < 0 || offset + 2 + need > end || !seen.add(typeId)) {
+                return null;
+            }
+            layout.add(typeId);
+            layout.add(count);
+            offset += 2 + need;
+        }
+        if (offset != end) {
+            return null;
+        }
+        int[] out = new int[layout.size()];
+        for (int i = 0; i < out.length; i++) {
+            out[i] = layout.get(i);
+        }
+        return out;
+    }
+
+    // ========== 生成类调用的读取函数（由 JIT 内联） ==========
+
+    private static final String[] READERS = new String[8];
+
+    static {
+        READERS[ProtocolDispatchTable.UINT8] = "u8";
+        READERS[ProtocolDispatchTable.INT8] = "i8";
+        READERS[ProtocolDispatchTable.UINT16] = "u16";
+        READERS[ProtocolDispatchTable.INT16] = "i16";
+        READERS[ProtocolDispatchTable.UINT32] = "u32";
+        READERS[ProtocolDispatchTable.INT32] = "i32";
+        READERS[ProtocolDispatchTable.FLOAT32] = "i32";
+    }
+
+    public static long bit(byte[] b, int pos, int bitIndex) {
+        return (b[pos] >> bitIndex) & 0x01;
+    }
+
+    public static long u8(byte[] b, int pos) {
+        return b[pos] & 0xFF;
+    }
+
+    public static long i8(byte[] b, int pos) {
+        return b[pos];
+    }
+
+    public static long u16(byte[] b, int pos) {
+        return ((b[pos] & 0xFF) << 8) | (b[pos + 1] & 0xFF);
+    }
+
+    public static long i16(byte[] b, int pos) {
+        return (short) (((b[pos] & 0xFF) << 8) | (b[pos + 1] & 0xFF));
+    }
+
+    public static long u32(byte[] b, int pos) {
+        return i32(b, pos) & 0xFFFFFFFFL;
+    }
+
+    public static long i32(byte[] b, int pos) {
+        return ((b[pos] & 0xFF) << 24)
+                | ((b[pos + 1] & 0xFF) << 16)
+                | ((b[pos + 2] & 0xFF) << 8)
+                | (b[pos + 3] & 0xFF);
+    }
+
+    // ========== 字节码辅助 ==========
+
+    private static void loadByte(MethodVisitor mv, int rel) {
+        mv.visitVarInsn(Opcodes.ALOAD, 1);
+        pushPos(mv, rel);
+        mv.visitInsn(Opcodes.BALOAD);
+    }
+
+    // offset + rel
+    private static void pushPos(MethodVisitor mv, int rel) {
+        mv.visitVarInsn(Opcodes.ILOAD, 2);
+        if (rel != 0) {
+            pushInt(mv, rel);
+            mv.visitInsn(Opcodes.IADD);
+        }
+    }
+
+    private static void addLong(MethodVisitor mv) {
+        mv.visitMethodInsn(Opcodes.INVOKESTATIC, "java/lang/Long", "valueOf", "(J)Ljava/lang/Long;", false);
+        mv.visitMethodInsn(Opcodes.INVOKEINTERFACE, "java/util/List", "add", "(Ljava/lang/Object;)Z", true);
+        mv.visitInsn(Opcodes.POP);
+    }
+
+    private static void pushInt(MethodVisitor mv, int v) {
+        if (v >= -1 && v <= 5) {
+            mv.visitInsn(Opcodes.ICONST_0 + v);
+        } else if (v >= Byte.MIN_VALUE && v <= Byte.MAX_VALUE) {
+            mv.visitIntInsn(Opcodes.BIPUSH, v);
+        } else if (v >= Short.MIN_VALUE && v <= Short.MAX_VALUE) {
+            mv.visitIntInsn(Opcodes.SIPUSH, v);
+        } else {
+            mv.visitLdcInsn(v);
+        }
+    }
+
+    private static final class DecoderClassLoader extends ClassLoader {
+        DecoderClassLoader(ClassLoader parent) {
+            super(parent);
+        }
+
+        Class<?> define(String name, byte[] bytes) {
+            return defineClass(name, bytes, 0, bytes.length);
+        }
+    }
+}
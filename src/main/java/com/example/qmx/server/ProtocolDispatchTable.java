@@ -0,0 +1,378 @@
+package com.example.qmx.server;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 由 ProtocolSchema 某一版本编译出的解码/分发表
+ * <p>
+ * 1. 按 typeId 直接下标取到 TypeEntry，数据段长度、各下标的读取方式、点位名称与缩放系数均已预先算好，
+ *    解码时对报文只做一遍顺序扫描
+ * 2. 解码结果仍为 Map&lt;typeId, List&lt;Long&gt;&gt;（浮点保存原始位模式），与直采轮询、报警处理共用
+ * 3. 入库时按 TypeEntry.target 分发到对应的表，按 name/value 取点位名称与工程值
+ * 4. 同一段布局连续出现几次后由 ProtocolDecoderGenerator 生成展开的专用解码类，
+ *    之后该布局的帧不再逐段解析段头；布局不符时回退到通用解释器
+ */
+public final class ProtocolDispatchTable {
+
+    private static final Logger log = LoggerFactory.getLogger(ProtocolDispatchTable.class);
+
+    // 同一布局连续出现多少次后生成专用解码类
+    private static final int SPECIALIZE_AFTER = 3;
+    // 每个版本最多保留的专用解码类（同版本不同网关可能上报不同布局）
+    private static final int MAX_SPECIALIZED = 4;
+
+    public static final String TARGET_NONE = "none";
+    public static final String TARGET_ALARM = "alarm";
+    public static final String TARGET_DEVICE_STATUS = "device_status";
+    public static final String TARGET_SENSOR = "sensor";
+    public static final String TARGET_SPRAY_RECORD = "spray_record";
+    public static final String TARGET_PRODUCTION = "production";
+    public static final String TARGET_CONTROL_PARAM = "control_param";
+
+    private static final List<String> TARGETS = Arrays.asList(TARGET_NONE, TARGET_ALARM, TARGET_DEVICE_STATUS,
+            TARGET_SENSOR, TARGET_SPRAY_RECORD, TARGET_PRODUCTION, TARGET_CONTROL_PARAM);
+
+    // 数据类型编码，WIDTHS 为对应字节数（bit 按位打包，单独处理）
+    public static final int BIT = 0;
+    public static final int UINT8 = 1;
+    public static final int INT8 = 2;
+    public static final int UINT16 = 3;
+    public static final int INT16 = 4;
+    public static final int UINT32 = 5;
+    public static final int INT32 = 6;
+    public static final int FLOAT32 = 7;
+
+    private static final int[] WIDTHS = {0, 1, 1, 2, 2, 4, 4, 4};
+
+    private final String version;
+    private final TypeEntry[] types = new TypeEntry[256];
+    private final List<TypeEntry> typeList = new ArrayList<>();
+    // 参数下发数据标识 -> 点位名称（按配置顺序）
+    private final Map<Integer, String> configNames = new LinkedHashMap<>();
+
+    private final boolean codegen;
+    private volatile ProtocolDecoderGenerator.FrameDecoder[] specialized = new ProtocolDecoderGenerator.FrameDecoder[0];
+    // 以下由 this 保护，仅在未命中专用解码类时访问
+    private int[] candidate;
+    private int candidateHits;
+    private boolean codegenFailed;
+    // 协议描述重新加载后旧版本分发表不再生成解码类
+    private boolean retired;
+
+    static int width(int type) {
+        return WIDTHS[type];
+    }
+
+    public static boolean isTarget(String target) {
+        return TARGETS.contains(target);
+    }
+
+    /**
+     * @return 数据类型编码；不认识的类型返回 -1
+     */
+    public static int typeCode(String dataType) {
+        if (dataType == null) {
+            return -1;
+        }
+        switch (dataType) {
+            case "bit":
+                return BIT;
+            case "uint8":
+            case "char":
+                return UINT8;
+            case "int8":
+                return INT8;
+            case "uint16":
+                return UINT16;
+            case "int16":
+                return INT16;
+            case "uint32":
+                return UINT32;
+            case "int32":
+                return INT32;
+            case "float32":
+                return FLOAT32;
+            default:
+                return -1;
+        }
+    }
+
+    /**
+     * 单个 typeId 的预编译描述
+     */
+    public static final class TypeEntry {
+        private final int typeId;
+        private final String name;
+        private final String target;
+        // 非定长结构的元素类型
+        private final int elementType;
+        // 定长结构各字段类型；非定长为 null
+        private final int[] layout;
+        private final int layoutBytes;
+        private final String[] names;
+        private final double[] scales;
+        private final String defaultName;
+
+        TypeEntry(ProtocolSchema.TypeDef def) {
+            this.typeId = def.getTypeId();
+            this.name = def.getName();
+            this.target = def.getTarget();
+            this.defaultName = def.getDefaultName();
+            List<ProtocolSchema.PointDef> points = def.getPoints();
+            this.names = new String[points.size()];
+            this.scales = new double[points.size()];
+            for (int i = 0; i < points.size(); i++) {
+                names[i] = points.get(i).getName();
+                scales[i] = points.get(i).getScale();
+            }
+            if (def.isFixed()) {
+                this.elementType = -1;
+                this.layout = new int[points.size()];
+                int bytes = 0;
+                for (int i = 0; i < points.size(); i++) {
+                    layout[i] = typeCode(points.get(i).getDataType());
+                    bytes += WIDTHS[layout[i]];
+                }
+                this.layoutBytes = bytes;
+            } else {
+                this.elementType = typeCode(def.getDataType());
+                this.layout = null;
+                this.layoutBytes = 0;
+            }
+        }
+
+        public int getTypeId() {
+            return typeId;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getTarget() {
+            return target;
+        }
+
+        /**
+         * 数据段中 count 个元素占用的字节数；定长结构数量不符时返回 -1
+         */
+        int byteLength(int count) {
+            if (layout != null) {
+                return count == layout.length ? layoutBytes : -1;
+            }
+            return elementType == BIT ? (count + 7) / 8 : count * WIDTHS[elementType];
+        }
+
+        void decodeInto(byte[] pdu, int offset, int count, List<Long> values) {
+            if (layout != null) {
+                for (int type : layout) {
+                    values.add(read(pdu, offset, type));
+                    offset += WIDTHS[type];
+                }
+            } else if (elementType == BIT) {
+                for (int i = 0; i < count; i++) {
+                    // 低位开始
+                    values.add((long) ((pdu[offset + i / 8] >> (i % 8)) & 0x01));
+                }
+            } else {
+                int width = WIDTHS[elementType];
+                for (int i = 0; i < count; i++) {
+                    values.add(read(pdu, offset, elementType));
+                    offset += width;
+                }
+            }
+        }
+
+        /**
+         * 下标对应元素的数据类型编码
+         */
+        int elementType(int index) {
+            return layout != null ? layout[index] : elementType;
+        }
+
+        /**
+         * 下标对应的点位名称；未配置且无名称模板时返回 null（不入库）
+         */
+        public String name(int index) {
+            if (index < names.length && names[index] != null) {
+                return names[index];
+            }
+            return defaultName == null ? null : defaultName.replace("{n}", String.valueOf(index + 1));
+        }
+
+        /**
+         * 原始值换算为工程值：浮点按位模式还原，再乘缩放系数
+         */
+        public double value(int index, long raw) {
+            int type = elementType(index);
+            double v = type == FLOAT32 ? Float.intBitsToFloat((int) raw) : raw;
+            return index < scales.length ? v * scales[index] : v;
+        }
+    }
+
+    ProtocolDispatchTable(String version, ProtocolSchema.Version def, boolean codegen) {
+        this.version = version;
+        this.codegen = codegen;
+        for (ProtocolSchema.TypeDef t : def.getTypes()) {
+            TypeEntry entry = new TypeEntry(t);
+            types[t.getTypeId()] = entry;
+            typeList.add(entry);
+            if (TARGET_CONTROL_PARAM.equals(t.getTarget())) {
+                for (ProtocolSchema.PointDef p : t.getPoints()) {
+                    if (p.getDataId() != null && p.getName() != null) {
+                        configNames.put(p.getDataId(), p.getName());
+                    }
+                }
+            }
+        }
+    }
+
+    public String getVersion() {
+        return version;
+    }
+
+    public TypeEntry type(int typeId) {
+        return typeId >= 0 && typeId < types.length ? types[typeId] : null;
+    }
+
+    public List<TypeEntry> types() {
+        return Collections.unmodifiableList(typeList);
+    }
+
+    /**
+     * 参数下发数据标识对应的控制参数名称
+     */
+    public String configName(int dataId) {
+        return configNames.get(dataId);
+    }
+
+    public List<String> configNames() {
+        return new ArrayList<>(configNames.values());
+    }
+
+    /**
+     * 解析上报帧数据内容：[typeId 1B][count 1B][data...] 多段拼接
+     * 优先使用已生成的专用解码类，均不匹配时使用通用解释器
+     */
+    public Map<Integer, List<Long>> decode(byte[] pdu, int offset, int dataLen) {
+        for (ProtocolDecoderGenerator.FrameDecoder d : specialized) {
+            Map<Integer, List<Long>> out = d.decode(pdu, offset, dataLen);
+            if (out != null) {
+                return out;
+            }
+        }
+        if (codegen) {
+            learn(pdu, offset, dataLen);
+        }
+        return decodeGeneric(pdu, offset, dataLen);
+    }
+
+    /**
+     * 通用解释器：逐段解析段头，按 TypeEntry 读取
+     * 未定义的 typeId 无法确定段长，丢弃其后的内容；长度不足的段同样终止解析
+     */
+    public Map<Integer, List<Long>> decodeGeneric(byte[] pdu, int offset, int dataLen) {
+        final int end = offset + dataLen;
+        Map<Integer, List<Long>> out = new HashMap<>();
+        while (offset + 2 <= end) {
+            int typeId = pdu[offset++] & 0xFF;
+            int count = pdu[offset++] & 0xFF;
+            TypeEntry t = types[typeId];
+            if (t == null) {
+                break;
+            }
+            List<Long> values = out.computeIfAbsent(typeId, k -> new ArrayList<>(count));
+            int need = t.byteLength(count);
+            if (need < 0 || offset + need > end) {
+                break;
+            }
+            t.decodeInto(pdu, offset, count, values);
+            offset += need;
+        }
+        return out;
+    }
+
+    public int getSpecializedCount() {
+        return specialized.length;
+    }
+
+    /**
+     * 协议描述重新加载后由 ProtocolSchemaService 调用：丢弃已生成的专用解码类并停止生成，
+     * 解码类各自的类加载器随之不再被引用、可以卸载；仍持有本表的调用方继续用通用解释器解码
+     *
+     * @return 丢弃的专用解码类个数
+     */
+    synchronized int retire() {
+        retired = true;
+        candidate = null;
+        int evicted = specialized.length;
+        specialized = new ProtocolDecoderGenerator.FrameDecoder[0];
+        return evicted;
+    }
+
+    /**
+     * 统计未命中的帧布局，同一布局连续出现 SPECIALIZE_AFTER 次后生成专用解码类
+     */
+    private synchronized void learn(byte[] pdu, int offset, int dataLen) {
+        if (retired || codegenFailed || specialized.length >= MAX_SPECIALIZED) {
+            return;
+        }
+        int[] layout = ProtocolDecoderGenerator.layoutOf(pdu, offset, dataLen, this);
+        if (layout == null || !Arrays.equals(layout, candidate)) {
+            candidate = layout;
+            candidateHits = layout == null ? 0 : 1;
+            return;
+        }
+        if (++candidateHits < SPECIALIZE_AFTER) {
+            return;
+        }
+        candidate = null;
+        try {
+            ProtocolDecoderGenerator.FrameDecoder d = ProtocolDecoderGenerator.generate(this, layout);
+            if (d != null) {
+                ProtocolDecoderGenerator.FrameDecoder[] next = Arrays.copyOf(specialized, specialized.length + 1);
+                next[specialized.length] = d;
+                specialized = next;
+                log.info("已生成专用解码类: version={}, 段数={}, 数据长度={}, 累计={}",
+                        version, layout.length / 2, dataLen, next.length);
+            }
+        } catch (Exception e) {
+            codegenFailed = true;
+            log.warn("生成专用解码类失败，版本 {} 改用通用解释器: {}", version, e.getMessage());
+        }
+    }
+
+    private static long read(byte[] b, int off, int type) {
+        switch (type) {
+            case UINT8:
+                return b[off] & 0xFF;
+            case INT8:
+                return b[off];
+            case UINT16:
+                return ((b[off] & 0xFF) << 8) | (b[off + 1] & 0xFF);
+            case INT16:
+                return (short) (((b[off] & 0xFF) << 8) | (b[off + 1] & 0xFF));
+            case UINT32:
+                return readInt(b, off) & 0xFFFFFFFFL;
+            default:
+                // int32 / float32（保存浮点的原始位模式）
+                return readInt(b, off);
+        }
+    }
+
+    private static int readInt(byte[] b, int off) {
+        return ((b[off] & 0xFF) << 24)
+                | ((b[off + 1] & 0xFF) << 16)
+                | ((b[off + 2] & 0xFF) << 8)
+                | (b[off + 3] & 0xFF);
+    }
+}
@@ -0,0 +1,120 @@
+package com.example.qmx.server;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 网关上报协议描述（protocol-schema.json）
+ * <p>
+ * 按网关固件版本描述每个数据类型标识 (typeId) 的数据类型、入库目标表，
+ * 以及每个下标 (index) 对应的点位名称与缩放系数；gateways 指定各网关号（unitId）使用的版本。
+ * 启动时由 ProtocolSchemaService 编译为 ProtocolDispatchTable，新增点位只需修改配置文件
+ */
+@Data
+public class ProtocolSchema {
+
+    // 未在 gateways 中列出的网关使用的版本
+    private String defaultVersion;
+
+    // unitId -> 固件版本
+    private Map<Integer, String> gateways = new HashMap<>();
+
+    private Map<String, Version> versions = new LinkedHashMap<>();
+
+    @Data
+    public static class Version {
+        private String description;
+        private List<TypeDef> types = new ArrayList<>();
+    }
+
+    @Data
+    public static class TypeDef {
+        private int typeId;
+        private String name;
+        // alarm / device_status / sensor / spray_record / production / control_param / none
+        private String target = "none";
+        // 数据段内元素的统一类型：bit / uint8 / char / int8 / uint16 / int16 / uint32 / int32 / float32
+        private String dataType;
+        // true 表示定长结构：数量必须等于 points 数量，每个点位使用自己的 dataType
+        private boolean fixed;
+        // 超出 points 的下标的名称模板，{n} 为从 1 开始的序号；为空则不入库
+        private String defaultName;
+        private List<PointDef> points = new ArrayList<>();
+    }
+
+    @Data
+    public static class PointDef {
+        // 为空时按 defaultName 生成；仍为空则该下标不入库
+        private String name;
+        // 定长结构中该字段的类型；非定长时为空表示沿用 TypeDef.dataType
+        private String dataType;
+        private double scale = 1.0;
+        // 参数下发时的数据标识（仅 control_param）
+        private Integer dataId;
+    }
+
+    /**
+     * 校验描述：版本存在、typeId 不重复、数据类型与入库目标合法
+     */
+    public void validate() {
+        if (versions.isEmpty()) {
+            throw new IllegalArgumentException("协议描述中没有任何版本");
+        }
+        if (defaultVersion == null || !versions.containsKey(defaultVersion)) {
+            throw new IllegalArgumentException("默认版本不存在: " + defaultVersion);
+        }
+        for (Map.Entry<Integer, String> e : gateways.entrySet()) {
+            if (!versions.containsKey(e.getValue())) {
+                throw new IllegalArgumentException("网关 " + e.getKey() + " 引用的版本不存在: " + e.getValue());
+            }
+        }
+        for (Map.Entry<String, Version> v : versions.entrySet()) {
+            Set<Integer> typeIds = new HashSet<>();
+            Set<Integer> dataIds = new HashSet<>();
+            for (TypeDef t : v.getValue().getTypes()) {
+                String where = v.getKey() + " typeId=0x" + Integer.toHexString(t.getTypeId());
+                if (t.getTypeId() < 0x00 || t.getTypeId() > 0xFF) {
+                    throw new IllegalArgumentException(where + " 超出 0x00-0xFF");
+                }
+                if (!typeIds.add(t.getTypeId())) {
+                    throw new IllegalArgumentException(where + " 重复定义");
+                }
+                if (!ProtocolDispatchTable.isTarget(t.getTarget())) {
+                    throw new IllegalArgumentException(where + " 入库目标不合法: " + t.getTarget());
+                }
+                if (t.isFixed()) {
+                    if (t.getPoints().isEmpty()) {
+                        throw new IllegalArgumentException(where + " 定长结构缺少字段定义");
+                    }
+                    for (PointDef p : t.getPoints()) {
+                        if (ProtocolDispatchTable.typeCode(p.getDataType()) < 0
+                                || ProtocolDispatchTable.typeCode(p.getDataType()) == ProtocolDispatchTable.BIT) {
+                            throw new IllegalArgumentException(where + " 字段类型不合法: " + p.getDataType());
+                        }
+                    }
+                } else {
+                    if (ProtocolDispatchTable.typeCode(t.getDataType()) < 0) {
+                        throw new IllegalArgumentException(where + " 数据类型不合法: " + t.getDataType());
+                    }
+                    for (PointDef p : t.getPoints()) {
+                        if (p.getDataType() != null && !p.getDataType().equals(t.getDataType())) {
+                            throw new IllegalArgumentException(where + " 非定长结构的点位不能单独指定类型: " + p.getName());
+                        }
+                    }
+                }
+                for (PointDef p : t.getPoints()) {
+                    if (p.getDataId() != null && !dataIds.add(p.getDataId())) {
+                        throw new IllegalArgumentException(v.getKey() + " 数据标识重复: 0x" + Integer.toHexString(p.getDataId()));
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.example.qmx.server;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 加载网关协议描述并按固件版本编译分发表
+ * <p>
+ * 描述文件有误时启动失败：上报帧无法解码时继续运行只会把数据静默丢掉
+ */
+@Service
+public class ProtocolSchemaService {
+
+    private static final Logger log = LoggerFactory.getLogger(ProtocolSchemaService.class);
+
+    @Value("${protocol.schema:classpath:protocol-schema.json}")
+    private Resource schemaResource;
+
+    // 按观察到的帧布局生成专用解码类（运行时定义类，默认关闭，按需开启）
+    @Value("${protocol.codegen.enabled:false}")
+    private boolean codegenEnabled;
+
+    private final ObjectMapper objectMapper = new ObjectMapper()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+    private volatile ProtocolDispatchTable defaultTable;
+    private volatile Map<Integer, ProtocolDispatchTable> gatewayTables = new HashMap<>();
+
+    @PostConstruct
+    public void load() {
+        ProtocolSchema schema;
+        try (InputStream in = schemaResource.getInputStream()) {
+            schema = objectMapper.readValue(in, ProtocolSchema.class);
+        } catch (Exception e) {
+            throw new IllegalStateException("加载网关协议描述失败: " + e.getMessage(), e);
+        }
+        apply(schema);
+    }
+
+    /**
+     * 校验并编译协议描述，替换当前分发表；被替换的旧分发表丢弃其专用解码类
+     */
+    public void apply(ProtocolSchema schema) {
+        schema.validate();
+        Map<String, ProtocolDispatchTable> byVersion = new HashMap<>();
+        for (Map.Entry<String, ProtocolSchema.Version> e : schema.getVersions().entrySet()) {
+            byVersion.put(e.getKey(), new ProtocolDispatchTable(e.getKey(), e.getValue(), codegenEnabled));
+        }
+        Map<Integer, ProtocolDispatchTable> tables = new HashMap<>();
+        for (Map.Entry<Integer, String> e : schema.getGateways().entrySet()) {
+            tables.put(e.getKey(), byVersion.get(e.getValue()));
+        }
+        Set<ProtocolDispatchTable> retired = Collections.newSetFromMap(new IdentityHashMap<>());
+        retired.addAll(gatewayTables.values());
+        if (defaultTable != null) {
+            retired.add(defaultTable);
+        }
+        this.gatewayTables = tables;
+        this.defaultTable = byVersion.get(schema.getDefaultVersion());
+        int evicted = 0;
+        for (ProtocolDispatchTable old : retired) {
+            evicted += old.retire();
+        }
+        if (evicted > 0) {
+            log.info("已丢弃旧协议描述的专用解码类: {} 个", evicted);
+        }
+        log.info("网关协议描述已加载: 版本={}, 默认版本={}, 网关映射={}",
+                byVersion.keySet(), schema.getDefaultVersion(), schema.getGateways());
+    }
+
+    /**
+     * 网关号对应固件版本的分发表；未配置的网关使用默认版本
+     */
+    public ProtocolDispatchTable table(int unitId) {
+        ProtocolDispatchTable t = gatewayTables.get(unitId);
+        return t != null ? t : defaultTable;
+    }
+
+    public ProtocolDispatchTable defaultTable() {
+        return defaultTable;
+    }
+}
@@ -0,0 +1,209 @@
+package com.example.qmx.server;
+
+import com.example.qmx.domain.QualityDetection;
+import com.example.qmx.mapper.QualityDetectionMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.DigestUtils;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 质检结果批量写入
+ * <p>
+ * 推送接口与轮询（ZljcService）得到的结果统一经过这里：
+ * 1. 按 resultId 去重（内存最近N条 + 数据库唯一索引兜底）；没有 resultId 的结果按来源、检测时间与结果生成去重键，
+ *    同样写入 resultId 列
+ * 2. 入队后由单个写线程按批次 INSERT IGNORE 到 quality_result；submit 返回 ACCEPTED 只表示已入队，尚未落库
+ * 3. 批次写入失败时由写线程退避后重试，最多 max-retries 次，重试期间不再取新结果，队列写满后推送方收到 QUEUE_FULL（可重试）；
+ *    重试仍失败才丢弃该批并从去重表中移除其 resultId，推送方重试或下次轮询可以重新入队
+ * 4. 关闭时写线程退出前把队列中剩余的结果写完
+ */
+@Service
+public class QualityResultWriter {
+
+    private static final Logger log = LoggerFactory.getLogger(QualityResultWriter.class);
+
+    // 生成的去重键前缀，与质检服务的结果ID区分
+    static final String DERIVED_ID_PREFIX = "auto:";
+
+    /**
+     * 提交结果：ACCEPTED 已入队（写入失败会有限次重试）；DUPLICATE resultId 重复；QUEUE_FULL 队列已满未入队（可重试）；INVALID 缺少 result
+     */
+    public enum SubmitResult {
+        ACCEPTED, DUPLICATE, QUEUE_FULL, INVALID
+    }
+
+    @Autowired
+    private QualityDetectionMapper qualityDetectionMapper;
+
+    @Value("${quality.writer.batch-size:200}")
+    private int batchSize;
+
+    @Value("${quality.writer.flush-interval-ms:500}")
+    private long flushIntervalMs;
+
+    @Value("${quality.writer.queue-capacity:10000}")
+    private int queueCapacity;
+
+    @Value("${quality.dedup.capacity:10000}")
+    private int dedupCapacity;
+
+    @Value("${quality.writer.max-retries:3}")
+    private int maxRetries;
+
+    @Value("${quality.writer.retry-backoff-ms:1000}")
+    private long retryBackoffMs;
+
+    private BlockingQueue<QualityDetection> queue;
+
+    private Map<String, Boolean> recentIds;
+
+    private Thread writerThread;
+
+    private volatile boolean running;
+
+    @PostConstruct
+    public void start() {
+        queue = new ArrayBlockingQueue<>(queueCapacity);
+        final int capacity = dedupCapacity;
+        recentIds = new LinkedHashMap<String, Boolean>(16, 0.75f, false) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                return size() > capacity;
+            }
+        };
+        running = true;
+        writerThread = new Thread(this::writeLoop, "quality-result-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    /**
+     * 停止接收并等待写线程写完剩余结果后退出；不中断写线程，避免打断进行中的批量写入
+     */
+    @PreDestroy
+    public void stop() {
+        synchronized (recentIds) {
+            running = false;
+        }
+        if (writerThread != null) {
+            try {
+                writerThread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * 提交一条质检结果
+     *
+     * @return 只有 ACCEPTED 表示已入队
+     */
+    public SubmitResult submit(QualityDetection qd) {
+        if (qd == null || qd.getResult() == null) {
+            return SubmitResult.INVALID;
+        }
+        if (qd.getUnitId() == null) {
+            qd.setUnitId(1);
+        }
+        if (qd.getResultId() == null || qd.getResultId().isEmpty()) {
+            qd.setResultId(derivedId(qd));
+        }
+        String resultId = qd.getResultId();
+        // 与 stop 互斥：停止后不再入队，写线程退出前的最后一次取队列不会漏掉结果
+        synchronized (recentIds) {
+            if (!running) {
+                return SubmitResult.QUEUE_FULL;
+            }
+            if (recentIds.containsKey(resultId)) {
+                return SubmitResult.DUPLICATE;
+            }
+            if (!queue.offer(qd)) {
+                log.warn("质检结果写入队列已满，丢弃: resultId={}, result={}", resultId, qd.getResult());
+                return SubmitResult.QUEUE_FULL;
+            }
+            recentIds.put(resultId, Boolean.TRUE);
+        }
+        return SubmitResult.ACCEPTED;
+    }
+
+    /**
+     * 没有 resultId 时按网关号、来源、检测时间与结果生成去重键（定长摘要，不超过 resultId 列宽）
+     */
+    static String derivedId(QualityDetection qd) {
+        String key = qd.getUnitId() + "|" + qd.getSource() + "|" + qd.getTime() + "|" + qd.getResult();
+        return DERIVED_ID_PREFIX + DigestUtils.md5DigestAsHex(key.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void writeLoop() {
+        List<QualityDetection> batch = new ArrayList<>(batchSize);
+        while (running) {
+            try {
+                QualityDetection first = queue.poll(flushIntervalMs, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                flush(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } finally {
+                batch.clear();
+            }
+        }
+        // 停止后 submit 不再入队，把剩余结果按批写完
+        while (queue.drainTo(batch, batchSize) > 0) {
+            flush(batch);
+            batch.clear();
+        }
+    }
+
+    /**
+     * 写入一批结果，失败时退避重试，最多 maxRetries 次；仍失败则丢弃并释放其 resultId
+     */
+    private void flush(List<QualityDetection> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        for (int attempt = 0; ; attempt++) {
+            try {
+                int inserted = qualityDetectionMapper.insertIgnoreBatch(batch);
+                log.info("quality_result 批量写入: {} 条, 受影响行数={}", batch.size(), inserted);
+                return;
+            } catch (Exception e) {
+                if (attempt >= maxRetries) {
+                    log.error("quality_result 批量写入失败，已重试 {} 次，丢弃: {} 条, err={}", attempt, batch.size(), e.getMessage());
+                    break;
+                }
+                log.warn("quality_result 批量写入失败，{}ms 后第 {} 次重试: {} 条, err={}",
+                        retryBackoffMs, attempt + 1, batch.size(), e.getMessage());
+                try {
+                    Thread.sleep(retryBackoffMs);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+        synchronized (recentIds) {
+            for (QualityDetection qd : batch) {
+                recentIds.remove(qd.getResultId());
+            }
+        }
+    }
+}
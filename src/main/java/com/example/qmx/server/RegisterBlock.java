@@ -0,0 +1,92 @@
+package com.example.qmx.server;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 一次 Modbus 读请求覆盖的连续地址块
+ */
+public class RegisterBlock {
+
+    // 单次请求上限：寄存器 125 个，线圈/离散输入 2000 位
+    public static final int MAX_REGISTERS = 125;
+    public static final int MAX_BITS = 2000;
+
+    private final String area;
+    private final int start;
+    private int quantity;
+    private final List<PollRegisterMap.Point> points = new ArrayList<>();
+
+    public RegisterBlock(String area, int start, int quantity) {
+        this.area = area;
+        this.start = start;
+        this.quantity = quantity;
+    }
+
+    public String getArea() {
+        return area;
+    }
+
+    public int getStart() {
+        return start;
+    }
+
+    public int getQuantity() {
+        return quantity;
+    }
+
+    public int getEnd() {
+        return start + quantity;
+    }
+
+    public List<PollRegisterMap.Point> getPoints() {
+        return points;
+    }
+
+    public boolean isBitArea() {
+        return "coil".equals(area) || "discrete".equals(area);
+    }
+
+    void extendTo(int end) {
+        if (end > getEnd()) {
+            quantity = end - start;
+        }
+    }
+
+    public static int maxQuantity(String area) {
+        return "coil".equals(area) || "discrete".equals(area) ? MAX_BITS : MAX_REGISTERS;
+    }
+
+    /**
+     * 按区域分组，地址排序后合并相邻（或重叠）的点位，单块不超过协议上限
+     *
+     * @param maxGap 允许跨过的空闲地址数，0 表示只合并紧邻的点位
+     */
+    public static List<RegisterBlock> merge(List<PollRegisterMap.Point> points, int maxGap) {
+        Map<String, List<PollRegisterMap.Point>> byArea = new LinkedHashMap<>();
+        for (PollRegisterMap.Point p : points) {
+            byArea.computeIfAbsent(p.getArea(), k -> new ArrayList<>()).add(p);
+        }
+        List<RegisterBlock> blocks = new ArrayList<>();
+        for (Map.Entry<String, List<PollRegisterMap.Point>> e : byArea.entrySet()) {
+            List<PollRegisterMap.Point> sorted = new ArrayList<>(e.getValue());
+            sorted.sort(Comparator.comparingInt(PollRegisterMap.Point::getAddress));
+            int max = maxQuantity(e.getKey());
+            RegisterBlock cur = null;
+            for (PollRegisterMap.Point p : sorted) {
+                int pEnd = p.getAddress() + p.getRegisterCount();
+                if (cur != null && p.getAddress() <= cur.getEnd() + maxGap && Math.max(pEnd, cur.getEnd()) - cur.start <= max) {
+                    cur.extendTo(pEnd);
+                } else {
+                    cur = new RegisterBlock(e.getKey(), p.getAddress(), p.getRegisterCount());
+                    blocks.add(cur);
+                }
+                cur.points.add(p);
+            }
+        }
+        return blocks;
+    }
+}
@@ -0,0 +1,176 @@
+package com.example.qmx.server;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 读块优化器：按代价模型把点位划分为最少耗时的读请求
+ * <p>
+ * 代价模型：一次请求耗时 ≈ 固定往返开销 + 寄存器数 × 单寄存器传输开销
+ * 1. 同区域点位按地址排序，动态规划求总代价最小的划分（单块不超过 125 寄存器 / 2000 位）
+ * 2. 跨过空闲地址多读几个寄存器比多一次往返便宜时自动合并
+ * 3. 每台设备用 EWMA 在线回归（耗时 ~ 寄存器数）学习两项开销，
+ *    慢链路（串口网关）倾向于大块，局域网 PLC 倾向于少读空闲地址
+ */
+public class RegisterBlockOptimizer {
+
+    private final double defaultRoundTripMs;
+    private final double defaultPerRegisterMs;
+    private final double alpha;
+    private final Map<String, CostModel> models = new ConcurrentHashMap<>();
+
+    /**
+     * 单台设备的在线代价模型（EWMA 加权的一元线性回归）
+     */
+    public class CostModel {
+        private double meanX;
+        private double meanY;
+        private double meanXX;
+        private double meanXY;
+        private long samples;
+
+        synchronized void record(int registers, double rttMs) {
+            if (samples == 0) {
+                meanX = registers;
+                meanY = rttMs;
+                meanXX = (double) registers * registers;
+                meanXY = registers * rttMs;
+            } else {
+                meanX += alpha * (registers - meanX);
+                meanY += alpha * (rttMs - meanY);
+                meanXX += alpha * ((double) registers * registers - meanXX);
+                meanXY += alpha * (registers * rttMs - meanXY);
+            }
+            samples++;
+        }
+
+        /**
+         * 单寄存器开销（毫秒）；样本中块大小变化不足时用默认值
+         */
+        public synchronized double perRegisterMs() {
+            double var = meanXX - meanX * meanX;
+            if (samples < 8 || var < 1.0) {
+                return defaultPerRegisterMs;
+            }
+            double slope = (meanXY - meanX * meanY) / var;
+            return slope > 0 ? slope : defaultPerRegisterMs;
+        }
+
+        /**
+         * 固定往返开销（毫秒）
+         */
+        public synchronized double roundTripMs() {
+            if (samples == 0) {
+                return defaultRoundTripMs;
+            }
+            double intercept = meanY - perRegisterMs() * meanX;
+            return intercept > 0 ? intercept : Math.max(meanY * 0.5, 0.01);
+        }
+
+        public synchronized long getSamples() {
+            return samples;
+        }
+
+        /**
+         * 值得跨过的最大空闲寄存器数：多读 gap 个寄存器的代价小于一次往返
+         */
+        public int gapThreshold() {
+            double per = perRegisterMs();
+            double gap = per > 0 ? roundTripMs() / per : RegisterBlock.MAX_REGISTERS;
+            return (int) Math.min(RegisterBlock.MAX_REGISTERS, Math.max(0, Math.floor(gap)));
+        }
+
+        double blockCost(int quantity) {
+            return roundTripMs() + quantity * perRegisterMs();
+        }
+    }
+
+    /**
+     * @param defaultRoundTripMs   无样本时的往返开销（毫秒）
+     * @param defaultPerRegisterMs 无样本时的单寄存器开销（毫秒）
+     * @param alpha                EWMA 平滑系数（0-1，越大越偏向近期样本）
+     */
+    public RegisterBlockOptimizer(double defaultRoundTripMs, double defaultPerRegisterMs, double alpha) {
+        this.defaultRoundTripMs = defaultRoundTripMs;
+        this.defaultPerRegisterMs = defaultPerRegisterMs;
+        this.alpha = alpha;
+    }
+
+    public CostModel model(String deviceKey) {
+        return models.computeIfAbsent(deviceKey, k -> new CostModel());
+    }
+
+    /**
+     * 记录一次读请求的实测耗时
+     */
+    public void recordLatency(String deviceKey, int registers, long rttNanos) {
+        model(deviceKey).record(registers, rttNanos / 1_000_000.0);
+    }
+
+    /**
+     * 按设备当前代价模型计算最优读块
+     */
+    public List<RegisterBlock> optimize(String deviceKey, List<PollRegisterMap.Point> points) {
+        CostModel m = model(deviceKey);
+        Map<String, List<PollRegisterMap.Point>> byArea = new LinkedHashMap<>();
+        for (PollRegisterMap.Point p : points) {
+            byArea.computeIfAbsent(p.getArea(), k -> new ArrayList<>()).add(p);
+        }
+        List<RegisterBlock> blocks = new ArrayList<>();
+        for (Map.Entry<String, List<PollRegisterMap.Point>> e : byArea.entrySet()) {
+            blocks.addAll(optimizeArea(e.getKey(), e.getValue(), m));
+        }
+        return blocks;
+    }
+
+    /**
+     * dp[i] = 覆盖前 i 个点位的最小代价；最后一块覆盖点位 j..i-1
+     * 块跨度受协议上限约束，所以内层循环最多回看 125（2000）个点位
+     */
+    private List<RegisterBlock> optimizeArea(String area, List<PollRegisterMap.Point> pts, CostModel m) {
+        List<PollRegisterMap.Point> sorted = new ArrayList<>(pts);
+        sorted.sort(Comparator.comparingInt(PollRegisterMap.Point::getAddress));
+        int n = sorted.size();
+        int max = RegisterBlock.maxQuantity(area);
+        // 位区域的“寄存器”是位，按 16 位折算传输开销
+        double unitScale = RegisterBlock.MAX_BITS == max ? 1.0 / 16 : 1.0;
+
+        double[] dp = new double[n + 1];
+        int[] from = new int[n + 1];
+        for (int i = 1; i <= n; i++) {
+            dp[i] = Double.MAX_VALUE;
+            int end = 0;
+            for (int j = i - 1; j >= 0; j--) {
+                PollRegisterMap.Point pj = sorted.get(j);
+                end = Math.max(end, pj.getAddress() + pj.getRegisterCount());
+                int span = end - pj.getAddress();
+                if (span > max) {
+                    break;
+                }
+                double cost = dp[j] + m.roundTripMs() + span * unitScale * m.perRegisterMs();
+                if (cost < dp[i]) {
+                    dp[i] = cost;
+                    from[i] = j;
+                }
+            }
+        }
+
+        List<RegisterBlock> blocks = new ArrayList<>();
+        for (int i = n; i > 0; i = from[i]) {
+            int j = from[i];
+            int start = sorted.get(j).getAddress();
+            int end = start;
+            for (int k = j; k < i; k++) {
+                end = Math.max(end, sorted.get(k).getAddress() + sorted.get(k).getRegisterCount());
+            }
+            RegisterBlock b = new RegisterBlock(area, start, end - start);
+            b.getPoints().addAll(sorted.subList(j, i));
+            blocks.add(0, b);
+        }
+        return blocks;
+    }
+}
@@ -0,0 +1,231 @@
+package com.example.qmx.server;
+
+import com.example.qmx.domain.ControlParameter;
+import com.example.qmx.domain.QualityDetection;
+import com.example.qmx.domain.SprayCycle;
+import com.example.qmx.domain.SprayRecord;
+import com.example.qmx.mapper.ControlParameterMapper;
+import com.example.qmx.mapper.QualityDetectionMapper;
+import com.example.qmx.mapper.SensorMapper;
+import com.example.qmx.mapper.SprayCycleMapper;
+import com.example.qmx.mapper.SprayRecordMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 质检结果与喷涂周期的增量关联（按网关分别进行，质检结果只与同一网关的喷涂/传感器/参数数据关联）
+ * <p>
+ * 每个网关每次只处理 quality_result.id 大于该网关 spray_cycle 水位线的结果：
+ * 1. 在各机器人进度点中找质检时间之前最近一次进度完成（rate >= 完成阈值）作为周期结束
+ * 2. 周期结束之前最近一次进度归零作为周期开始
+ * 3. 取周期开始时生效的控制参数、周期内喷涂管路压力均值/最大值
+ * 4. 冗余写入 spray_cycle，质量-参数分析只需扫描这一张表
+ * 找不到周期的结果也会落一行（周期字段为空），保证水位线前进
+ * <p>
+ * 推送的结果带客户端时间，id 顺序不等于时间顺序：按 id 顺序读取，遇到第一条仍在关联延迟内的结果即停止本批，
+ * 下一轮从它开始，避免水位线越过尚未关联的结果；某个网关在等待不影响其他网关。时间超前当前时刻一个延迟以上的（时钟偏差）不等待，直接关联
+ * 周期内取值的控制参数名、压力点位名按现场固件配置（correlation.param.*、correlation.pressure.*）
+ */
+@Service
+public class SprayCycleCorrelator {
+
+    private static final Logger log = LoggerFactory.getLogger(SprayCycleCorrelator.class);
+
+    @Autowired
+    private QualityDetectionMapper qualityDetectionMapper;
+
+    @Autowired
+    private SprayRecordMapper sprayRecordMapper;
+
+    @Autowired
+    private SensorMapper sensorMapper;
+
+    @Autowired
+    private ControlParameterMapper controlParameterMapper;
+
+    @Autowired
+    private SprayCycleMapper sprayCycleMapper;
+
+    @Value("${correlation.enabled:true}")
+    private boolean enabled;
+
+    // 喷涂进度点（0x03 中的机器人进度）
+    @Value("${correlation.progress-dev-names:机器人1进度,机器人2进度}")
+    private String[] progressDevNames;
+
+    // 进度达到该值视为本块喷涂完成
+    @Value("${correlation.complete-rate:100}")
+    private double completeRate;
+
+    // 单个周期最长时长，限制回溯范围
+    @Value("${correlation.max-cycle-minutes:30}")
+    private long maxCycleMinutes;
+
+    // 质检结果入库后延迟多久再关联，等待同周期的传感器数据落库
+    @Value("${correlation.lag-ms:5000}")
+    private long lagMs;
+
+    @Value("${correlation.batch-size:200}")
+    private int batchSize;
+
+    // 取周期开始时生效值的控制参数名
+    @Value("${correlation.param.spray-speed:机器人喷涂速度}")
+    private String spraySpeedParam;
+
+    @Value("${correlation.param.clean-interval:定时清洗间隔}")
+    private String cleanIntervalParam;
+
+    @Value("${correlation.param.stirrer1-speed:搅拌器1转速}")
+    private String stirrer1SpeedParam;
+
+    @Value("${correlation.param.stirrer2-speed:搅拌器2转速}")
+    private String stirrer2SpeedParam;
+
+    // 统计周期内均值/最大值的压力点位名
+    @Value("${correlation.pressure.pipe1:喷涂管路1压力}")
+    private String pipe1PressureDevName;
+
+    @Value("${correlation.pressure.pipe2:喷涂管路2压力}")
+    private String pipe2PressureDevName;
+
+    @Scheduled(fixedDelayString = "${correlation.interval-ms:10000}")
+    public void correlate() {
+        if (!enabled) {
+            return;
+        }
+        List<Integer> unitIds;
+        try {
+            unitIds = qualityDetectionMapper.selectUnitIds();
+        } catch (Exception e) {
+            log.error("spray_cycle 增量关联失败，读取网关列表出错: {}", e.getMessage());
+            return;
+        }
+        if (unitIds == null) {
+            return;
+        }
+        // 各网关独立关联，一个网关失败不影响其他网关
+        for (Integer unitId : unitIds) {
+            if (unitId == null) {
+                continue;
+            }
+            try {
+                int total = correlateUnit(unitId);
+                if (total > 0) {
+                    log.info("spray_cycle 增量关联完成: unitId={}, {} 条", unitId, total);
+                }
+            } catch (Exception e) {
+                log.error("spray_cycle 增量关联失败: unitId={}, {}", unitId, e.getMessage());
+            }
+        }
+    }
+
+    private int correlateUnit(int unitId) {
+        int total = 0;
+        while (true) {
+            long watermark = sprayCycleMapper.getQualityWatermark(unitId);
+            LocalDateTime now = LocalDateTime.now();
+            List<QualityDetection> results = qualityDetectionMapper.selectAfterIdByUnit(unitId, watermark, batchSize);
+            if (results == null || results.isEmpty()) {
+                break;
+            }
+            List<SprayCycle> cycles = new ArrayList<>(results.size());
+            for (QualityDetection qd : results) {
+                if (inLagWindow(qd.getTime(), now)) {
+                    break;
+                }
+                cycles.add(buildCycle(unitId, qd));
+            }
+            if (!cycles.isEmpty()) {
+                sprayCycleMapper.insertBatch(cycles);
+                total += cycles.size();
+            }
+            if (cycles.size() < results.size() || results.size() < batchSize) {
+                break;
+            }
+        }
+        return total;
+    }
+
+    /**
+     * 质检时间距今不足关联延迟（同周期传感器数据可能未落库）；超前当前时刻一个延迟以上的视为时钟偏差，不等待
+     */
+    private boolean inLagWindow(LocalDateTime time, LocalDateTime now) {
+        if (time == null) {
+            return false;
+        }
+        Duration lag = Duration.ofMillis(lagMs);
+        return time.isAfter(now.minus(lag)) && !time.isAfter(now.plus(lag));
+    }
+
+    private SprayCycle buildCycle(int unitId, QualityDetection qd) {
+        SprayCycle cycle = new SprayCycle();
+        cycle.setUnitId(unitId);
+        cycle.setQualityId(qd.getId());
+        cycle.setResult(qd.getResult());
+        cycle.setQualityTime(qd.getTime());
+
+        LocalDateTime qualityTime = qd.getTime();
+        if (qualityTime == null) {
+            return cycle;
+        }
+        LocalDateTime windowStart = qualityTime.minusMinutes(maxCycleMinutes);
+
+        // 在所有机器人中取离质检时间最近的一次完成
+        SprayRecord end = null;
+        for (String devName : progressDevNames) {
+            SprayRecord r = sprayRecordMapper.getLastReachedBefore(unitId, devName, windowStart, qualityTime, completeRate);
+            if (r != null && (end == null || r.getTime().isAfter(end.getTime()))) {
+                end = r;
+            }
+        }
+        if (end == null) {
+            return cycle;
+        }
+        SprayRecord start = sprayRecordMapper.getLastResetBefore(unitId, end.getDevName(),
+                end.getTime().minusMinutes(maxCycleMinutes), end.getTime());
+
+        cycle.setRobot(end.getDevName());
+        cycle.setEndTime(end.getTime());
+        if (start == null) {
+            return cycle;
+        }
+        cycle.setStartTime(start.getTime());
+        cycle.setDurationSec(Duration.between(start.getTime(), end.getTime()).getSeconds());
+
+        cycle.setSpraySpeed(paramAt(unitId, spraySpeedParam, start.getTime()));
+        cycle.setCleanInterval(paramAt(unitId, cleanIntervalParam, start.getTime()));
+        cycle.setStirrer1Speed(paramAt(unitId, stirrer1SpeedParam, start.getTime()));
+        cycle.setStirrer2Speed(paramAt(unitId, stirrer2SpeedParam, start.getTime()));
+
+        Map<String, Object> pipe1 = sensorMapper.getStatsInRange(unitId, pipe1PressureDevName, start.getTime(), end.getTime());
+        cycle.setPipe1PressureAvg(number(pipe1, "avgValue"));
+        cycle.setPipe1PressureMax(number(pipe1, "maxValue"));
+        Map<String, Object> pipe2 = sensorMapper.getStatsInRange(unitId, pipe2PressureDevName, start.getTime(), end.getTime());
+        cycle.setPipe2PressureAvg(number(pipe2, "avgValue"));
+        cycle.setPipe2PressureMax(number(pipe2, "maxValue"));
+        return cycle;
+    }
+
+    private Double paramAt(int unitId, String name, LocalDateTime time) {
+        ControlParameter cp = controlParameterMapper.selectLatestByNameBefore(unitId, name, time);
+        return cp != null ? cp.getValue() : null;
+    }
+
+    private static Double number(Map<String, Object> row, String key) {
+        if (row == null) {
+            return null;
+        }
+        Object v = row.get(key);
+        return v instanceof Number ? ((Number) v).doubleValue() : null;
+    }
+}
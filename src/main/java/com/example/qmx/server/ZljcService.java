@@ -1,96 +1,296 @@
 package com.example.qmx.server;
 
 import com.example.qmx.domain.QualityDetection;
-import com.example.qmx.mapper.QualityDetectionMapper;
-import com.fasterxml.jackson.databind.JsonNode;
+import com.example.qmx.utils.CircuitBreaker;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import org.springframework.beans.factory.annotation.Value;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.impl.nio.client.HttpAsyncClients;
+import org.apache.http.impl.nio.conn.PoolingNHttpClientConnectionManager;
+import org.apache.http.impl.nio.reactor.DefaultConnectingIOReactor;
+import org.apache.http.impl.nio.reactor.IOReactorConfig;
+import org.apache.http.util.EntityUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-import java.io.BufferedReader;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.net.HttpURLConnection;
-import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * 质量检测结果轮询
+ * <p>
+ * 1. 支持同时轮询多台质检相机（zljc.api 逗号分隔）
+ * 2. 使用连接池 + keep-alive 的异步 HTTP 客户端，单个慢端点不会拖慢其他端点
+ * 3. 响应体直接从输入流做流式 JSON 解析，不再拼接整段字符串
+ * 4. 每个端点独立的轮询间隔抖动与熔断
+ * 5. 质检服务主动推送（/qualityResult/push）为主通道，这里作为兜底轮询，
+ *    结果统一交给 QualityResultWriter 按 resultId 去重后批量入库
+ */
 @Service
 public class ZljcService {
 
+    private static final Logger log = LoggerFactory.getLogger(ZljcService.class);
+
     @Autowired
-    private QualityDetectionMapper qualityDetectionMapper;
+    private QualityResultWriter qualityResultWriter;
+
+    @Value("${zljc.poll.enabled:true}")
+    private boolean pollEnabled;
 
-    // 从配置读取质量检测接口地址（默认本地）
+    // 从配置读取质量检测接口地址（默认本地），多个相机用逗号分隔；
+    // 相机不属于 1 号网关时写成 网关号=地址，如 2=http://10.0.0.12:8000/latest
     @Value("${zljc.api:http://127.0.0.1:8000/latest}")
     private String zljcApi;
 
+    // 轮询间隔与随机抖动（毫秒）
+    @Value("${zljc.poll.interval-ms:50000}")
+    private long pollIntervalMs;
+
+    @Value("${zljc.poll.jitter-ms:5000}")
+    private long pollJitterMs;
+
+    @Value("${zljc.http.connect-timeout-ms:5000}")
+    private int connectTimeoutMs;
+
+    @Value("${zljc.http.read-timeout-ms:5000}")
+    private int readTimeoutMs;
+
+    @Value("${zljc.http.max-connections:20}")
+    private int maxConnections;
+
+    // 熔断：连续失败次数阈值与打开时长
+    @Value("${zljc.breaker.failure-threshold:3}")
+    private int breakerFailureThreshold;
+
+    @Value("${zljc.breaker.open-ms:60000}")
+    private long breakerOpenMs;
+
     private final ObjectMapper objectMapper = new ObjectMapper();
 
-    // 定时任务：每50秒查询一次
-    @Scheduled(fixedRate = 50000)
-    public void scheduledFetchQuality() {
-        fetchQualityResultFromApi();
+    private final List<Endpoint> endpoints = new ArrayList<>();
+
+    private CloseableHttpAsyncClient httpClient;
+
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * 单个质检相机端点的轮询状态
+     */
+    private static class Endpoint {
+        final int unitId;
+        final String url;
+        final CircuitBreaker breaker;
+
+        Endpoint(int unitId, String url, CircuitBreaker breaker) {
+            this.unitId = unitId;
+            this.url = url;
+            this.breaker = breaker;
+        }
     }
 
-    // 对外方法：供其他服务调用
+    @PostConstruct
+    public void start() throws IOException {
+        if (!pollEnabled) {
+            log.info("质量检测兜底轮询已关闭（zljc.poll.enabled=false）");
+            return;
+        }
+        if (zljcApi == null || zljcApi.trim().isEmpty()) {
+            log.warn("质量检测API地址未配置：zljc.api 为空，不启动轮询");
+            return;
+        }
+        for (String item : zljcApi.split(",")) {
+            String url = item.trim();
+            if (url.isEmpty()) {
+                continue;
+            }
+            int unitId = 1;
+            int eq = url.indexOf('=');
+            if (eq > 0 && url.substring(0, eq).trim().matches("\\d+")) {
+                unitId = Integer.parseInt(url.substring(0, eq).trim());
+                url = url.substring(eq + 1).trim();
+            }
+            endpoints.add(new Endpoint(unitId, url, new CircuitBreaker(breakerFailureThreshold, breakerOpenMs)));
+        }
+
+        IOReactorConfig ioConfig = IOReactorConfig.custom()
+                .setConnectTimeout(connectTimeoutMs)
+                .setSoTimeout(readTimeoutMs)
+                .setSoKeepAlive(true)
+                .build();
+        PoolingNHttpClientConnectionManager connManager =
+                new PoolingNHttpClientConnectionManager(new DefaultConnectingIOReactor(ioConfig));
+        connManager.setMaxTotal(Math.max(maxConnections, endpoints.size()));
+        connManager.setDefaultMaxPerRoute(2);
+
+        RequestConfig requestConfig = RequestConfig.custom()
+                .setConnectTimeout(connectTimeoutMs)
+                .setConnectionRequestTimeout(connectTimeoutMs)
+                .setSocketTimeout(readTimeoutMs)
+                .build();
+        httpClient = HttpAsyncClients.custom()
+                .setConnectionManager(connManager)
+                .setDefaultRequestConfig(requestConfig)
+                .build();
+        httpClient.start();
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "zljc-poll-scheduler");
+            t.setDaemon(true);
+            return t;
+        });
+        for (Endpoint endpoint : endpoints) {
+            scheduleNext(endpoint, nextJitter());
+        }
+        log.info("质量检测轮询已启动：endpoints={}, intervalMs={}, jitterMs={}", endpoints.size(), pollIntervalMs, pollJitterMs);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+        if (httpClient != null) {
+            try {
+                httpClient.close();
+            } catch (IOException ignore) {
+            }
+        }
+    }
+
+    // 对外方法：供其他服务调用，立即轮询所有端点一次
     public void fetchQualityResultFromApi() {
-        HttpURLConnection conn = null;
-        try {
-            if (zljcApi == null || zljcApi.isEmpty()) {
-                System.err.println("质量检测API地址未配置：zljc.api 为空");
-                return;
+        if (httpClient == null) {
+            log.warn("质量检测API地址未配置或客户端未启动，忽略本次轮询");
+            return;
+        }
+        for (Endpoint endpoint : endpoints) {
+            poll(endpoint, false);
+        }
+    }
+
+    private long nextJitter() {
+        return pollJitterMs > 0 ? ThreadLocalRandom.current().nextLong(pollJitterMs + 1) : 0L;
+    }
+
+    private void scheduleNext(Endpoint endpoint, long delayMs) {
+        if (scheduler.isShutdown()) {
+            return;
+        }
+        scheduler.schedule(() -> poll(endpoint, true), delayMs, TimeUnit.MILLISECONDS);
+    }
+
+    private void poll(Endpoint endpoint, boolean reschedule) {
+        if (!endpoint.breaker.allowRequest()) {
+            log.debug("质量检测端点熔断中，跳过本次轮询：{}", endpoint.url);
+            if (reschedule) {
+                scheduleNext(endpoint, pollIntervalMs + nextJitter());
             }
+            return;
+        }
 
-            java.net.URL url = new java.net.URL(zljcApi);
-            conn = (HttpURLConnection) url.openConnection();
-            conn.setRequestMethod("GET");
-            conn.setConnectTimeout(5000);
-            conn.setReadTimeout(5000);
-            conn.setRequestProperty("Accept", "application/json");
-
-            int statusCode = conn.getResponseCode();
-            InputStream in = (statusCode >= 200 && statusCode < 300)
-                    ? conn.getInputStream()
-                    : conn.getErrorStream();
-
-            StringBuilder sb = new StringBuilder();
-            try (BufferedReader br = new BufferedReader(
-                    new InputStreamReader(in, StandardCharsets.UTF_8))) {
-                String line;
-                while ((line = br.readLine()) != null) {
-                    sb.append(line);
+        HttpGet get = new HttpGet(endpoint.url);
+        get.setHeader("Accept", "application/json");
+        httpClient.execute(get, new FutureCallback<HttpResponse>() {
+            @Override
+            public void completed(HttpResponse response) {
+                try {
+                    QualityDetection qd = readResult(response);
+                    endpoint.breaker.recordSuccess();
+                    qd.setUnitId(endpoint.unitId);
+                    qd.setSource(endpoint.url);
+                    qd.setTime(LocalDateTime.now());
+                    if (qualityResultWriter.submit(qd) != QualityResultWriter.SubmitResult.ACCEPTED) {
+                        log.debug("质检结果重复或未入队: endpoint={}, resultId={}", endpoint.url, qd.getResultId());
+                    }
+                } catch (Exception e) {
+                    onFailure(endpoint, e);
+                } finally {
+                    if (reschedule) {
+                        scheduleNext(endpoint, pollIntervalMs + nextJitter());
+                    }
                 }
             }
 
-            if (statusCode != 200) {
-                throw new RuntimeException("质量检测API请求失败，HTTP状态码：" + statusCode + "，响应：" + sb.toString());
+            @Override
+            public void failed(Exception e) {
+                onFailure(endpoint, e);
+                if (reschedule) {
+                    scheduleNext(endpoint, pollIntervalMs + nextJitter());
+                }
             }
 
-            JsonNode json = objectMapper.readTree(sb.toString());
-            JsonNode resultNode = json.get("result");
-            if (resultNode == null || resultNode.isNull() || !resultNode.isNumber()) {
-                throw new IllegalStateException("质量检测API未返回有效的 result 字段");
+            @Override
+            public void cancelled() {
+                // 按失败计入熔断器，否则半开状态下的探测请求被取消后熔断器一直停在半开
+                onFailure(endpoint, new CancellationException("请求被取消"));
+                if (reschedule) {
+                    scheduleNext(endpoint, pollIntervalMs + nextJitter());
+                }
             }
-            int result = resultNode.asInt();
+        });
+    }
 
-            QualityDetection qd = new QualityDetection();
-            qd.setResult(result);
-            qd.setTime(LocalDateTime.now());
+    /**
+     * 从响应输入流中流式读取顶层 result 字段（以及可选的 id 字段，用于去重）
+     */
+    private QualityDetection readResult(HttpResponse response) throws IOException {
+        int statusCode = response.getStatusLine().getStatusCode();
+        HttpEntity entity = response.getEntity();
+        if (statusCode != 200) {
+            String body = entity != null ? EntityUtils.toString(entity) : "";
+            throw new IOException("质量检测API请求失败，HTTP状态码：" + statusCode + "，响应：" + body);
+        }
+        if (entity == null) {
+            throw new IllegalStateException("质量检测API响应体为空");
+        }
 
-            int n = qualityDetectionMapper.insert(qd);
-            if (n > 0) {
-                System.out.println("quality_result 插入成功: result=" + result);
-            } else {
-                System.out.println("quality_result 插入失败: result=" + result);
+        QualityDetection qd = new QualityDetection();
+        try (InputStream in = entity.getContent();
+             JsonParser parser = objectMapper.getFactory().createParser(in)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IllegalStateException("质量检测API响应不是 JSON 对象");
             }
-        } catch (Exception e) {
-            System.err.println("质量检测API读取异常：" + e.getMessage());
-        } finally {
-            if (conn != null) {
-                conn.disconnect();
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                JsonToken value = parser.nextToken();
+                if ("result".equals(field)
+                        && (value == JsonToken.VALUE_NUMBER_INT || value == JsonToken.VALUE_NUMBER_FLOAT)) {
+                    qd.setResult(parser.getIntValue());
+                } else if ("id".equals(field) && value.isScalarValue() && value != JsonToken.VALUE_NULL) {
+                    qd.setResultId(parser.getValueAsString());
+                } else {
+                    parser.skipChildren();
+                }
             }
         }
+        if (qd.getResult() == null) {
+            throw new IllegalStateException("质量检测API未返回有效的 result 字段");
+        }
+        return qd;
+    }
+
+    private void onFailure(Endpoint endpoint, Exception e) {
+        endpoint.breaker.recordFailure();
+        log.error("质量检测API读取异常：endpoint={}, breaker={}, err={}",
+                endpoint.url, endpoint.breaker.getState(), e.getMessage());
     }
 }
@@ -45,6 +45,7 @@ public class ControlParameterServiceImpl extends ServiceImpl<ControlParameterMap
         
         // 3. 构建查询条件（统一构建，批量查询）
         LambdaQueryWrapper<ControlParameter> wrapper = new LambdaQueryWrapper<>();
+        wrapper.eq(req.getUnitId() != null, ControlParameter::getUnitId, req.getUnitId());
         // 基础条件：时间范围 + 按时间升序
         wrapper.between(ControlParameter::getTime, startTime, endTime)
                .orderByAsc(ControlParameter::getTime);
@@ -82,6 +83,7 @@ public class ControlParameterServiceImpl extends ServiceImpl<ControlParameterMap
         CheckUtils.checkPage(current, pageSize);
 
         QueryWrapper<ControlParameter> query = new QueryWrapper<>();
+        query.eq(request.getUnitId() != null, "unitId", request.getUnitId());
         
         if (StringUtils.isNotBlank(startTime) && StringUtils.isNotBlank(endTime)) {
             query.between("time", startTime, endTime);
@@ -45,6 +45,7 @@ public class DeviceStatusServiceImpl extends ServiceImpl<DeviceStatusMapper, Dev
         
         // 3. 构建查询条件（统一批量查询，替代循环）
         LambdaQueryWrapper<DeviceStatus> wrapper = new LambdaQueryWrapper<>();
+        wrapper.eq(req.getUnitId() != null, DeviceStatus::getUnitId, req.getUnitId());
         // 基础条件：时间范围 + 按时间升序
         wrapper.between(DeviceStatus::getTime, startTime, endTime)
                .orderByAsc(DeviceStatus::getTime);
@@ -82,6 +83,7 @@ public class DeviceStatusServiceImpl extends ServiceImpl<DeviceStatusMapper, Dev
         CheckUtils.checkPage(current, pageSize);
 
         QueryWrapper<DeviceStatus> query = new QueryWrapper<>();
+        query.eq(request.getUnitId() != null, "unitId", request.getUnitId());
         
         if (StringUtils.isNotBlank(startTime) && StringUtils.isNotBlank(endTime)) {
             query.between("time", startTime, endTime);
@@ -33,6 +33,7 @@ public class ProductDailyServiceImpl extends ServiceImpl<ProductDailyMapper, Pro
         CheckUtils.checkTime(startTime, endTime);
         
         LambdaQueryWrapper<ProductDaily> wrapper = new LambdaQueryWrapper<>();
+        wrapper.eq(req.getUnitId() != null, ProductDaily::getUnitId, req.getUnitId());
         wrapper.between(ProductDaily::getTime, startTime, endTime)
                .orderByAsc(ProductDaily::getTime);
         List<ProductDaily> list = baseMapper.selectList(wrapper);
@@ -40,6 +41,7 @@ public class ProductDailyServiceImpl extends ServiceImpl<ProductDailyMapper, Pro
         return list.stream().map(entity -> {
             ProductDailyVO vo = new ProductDailyVO();
             vo.setId(entity.getId());
+            vo.setUnitId(entity.getUnitId());
             vo.setNumDaily(entity.getNumDaily());
             vo.setTime(entity.getTime());
             return vo;
@@ -62,6 +64,7 @@ public class ProductDailyServiceImpl extends ServiceImpl<ProductDailyMapper, Pro
         CheckUtils.checkPage(current, pageSize);
 
         QueryWrapper<ProductDaily> query = new QueryWrapper<>();
+        query.eq(request.getUnitId() != null, "unitId", request.getUnitId());
         
         if (StringUtils.isNotBlank(startTime) && StringUtils.isNotBlank(endTime)) {
             query.between("time", startTime, endTime);
@@ -80,6 +83,7 @@ public class ProductDailyServiceImpl extends ServiceImpl<ProductDailyMapper, Pro
         List<ProductDailyVO> ans = records.stream().map(entity -> {
             ProductDailyVO vo = new ProductDailyVO();
             vo.setId(entity.getId());
+            vo.setUnitId(entity.getUnitId());
             vo.setNumDaily(entity.getNumDaily());
             vo.setTime(entity.getTime());
             return vo;
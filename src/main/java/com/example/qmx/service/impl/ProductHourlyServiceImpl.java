@@ -33,6 +33,7 @@ public class ProductHourlyServiceImpl extends ServiceImpl<ProductHourlyMapper, P
         CheckUtils.checkTime(startTime, endTime);
         
         LambdaQueryWrapper<ProductHourly> wrapper = new LambdaQueryWrapper<>();
+        wrapper.eq(req.getUnitId() != null, ProductHourly::getUnitId, req.getUnitId());
         wrapper.between(ProductHourly::getTime, startTime, endTime)
                .orderByAsc(ProductHourly::getTime);
         List<ProductHourly> list = baseMapper.selectList(wrapper);
@@ -40,6 +41,7 @@ public class ProductHourlyServiceImpl extends ServiceImpl<ProductHourlyMapper, P
         return list.stream().map(entity -> {
             ProductHourlyVO vo = new ProductHourlyVO();
             vo.setId(entity.getId());
+            vo.setUnitId(entity.getUnitId());
             vo.setNumHourly(entity.getNumHourly());
             vo.setTime(entity.getTime());
             return vo;
@@ -62,6 +64,7 @@ public class ProductHourlyServiceImpl extends ServiceImpl<ProductHourlyMapper, P
         CheckUtils.checkPage(current, pageSize);
 
         QueryWrapper<ProductHourly> query = new QueryWrapper<>();
+        query.eq(request.getUnitId() != null, "unitId", request.getUnitId());
         
         if (StringUtils.isNotBlank(startTime) && StringUtils.isNotBlank(endTime)) {
             query.between("time", startTime, endTime);
@@ -80,6 +83,7 @@ public class ProductHourlyServiceImpl extends ServiceImpl<ProductHourlyMapper, P
         List<ProductHourlyVO> ans = records.stream().map(entity -> {
             ProductHourlyVO vo = new ProductHourlyVO();
             vo.setId(entity.getId());
+            vo.setUnitId(entity.getUnitId());
             vo.setNumHourly(entity.getNumHourly());
             vo.setTime(entity.getTime());
             return vo;
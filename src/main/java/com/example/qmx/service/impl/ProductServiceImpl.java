@@ -39,37 +39,41 @@ public class ProductServiceImpl extends ServiceImpl<ProductDailyMapper, ProductD
         CheckUtils.checkTime(startTime, endTime);
         
         if ("daily".equals(type)) {
-            return getDataSheetDaily(startTime, endTime);
+            return getDataSheetDaily(req.getUnitId(), startTime, endTime);
         } else if ("hourly".equals(type)) {
-            return getDataSheetHourly(startTime, endTime);
+            return getDataSheetHourly(req.getUnitId(), startTime, endTime);
         } else {
             ThrowUtils.throwIf(true, "报表类型错误，必须是 daily 或 hourly");
             return null;
         }
     }
 
-    private List<ProductVO> getDataSheetDaily(Date startTime, Date endTime) {
+    private List<ProductVO> getDataSheetDaily(Integer unitId, Date startTime, Date endTime) {
         LambdaQueryWrapper<ProductDaily> wrapper = new LambdaQueryWrapper<>();
+        wrapper.eq(unitId != null, ProductDaily::getUnitId, unitId);
         wrapper.between(ProductDaily::getTime, startTime, endTime)
                .orderByAsc(ProductDaily::getTime);
         List<ProductDaily> list = productDailyMapper.selectList(wrapper);
         return list.stream().map(daily -> {
             ProductVO vo = new ProductVO();
             vo.setId(daily.getId());
+            vo.setUnitId(daily.getUnitId());
             vo.setNumDaily(daily.getNumDaily());
             vo.setTime(daily.getTime());
             return vo;
         }).collect(Collectors.toList());
     }
 
-    private List<ProductVO> getDataSheetHourly(Date startTime, Date endTime) {
+    private List<ProductVO> getDataSheetHourly(Integer unitId, Date startTime, Date endTime) {
         LambdaQueryWrapper<ProductHourly> wrapper = new LambdaQueryWrapper<>();
+        wrapper.eq(unitId != null, ProductHourly::getUnitId, unitId);
         wrapper.between(ProductHourly::getTime, startTime, endTime)
                .orderByAsc(ProductHourly::getTime);
         List<ProductHourly> list = productHourlyMapper.selectList(wrapper);
         return list.stream().map(hourly -> {
             ProductVO vo = new ProductVO();
             vo.setId(hourly.getId());
+            vo.setUnitId(hourly.getUnitId());
             vo.setNumHourly(hourly.getNumHourly());
             vo.setTime(hourly.getTime());
             return vo;
@@ -50,6 +50,7 @@ public class SensorServiceImpl extends ServiceImpl<SensorMapper, Sensor> impleme
             Collections.sort(devNames);
             for (String devName : devNames) {
                 LambdaQueryWrapper<Sensor> wrapper = new LambdaQueryWrapper<>();
+                wrapper.eq(req.getUnitId() != null, Sensor::getUnitId, req.getUnitId());
                 wrapper.eq(Sensor::getDevName, devName)
                        .between(Sensor::getTime, startTime, endTime)
                        .orderByAsc(Sensor::getTime);
@@ -59,6 +60,7 @@ public class SensorServiceImpl extends ServiceImpl<SensorMapper, Sensor> impleme
             }
         } else {
             LambdaQueryWrapper<Sensor> wrapper = new LambdaQueryWrapper<>();
+            wrapper.eq(req.getUnitId() != null, Sensor::getUnitId, req.getUnitId());
             wrapper.between(Sensor::getTime, startTime, endTime)
                    .orderByAsc(Sensor::getTime);
             res = sensorMapper.selectList(wrapper);
@@ -67,6 +69,7 @@ public class SensorServiceImpl extends ServiceImpl<SensorMapper, Sensor> impleme
         return res.stream().map(entity -> {
             SensorVO vo = new SensorVO();
             vo.setId(entity.getId());
+            vo.setUnitId(entity.getUnitId());
             vo.setDevName(entity.getDevName());
             vo.setValue(entity.getValue());
             vo.setTime(entity.getTime());
@@ -91,6 +94,7 @@ public class SensorServiceImpl extends ServiceImpl<SensorMapper, Sensor> impleme
         CheckUtils.checkPage(current, pageSize);
 
         QueryWrapper<Sensor> query = new QueryWrapper<>();
+        query.eq(request.getUnitId() != null, "unitId", request.getUnitId());
         
         if (StringUtils.isNotBlank(startTime) && StringUtils.isNotBlank(endTime)) {
             query.between("time", startTime, endTime);
@@ -113,6 +117,7 @@ public class SensorServiceImpl extends ServiceImpl<SensorMapper, Sensor> impleme
         List<SensorVO> ans = records.stream().map(entity -> {
             SensorVO vo = new SensorVO();
             vo.setId(entity.getId());
+            vo.setUnitId(entity.getUnitId());
             vo.setDevName(entity.getDevName());
             vo.setValue(entity.getValue());
             vo.setTime(entity.getTime());
@@ -43,6 +43,7 @@ public class SprayRecordServiceImpl extends ServiceImpl<SprayRecordMapper, Spray
         
         // 3. 构建查询条件（批量查询，替代循环）
         LambdaQueryWrapper<SprayRecord> wrapper = new LambdaQueryWrapper<>();
+        wrapper.eq(req.getUnitId() != null, SprayRecord::getUnitId, req.getUnitId());
         wrapper.between(SprayRecord::getTime, startTime, endTime)
                .orderByAsc(SprayRecord::getTime);
         
@@ -80,6 +81,7 @@ public class SprayRecordServiceImpl extends ServiceImpl<SprayRecordMapper, Spray
         CheckUtils.checkPage(current, pageSize);
 
         QueryWrapper<SprayRecord> query = new QueryWrapper<>();
+        query.eq(request.getUnitId() != null, "unitId", request.getUnitId());
         
         if (StringUtils.isNotBlank(startTime) && StringUtils.isNotBlank(endTime)) {
             query.between("time", startTime, endTime);
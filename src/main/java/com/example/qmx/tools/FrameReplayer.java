@@ -0,0 +1,177 @@
+package com.example.qmx.tools;
+
+import com.example.qmx.utils.FrameCaptureLog;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 抓包回放：把 FrameCaptureLog 中的网关帧按原节奏重新发送到接收端口
+ * <p>
+ * 回放端扮演网关（TCP 客户端），与现场一样经过 DataServer 接收、ACK、解析与入库全链路；
+ * 同时读取服务端回复的 0x66 确认帧，统计成功/错误确认数
+ * <pre>
+ * java -cp qmx.jar -Dloader.main=com.example.qmx.tools.FrameReplayer org.springframework.boot.loader.PropertiesLauncher \
+ *      --input capture --host 127.0.0.1 --port 8088 --speed 1|10|max [--loop 3] [--unit-id 2]
+ * </pre>
+ * --speed 为倍速（1 为原速），max 表示不等待、尽快发送；只回放上报帧（功能码 0x03），下发确认帧不回放
+ *
+ * @author jyy
+ */
+public class FrameReplayer {
+
+    private static final int UPLOAD_FUNCTION_CODE = 0x03;
+    private static final int ACK_FUNCTION_CODE = 0x66;
+
+    private final String host;
+    private final int port;
+    // <= 0 表示最大速度
+    private final double speed;
+    private final int loops;
+    private final Integer unitId;
+
+    private final AtomicLong acks = new AtomicLong();
+    private final AtomicLong errorAcks = new AtomicLong();
+
+    public FrameReplayer(String host, int port, double speed, int loops, Integer unitId) {
+        this.host = host;
+        this.port = port;
+        this.speed = speed;
+        this.loops = Math.max(1, loops);
+        this.unitId = unitId;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> opts = parseArgs(args);
+        Path input = Paths.get(opts.getOrDefault("input", "capture"));
+        String speedArg = opts.getOrDefault("speed", "1");
+        double speed = "max".equalsIgnoreCase(speedArg) ? 0 : Double.parseDouble(speedArg);
+        FrameReplayer replayer = new FrameReplayer(
+                opts.getOrDefault("host", "127.0.0.1"),
+                Integer.parseInt(opts.getOrDefault("port", "8088")),
+                speed,
+                Integer.parseInt(opts.getOrDefault("loop", "1")),
+                opts.containsKey("unit-id") ? Integer.valueOf(opts.get("unit-id")) : null);
+        List<Path> segments = Files.isDirectory(input) ? FrameCaptureLog.segments(input) : Collections.singletonList(input);
+        if (segments.isEmpty()) {
+            System.err.println("没有找到抓包段文件: " + input.toAbsolutePath());
+            System.exit(1);
+        }
+        replayer.replay(segments);
+    }
+
+    public static Map<String, String> parseArgs(String[] args) {
+        Map<String, String> opts = new HashMap<>();
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].startsWith("--")) {
+                String key = args[i].substring(2);
+                String value = i + 1 < args.length && !args[i + 1].startsWith("--") ? args[++i] : "true";
+                opts.put(key, value);
+            }
+        }
+        return opts;
+    }
+
+    /**
+     * 按顺序回放各段，返回发送的帧数
+     */
+    public long replay(List<Path> segments) throws Exception {
+        long sent = 0;
+        long startNanos = System.nanoTime();
+        try (Socket socket = new Socket(host, port)) {
+            socket.setTcpNoDelay(true);
+            Thread ackReader = new Thread(() -> readAcks(socket), "replay-ack-reader");
+            ackReader.setDaemon(true);
+            ackReader.start();
+            OutputStream out = new BufferedOutputStream(socket.getOutputStream(), 64 * 1024);
+
+            for (int loop = 0; loop < loops; loop++) {
+                // 每一轮都从头按抓包时间间隔重新计时
+                long loopStartNanos = System.nanoTime();
+                long firstFrameMillis = -1;
+                for (Path segment : segments) {
+                    try (FrameCaptureLog.Reader reader = new FrameCaptureLog.Reader(segment)) {
+                        FrameCaptureLog.Frame f;
+                        while ((f = reader.next()) != null) {
+                            byte[] frame = f.getBytes();
+                            if (frame.length < 8 || (frame[7] & 0xFF) != UPLOAD_FUNCTION_CODE) {
+                                continue;
+                            }
+                            if (firstFrameMillis < 0) {
+                                firstFrameMillis = f.getTimeMillis();
+                            }
+                            if (speed > 0) {
+                                long dueNanos = loopStartNanos + (long) ((f.getTimeMillis() - firstFrameMillis) * 1_000_000L / speed);
+                                long waitNanos = dueNanos - System.nanoTime();
+                                if (waitNanos > 0) {
+                                    TimeUnit.NANOSECONDS.sleep(waitNanos);
+                                }
+                            }
+                            if (unitId != null) {
+                                frame[6] = (byte) (int) unitId;
+                            }
+                            out.write(frame);
+                            sent++;
+                            if (speed > 0) {
+                                out.flush();
+                            }
+                        }
+                    }
+                }
+            }
+            out.flush();
+
+            // 等待剩余确认帧
+            long deadline = System.currentTimeMillis() + 5000;
+            while (acks.get() + errorAcks.get() < sent && System.currentTimeMillis() < deadline) {
+                Thread.sleep(20);
+            }
+        }
+        double seconds = (System.nanoTime() - startNanos) / 1e9;
+        System.out.printf("回放完成: 发送 %d 帧, 确认 %d, 错误确认 %d, 耗时 %.2fs, %.0f 帧/s, 速度=%s%n",
+                sent, acks.get(), errorAcks.get(), seconds, sent / Math.max(seconds, 1e-9), speed > 0 ? speed + "x" : "max");
+        return sent;
+    }
+
+    private void readAcks(Socket socket) {
+        try {
+            DataInputStream in = new DataInputStream(socket.getInputStream());
+            byte[] mbap = new byte[7];
+            while (true) {
+                in.readFully(mbap);
+                int len = ((mbap[4] & 0xFF) << 8) | (mbap[5] & 0xFF);
+                byte[] pdu = new byte[Math.max(0, len - 1)];
+                in.readFully(pdu);
+                if (pdu.length >= 3 && (pdu[0] & 0xFF) == ACK_FUNCTION_CODE) {
+                    if ((pdu[2] & 0xFF) == 0x01) {
+                        acks.incrementAndGet();
+                    } else {
+                        errorAcks.incrementAndGet();
+                    }
+                }
+            }
+        } catch (IOException ignore) {
+            // 连接关闭
+        }
+    }
+
+    public long getAcks() {
+        return acks.get();
+    }
+
+    public long getErrorAcks() {
+        return errorAcks.get();
+    }
+}
@@ -0,0 +1,392 @@
+package com.example.qmx.tools;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 网关压测模拟器：并发建立 N 条 Modbus TCP 连接，按现场网关的帧布局持续上报并校验 0x66 确认帧
+ * <p>
+ * 每条连接使用不同的网关号（unit-base 起递增），帧内容与 protocol-schema.json v1 一致：
+ * 报警 19 位、设备状态 20 个、传感器 6 个浮点、喷涂进度 3 个、产量 52 个、控制参数定长 14 字段
+ * <pre>
+ * java -cp qmx.jar -Dloader.main=com.example.qmx.tools.GatewaySimulator org.springframework.boot.loader.PropertiesLauncher \
+ *      --host 127.0.0.1 --port 8088 --connections 50 --rate 2 --duration 60 [--unit-base 1]
+ *
+ * mvn -Psim compile exec:java -Dexec.args="--port 8088 --connections 50 --rate 2 --duration 60"
+ * </pre>
+ * --rate 为每条连接每秒帧数，延迟从计划发送时刻算起（发送落后于计划时排队时间也计入，避免协调遗漏）；
+ * 为 0 时每帧等到确认后立即发下一帧（测最大吞吐），1 秒内未确认记为超时并放弃该帧
+ * 结束时输出确认延迟分位数与每秒确认帧数
+ *
+ * @author jyy
+ */
+public class GatewaySimulator {
+
+    private static final int UPLOAD_FUNCTION_CODE = 0x03;
+    private static final int ACK_FUNCTION_CODE = 0x66;
+
+    private final String host;
+    private final int port;
+    private final int connections;
+    private final double rate;
+    private final long durationMs;
+    private final int unitBase;
+
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong acks = new AtomicLong();
+    private final AtomicLong errorAcks = new AtomicLong();
+    private final AtomicLong unexpected = new AtomicLong();
+    private final AtomicLong timeouts = new AtomicLong();
+    private final AtomicLong connectFailures = new AtomicLong();
+    private final List<long[]> latencies = new ArrayList<>();
+
+    public GatewaySimulator(String host, int port, int connections, double rate, long durationMs, int unitBase) {
+        this.host = host;
+        this.port = port;
+        this.connections = connections;
+        this.rate = rate;
+        this.durationMs = durationMs;
+        this.unitBase = unitBase;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> opts = FrameReplayer.parseArgs(args);
+        GatewaySimulator sim = new GatewaySimulator(
+                opts.getOrDefault("host", "127.0.0.1"),
+                Integer.parseInt(opts.getOrDefault("port", "8088")),
+                Integer.parseInt(opts.getOrDefault("connections", "10")),
+                Double.parseDouble(opts.getOrDefault("rate", "1")),
+                Long.parseLong(opts.getOrDefault("duration", "30")) * 1000L,
+                Integer.parseInt(opts.getOrDefault("unit-base", "1")));
+        Report r = sim.run();
+        System.out.println(r);
+        System.exit(r.acks > 0 && r.errorAcks == 0 && r.connectFailures == 0 ? 0 : 1);
+    }
+
+    /**
+     * 运行压测并等待所有连接结束
+     */
+    public Report run() throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(connections);
+        long start = System.nanoTime();
+        for (int i = 0; i < connections; i++) {
+            Connection c = new Connection((unitBase + i - 1) % 255 + 1, i);
+            Thread t = new Thread(() -> {
+                try {
+                    c.run(start);
+                } finally {
+                    done.countDown();
+                }
+            }, "gateway-sim-" + i);
+            t.setDaemon(true);
+            t.start();
+        }
+        done.await();
+        long elapsedNanos = System.nanoTime() - start;
+
+        int total = 0;
+        synchronized (latencies) {
+            for (long[] l : latencies) {
+                total += l.length;
+            }
+        }
+        long[] all = new long[total];
+        int p = 0;
+        synchronized (latencies) {
+            for (long[] l : latencies) {
+                System.arraycopy(l, 0, all, p, l.length);
+                p += l.length;
+            }
+        }
+        Arrays.sort(all);
+        return new Report(connections, sent.get(), acks.get(), errorAcks.get(), unexpected.get(),
+                timeouts.get(), connectFailures.get(), elapsedNanos, all);
+    }
+
+    /**
+     * 单条网关连接：发送线程按速率发帧，读线程匹配确认帧并记录延迟
+     */
+    private final class Connection {
+        final int unitId;
+        final Random rnd;
+        // 事务ID -> 计划发送时间（纳秒），0 表示未在途或已放弃
+        final AtomicLongArray sentAt = new AtomicLongArray(0x10000);
+        // 闭环模式的发送窗口：读线程只为仍在途的帧归还名额
+        final Semaphore window = new Semaphore(1);
+        long[] lat = new long[1024];
+        int latCount;
+        volatile boolean reading = true;
+        // 模拟量状态
+        int productionBase;
+        double sprayProgress;
+
+        Connection(int unitId, int seed) {
+            this.unitId = unitId;
+            this.rnd = new Random(seed);
+        }
+
+        void run(long start) {
+            Socket socket;
+            try {
+                socket = new Socket(host, port);
+                socket.setTcpNoDelay(true);
+            } catch (IOException e) {
+                connectFailures.incrementAndGet();
+                return;
+            }
+            Thread reader = new Thread(() -> readAcks(socket), Thread.currentThread().getName() + "-ack");
+            reader.setDaemon(true);
+            reader.start();
+            try {
+                OutputStream out = new BufferedOutputStream(socket.getOutputStream());
+                long deadline = start + TimeUnit.MILLISECONDS.toNanos(durationMs);
+                long intervalNanos = rate > 0 ? (long) (1e9 / rate) : 0;
+                // 各连接在一个周期内错开起步
+                long next = start + (intervalNanos > 0 ? (long) (rnd.nextDouble() * intervalNanos) : 0);
+                int txId = 0;
+                while (System.nanoTime() < deadline) {
+                    long intended;
+                    if (intervalNanos > 0) {
+                        long wait = next - System.nanoTime();
+                        if (wait > 0) {
+                            TimeUnit.NANOSECONDS.sleep(wait);
+                        }
+                        // 按计划时刻记延迟：服务端变慢导致发送落后时，落后的时间也计入
+                        intended = next;
+                        next += intervalNanos;
+                    } else {
+                        // 等上一帧确认；1 秒内未收到记为超时并放弃该帧，迟到的确认不再归还名额
+                        if (!window.tryAcquire(1, TimeUnit.SECONDS)) {
+                            if (sentAt.getAndSet(txId, 0) != 0) {
+                                timeouts.incrementAndGet();
+                            } else {
+                                // 确认恰好在超时时到达，读线程已在归还名额
+                                window.acquire();
+                            }
+                        }
+                        intended = System.nanoTime();
+                    }
+                    txId = (txId + 1) & 0xFFFF;
+                    byte[] frame = buildFrame(txId);
+                    sentAt.set(txId, intended);
+                    out.write(frame);
+                    out.flush();
+                    sent.incrementAndGet();
+                }
+                // 等待最后一批确认
+                long waitUntil = System.nanoTime() + TimeUnit.SECONDS.toNanos(3);
+                while (hasInFlight() && System.nanoTime() < waitUntil) {
+                    Thread.sleep(10);
+                }
+            } catch (IOException e) {
+                System.err.println("连接 unitId=" + unitId + " 发送失败: " + e.getMessage());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                reading = false;
+                try {
+                    socket.close();
+                } catch (IOException ignore) {
+                }
+                try {
+                    reader.join(1000);
+                } catch (InterruptedException ignore) {
+                    Thread.currentThread().interrupt();
+                }
+                synchronized (latencies) {
+                    latencies.add(Arrays.copyOf(lat, latCount));
+                }
+            }
+        }
+
+        boolean hasInFlight() {
+            for (int i = 0; i < sentAt.length(); i++) {
+                if (sentAt.get(i) != 0) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        void readAcks(Socket socket) {
+            try {
+                DataInputStream in = new DataInputStream(socket.getInputStream());
+                byte[] mbap = new byte[7];
+                while (reading) {
+                    in.readFully(mbap);
+                    long now = System.nanoTime();
+                    int txId = ((mbap[0] & 0xFF) << 8) | (mbap[1] & 0xFF);
+                    int len = ((mbap[4] & 0xFF) << 8) | (mbap[5] & 0xFF);
+                    byte[] pdu = new byte[Math.max(0, len - 1)];
+                    in.readFully(pdu);
+                    long t0 = sentAt.getAndSet(txId, 0);
+                    if (t0 == 0) {
+                        // 未发送或已超时放弃的帧，不归还窗口名额
+                        unexpected.incrementAndGet();
+                        continue;
+                    }
+                    if (pdu.length < 3 || (pdu[0] & 0xFF) != ACK_FUNCTION_CODE || (mbap[6] & 0xFF) != unitId) {
+                        unexpected.incrementAndGet();
+                        window.release();
+                        continue;
+                    }
+                    if ((pdu[2] & 0xFF) == 0x01) {
+                        acks.incrementAndGet();
+                    } else {
+                        errorAcks.incrementAndGet();
+                    }
+                    if (latCount == lat.length) {
+                        lat = Arrays.copyOf(lat, lat.length * 2);
+                    }
+                    lat[latCount++] = now - t0;
+                    window.release();
+                }
+            } catch (IOException ignore) {
+                // 连接关闭
+            }
+        }
+
+        /**
+         * 组一帧上报：MBAP + 功能码 0x03 + 数据长度 + 各数据段
+         */
+        byte[] buildFrame(int txId) {
+            ByteArrayOutputStream data = new ByteArrayOutputStream(256);
+            // 0x00 报警位：偶尔置位一个
+            data.write(0x00);
+            data.write(19);
+            int alarms = rnd.nextInt(100) == 0 ? 1 << rnd.nextInt(19) : 0;
+            data.write(alarms & 0xFF);
+            data.write((alarms >> 8) & 0xFF);
+            data.write((alarms >> 16) & 0xFF);
+            // 0x01 设备状态 0 停止 / 1 运行 / 2 故障
+            data.write(0x01);
+            data.write(20);
+            for (int i = 0; i < 20; i++) {
+                data.write(rnd.nextInt(10) == 0 ? 0 : 1);
+            }
+            // 0x02 传感器（压力 MPa、液位 %）
+            data.write(0x02);
+            data.write(6);
+            for (int i = 0; i < 6; i++) {
+                float v = i < 4 ? 0.3f + rnd.nextFloat() * 0.2f : 40f + rnd.nextFloat() * 20f;
+                writeInt(data, Float.floatToIntBits(v));
+            }
+            // 0x03 喷涂进度与速度
+            sprayProgress = (sprayProgress + 1 + rnd.nextInt(3)) % 101;
+            data.write(0x03);
+            data.write(3);
+            writeShort(data, (int) sprayProgress);
+            writeShort(data, (int) sprayProgress);
+            writeShort(data, 300 + rnd.nextInt(50));
+            // 0x04 产量：24 个小时产量 + 28 个日/周统计
+            productionBase += rnd.nextInt(3);
+            data.write(0x04);
+            data.write(52);
+            for (int i = 0; i < 52; i++) {
+                writeShort(data, (productionBase + i) & 0xFFFF);
+            }
+            // 0x05 控制参数：char×3 + int16 + float32×10
+            data.write(0x05);
+            data.write(14);
+            data.write(1);
+            data.write(0);
+            data.write(1);
+            writeShort(data, 30);
+            for (int i = 0; i < 10; i++) {
+                writeInt(data, Float.floatToIntBits(100f + i * 10f));
+            }
+
+            int dataLen = data.size();
+            int length = 1 + 1 + 2 + dataLen;
+            ByteArrayOutputStream frame = new ByteArrayOutputStream(7 + length);
+            writeShort(frame, txId);
+            writeShort(frame, 0);
+            writeShort(frame, length);
+            frame.write(unitId);
+            frame.write(UPLOAD_FUNCTION_CODE);
+            writeShort(frame, dataLen);
+            byte[] d = data.toByteArray();
+            frame.write(d, 0, d.length);
+            return frame.toByteArray();
+        }
+    }
+
+    private static void writeShort(ByteArrayOutputStream out, int v) {
+        out.write((v >> 8) & 0xFF);
+        out.write(v & 0xFF);
+    }
+
+    private static void writeInt(ByteArrayOutputStream out, int v) {
+        out.write((v >> 24) & 0xFF);
+        out.write((v >> 16) & 0xFF);
+        out.write((v >> 8) & 0xFF);
+        out.write(v & 0xFF);
+    }
+
+    /**
+     * 压测结果
+     */
+    public static final class Report {
+        public final int connections;
+        public final long sent;
+        public final long acks;
+        public final long errorAcks;
+        public final long unexpected;
+        // 闭环模式下 1 秒内未确认而放弃的帧数
+        public final long timeouts;
+        public final long connectFailures;
+        public final long elapsedNanos;
+        // 已排序的确认延迟（纳秒）
+        private final long[] latencies;
+
+        Report(int connections, long sent, long acks, long errorAcks, long unexpected, long timeouts,
+               long connectFailures, long elapsedNanos, long[] latencies) {
+            this.connections = connections;
+            this.sent = sent;
+            this.acks = acks;
+            this.errorAcks = errorAcks;
+            this.unexpected = unexpected;
+            this.timeouts = timeouts;
+            this.connectFailures = connectFailures;
+            this.elapsedNanos = elapsedNanos;
+            this.latencies = latencies;
+        }
+
+        public double framesPerSecond() {
+            return acks / Math.max(elapsedNanos / 1e9, 1e-9);
+        }
+
+        /**
+         * 确认延迟分位数（毫秒）
+         */
+        public double percentileMs(double q) {
+            if (latencies.length == 0) {
+                return 0;
+            }
+            int idx = (int) Math.min(latencies.length - 1, Math.ceil(q * latencies.length) - 1);
+            return latencies[Math.max(0, idx)] / 1e6;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("连接=%d, 发送=%d, 确认=%d, 错误确认=%d, 未匹配=%d, 超时=%d, 连接失败=%d, 耗时=%.1fs, 吞吐=%.1f 帧/s%n"
+                            + "确认延迟(ms): p50=%.3f p90=%.3f p99=%.3f p99.9=%.3f max=%.3f",
+                    connections, sent, acks, errorAcks, unexpected, timeouts, connectFailures, elapsedNanos / 1e9, framesPerSecond(),
+                    percentileMs(0.5), percentileMs(0.9), percentileMs(0.99), percentileMs(0.999), percentileMs(1.0));
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package com.example.qmx.tools;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 看板读接口压测：对 MVC 应用（8080）与 qmx-reactive 模块（8081）的同一组只读路径施加相同的闭环负载，对比吞吐与尾延迟
+ * <p>
+ * 每个目标依次压测；每个并发用户循环请求 --paths 中的路径（逐个轮换），收到响应后立即发下一个请求
+ * <pre>
+ * mvn -Phttp-load compile exec:java -Dexec.args="--targets mvc=http://127.0.0.1:8080,reactive=http://127.0.0.1:8081 \
+ *      --paths /getDashboardOverview?unitId=1,/getBatchLatestStatus?unitId=1&amp;devNames=喷枪1%2C喷枪2 --concurrency 200 --duration 30"
+ * </pre>
+ * 多个路径用逗号分隔时，查询参数中的逗号需写成 %2C；--warmup 为每个目标正式计时前的预热秒数
+ *
+ * @author jyy
+ */
+public class HttpLoadGenerator {
+
+    private final HttpClient client;
+    private final int concurrency;
+    private final long durationMs;
+    private final long warmupMs;
+    private final Duration timeout;
+
+    public HttpLoadGenerator(int concurrency, long durationMs, long warmupMs, Duration timeout) {
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(timeout)
+                .build();
+        this.concurrency = concurrency;
+        this.durationMs = durationMs;
+        this.warmupMs = warmupMs;
+        this.timeout = timeout;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> opts = FrameReplayer.parseArgs(args);
+        Map<String, String> targets = new LinkedHashMap<>();
+        for (String t : opts.getOrDefault("targets", "mvc=http://127.0.0.1:8080,reactive=http://127.0.0.1:8081").split(",")) {
+            int eq = t.indexOf('=');
+            targets.put(eq > 0 ? t.substring(0, eq) : t, eq > 0 ? t.substring(eq + 1) : t);
+        }
+        List<String> paths = new ArrayList<>();
+        for (String p : opts.getOrDefault("paths", "/getDashboardOverview?unitId=1").split(",")) {
+            paths.add(p.trim());
+        }
+        HttpLoadGenerator gen = new HttpLoadGenerator(
+                Integer.parseInt(opts.getOrDefault("concurrency", "50")),
+                Long.parseLong(opts.getOrDefault("duration", "30")) * 1000L,
+                Long.parseLong(opts.getOrDefault("warmup", "5")) * 1000L,
+                Duration.ofMillis(Long.parseLong(opts.getOrDefault("timeout-ms", "5000"))));
+        boolean ok = true;
+        for (Map.Entry<String, String> e : targets.entrySet()) {
+            Report r = gen.run(e.getKey(), e.getValue(), paths);
+            System.out.println(r);
+            ok &= r.ok > 0 && r.errors == 0;
+        }
+        System.exit(ok ? 0 : 1);
+    }
+
+    /**
+     * 对单个目标预热后正式压测，返回统计结果
+     */
+    public Report run(String name, String baseUrl, List<String> paths) throws InterruptedException {
+        List<URI> uris = new ArrayList<>(paths.size());
+        for (String p : paths) {
+            uris.add(URI.create(baseUrl + p));
+        }
+        if (warmupMs > 0) {
+            load(uris, warmupMs);
+        }
+        return load(uris, durationMs).named(name, baseUrl);
+    }
+
+    private Report load(List<URI> uris, long runMs) throws InterruptedException {
+        AtomicLong ok = new AtomicLong();
+        AtomicLong errors = new AtomicLong();
+        List<long[]> latencies = new ArrayList<>();
+        CountDownLatch done = new CountDownLatch(concurrency);
+        long start = System.nanoTime();
+        long deadline = start + runMs * 1_000_000L;
+        for (int i = 0; i < concurrency; i++) {
+            int offset = i;
+            Thread t = new Thread(() -> {
+                long[] lat = new long[1024];
+                int n = 0;
+                try {
+                    for (int k = offset; System.nanoTime() < deadline; k++) {
+                        HttpRequest req = HttpRequest.newBuilder(uris.get(k % uris.size()))
+                                .timeout(timeout)
+                                .GET()
+                                .build();
+                        long t0 = System.nanoTime();
+                        try {
+                            HttpResponse<Void> resp = client.send(req, HttpResponse.BodyHandlers.discarding());
+                            if (resp.statusCode() / 100 != 2) {
+                                errors.incrementAndGet();
+                                continue;
+                            }
+                        } catch (IOException e) {
+                            errors.incrementAndGet();
+                            continue;
+                        }
+                        if (n == lat.length) {
+                            lat = Arrays.copyOf(lat, n * 2);
+                        }
+                        lat[n++] = System.nanoTime() - t0;
+                        ok.incrementAndGet();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    synchronized (latencies) {
+                        latencies.add(Arrays.copyOf(lat, n));
+                    }
+                    done.countDown();
+                }
+            }, "http-load-" + i);
+            t.setDaemon(true);
+            t.start();
+        }
+        done.await();
+        long elapsedNanos = System.nanoTime() - start;
+
+        long[] all;
+        synchronized (latencies) {
+            all = latencies.stream().flatMapToLong(Arrays::stream).toArray();
+        }
+        Arrays.sort(all);
+        return new Report(concurrency, ok.get(), errors.get(), elapsedNanos, all);
+    }
+
+    public static final class Report {
+        public String name = "";
+        public String baseUrl = "";
+        public final int concurrency;
+        public final long ok;
+        public final long errors;
+        public final long elapsedNanos;
+        // 已排序的成功请求延迟（纳秒）
+        private final long[] latencies;
+
+        Report(int concurrency, long ok, long errors, long elapsedNanos, long[] latencies) {
+            this.concurrency = concurrency;
+            this.ok = ok;
+            this.errors = errors;
+            this.elapsedNanos = elapsedNanos;
+            this.latencies = latencies;
+        }
+
+        Report named(String name, String baseUrl) {
+            this.name = name;
+            this.baseUrl = baseUrl;
+            return this;
+        }
+
+        public double requestsPerSecond() {
+            return ok / Math.max(elapsedNanos / 1e9, 1e-9);
+        }
+
+        /**
+         * 请求延迟分位数（毫秒）
+         */
+        public double percentileMs(double q) {
+            if (latencies.length == 0) {
+                return 0;
+            }
+            int idx = (int) Math.min(latencies.length - 1, Math.ceil(q * latencies.length) - 1);
+            return latencies[Math.max(0, idx)] / 1e6;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("[%s] %s 并发=%d, 成功=%d, 失败=%d, 耗时=%.1fs, 吞吐=%.1f 请求/s%n"
+                            + "请求延迟(ms): p50=%.3f p90=%.3f p99=%.3f p99.9=%.3f max=%.3f",
+                    name, baseUrl, concurrency, ok, errors, elapsedNanos / 1e9, requestsPerSecond(),
+                    percentileMs(0.5), percentileMs(0.9), percentileMs(0.99), percentileMs(0.999), percentileMs(1.0));
+        }
+    }
+}
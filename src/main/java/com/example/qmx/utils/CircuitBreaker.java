@@ -0,0 +1,130 @@
+package com.example.qmx.utils;
+
+/**
+ * 简单熔断器（线程安全）
+ * <p>
+ * 状态流转：
+ * 1. CLOSED：正常放行，连续失败达到阈值后进入 OPEN
+ * 2. OPEN：直接拒绝请求，经过 openMs 后进入 HALF_OPEN
+ * 3. HALF_OPEN：只放行一次试探请求，成功则 CLOSED，失败则重新 OPEN
+ * 指定 maxOpenMs 时，试探连续失败每次使打开时长翻倍（指数退避），直到 maxOpenMs
+ *
+ * @author jyy
+ */
+public class CircuitBreaker {
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    /**
+     * 连续失败阈值
+     */
+    private final int failureThreshold;
+
+    /**
+     * 熔断打开持续时间（毫秒）
+     */
+    private final long openMs;
+
+    /**
+     * 指数退避的打开时长上限（毫秒）
+     */
+    private final long maxOpenMs;
+
+    /**
+     * 当前打开时长
+     */
+    private long currentOpenMs;
+
+    private State state = State.CLOSED;
+
+    private int consecutiveFailures;
+
+    private long openedAt;
+
+    /**
+     * HALF_OPEN 状态下试探请求是否已放出
+     */
+    private boolean probeInFlight;
+
+    public CircuitBreaker(int failureThreshold, long openMs) {
+        this(failureThreshold, openMs, openMs);
+    }
+
+    public CircuitBreaker(int failureThreshold, long openMs, long maxOpenMs) {
+        if (failureThreshold <= 0) {
+            throw new IllegalArgumentException("failureThreshold 必须大于0");
+        }
+        this.failureThreshold = failureThreshold;
+        this.openMs = Math.max(0, openMs);
+        this.maxOpenMs = Math.max(this.openMs, maxOpenMs);
+        this.currentOpenMs = this.openMs;
+    }
+
+    /**
+     * 是否允许本次请求通过
+     */
+    public synchronized boolean allowRequest() {
+        switch (state) {
+            case CLOSED:
+                return true;
+            case OPEN:
+                if (System.currentTimeMillis() - openedAt < currentOpenMs) {
+                    return false;
+                }
+                state = State.HALF_OPEN;
+                probeInFlight = true;
+                return true;
+            case HALF_OPEN:
+            default:
+                if (probeInFlight) {
+                    return false;
+                }
+                probeInFlight = true;
+                return true;
+        }
+    }
+
+    public synchronized void recordSuccess() {
+        consecutiveFailures = 0;
+        probeInFlight = false;
+        state = State.CLOSED;
+        currentOpenMs = openMs;
+    }
+
+    public synchronized void recordFailure() {
+        probeInFlight = false;
+        consecutiveFailures++;
+        if (state == State.HALF_OPEN) {
+            // 试探失败：退避时长翻倍
+            currentOpenMs = Math.min(maxOpenMs, currentOpenMs * 2);
+            state = State.OPEN;
+            openedAt = System.currentTimeMillis();
+        } else if (consecutiveFailures >= failureThreshold) {
+            state = State.OPEN;
+            openedAt = System.currentTimeMillis();
+        }
+    }
+
+    public synchronized State getState() {
+        if (state == State.OPEN && System.currentTimeMillis() - openedAt >= currentOpenMs) {
+            return State.HALF_OPEN;
+        }
+        return state;
+    }
+
+    public synchronized int getConsecutiveFailures() {
+        return consecutiveFailures;
+    }
+
+    /**
+     * OPEN 状态下距下次允许试探的剩余毫秒数，其他状态为 0
+     */
+    public synchronized long getRemainingOpenMs() {
+        if (state != State.OPEN) {
+            return 0;
+        }
+        return Math.max(0, currentOpenMs - (System.currentTimeMillis() - openedAt));
+    }
+}
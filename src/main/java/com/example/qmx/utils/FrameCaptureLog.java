@@ -0,0 +1,404 @@
+package com.example.qmx.utils;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 网关原始帧抓包日志（内存映射、按段轮转）
+ * <p>
+ * 段文件格式（大端）：
+ * <pre>
+ * 文件头 16B : "QMXCAP01" + 段创建时间 epochMillis(8B)
+ * 记录       : 帧长度 n(4B) + 接收时间 epochMillis(8B) + MBAP+PDU 原始字节(nB)
+ * 结束       : 帧长度为 0（映射文件未写到的部分本身就是 0）
+ * </pre>
+ * 1. 每段预先映射 segmentBytes 大小，追加只是内存拷贝，不产生系统调用
+ * 2. 剩余空间放不下下一帧时换到后台预先建好的下一段；旧段 force/关闭与超过 maxSegments 的旧段删除
+ *    都在后台线程执行，接收线程不做磁盘同步
+ * 3. 换段失败（磁盘满、目录不可写等）时丢弃帧并计数，每隔 retryIntervalMs 重新建段，恢复后继续抓包
+ * 4. 段文件不截断（Windows 下已映射的文件无法截断），读取时遇到长度 0 即结束
+ *
+ * @author jyy
+ */
+@Slf4j
+public class FrameCaptureLog implements Closeable {
+
+    public static final String SUFFIX = ".qcap";
+    private static final byte[] MAGIC = "QMXCAP01".getBytes(StandardCharsets.US_ASCII);
+    private static final int HEADER_BYTES = 16;
+    private static final int RECORD_HEADER_BYTES = 12;
+    // 换段时等待后台预建下一段的最长时间，超时则在接收线程上直接建段
+    private static final long PREALLOCATE_WAIT_MS = 50;
+
+    private final Path dir;
+    private final int segmentBytes;
+    private final int maxSegments;
+    private final AtomicInteger seq = new AtomicInteger();
+    // 预建下一段、关闭旧段与删除过期段的后台线程
+    private final ExecutorService io = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "frame-capture-io");
+        t.setDaemon(true);
+        return t;
+    });
+
+    // 换段失败后的重试间隔
+    long retryIntervalMs = 1000;
+
+    private Segment active;
+    private Future<Segment> next;
+    private boolean closed;
+    private long frames;
+    private long droppedFrames;
+    private long rotateFailures;
+    private long retryAtMillis;
+    private String lastError;
+
+    public FrameCaptureLog(Path dir, int segmentBytes, int maxSegments) throws IOException {
+        this.dir = dir;
+        this.segmentBytes = Math.max(segmentBytes, HEADER_BYTES + RECORD_HEADER_BYTES + 260 + 4);
+        this.maxSegments = Math.max(1, maxSegments);
+        Files.createDirectories(dir);
+        active = allocate();
+        active.activate();
+        io.execute(this::prune);
+        next = io.submit(this::allocate);
+    }
+
+    /**
+     * 一个已映射的段文件
+     */
+    private static final class Segment {
+        final Path path;
+        final FileChannel channel;
+        final MappedByteBuffer buffer;
+
+        Segment(Path path, FileChannel channel, MappedByteBuffer buffer) {
+            this.path = path;
+            this.channel = channel;
+            this.buffer = buffer;
+        }
+
+        // 开始写入时刷新文件头中的段创建时间
+        void activate() {
+            buffer.putLong(MAGIC.length, System.currentTimeMillis());
+        }
+
+        void close(boolean force) {
+            try {
+                if (force) {
+                    buffer.force();
+                }
+                channel.close();
+            } catch (IOException e) {
+                log.warn("关闭抓包段失败: {}, {}", path, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 追加一帧（MBAP 头与 PDU 分开传入，避免调用方拼接）；换段失败时丢弃该帧并计数
+     */
+    public synchronized void append(long timeMillis, byte[] mbap, byte[] pdu) throws IOException {
+        if (closed) {
+            throw new IOException("抓包日志已关闭");
+        }
+        int n = mbap.length + pdu.length;
+        // 预留 4 字节给结束标记
+        if ((active == null || active.buffer.remaining() < RECORD_HEADER_BYTES + n + 4) && !switchSegment()) {
+            droppedFrames++;
+            return;
+        }
+        MappedByteBuffer buffer = active.buffer;
+        buffer.putInt(n);
+        buffer.putLong(timeMillis);
+        buffer.put(mbap);
+        buffer.put(pdu);
+        frames++;
+    }
+
+    public synchronized long getFrames() {
+        return frames;
+    }
+
+    /**
+     * 当前写入的段；换段失败期间为 null
+     */
+    public synchronized Path getCurrentSegment() {
+        return active != null ? active.path : null;
+    }
+
+    /**
+     * 换段失败、当前没有可写的段
+     */
+    public synchronized boolean isFailing() {
+        return !closed && active == null;
+    }
+
+    public synchronized long getDroppedFrames() {
+        return droppedFrames;
+    }
+
+    public synchronized long getRotateFailures() {
+        return rotateFailures;
+    }
+
+    public synchronized String getLastError() {
+        return lastError;
+    }
+
+    /**
+     * 换到后台预建的下一段；旧段交给后台线程 force 并关闭
+     *
+     * @return 是否已有可写的新段
+     */
+    private boolean switchSegment() {
+        long now = System.currentTimeMillis();
+        if (active == null && now < retryAtMillis) {
+            return false;
+        }
+        Segment fresh = takePreallocated();
+        if (fresh == null) {
+            try {
+                fresh = allocate();
+            } catch (IOException e) {
+                rotateFailures++;
+                lastError = e.getMessage();
+                retryAtMillis = now + retryIntervalMs;
+                log.error("抓包换段失败，{}ms 后重试: {}", retryIntervalMs, e.getMessage());
+                retire(active);
+                active = null;
+                return false;
+            }
+        }
+        if (active == null) {
+            log.info("抓包换段已恢复: {}, 期间丢弃 {} 帧", fresh.path, droppedFrames);
+        }
+        retire(active);
+        fresh.activate();
+        active = fresh;
+        lastError = null;
+        next = io.submit(this::allocate);
+        return true;
+    }
+
+    // 取后台预建的段；未建好、建段失败或已关闭时返回 null
+    private Segment takePreallocated() {
+        Future<Segment> f = next;
+        next = null;
+        if (f == null) {
+            return null;
+        }
+        try {
+            return f.get(PREALLOCATE_WAIT_MS, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            // 后台仍在建段：建好后由后台线程自行关闭删除
+            io.execute(() -> discard(f));
+            return null;
+        } catch (ExecutionException e) {
+            log.warn("预建抓包段失败，改为直接建段: {}", e.getCause().getMessage());
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            io.execute(() -> discard(f));
+            return null;
+        }
+    }
+
+    // 旧段在后台 force 并关闭，之后删除超出保留数的旧段
+    private void retire(Segment old) {
+        if (old == null) {
+            return;
+        }
+        io.execute(() -> {
+            old.close(true);
+            prune();
+        });
+    }
+
+    // 未使用的预建段：关闭并删除，避免留下空段
+    private static void discard(Future<Segment> f) {
+        Segment s;
+        try {
+            s = f.get();
+        } catch (Exception e) {
+            return;
+        }
+        s.close(false);
+        try {
+            Files.deleteIfExists(s.path);
+        } catch (IOException e) {
+            log.warn("删除未使用的抓包段失败: {}, {}", s.path, e.getMessage());
+        }
+    }
+
+    /**
+     * 新建并映射一个段，写好文件头（空段按 0 帧读取）
+     */
+    private Segment allocate() throws IOException {
+        String ts = new SimpleDateFormat("yyyyMMdd-HHmmss-SSS").format(new Date());
+        Path path = dir.resolve("capture-" + ts + "-" + String.format("%04d", seq.getAndIncrement()) + SUFFIX);
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes);
+            buffer.put(MAGIC);
+            buffer.putLong(System.currentTimeMillis());
+            return new Segment(path, channel, buffer);
+        } catch (IOException e) {
+            channel.close();
+            Files.deleteIfExists(path);
+            throw e;
+        }
+    }
+
+    // 在后台线程执行；此时预建的下一段尚未提交，不会被误删
+    private void prune() {
+        List<Path> segments;
+        try {
+            segments = segments(dir);
+        } catch (IOException e) {
+            log.warn("列出抓包段失败: {}", e.getMessage());
+            return;
+        }
+        for (int i = 0; i < segments.size() - maxSegments; i++) {
+            try {
+                Files.deleteIfExists(segments.get(i));
+            } catch (IOException e) {
+                // Windows 下仍被映射的旧段可能暂时删不掉，下次轮转再试
+                log.warn("删除旧抓包段失败: {}, {}", segments.get(i), e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        Segment last = active;
+        active = null;
+        Future<Segment> pending = next;
+        next = null;
+        if (pending != null) {
+            io.execute(() -> discard(pending));
+        }
+        if (last != null) {
+            io.execute(() -> last.close(true));
+        }
+        io.shutdown();
+        try {
+            if (!io.awaitTermination(10, TimeUnit.SECONDS)) {
+                log.warn("抓包日志后台任务 10 秒内未完成");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 目录下的全部段文件，按文件名（即创建时间）排序
+     */
+    public static List<Path> segments(Path dir) throws IOException {
+        List<Path> out = new ArrayList<>();
+        if (!Files.isDirectory(dir)) {
+            return out;
+        }
+        try (DirectoryStream<Path> ds = Files.newDirectoryStream(dir, "*" + SUFFIX)) {
+            for (Path p : ds) {
+                out.add(p);
+            }
+        }
+        Collections.sort(out);
+        return out;
+    }
+
+    /**
+     * 抓包记录
+     */
+    public static final class Frame {
+        private final long timeMillis;
+        private final byte[] bytes;
+
+        Frame(long timeMillis, byte[] bytes) {
+            this.timeMillis = timeMillis;
+            this.bytes = bytes;
+        }
+
+        public long getTimeMillis() {
+            return timeMillis;
+        }
+
+        /**
+         * MBAP+PDU 原始字节
+         */
+        public byte[] getBytes() {
+            return bytes;
+        }
+    }
+
+    /**
+     * 顺序读取一个段文件
+     */
+    public static final class Reader implements Closeable {
+        private final FileChannel channel;
+        private final MappedByteBuffer buffer;
+
+        public Reader(Path segment) throws IOException {
+            this.channel = FileChannel.open(segment, StandardOpenOption.READ);
+            this.buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            byte[] magic = new byte[MAGIC.length];
+            if (buffer.remaining() < HEADER_BYTES) {
+                throw new IOException("不是抓包段文件: " + segment);
+            }
+            buffer.get(magic);
+            if (!Arrays.equals(magic, MAGIC)) {
+                throw new IOException("不是抓包段文件: " + segment);
+            }
+            buffer.getLong();
+        }
+
+        /**
+         * @return 下一帧；已到段尾返回 null
+         */
+        public Frame next() {
+            if (buffer.remaining() < RECORD_HEADER_BYTES) {
+                return null;
+            }
+            int n = buffer.getInt();
+            if (n <= 0 || buffer.remaining() < 8 + n) {
+                return null;
+            }
+            long time = buffer.getLong();
+            byte[] bytes = new byte[n];
+            buffer.get(bytes);
+            return new Frame(time, bytes);
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+}
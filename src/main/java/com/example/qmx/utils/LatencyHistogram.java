@@ -0,0 +1,74 @@
+package com.example.qmx.utils;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 固定分桶的延迟直方图（无锁，适合高频记录）
+ * <p>
+ * 桶上界（毫秒）：1, 2, 5, 10, 20, 50, 100, 200, 500, 1000, 2000, 5000, +Inf
+ * 分位数按桶上界估算
+ *
+ * @author jyy
+ */
+public class LatencyHistogram {
+
+    private static final long[] BOUNDS_MS = {1, 2, 5, 10, 20, 50, 100, 200, 500, 1000, 2000, 5000};
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BOUNDS_MS.length + 1);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+
+    public void record(long nanos) {
+        // le 语义：恰好等于上界的落在该桶；按纳秒比较，避免 1.5ms 截断成 1ms 后落进 le_1
+        int i = 0;
+        while (i < BOUNDS_MS.length && nanos > BOUNDS_MS[i] * 1_000_000L) {
+            i++;
+        }
+        buckets.incrementAndGet(i);
+        count.increment();
+        totalNanos.add(nanos);
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public double getMeanMs() {
+        long c = count.sum();
+        return c == 0 ? 0 : totalNanos.sum() / 1_000_000.0 / c;
+    }
+
+    /**
+     * 估算分位数（返回所在桶的上界毫秒数，落在最后一桶返回 -1 表示超过 5000ms）
+     */
+    public long percentileMs(double q) {
+        long c = count.sum();
+        if (c == 0) {
+            return 0;
+        }
+        long target = (long) Math.ceil(c * q);
+        long seen = 0;
+        for (int i = 0; i < buckets.length(); i++) {
+            seen += buckets.get(i);
+            if (seen >= target) {
+                return i < BOUNDS_MS.length ? BOUNDS_MS[i] : -1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 各桶计数，键为 "le_上界ms"
+     */
+    public Map<String, Long> snapshot() {
+        Map<String, Long> m = new LinkedHashMap<>();
+        for (int i = 0; i < BOUNDS_MS.length; i++) {
+            m.put("le_" + BOUNDS_MS[i] + "ms", buckets.get(i));
+        }
+        m.put("le_inf", buckets.get(BOUNDS_MS.length));
+        return m;
+    }
+}
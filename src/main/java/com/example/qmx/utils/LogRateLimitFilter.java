@@ -0,0 +1,113 @@
+package com.example.qmx.utils;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.turbo.TurboFilter;
+import ch.qos.logback.core.spi.FilterReply;
+import org.slf4j.LoggerFactory;
+import org.slf4j.Marker;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 按日志分类（logger 名前缀）限流的 logback TurboFilter
+ * <p>
+ * 在 logback-spring.xml 中配置，前缀取最长匹配：
+ * <pre>
+ * &lt;turboFilter class="com.example.qmx.utils.LogRateLimitFilter"&gt;
+ *     &lt;limit&gt;qmx.alarm=20&lt;/limit&gt;  每秒最多 20 条
+ * &lt;/turboFilter&gt;
+ * </pre>
+ * 逐帧日志的抽样在调用处用 LogSampler 完成（未抽中的帧连参数都不构造），这里只做限流；
+ * ERROR 级别不限流；isDebugEnabled() 之类的级别判断不计数；
+ * 每秒窗口结束时把上一窗口被丢弃的条数以 WARN 输出到 qmx.log
+ *
+ * @author jyy
+ */
+public class LogRateLimitFilter extends TurboFilter {
+
+    private static final org.slf4j.Logger SELF = LoggerFactory.getLogger("qmx.log");
+
+    private final Map<String, Category> categories = new LinkedHashMap<>();
+    // 按前缀长度倒序，保证最长匹配
+    private volatile List<Category> ordered = new ArrayList<>();
+
+    private static final class Category {
+        final String prefix;
+        volatile int perSecond;
+        final AtomicLong window = new AtomicLong();
+        final AtomicLong inWindow = new AtomicLong();
+        final AtomicLong dropped = new AtomicLong();
+
+        Category(String prefix) {
+            this.prefix = prefix;
+        }
+    }
+
+    /**
+     * 形如 "qmx.alarm=20"：该分类每秒最多输出 20 条
+     */
+    public void addLimit(String spec) {
+        String[] kv = parse(spec);
+        category(kv[0]).perSecond = Integer.parseInt(kv[1]);
+    }
+
+    private static String[] parse(String spec) {
+        int eq = spec.indexOf('=');
+        if (eq <= 0) {
+            throw new IllegalArgumentException("日志限流配置应为 分类=数值: " + spec);
+        }
+        return new String[]{spec.substring(0, eq).trim(), spec.substring(eq + 1).trim()};
+    }
+
+    private synchronized Category category(String prefix) {
+        Category c = categories.computeIfAbsent(prefix, Category::new);
+        List<Category> list = new ArrayList<>(categories.values());
+        list.sort(Comparator.comparingInt((Category x) -> x.prefix.length()).reversed());
+        ordered = list;
+        return c;
+    }
+
+    @Override
+    public FilterReply decide(Marker marker, Logger logger, Level level, String format, Object[] params, Throwable t) {
+        // 级别判断调用（format 为空）与未开启的级别不计数
+        if (format == null || level == null || level.isGreaterOrEqual(Level.ERROR)
+                || !level.isGreaterOrEqual(logger.getEffectiveLevel())) {
+            return FilterReply.NEUTRAL;
+        }
+        Category c = match(logger.getName());
+        if (c == null) {
+            return FilterReply.NEUTRAL;
+        }
+        if (c.perSecond > 0) {
+            long second = System.currentTimeMillis() / 1000;
+            long w = c.window.get();
+            if (w != second && c.window.compareAndSet(w, second)) {
+                c.inWindow.set(0);
+                long dropped = c.dropped.getAndSet(0);
+                if (dropped > 0) {
+                    SELF.warn("日志限流: 分类={} 上一秒丢弃 {} 条（上限 {}/s）", c.prefix, dropped, c.perSecond);
+                }
+            }
+            if (c.inWindow.incrementAndGet() > c.perSecond) {
+                c.dropped.incrementAndGet();
+                return FilterReply.DENY;
+            }
+        }
+        return FilterReply.NEUTRAL;
+    }
+
+    private Category match(String loggerName) {
+        for (Category c : ordered) {
+            if (loggerName.startsWith(c.prefix)) {
+                return c;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,31 @@
+package com.example.qmx.utils;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 按固定间隔抽样的日志开关：每 every 次调用放行 1 次（every<=1 时全部放行）
+ * <p>
+ * 用于逐帧日志，只在 DEBUG 打开时才计数：
+ * <pre>
+ * if (log.isDebugEnabled() &amp;&amp; sampler.sample()) { log.debug(...); }
+ * </pre>
+ *
+ * @author jyy
+ */
+public class LogSampler {
+
+    private final long every;
+    private final AtomicLong counter = new AtomicLong();
+
+    public LogSampler(long every) {
+        this.every = Math.max(1, every);
+    }
+
+    public boolean sample() {
+        return every == 1 || counter.getAndIncrement() % every == 0;
+    }
+
+    public long getEvery() {
+        return every;
+    }
+}
@@ -0,0 +1,404 @@
+package com.example.qmx.utils;
+
+import com.serotonin.modbus4j.exception.ModbusTransportException;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.LongConsumer;
+
+/**
+ * Modbus TCP 流水线客户端（封装模式 MBAP）
+ * <p>
+ * modbus4j 的 TcpMaster.send 是同步的，同一连接同一时刻只能有一个事务在途。
+ * 本类在一条 TCP 连接上允许多个事务同时在途：
+ * 1. 发送时分配事务ID，登记 txId -> Future，组好的帧交给本连接的写线程写出，调用方与超时调度器都不做阻塞写
+ * 2. 单个读线程按响应帧的事务ID完成对应的 Future
+ * 3. 超时由共享调度器统一处理，不占用阻塞线程；调度器只做超时判定与补发排队，不写 socket
+ * 4. 超过最大在途数的请求在本地排队，有响应返回时再发出；需要真实往返时间的调用方可传入 onWritten，
+ *    在请求实际写出时拿到写出时刻，排队等待不计入
+ * 连接出错后所有在途请求失败，客户端关闭，由 ModbusUtils 重新创建
+ *
+ * @author jyy
+ */
+@Slf4j
+public class ModbusPipelineClient {
+
+    private static final int FC_READ_COILS = 0x01;
+    private static final int FC_READ_DISCRETE_INPUTS = 0x02;
+    private static final int FC_READ_HOLDING_REGISTERS = 0x03;
+    private static final int FC_READ_INPUT_REGISTERS = 0x04;
+    private static final int FC_WRITE_MULTIPLE_REGISTERS = 0x10;
+
+    private final String key;
+    private final Socket socket;
+    private final OutputStream out;
+    private final InputStream in;
+    private final ScheduledExecutorService timeoutScheduler;
+    private final long timeoutMs;
+    private final int maxInFlight;
+
+    private final Map<Integer, Pending> inFlight = new ConcurrentHashMap<>();
+    private final ArrayDeque<Pending> waiting = new ArrayDeque<>();
+    // 已登记在途、待写线程写出的请求
+    private final BlockingQueue<Pending> writeQueue = new LinkedBlockingQueue<>();
+    private final Thread writer;
+    private final Object sendLock = new Object();
+    private int nextTxId = 1;
+    private volatile boolean closed;
+
+    /**
+     * 设备返回的异常响应（功能码 | 0x80）：链路正常，只是请求被设备拒绝（如非法数据地址）
+     */
+    public static class ExceptionResponseException extends ModbusTransportException {
+        private final int functionCode;
+        private final int exceptionCode;
+
+        public ExceptionResponseException(int functionCode, int exceptionCode, int slaveId) {
+            super("Modbus异常响应: func=0x" + Integer.toHexString(functionCode) + ", code=" + exceptionCode, slaveId);
+            this.functionCode = functionCode;
+            this.exceptionCode = exceptionCode;
+        }
+
+        public int getFunctionCode() {
+            return functionCode;
+        }
+
+        public int getExceptionCode() {
+            return exceptionCode;
+        }
+    }
+
+    private static class Pending {
+        final int unitId;
+        final byte[] pdu;
+        final LongConsumer onWritten;
+        final CompletableFuture<byte[]> future = new CompletableFuture<>();
+        int txId;
+        byte[] frame;
+        ScheduledFuture<?> timeoutTask;
+
+        Pending(int unitId, byte[] pdu, LongConsumer onWritten) {
+            this.unitId = unitId;
+            this.pdu = pdu;
+            this.onWritten = onWritten;
+        }
+    }
+
+    public ModbusPipelineClient(String host, int port, int connectTimeoutMs, long timeoutMs, int maxInFlight,
+                                ScheduledExecutorService timeoutScheduler) throws IOException {
+        this.key = host + ":" + port;
+        this.timeoutMs = timeoutMs;
+        this.maxInFlight = Math.max(1, maxInFlight);
+        this.timeoutScheduler = timeoutScheduler;
+        this.socket = new Socket();
+        this.socket.setTcpNoDelay(true);
+        this.socket.setKeepAlive(true);
+        this.socket.connect(new InetSocketAddress(host, port), connectTimeoutMs);
+        this.out = new BufferedOutputStream(socket.getOutputStream());
+        this.in = new BufferedInputStream(socket.getInputStream());
+        Thread reader = new Thread(this::readLoop, "modbus-pipeline-" + key);
+        reader.setDaemon(true);
+        reader.start();
+        writer = new Thread(this::writeLoop, "modbus-pipeline-writer-" + key);
+        writer.setDaemon(true);
+        writer.start();
+        log.info("Modbus流水线连接已建立: {}, maxInFlight={}", key, this.maxInFlight);
+    }
+
+    /**
+     * 读线圈（0x01）
+     */
+    public CompletableFuture<boolean[]> readCoils(int unitId, int offset, int quantity) {
+        return readCoils(unitId, offset, quantity, null);
+    }
+
+    public CompletableFuture<boolean[]> readCoils(int unitId, int offset, int quantity, LongConsumer onWritten) {
+        return submit(unitId, readBitsPdu(FC_READ_COILS, offset, quantity), onWritten).thenApply(pdu -> parseBits(pdu, quantity));
+    }
+
+    /**
+     * 读离散输入（0x02）
+     */
+    public CompletableFuture<boolean[]> readDiscreteInputs(int unitId, int offset, int quantity) {
+        return readDiscreteInputs(unitId, offset, quantity, null);
+    }
+
+    public CompletableFuture<boolean[]> readDiscreteInputs(int unitId, int offset, int quantity, LongConsumer onWritten) {
+        return submit(unitId, readBitsPdu(FC_READ_DISCRETE_INPUTS, offset, quantity), onWritten).thenApply(pdu -> parseBits(pdu, quantity));
+    }
+
+    /**
+     * 读保持寄存器（0x03），返回寄存器原始值（0-65535）
+     */
+    public CompletableFuture<int[]> readHoldingRegisters(int unitId, int offset, int quantity) {
+        return readHoldingRegisters(unitId, offset, quantity, null);
+    }
+
+    public CompletableFuture<int[]> readHoldingRegisters(int unitId, int offset, int quantity, LongConsumer onWritten) {
+        return submit(unitId, readPdu(FC_READ_HOLDING_REGISTERS, offset, quantity), onWritten).thenApply(ModbusPipelineClient::parseRegisters);
+    }
+
+    /**
+     * 读输入寄存器（0x04）
+     */
+    public CompletableFuture<int[]> readInputRegisters(int unitId, int offset, int quantity) {
+        return readInputRegisters(unitId, offset, quantity, null);
+    }
+
+    public CompletableFuture<int[]> readInputRegisters(int unitId, int offset, int quantity, LongConsumer onWritten) {
+        return submit(unitId, readPdu(FC_READ_INPUT_REGISTERS, offset, quantity), onWritten).thenApply(ModbusPipelineClient::parseRegisters);
+    }
+
+    /**
+     * 写多个保持寄存器（0x10），完成时返回响应 PDU
+     */
+    public CompletableFuture<byte[]> writeMultipleRegisters(int unitId, int offset, int[] values) {
+        if (values == null || values.length == 0 || values.length > 123) {
+            CompletableFuture<byte[]> f = new CompletableFuture<>();
+            f.completeExceptionally(new IllegalArgumentException("写寄存器数量必须为 1-123"));
+            return f;
+        }
+        byte[] pdu = new byte[6 + values.length * 2];
+        pdu[0] = (byte) FC_WRITE_MULTIPLE_REGISTERS;
+        pdu[1] = (byte) (offset >> 8);
+        pdu[2] = (byte) offset;
+        pdu[3] = (byte) (values.length >> 8);
+        pdu[4] = (byte) values.length;
+        pdu[5] = (byte) (values.length * 2);
+        for (int i = 0; i < values.length; i++) {
+            pdu[6 + i * 2] = (byte) (values[i] >> 8);
+            pdu[7 + i * 2] = (byte) values[i];
+        }
+        return submit(unitId, pdu);
+    }
+
+    /**
+     * 发送任意 PDU，完成时返回响应 PDU；异常响应（功能码 | 0x80）以 {@link ExceptionResponseException} 失败
+     */
+    public CompletableFuture<byte[]> submit(int unitId, byte[] pdu) {
+        return submit(unitId, pdu, null);
+    }
+
+    /**
+     * 同 {@link #submit(int, byte[])}；onWritten 在请求实际写出时以写出时刻（System.nanoTime）回调，可为 null
+     */
+    public CompletableFuture<byte[]> submit(int unitId, byte[] pdu, LongConsumer onWritten) {
+        Pending p = new Pending(unitId, pdu, onWritten);
+        if (closed) {
+            p.future.completeExceptionally(new ModbusTransportException("Modbus流水线连接已关闭: " + key));
+            return p.future;
+        }
+        synchronized (sendLock) {
+            if (inFlight.size() >= maxInFlight) {
+                waiting.addLast(p);
+                return p.future;
+            }
+            send(p);
+        }
+        return p.future;
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    public int getInFlightCount() {
+        return inFlight.size();
+    }
+
+    public void close() {
+        failAll(new ModbusTransportException("Modbus流水线连接已关闭: " + key));
+    }
+
+    /**
+     * 分配事务ID、登记在途并交给写线程，不做阻塞写；调用方需持有 sendLock
+     */
+    private void send(Pending p) {
+        int txId = nextTxId;
+        // 跳过仍在途的事务ID
+        while (inFlight.containsKey(txId) || txId == 0) {
+            txId = (txId + 1) & 0xFFFF;
+        }
+        nextTxId = (txId + 1) & 0xFFFF;
+        p.txId = txId;
+
+        byte[] frame = new byte[7 + p.pdu.length];
+        frame[0] = (byte) (txId >> 8);
+        frame[1] = (byte) txId;
+        int len = p.pdu.length + 1;
+        frame[4] = (byte) (len >> 8);
+        frame[5] = (byte) len;
+        frame[6] = (byte) p.unitId;
+        System.arraycopy(p.pdu, 0, frame, 7, p.pdu.length);
+        p.frame = frame;
+
+        inFlight.put(txId, p);
+        final int id = txId;
+        p.timeoutTask = timeoutScheduler.schedule(() -> {
+            if (inFlight.remove(id, p)) {
+                p.future.completeExceptionally(new TimeoutException("Modbus请求超时: " + key + ", txId=" + id));
+                sendWaiting();
+            }
+        }, timeoutMs, TimeUnit.MILLISECONDS);
+        writeQueue.offer(p);
+    }
+
+    /**
+     * 写线程：按登记顺序写出请求帧，队列暂空时才 flush，连续的请求合并为一次系统调用
+     */
+    private void writeLoop() {
+        try {
+            while (!closed) {
+                Pending p = writeQueue.take();
+                // 写出前已超时或已失败的请求不再发出
+                if (p.future.isDone()) {
+                    continue;
+                }
+                if (p.onWritten != null) {
+                    p.onWritten.accept(System.nanoTime());
+                }
+                out.write(p.frame);
+                if (writeQueue.isEmpty()) {
+                    out.flush();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            if (!closed) {
+                log.warn("Modbus流水线写出失败: {}, err={}", key, e.getMessage());
+            }
+            failAll(new ModbusTransportException(e));
+        }
+    }
+
+    private void sendWaiting() {
+        synchronized (sendLock) {
+            while (!closed && !waiting.isEmpty() && inFlight.size() < maxInFlight) {
+                send(waiting.pollFirst());
+            }
+        }
+    }
+
+    private void readLoop() {
+        byte[] mbap = new byte[7];
+        try {
+            while (!closed) {
+                readFully(mbap, 7);
+                int txId = ((mbap[0] & 0xFF) << 8) | (mbap[1] & 0xFF);
+                int length = ((mbap[4] & 0xFF) << 8) | (mbap[5] & 0xFF);
+                if (length <= 1 || length > 260) {
+                    throw new IOException("非法 MBAP 长度: " + length);
+                }
+                byte[] pdu = new byte[length - 1];
+                readFully(pdu, pdu.length);
+
+                Pending p = inFlight.remove(txId);
+                if (p == null) {
+                    log.debug("丢弃迟到或未知事务的响应: {}, txId={}", key, txId);
+                    continue;
+                }
+                if (p.timeoutTask != null) {
+                    p.timeoutTask.cancel(false);
+                }
+                if ((pdu[0] & 0x80) != 0) {
+                    int code = pdu.length > 1 ? pdu[1] & 0xFF : -1;
+                    p.future.completeExceptionally(new ExceptionResponseException(pdu[0] & 0x7F, code, p.unitId));
+                } else {
+                    p.future.complete(pdu);
+                }
+                sendWaiting();
+            }
+        } catch (IOException e) {
+            if (!closed) {
+                log.warn("Modbus流水线连接读取失败: {}, err={}", key, e.getMessage());
+            }
+            failAll(new ModbusTransportException(e));
+        }
+    }
+
+    private void readFully(byte[] buf, int len) throws IOException {
+        int off = 0;
+        while (off < len) {
+            int r = in.read(buf, off, len - off);
+            if (r < 0) {
+                throw new IOException("连接已关闭");
+            }
+            off += r;
+        }
+    }
+
+    private void failAll(Throwable cause) {
+        closed = true;
+        try {
+            socket.close();
+        } catch (IOException ignore) {
+        }
+        if (Thread.currentThread() != writer) {
+            writer.interrupt();
+        }
+        writeQueue.clear();
+        synchronized (sendLock) {
+            for (Pending p : waiting) {
+                p.future.completeExceptionally(cause);
+            }
+            waiting.clear();
+        }
+        for (Integer txId : inFlight.keySet()) {
+            Pending p = inFlight.remove(txId);
+            if (p != null) {
+                if (p.timeoutTask != null) {
+                    p.timeoutTask.cancel(false);
+                }
+                p.future.completeExceptionally(cause);
+            }
+        }
+    }
+
+    private static byte[] readPdu(int functionCode, int offset, int quantity) {
+        if (quantity < 1 || quantity > 125) {
+            throw new IllegalArgumentException("读寄存器数量必须为 1-125，当前=" + quantity);
+        }
+        return new byte[]{(byte) functionCode, (byte) (offset >> 8), (byte) offset, (byte) (quantity >> 8), (byte) quantity};
+    }
+
+    private static byte[] readBitsPdu(int functionCode, int offset, int quantity) {
+        if (quantity < 1 || quantity > 2000) {
+            throw new IllegalArgumentException("读位数量必须为 1-2000，当前=" + quantity);
+        }
+        return new byte[]{(byte) functionCode, (byte) (offset >> 8), (byte) offset, (byte) (quantity >> 8), (byte) quantity};
+    }
+
+    private static boolean[] parseBits(byte[] pdu, int quantity) {
+        boolean[] bits = new boolean[quantity];
+        for (int i = 0; i < quantity; i++) {
+            bits[i] = ((pdu[2 + i / 8] >> (i % 8)) & 0x01) != 0;
+        }
+        return bits;
+    }
+
+    private static int[] parseRegisters(byte[] pdu) {
+        int byteCount = pdu[1] & 0xFF;
+        int[] regs = new int[byteCount / 2];
+        for (int i = 0; i < regs.length; i++) {
+            regs[i] = ((pdu[2 + i * 2] & 0xFF) << 8) | (pdu[3 + i * 2] & 0xFF);
+        }
+        return regs;
+    }
+}
@@ -11,10 +11,17 @@ import com.serotonin.modbus4j.ip.IpParameters;
 import com.serotonin.modbus4j.locator.BaseLocator;
 import lombok.extern.slf4j.Slf4j;
 
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiFunction;
+import java.util.function.LongConsumer;
+import java.util.function.Supplier;
 
 /**
  * Modbus通讯工具类(生产级改进版)
@@ -25,6 +32,10 @@ import java.util.concurrent.locks.ReentrantLock;
  * 3. 细粒度的超时控制（连接获取/操作执行）
  * 4. 自动重试和指数退避策略
  * 5. 定期清理空闲连接
+ * 6. 共享有界执行器 + 单调度器超时 + 每主机并发上限（不再每次操作新建线程）
+ * 7. 流水线客户端：同一连接上多个事务同时在途（见 ModbusPipelineClient）
+ * 8. 每个 host:port 一个熔断器：连续失败后快速失败（不再等待超时×重试），
+ *    后台定期用廉价读（testSlaveNode）主动探测，恢复后自动闭合，重连间隔指数退避
  * <p>
  * 设计原则：
  * - 每个物理连接对应一个ModbusMaster实例
@@ -83,10 +94,88 @@ public class ModbusUtils {
      */
     private static final long CONNECTION_WAIT_TIMEOUT = 10000;
 
+    /**
+     * 共享执行器线程数上限（-Dqmx.modbus.io-threads 可调）
+     */
+    private static final int IO_THREADS = Integer.getInteger("qmx.modbus.io-threads", 32);
+
+    /**
+     * 共享执行器排队上限，超出直接失败而不是无限堆积
+     */
+    private static final int IO_QUEUE_CAPACITY = Integer.getInteger("qmx.modbus.io-queue-capacity", 1024);
+
+    /**
+     * 每个 host:port 同时占用执行线程的操作数上限，防止单台慢设备占满线程池
+     */
+    private static final int HOST_MAX_CONCURRENCY = Integer.getInteger("qmx.modbus.host-max-concurrency", 2);
+
+    /**
+     * 每个 host:port 排队等待执行的操作数上限；共享执行器换成每任务一个虚拟线程后没有全局队列上限，由此兜底
+     */
+    private static final int HOST_QUEUE_CAPACITY = Integer.getInteger("qmx.modbus.host-queue-capacity", IO_QUEUE_CAPACITY);
+
+    /**
+     * 流水线客户端每条连接最大在途事务数
+     */
+    private static final int PIPELINE_MAX_IN_FLIGHT = Integer.getInteger("qmx.modbus.pipeline-max-in-flight", 8);
+
+    /**
+     * 熔断：连续失败次数阈值、首次打开时长、指数退避上限（毫秒）
+     */
+    private static final int BREAKER_FAILURE_THRESHOLD = Integer.getInteger("qmx.modbus.breaker.failure-threshold", 3);
+    private static final long BREAKER_OPEN_MS = Long.getLong("qmx.modbus.breaker.open-ms", 1000L);
+    private static final long BREAKER_MAX_OPEN_MS = Long.getLong("qmx.modbus.breaker.max-open-ms", 60000L);
+
+    /**
+     * 主动健康探测周期（毫秒）：空闲连接与熔断中的设备按此周期探测
+     */
+    private static final long HEALTH_PROBE_INTERVAL_MS = Long.getLong("qmx.modbus.health.probe-interval-ms", 5000L);
+
     /**
      * 连接清理线程（单例）
      */
-    private static final ScheduledExecutorService CLEANUP_EXECUTOR = Executors.newSingleThreadScheduledExecutor();
+    private static final ScheduledExecutorService CLEANUP_EXECUTOR = Executors.newSingleThreadScheduledExecutor(daemonFactory("modbus-cleanup"));
+
+    /**
+     * 所有操作的超时由该调度线程统一处理
+     */
+    private static final ScheduledExecutorService TIMEOUT_SCHEDULER = Executors.newSingleThreadScheduledExecutor(daemonFactory("modbus-timeout"));
+
+    /**
+     * 共享执行器（可通过 setIoExecutor 替换为虚拟线程执行器）
+     */
+    private static volatile ExecutorService ioExecutor = new ThreadPoolExecutor(IO_THREADS, IO_THREADS,
+            60L, TimeUnit.SECONDS, new ArrayBlockingQueue<>(IO_QUEUE_CAPACITY), daemonFactory("modbus-io"));
+
+    /**
+     * 每主机调度通道：host:port -> HostLane
+     */
+    private static final Map<String, HostLane> HOST_LANES = new ConcurrentHashMap<>();
+
+    /**
+     * 流水线客户端：host:port -> ModbusPipelineClient
+     */
+    private static final Map<String, ModbusPipelineClient> PIPELINE_MAP = new ConcurrentHashMap<>();
+
+    /**
+     * 每主机健康状态：host:port -> HostHealth
+     */
+    private static final Map<String, HostHealth> HOST_HEALTH = new ConcurrentHashMap<>();
+
+    /**
+     * 单个 host:port 的熔断器与统计
+     */
+    private static final class HostHealth {
+        final CircuitBreaker breaker = new CircuitBreaker(BREAKER_FAILURE_THRESHOLD, BREAKER_OPEN_MS, BREAKER_MAX_OPEN_MS);
+        final LatencyHistogram latency = new LatencyHistogram();
+        final AtomicLong requests = new AtomicLong();
+        final AtomicLong failures = new AtomicLong();
+        final AtomicLong fastFails = new AtomicLong();
+        final AtomicLong probes = new AtomicLong();
+        // 探测用的从站号（取最近一次请求的 slaveId）
+        volatile int slaveId = 1;
+        volatile long lastActivityAt = System.currentTimeMillis();
+    }
 
     static {
         /*
@@ -95,14 +184,20 @@ public class ModbusUtils {
          * 1. 引用计数为0的空闲连接
          * 2. 初始化失败或已关闭的连接
          */
+        ((ThreadPoolExecutor) ioExecutor).allowCoreThreadTimeOut(true);
         CLEANUP_EXECUTOR.scheduleAtFixedRate(
                 ModbusUtils::cleanupIdleConnections,
                 5, 5, TimeUnit.MINUTES);
+        CLEANUP_EXECUTOR.scheduleWithFixedDelay(
+                ModbusUtils::probeHosts,
+                HEALTH_PROBE_INTERVAL_MS, HEALTH_PROBE_INTERVAL_MS, TimeUnit.MILLISECONDS);
 
         // 添加JVM关闭钩子确保资源释放
         Runtime.getRuntime().addShutdownHook(new Thread(() -> {
             destroyAll();
             CLEANUP_EXECUTOR.shutdownNow();
+            TIMEOUT_SCHEDULER.shutdownNow();
+            ioExecutor.shutdownNow();
         }));
     }
 
@@ -124,6 +219,7 @@ public class ModbusUtils {
      */
     public static ModbusMaster getMaster(String host, int port) throws ModbusTransportException {
         String key = getConnectionKey(host, port);
+        checkNotOpen(key);
         ReentrantLock lock = CONNECTION_LOCKS.computeIfAbsent(key, k -> new ReentrantLock(true));
 
         try {
@@ -137,18 +233,14 @@ public class ModbusUtils {
                 CONNECTION_REF_COUNTS.computeIfAbsent(key, k -> new AtomicInteger(0)).incrementAndGet();
 
                 // 双重检查锁创建连接
-                return MASTER_MAP.computeIfAbsent(key, k -> {
-                    try {
-                        ModbusMaster master = createTcpMaster(host, port,
-                                DEFAULT_TIMEOUT, DEFAULT_RETRIES, DEFAULT_ENCAPSULATED);
-                        master.init();
-                        log.info("ModbusMaster连接已创建: {}", key);
-                        return master;
-                    } catch (ModbusInitException e) {
-                        log.error("ModbusMaster初始化失败: {}", key, e);
-                        throw new RuntimeException("ModbusMaster初始化失败", e);
-                    }
-                });
+                try {
+                    return createMasterIfAbsent(host, port, key);
+                } catch (RuntimeException e) {
+                    // 初始化失败：回退引用计数并计入熔断
+                    CONNECTION_REF_COUNTS.get(key).decrementAndGet();
+                    onFailure(key);
+                    throw new ModbusTransportException("ModbusMaster初始化失败: " + key + ", " + e.getMessage());
+                }
             } finally {
                 // 释放锁
                 lock.unlock();
@@ -159,6 +251,21 @@ public class ModbusUtils {
         }
     }
 
+    private static ModbusMaster createMasterIfAbsent(String host, int port, String key) {
+        return MASTER_MAP.computeIfAbsent(key, k -> {
+            try {
+                ModbusMaster master = createTcpMaster(host, port,
+                        DEFAULT_TIMEOUT, DEFAULT_RETRIES, DEFAULT_ENCAPSULATED);
+                master.init();
+                log.info("ModbusMaster连接已创建: {}", key);
+                return master;
+            } catch (ModbusInitException e) {
+                log.error("ModbusMaster初始化失败: {}", key, e);
+                throw new RuntimeException("ModbusMaster初始化失败", e);
+            }
+        });
+    }
+
     /**
      * 释放连接引用
      * <p>
@@ -189,13 +296,181 @@ public class ModbusUtils {
     }
 
     /**
-     * 带超时的任务执行
+     * 替换共享执行器（例如 Java 21 下换成虚拟线程执行器），旧执行器中已提交的任务继续执行完
+     * <p>
+     * 新执行器即使不限线程数，每个 host:port 同时执行的操作仍受 HostLane 的信号量限制（qmx.modbus.host-max-concurrency），
+     * 排队数受 qmx.modbus.host-queue-capacity 限制
+     *
+     * @param executor 新执行器
+     */
+    public static void setIoExecutor(ExecutorService executor) {
+        ExecutorService old = ioExecutor;
+        ioExecutor = executor;
+        old.shutdown();
+    }
+
+    /**
+     * 每主机调度通道
+     * <p>
+     * 同一 host:port 同时在执行器中运行的任务数由信号量限制为 limit 个（与执行器是线程池还是每任务一个虚拟线程无关），
+     * 其余在本通道内排队（最多 maxQueued 个，超出直接失败），前一个任务结束时把名额交给下一个，排队期间不占用任何线程
+     */
+    static final class HostLane {
+        private final Semaphore permits;
+        private final int maxQueued;
+        private final Supplier<Executor> executor;
+        private final ArrayDeque<LaneTask> queue = new ArrayDeque<>();
+
+        HostLane(int limit, int maxQueued, Supplier<Executor> executor) {
+            this.permits = new Semaphore(limit);
+            this.maxQueued = maxQueued;
+            this.executor = executor;
+        }
+
+        synchronized void submit(Runnable body, CompletableFuture<?> future) {
+            LaneTask task = new LaneTask(body, future);
+            if (permits.tryAcquire()) {
+                dispatch(task);
+            } else if (queue.size() < maxQueued) {
+                queue.addLast(task);
+            } else {
+                future.completeExceptionally(new ModbusTransportException("设备请求排队已满（" + maxQueued + "），任务被拒绝"));
+            }
+        }
+
+        private void dispatch(LaneTask task) {
+            try {
+                executor.get().execute(() -> {
+                    try {
+                        task.body.run();
+                    } finally {
+                        next();
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                log.error("Modbus执行器已满，任务被拒绝: {}", e.getMessage());
+                permits.release();
+                // 没有运行中的任务会再来派发排队任务，连同本任务一起失败，不留给超时兜底
+                ModbusTransportException cause = new ModbusTransportException("Modbus执行器已满，任务被拒绝: " + e.getMessage());
+                task.future.completeExceptionally(cause);
+                for (LaneTask queued : queue) {
+                    queued.future.completeExceptionally(cause);
+                }
+                queue.clear();
+            }
+        }
+
+        // 名额直接交给下一个排队任务，没有排队任务时归还
+        private synchronized void next() {
+            LaneTask task = queue.pollFirst();
+            if (task != null) {
+                dispatch(task);
+            } else {
+                permits.release();
+            }
+        }
+    }
+
+    private static final class LaneTask {
+        final Runnable body;
+        final CompletableFuture<?> future;
+
+        LaneTask(Runnable body, CompletableFuture<?> future) {
+            this.body = body;
+            this.future = future;
+        }
+    }
+
+    /**
+     * 持有当前执行任务的线程，超时时用于中断（加锁保证不会误中断线程池中的下一个任务）
+     */
+    private static final class WorkerRef {
+        private Thread thread;
+    }
+
+    /**
+     * 异步执行任务（按 host:port 限流，超时由统一调度器处理）
+     *
+     * @param key       连接键 host:port
+     * @param task      要执行的任务
+     * @param timeoutMs 超时时间（毫秒），超时后 Future 以 TimeoutException 失败并中断执行线程
+     * @return 任务结果 Future
+     */
+    private static <T> CompletableFuture<T> executeAsync(String key, Callable<T> task, long timeoutMs) {
+        return executeAsync(key, task, timeoutMs, false);
+    }
+
+    /**
+     * @param probe 是否为健康探测（探测不刷新设备的最近活动时间）
+     */
+    private static <T> CompletableFuture<T> executeAsync(String key, Callable<T> task, long timeoutMs, boolean probe) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        HostHealth health = health(key);
+        if (!health.breaker.allowRequest()) {
+            // 熔断中：不占用线程、不等待超时，直接失败
+            health.fastFails.incrementAndGet();
+            future.completeExceptionally(new ModbusTransportException("设备熔断中，快速失败: " + key
+                    + "，" + health.breaker.getRemainingOpenMs() + "ms 后重试"));
+            return future;
+        }
+        if (probe) {
+            health.probes.incrementAndGet();
+        } else {
+            health.requests.incrementAndGet();
+            health.lastActivityAt = System.currentTimeMillis();
+        }
+        long startNanos = System.nanoTime();
+        future.whenComplete((r, e) -> {
+            health.latency.record(System.nanoTime() - startNanos);
+            // 设备返回异常码说明链路正常，不计入熔断
+            if (e == null || e instanceof ErrorResponseException) {
+                onSuccess(key);
+            } else {
+                onFailure(key);
+            }
+        });
+        WorkerRef worker = new WorkerRef();
+        HOST_LANES.computeIfAbsent(key, k -> new HostLane(HOST_MAX_CONCURRENCY, HOST_QUEUE_CAPACITY, () -> ioExecutor)).submit(() -> {
+            if (future.isDone()) {
+                return;
+            }
+            synchronized (worker) {
+                worker.thread = Thread.currentThread();
+            }
+            try {
+                future.complete(task.call());
+            } catch (Throwable t) {
+                future.completeExceptionally(t);
+            } finally {
+                synchronized (worker) {
+                    worker.thread = null;
+                }
+                // 清除可能残留的超时中断标记
+                Thread.interrupted();
+            }
+        }, future);
+        ScheduledFuture<?> timeoutTask = TIMEOUT_SCHEDULER.schedule(() -> {
+            if (future.completeExceptionally(new TimeoutException("Modbus操作超时: " + key + ", " + timeoutMs + "ms"))) {
+                synchronized (worker) {
+                    if (worker.thread != null) {
+                        worker.thread.interrupt();
+                    }
+                }
+            }
+        }, timeoutMs, TimeUnit.MILLISECONDS);
+        future.whenComplete((r, e) -> timeoutTask.cancel(false));
+        return future;
+    }
+
+    /**
+     * 带超时的任务执行（同步版）
      * <p>
      * 技术要点：
-     * 1. 使用独立线程池执行任务
-     * 2. Future.get()实现超时控制
+     * 1. 任务在共享执行器中运行，调用线程只等待结果
+     * 2. 超时由统一调度器触发
      * 3. 异常转换（ExecutionException -> 业务异常）
      *
+     * @param key     连接键 host:port
      * @param task    要执行的任务
      * @param timeout 超时时间
      * @param unit    时间单位
@@ -205,16 +480,17 @@ public class ModbusUtils {
      * @throws InterruptedException     中断异常
      * @throws TimeoutException         超时异常
      */
-    private static <T> T executeWithTimeout(Callable<T> task, long timeout, TimeUnit unit)
+    private static <T> T executeWithTimeout(String key, Callable<T> task, long timeout, TimeUnit unit)
             throws InterruptedException, TimeoutException, ErrorResponseException, ModbusTransportException {
-        ExecutorService executor = Executors.newSingleThreadExecutor();
-        Future<T> future = executor.submit(task);
-
+        CompletableFuture<T> future = executeAsync(key, task, unit.toMillis(timeout));
         try {
-            return future.get(timeout, unit);
+            return future.get();
         } catch (ExecutionException e) {
             // 异常类型转换
             Throwable cause = e.getCause();
+            if (cause instanceof TimeoutException) {
+                throw (TimeoutException) cause;
+            }
             if (cause instanceof ModbusTransportException) {
                 throw (ModbusTransportException) cause;
             }
@@ -222,14 +498,158 @@ public class ModbusUtils {
                 throw (ErrorResponseException) cause;
             }
             throw new RuntimeException("Modbus操作执行异常", cause);
-        } finally {
-            // 中断任务
+        } catch (InterruptedException e) {
             future.cancel(true);
-            // 立即释放资源
-            executor.shutdownNow();
+            throw e;
+        }
+    }
+
+    private static HostHealth health(String key) {
+        return HOST_HEALTH.computeIfAbsent(key, k -> new HostHealth());
+    }
+
+    /**
+     * 熔断打开期间直接抛出，避免在连接建立/等待超时上浪费数秒
+     */
+    private static void checkNotOpen(String key) throws ModbusTransportException {
+        HostHealth h = HOST_HEALTH.get(key);
+        if (h != null && h.breaker.getState() == CircuitBreaker.State.OPEN) {
+            h.fastFails.incrementAndGet();
+            throw new ModbusTransportException("设备熔断中，快速失败: " + key + "，" + h.breaker.getRemainingOpenMs() + "ms 后重试");
+        }
+    }
+
+    private static void onSuccess(String key) {
+        HostHealth h = health(key);
+        if (h.breaker.getState() != CircuitBreaker.State.CLOSED) {
+            log.info("Modbus设备恢复: {}", key);
+        }
+        h.breaker.recordSuccess();
+    }
+
+    private static void onFailure(String key) {
+        HostHealth h = health(key);
+        h.failures.incrementAndGet();
+        boolean wasOpen = h.breaker.getState() == CircuitBreaker.State.OPEN;
+        h.breaker.recordFailure();
+        if (!wasOpen && h.breaker.getState() == CircuitBreaker.State.OPEN) {
+            log.warn("Modbus设备熔断: {}，连续失败={}，{}ms 内请求快速失败", key,
+                    h.breaker.getConsecutiveFailures(), h.breaker.getRemainingOpenMs());
+            // 丢弃已失效的 TCP 连接，恢复试探时重新建立
+            ModbusMaster dead = MASTER_MAP.remove(key);
+            if (dead != null) {
+                try {
+                    dead.destroy();
+                } catch (Exception ignore) {
+                }
+            }
+            ModbusPipelineClient pipeline = PIPELINE_MAP.remove(key);
+            if (pipeline != null) {
+                pipeline.close();
+            }
         }
     }
 
+    /**
+     * 主动健康探测
+     * <p>
+     * 1. 熔断到期（HALF_OPEN）的设备：重建连接并试探，成功即闭合，失败则退避时长翻倍
+     * 2. 已连接但空闲超过一个探测周期的设备：用廉价读确认连接仍可用，提前发现断线
+     * 探测本身走共享执行器与每主机通道，探测线程不阻塞
+     */
+    public static void probeHosts() {
+        long now = System.currentTimeMillis();
+        for (Map.Entry<String, HostHealth> e : HOST_HEALTH.entrySet()) {
+            String key = e.getKey();
+            HostHealth h = e.getValue();
+            CircuitBreaker.State state = h.breaker.getState();
+            // 连接用完即释放（轮询走流水线连接），按熔断状态而不是 MASTER_MAP 判断是否需要探测空闲设备
+            boolean idleConnected = state == CircuitBreaker.State.CLOSED
+                    && now - h.lastActivityAt >= HEALTH_PROBE_INTERVAL_MS;
+            if (state != CircuitBreaker.State.HALF_OPEN && !idleConnected) {
+                continue;
+            }
+            int idx = key.lastIndexOf(':');
+            String host = key.substring(0, idx);
+            int port = Integer.parseInt(key.substring(idx + 1));
+            executeAsync(key, () -> {
+                ModbusMaster master = createMasterIfAbsent(host, port, key);
+                if (!master.testSlaveNode(h.slaveId)) {
+                    throw new ModbusTransportException("健康探测无响应: " + key);
+                }
+                return Boolean.TRUE;
+            }, DEFAULT_TIMEOUT, true).whenComplete((ok, err) -> {
+                if (err != null) {
+                    log.debug("Modbus健康探测失败: {}, err={}", key, err.getMessage());
+                }
+            });
+        }
+    }
+
+    /**
+     * 连接池与各设备运行指标
+     *
+     * @return 指标 Map（可直接序列化为 JSON）
+     */
+    public static Map<String, Object> getPoolMetrics() {
+        Map<String, Object> m = new LinkedHashMap<>();
+        ExecutorService ex = ioExecutor;
+        if (ex instanceof ThreadPoolExecutor) {
+            ThreadPoolExecutor tpe = (ThreadPoolExecutor) ex;
+            m.put("ioActiveThreads", tpe.getActiveCount());
+            m.put("ioPoolSize", tpe.getPoolSize());
+            m.put("ioQueueSize", tpe.getQueue().size());
+        } else {
+            m.put("ioExecutor", ex.getClass().getSimpleName());
+        }
+        int active = 0;
+        int idle = 0;
+        for (String key : MASTER_MAP.keySet()) {
+            if (CONNECTION_REF_COUNTS.getOrDefault(key, new AtomicInteger(0)).get() > 0) {
+                active++;
+            } else {
+                idle++;
+            }
+        }
+        m.put("activeConnections", active);
+        m.put("idleConnections", idle);
+        m.put("pipelineConnections", PIPELINE_MAP.size());
+
+        Map<String, Object> hosts = new LinkedHashMap<>();
+        for (Map.Entry<String, HostHealth> e : HOST_HEALTH.entrySet()) {
+            HostHealth h = e.getValue();
+            Map<String, Object> hm = new LinkedHashMap<>();
+            hm.put("state", h.breaker.getState().name());
+            hm.put("consecutiveFailures", h.breaker.getConsecutiveFailures());
+            hm.put("retryInMs", h.breaker.getRemainingOpenMs());
+            hm.put("connected", MASTER_MAP.containsKey(e.getKey()));
+            hm.put("requests", h.requests.get());
+            hm.put("failures", h.failures.get());
+            hm.put("fastFails", h.fastFails.get());
+            hm.put("probes", h.probes.get());
+            hm.put("latencyMeanMs", h.latency.getMeanMs());
+            hm.put("latencyP50Ms", h.latency.percentileMs(0.5));
+            hm.put("latencyP99Ms", h.latency.percentileMs(0.99));
+            hm.put("latencyHistogram", h.latency.snapshot());
+            ModbusPipelineClient pipeline = PIPELINE_MAP.get(e.getKey());
+            if (pipeline != null) {
+                hm.put("pipelineInFlight", pipeline.getInFlightCount());
+            }
+            hosts.put(e.getKey(), hm);
+        }
+        m.put("hosts", hosts);
+        return m;
+    }
+
+    private static ThreadFactory daemonFactory(String prefix) {
+        AtomicInteger seq = new AtomicInteger();
+        return r -> {
+            Thread t = new Thread(r, prefix + "-" + seq.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+
     /**
      * 清理空闲连接
      * <p>
@@ -273,6 +693,9 @@ public class ModbusUtils {
         MASTER_MAP.clear();
         CONNECTION_REF_COUNTS.clear();
         CONNECTION_LOCKS.clear();
+        PIPELINE_MAP.values().forEach(ModbusPipelineClient::close);
+        PIPELINE_MAP.clear();
+        HOST_HEALTH.clear();
     }
 
     /**
@@ -353,10 +776,11 @@ public class ModbusUtils {
     public static <T> T readWithRetry(String host, int port, BaseLocator<T> locator, int maxRetries, long timeoutMs)
             throws ModbusTransportException,
             ErrorResponseException, InterruptedException, TimeoutException {
+        health(getConnectionKey(host, port)).slaveId = locator.getSlaveId();
 
         ModbusMaster master = getMaster(host, port);
         try {
-            return executeWithTimeout(() -> {
+            return executeWithTimeout(getConnectionKey(host, port), () -> {
                 int retries = 0;
                 while (true) {
                     try {
@@ -394,7 +818,7 @@ public class ModbusUtils {
             throws ModbusTransportException, ErrorResponseException, InterruptedException, TimeoutException {
         ModbusMaster master = getMaster(host, port);
         try {
-            return executeWithTimeout(() -> {
+            return executeWithTimeout(getConnectionKey(host, port), () -> {
                 int retries = 0;
                 while (true) {
                     try {
@@ -436,10 +860,11 @@ public class ModbusUtils {
     public static <T> void writeWithRetry(String host, int port, BaseLocator<T> locator, T value, int maxRetries, long timeoutMs)
             throws ModbusTransportException,
             ErrorResponseException, InterruptedException, TimeoutException {
+        health(getConnectionKey(host, port)).slaveId = locator.getSlaveId();
 
         ModbusMaster master = getMaster(host, port);
         try {
-            executeWithTimeout(() -> {
+            executeWithTimeout(getConnectionKey(host, port), () -> {
                 int retries = 0;
                 while (true) {
                     try {
@@ -459,6 +884,156 @@ public class ModbusUtils {
         }
     }
 
+    /**
+     * 异步批量读取（不阻塞调用线程，结果在共享执行器中产生）
+     *
+     * @param host      设备IP
+     * @param port      设备端口
+     * @param batchRead 批量读取对象
+     * @param timeoutMs 超时时间（毫秒）
+     * @return 批量读取结果 Future
+     */
+    public static <T> CompletableFuture<BatchResults<T>> batchReadAsync(String host, int port, BatchRead<T> batchRead, long timeoutMs) {
+        ModbusMaster master;
+        try {
+            master = getMaster(host, port);
+        } catch (ModbusTransportException e) {
+            CompletableFuture<BatchResults<T>> f = new CompletableFuture<>();
+            f.completeExceptionally(e);
+            return f;
+        }
+        CompletableFuture<BatchResults<T>> future = executeAsync(getConnectionKey(host, port), () -> master.send(batchRead), timeoutMs);
+        future.whenComplete((r, e) -> release(host, port));
+        return future;
+    }
+
+    /**
+     * 获取（必要时新建）指定设备的流水线客户端，连接已断开时自动重建
+     *
+     * @param host 设备IP
+     * @param port 设备端口
+     * @return 流水线客户端
+     * @throws ModbusTransportException 连接失败时抛出
+     */
+    public static ModbusPipelineClient getPipelineClient(String host, int port) throws ModbusTransportException {
+        String key = getConnectionKey(host, port);
+        checkNotOpen(key);
+        ModbusPipelineClient client = PIPELINE_MAP.get(key);
+        if (client != null && !client.isClosed()) {
+            return client;
+        }
+        ReentrantLock lock = CONNECTION_LOCKS.computeIfAbsent(key, k -> new ReentrantLock(true));
+        lock.lock();
+        try {
+            client = PIPELINE_MAP.get(key);
+            if (client == null || client.isClosed()) {
+                client = new ModbusPipelineClient(host, port, DEFAULT_TIMEOUT, DEFAULT_OPERATION_TIMEOUT,
+                        PIPELINE_MAX_IN_FLIGHT, TIMEOUT_SCHEDULER);
+                PIPELINE_MAP.put(key, client);
+            }
+            return client;
+        } catch (IOException e) {
+            onFailure(key);
+            throw new ModbusTransportException("Modbus流水线连接失败: " + key + ", " + e.getMessage());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 流水线读线圈（0x01），同一设备的多个读请求可同时在途
+     *
+     * @param host     设备IP
+     * @param port     设备端口
+     * @param slaveId  slaveId
+     * @param offset   起始地址
+     * @param quantity  线圈数量（1-2000）
+     * @param onWritten 请求实际写出时回调写出时刻（System.nanoTime），可为 null
+     * @return 线圈状态 Future
+     */
+    public static CompletableFuture<boolean[]> readCoilsPipelined(String host, int port, int slaveId, int offset, int quantity,
+            LongConsumer onWritten) {
+        return pipelined(host, port, onWritten, (c, written) -> c.readCoils(slaveId, offset, quantity, written));
+    }
+
+    /**
+     * 流水线读离散输入（0x02）
+     *
+     * @param quantity 输入数量（1-2000）
+     * @return 输入状态 Future
+     */
+    public static CompletableFuture<boolean[]> readDiscreteInputsPipelined(String host, int port, int slaveId, int offset, int quantity,
+            LongConsumer onWritten) {
+        return pipelined(host, port, onWritten, (c, written) -> c.readDiscreteInputs(slaveId, offset, quantity, written));
+    }
+
+    /**
+     * 流水线读取保持寄存器（0x03）
+     *
+     * @param host     设备IP
+     * @param port     设备端口
+     * @param slaveId  slaveId
+     * @param offset   起始地址
+     * @param quantity 寄存器数量（1-125）
+     * @return 寄存器原始值 Future
+     */
+    public static CompletableFuture<int[]> readHoldingRegistersPipelined(String host, int port, int slaveId, int offset, int quantity) {
+        return readHoldingRegistersPipelined(host, port, slaveId, offset, quantity, null);
+    }
+
+    public static CompletableFuture<int[]> readHoldingRegistersPipelined(String host, int port, int slaveId, int offset, int quantity,
+            LongConsumer onWritten) {
+        return pipelined(host, port, onWritten, (c, written) -> c.readHoldingRegisters(slaveId, offset, quantity, written));
+    }
+
+    /**
+     * 流水线读输入寄存器（0x04）
+     *
+     * @param quantity 寄存器数量（1-125）
+     * @return 寄存器原始值 Future
+     */
+    public static CompletableFuture<int[]> readInputRegistersPipelined(String host, int port, int slaveId, int offset, int quantity,
+            LongConsumer onWritten) {
+        return pipelined(host, port, onWritten, (c, written) -> c.readInputRegisters(slaveId, offset, quantity, written));
+    }
+
+    /**
+     * 流水线请求统一经过熔断：熔断打开时快速失败，完成后记录延迟并计入成功/失败
+     * 延迟从请求实际写出算起（不含在客户端排队等待在途名额的时间）；onWritten 透传写出时刻
+     */
+    private static <T> CompletableFuture<T> pipelined(String host, int port, LongConsumer onWritten,
+                                                      BiFunction<ModbusPipelineClient, LongConsumer, CompletableFuture<T>> request) {
+        try {
+            String key = getConnectionKey(host, port);
+            ModbusPipelineClient client = getPipelineClient(host, port);
+            HostHealth h = health(key);
+            h.requests.incrementAndGet();
+            h.lastActivityAt = System.currentTimeMillis();
+            AtomicLong writtenNanos = new AtomicLong(System.nanoTime());
+            CompletableFuture<T> f = request.apply(client, t -> {
+                writtenNanos.set(t);
+                if (onWritten != null) {
+                    onWritten.accept(t);
+                }
+            });
+            f.whenComplete((r, e) -> {
+                h.latency.record(System.nanoTime() - writtenNanos.get());
+                Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                // 与 executeAsync 一致：设备返回异常码说明链路正常，不计入熔断
+                if (cause == null || cause instanceof ModbusPipelineClient.ExceptionResponseException) {
+                    onSuccess(key);
+                } else {
+                    onFailure(key);
+                }
+            });
+            return f;
+        } catch (ModbusTransportException e) {
+            CompletableFuture<T> f = new CompletableFuture<>();
+            f.completeExceptionally(e);
+            return f;
+        }
+    }
+
     /**
      * 读取[01 Coil Status 0x]类型 开关数据
      * 读取线圈状态（简化版，使用默认配置）
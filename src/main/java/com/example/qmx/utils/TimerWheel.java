@@ -0,0 +1,153 @@
+package com.example.qmx.utils;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 哈希时间轮（单线程推进）
+ * <p>
+ * 适合大量周期短、精度要求在一个 tick 内的定时任务（如多台 PLC 轮询）：
+ * 1. 新任务先进入无锁队列，由时间轮线程在下一个 tick 放入对应槽位
+ * 2. 超过一圈的延迟用剩余圈数表示，不需要更大的轮子
+ * 3. 到期任务交给外部执行器运行，时间轮线程本身不执行业务代码
+ * 调度和取消都是 O(1)，不像 ScheduledThreadPoolExecutor 那样维护堆
+ *
+ * @author jyy
+ */
+@Slf4j
+public class TimerWheel {
+
+    private final long tickNanos;
+    private final int mask;
+    private final List<Timeout>[] buckets;
+    private final Queue<Timeout> incoming = new ConcurrentLinkedQueue<>();
+    private final Executor executor;
+    private final Thread worker;
+    private final long startNanos;
+    private volatile boolean running = true;
+    private long tick;
+
+    /**
+     * 定时任务句柄
+     */
+    public static final class Timeout {
+        private final long deadlineNanos;
+        private final Runnable task;
+        private long remainingRounds;
+        private volatile boolean cancelled;
+
+        private Timeout(long deadlineNanos, Runnable task) {
+            this.deadlineNanos = deadlineNanos;
+            this.task = task;
+        }
+
+        public void cancel() {
+            cancelled = true;
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+    }
+
+    /**
+     * @param name      时间轮线程名
+     * @param tickMs    每格时长（毫秒），即调度精度
+     * @param wheelSize 槽位数（向上取 2 的幂）
+     * @param executor  到期任务的执行器
+     */
+    @SuppressWarnings("unchecked")
+    public TimerWheel(String name, long tickMs, int wheelSize, Executor executor) {
+        int size = 1;
+        while (size < wheelSize) {
+            size <<= 1;
+        }
+        this.tickNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, tickMs));
+        this.mask = size - 1;
+        this.buckets = new List[size];
+        for (int i = 0; i < size; i++) {
+            buckets[i] = new ArrayList<>();
+        }
+        this.executor = executor;
+        this.startNanos = System.nanoTime();
+        this.worker = new Thread(this::run, name);
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    /**
+     * 延迟执行任务
+     *
+     * @param task    任务
+     * @param delayMs 延迟（毫秒）
+     * @return 可取消的句柄
+     */
+    public Timeout schedule(Runnable task, long delayMs) {
+        Timeout t = new Timeout(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(Math.max(0, delayMs)), task);
+        incoming.add(t);
+        return t;
+    }
+
+    public void stop() {
+        running = false;
+        worker.interrupt();
+    }
+
+    private void run() {
+        while (running) {
+            long deadline = startNanos + (tick + 1) * tickNanos;
+            long sleepNanos = deadline - System.nanoTime();
+            if (sleepNanos > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(sleepNanos);
+                } catch (InterruptedException e) {
+                    if (!running) {
+                        return;
+                    }
+                }
+            }
+            transferIncoming();
+            expire(buckets[(int) (tick & mask)]);
+            tick++;
+        }
+    }
+
+    private void transferIncoming() {
+        Timeout t;
+        while ((t = incoming.poll()) != null) {
+            if (t.cancelled) {
+                continue;
+            }
+            long ticks = Math.max(tick, (t.deadlineNanos - startNanos) / tickNanos);
+            t.remainingRounds = (ticks - tick) / buckets.length;
+            buckets[(int) (ticks & mask)].add(t);
+        }
+    }
+
+    private void expire(List<Timeout> bucket) {
+        Iterator<Timeout> it = bucket.iterator();
+        while (it.hasNext()) {
+            Timeout t = it.next();
+            if (t.cancelled) {
+                it.remove();
+            } else if (t.remainingRounds > 0) {
+                t.remainingRounds--;
+            } else {
+                it.remove();
+                try {
+                    executor.execute(t.task);
+                } catch (RejectedExecutionException e) {
+                    log.warn("时间轮任务被执行器拒绝: {}", e.getMessage());
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package com.example.qmx.utils;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 虚拟线程（Java 21）的反射封装，源码保持 Java 11 可编译
+ * <p>
+ * 运行在 Java 21 及以上且调用方要求虚拟线程时，返回虚拟线程 / 每任务一个虚拟线程的执行器；
+ * 否则退回守护平台线程，调用方不需要区分 JDK 版本：
+ * <pre>
+ * VirtualThreads.start("gateway-reader-" + remote, virtual, () -> readLoop(conn));
+ * </pre>
+ *
+ * @author jyy
+ */
+public final class VirtualThreads {
+
+    private static final Method OF_VIRTUAL;
+    private static final Method BUILDER_NAME;
+    private static final Method BUILDER_NAME_SEQ;
+    private static final Method BUILDER_FACTORY;
+    private static final Method PER_TASK_EXECUTOR;
+    private static final Method IS_VIRTUAL;
+
+    static {
+        Method ofVirtual = null;
+        Method name = null;
+        Method nameSeq = null;
+        Method factory = null;
+        Method perTask = null;
+        Method isVirtual = null;
+        try {
+            ofVirtual = Thread.class.getMethod("ofVirtual");
+            Class<?> builder = Class.forName("java.lang.Thread$Builder");
+            name = builder.getMethod("name", String.class);
+            nameSeq = builder.getMethod("name", String.class, long.class);
+            factory = builder.getMethod("factory");
+            perTask = Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+            isVirtual = Thread.class.getMethod("isVirtual");
+        } catch (ReflectiveOperationException e) {
+            // Java 21 以下：全部退回平台线程
+            ofVirtual = null;
+        }
+        OF_VIRTUAL = ofVirtual;
+        BUILDER_NAME = name;
+        BUILDER_NAME_SEQ = nameSeq;
+        BUILDER_FACTORY = factory;
+        PER_TASK_EXECUTOR = perTask;
+        IS_VIRTUAL = isVirtual;
+    }
+
+    private VirtualThreads() {
+    }
+
+    /**
+     * 当前 JVM 是否支持虚拟线程
+     */
+    public static boolean isSupported() {
+        return OF_VIRTUAL != null;
+    }
+
+    /**
+     * 要求使用虚拟线程且 JVM 支持时为 true
+     */
+    public static boolean use(boolean requested) {
+        return requested && isSupported();
+    }
+
+    /**
+     * 创建并启动线程：虚拟线程或守护平台线程
+     */
+    public static Thread start(String name, boolean virtual, Runnable task) {
+        Thread t = newThread(name, virtual, task);
+        t.start();
+        return t;
+    }
+
+    /**
+     * 创建未启动的线程：虚拟线程或守护平台线程
+     */
+    public static Thread newThread(String name, boolean virtual, Runnable task) {
+        if (use(virtual)) {
+            Object builder = invoke(BUILDER_NAME, invoke(OF_VIRTUAL, null), name);
+            return ((ThreadFactory) invoke(BUILDER_FACTORY, builder)).newThread(task);
+        }
+        Thread t = new Thread(task, name);
+        t.setDaemon(true);
+        return t;
+    }
+
+    /**
+     * 线程工厂：虚拟线程（名称 prefix-0、prefix-1…）或守护平台线程（名称 prefix-1、prefix-2…）
+     */
+    public static ThreadFactory factory(String prefix, boolean virtual) {
+        if (use(virtual)) {
+            Object builder = invoke(BUILDER_NAME_SEQ, invoke(OF_VIRTUAL, null), prefix + "-", 0L);
+            return (ThreadFactory) invoke(BUILDER_FACTORY, builder);
+        }
+        AtomicInteger seq = new AtomicInteger();
+        return r -> {
+            Thread t = new Thread(r, prefix + "-" + seq.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+
+    /**
+     * 每个任务一个虚拟线程的执行器；JVM 不支持时抛出 IllegalStateException
+     */
+    public static ExecutorService newPerTaskExecutor(String prefix) {
+        if (!isSupported()) {
+            throw new IllegalStateException("当前 JVM（" + System.getProperty("java.version") + "）不支持虚拟线程，需要 Java 21 及以上");
+        }
+        return (ExecutorService) invoke(PER_TASK_EXECUTOR, null, factory(prefix, true));
+    }
+
+    public static boolean isVirtual(Thread t) {
+        return IS_VIRTUAL != null && (Boolean) invoke(IS_VIRTUAL, t);
+    }
+
+    private static Object invoke(Method m, Object target, Object... args) {
+        try {
+            return m.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException(cause);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -17,6 +17,9 @@ public class ControlParameterVO implements Serializable {
     @ApiModelProperty(value = "id")
     private Long id;
 
+    @ApiModelProperty(value = "网关号")
+    private Integer unitId;
+
     @ApiModelProperty(value = "参数名称")
     private String name;
 
@@ -15,6 +15,9 @@ public class ProductDailyVO implements Serializable {
     @ApiModelProperty(value = "id")
     private Long id;
 
+    @ApiModelProperty(value = "网关号")
+    private Integer unitId;
+
     @ApiModelProperty(value = "日产量")
     private Integer numDaily;
 
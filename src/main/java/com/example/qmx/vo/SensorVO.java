@@ -15,6 +15,9 @@ public class SensorVO implements Serializable {
     @ApiModelProperty(value = "id")
     private Long id;
 
+    @ApiModelProperty(value = "网关号")
+    private Integer unitId;
+
     @ApiModelProperty(value = "设备名称")
     private String devName;
 
@@ -0,0 +1,354 @@
+package com.example.qmx.bench;
+
+import com.example.qmx.server.DataProcessingServer;
+import com.example.qmx.server.DataResponse;
+import com.example.qmx.server.DataServer;
+import com.example.qmx.server.DataToObj;
+import com.example.qmx.server.DownlinkManager;
+import com.example.qmx.server.FrameCaptureService;
+import com.example.qmx.server.FrameFlightRecorder;
+import com.example.qmx.server.HistoryResponseCache;
+import com.example.qmx.server.IngestMetrics;
+import com.example.qmx.server.IngestWriter;
+import com.example.qmx.server.LatestValueCache;
+import com.example.qmx.server.ProtocolSchemaService;
+import com.example.qmx.tools.FrameReplayer;
+import com.example.qmx.tools.GatewaySimulator;
+import com.example.qmx.utils.VirtualThreads;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.mybatis.spring.annotation.MapperScan;
+import org.springframework.boot.SpringBootConfiguration;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.autoconfigure.amqp.RabbitAutoConfiguration;
+import org.springframework.boot.autoconfigure.data.redis.RedisAutoConfiguration;
+import org.springframework.boot.autoconfigure.data.redis.RedisRepositoriesAutoConfiguration;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Import;
+
+import javax.sql.DataSource;
+import java.io.File;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 入库端到端压测：内嵌 H2（MySQL 兼容模式）上启动接收与入库链路，用网关模拟器持续上报
+ * <p>
+ * 只装配 DataServer → DataToObj → IngestWriter → Mapper 这条链路（不启动 Web、RabbitMQ、Redis），
+ * 表结构取自 mysql/creatSQL.sql；同步写入与 write-behind 各跑一轮，输出：
+ * 持续吞吐（已入库帧/s）、ACK 延迟与 ACK→入库完成延迟 p50/p99/p99.9、各表每秒写入行数
+ * <pre>
+ * mvn -Pingest-bench test-compile exec:java -Dexec.args="--connections 20 --rate 0 --duration 30 [--modes sync,write-behind] [--threads platform,virtual] [--out target/ingest-bench.json]"
+ *
+ * # Java 21 上对比两种线程模式
+ * mvn -Pjava21,ingest-bench test-compile exec:java -Dexec.args="--connections 500 --threads platform,virtual"
+ * </pre>
+ * --rate 同 GatewaySimulator（每条连接每秒帧数，0 为收到确认即发下一帧）；
+ * --threads 对比网关连接读写线程的平台线程与虚拟线程模式（virtual 需在 Java 21 上运行，否则跳过）
+ */
+public class IngestBenchmark {
+
+    public static final String MODE_SYNC = "sync";
+    public static final String MODE_WRITE_BEHIND = "write-behind";
+    public static final String THREADS_PLATFORM = "platform";
+    public static final String THREADS_VIRTUAL = "virtual";
+
+    private static final String DEFAULT_SCHEMA = "src/main/java/com/example/qmx/mysql/creatSQL.sql";
+
+    @SpringBootConfiguration
+    @EnableAutoConfiguration(exclude = {RabbitAutoConfiguration.class, RedisAutoConfiguration.class,
+            RedisRepositoriesAutoConfiguration.class},
+            excludeName = "com.alibaba.druid.spring.boot.autoconfigure.DruidDataSourceAutoConfigure")
+    @MapperScan("com.example.qmx.mapper")
+    @Import({DataProcessingServer.class, DataServer.class, DataToObj.class, DataResponse.class, DownlinkManager.class,
+            FrameCaptureService.class, ProtocolSchemaService.class, LatestValueCache.class, IngestWriter.class,
+            IngestMetrics.class, FrameFlightRecorder.class, HistoryResponseCache.class})
+    static class IngestPipeline {
+    }
+
+    private final Path schema;
+    private final int connections;
+    private final double rate;
+    private final long durationMs;
+    private final Map<String, String> extraProperties = new HashMap<>();
+
+    public IngestBenchmark(Path schema, int connections, double rate, long durationMs) {
+        this.schema = schema;
+        this.connections = connections;
+        this.rate = rate;
+        this.durationMs = durationMs;
+    }
+
+    /**
+     * 额外的应用配置（如 ingest.write-behind.batch-frames）
+     */
+    public IngestBenchmark property(String key, String value) {
+        extraProperties.put(key, value);
+        return this;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> opts = FrameReplayer.parseArgs(args);
+        IngestBenchmark bench = new IngestBenchmark(
+                Paths.get(opts.getOrDefault("schema", DEFAULT_SCHEMA)),
+                Integer.parseInt(opts.getOrDefault("connections", "10")),
+                Double.parseDouble(opts.getOrDefault("rate", "0")),
+                Long.parseLong(opts.getOrDefault("duration", "30")) * 1000L);
+        if (opts.containsKey("batch-frames")) {
+            bench.property("ingest.write-behind.batch-frames", opts.get("batch-frames"));
+        }
+        boolean quiet = !"false".equals(opts.get("quiet"));
+
+        List<Result> results = new ArrayList<>();
+        for (String threads : opts.getOrDefault("threads", THREADS_PLATFORM).split(",")) {
+            if (THREADS_VIRTUAL.equals(threads.trim()) && !VirtualThreads.isSupported()) {
+                System.out.println("当前 JVM（" + System.getProperty("java.version") + "）不支持虚拟线程，跳过 virtual 模式");
+                continue;
+            }
+            for (String mode : opts.getOrDefault("modes", MODE_SYNC + "," + MODE_WRITE_BEHIND).split(",")) {
+                Result r = bench.run(mode.trim(), threads.trim(), quiet);
+                System.out.println(r);
+                results.add(r);
+            }
+        }
+        if (opts.containsKey("out")) {
+            File out = new File(opts.get("out"));
+            new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(out, results);
+            System.out.println("结果已写入: " + out.getAbsolutePath());
+        }
+        System.exit(0);
+    }
+
+    /**
+     * 以指定入库模式、平台线程跑一轮
+     */
+    public Result run(String mode, boolean quiet) throws Exception {
+        return run(mode, THREADS_PLATFORM, quiet);
+    }
+
+    /**
+     * 以指定入库模式与线程模式跑一轮；quiet 时屏蔽链路中逐帧的控制台输出，避免终端成为瓶颈
+     */
+    public Result run(String mode, String threads, boolean quiet) throws Exception {
+        if (!MODE_SYNC.equals(mode) && !MODE_WRITE_BEHIND.equals(mode)) {
+            throw new IllegalArgumentException("未知入库模式: " + mode);
+        }
+        if (!THREADS_PLATFORM.equals(threads) && !THREADS_VIRTUAL.equals(threads)) {
+            throw new IllegalArgumentException("未知线程模式: " + threads);
+        }
+        int port;
+        try (ServerSocket probe = new ServerSocket(0)) {
+            port = probe.getLocalPort();
+        }
+        Map<String, Object> props = new HashMap<>();
+        props.put("spring.datasource.type", "com.zaxxer.hikari.HikariDataSource");
+        props.put("spring.datasource.driver-class-name", "org.h2.Driver");
+        props.put("spring.datasource.url", "jdbc:h2:mem:qmx_" + mode.replace('-', '_') + "_" + System.nanoTime()
+                + ";MODE=MySQL;DATABASE_TO_LOWER=TRUE;NON_KEYWORDS=VALUE;DB_CLOSE_DELAY=-1");
+        props.put("spring.datasource.username", "sa");
+        props.put("spring.datasource.password", "");
+        props.put("spring.datasource.hikari.maximum-pool-size", Math.max(4, connections + 2));
+        props.put("mybatis-plus.configuration.log-impl", "org.apache.ibatis.logging.nologging.NoLoggingImpl");
+        props.put("logging.level.root", "WARN");
+        props.put("modbus.port", port);
+        props.put("modbus.server.max-connections", connections + 4);
+        props.put("capture.enabled", "false");
+        props.put("ingest.write-behind.enabled", MODE_WRITE_BEHIND.equals(mode));
+        props.put("threads.virtual.enabled", THREADS_VIRTUAL.equals(threads));
+        props.putAll(extraProperties);
+        // 以命令行参数传入，覆盖 application.properties 中的 MySQL 与端口配置
+        List<String> args = new ArrayList<>();
+        for (Map.Entry<String, Object> e : props.entrySet()) {
+            args.add("--" + e.getKey() + "=" + e.getValue());
+        }
+        System.setProperty("spring.devtools.restart.enabled", "false");
+
+        PrintStream console = System.out;
+        if (quiet) {
+            System.setOut(new PrintStream(new OutputStream() {
+                @Override
+                public void write(int b) {
+                }
+
+                @Override
+                public void write(byte[] b, int off, int len) {
+                }
+            }));
+        }
+        try (ConfigurableApplicationContext ctx = new SpringApplicationBuilder(IngestPipeline.class)
+                .web(WebApplicationType.NONE)
+                .run(args.toArray(new String[0]))) {
+            createSchema(ctx.getBean(DataSource.class));
+            IngestWriter writer = ctx.getBean(IngestWriter.class);
+            DataServer dataServer = ctx.getBean(DataServer.class);
+            long deadline = System.currentTimeMillis() + 10_000;
+            while (!dataServer.isServing() && System.currentTimeMillis() < deadline) {
+                Thread.sleep(20);
+            }
+
+            LatencyRecorder commitLatency = new LatencyRecorder();
+            writer.setCommitListener(commitLatency::record);
+            Map<String, Long> rowsBefore = writer.rowsByTable();
+
+            GatewaySimulator sim = new GatewaySimulator("127.0.0.1", port, connections, rate, durationMs, 1);
+            long start = System.nanoTime();
+            GatewaySimulator.Report report = sim.run();
+            // 等待 write-behind 队列写完
+            deadline = System.currentTimeMillis() + 30_000;
+            while (commitLatency.count() < report.acks && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            long elapsedNanos = System.nanoTime() - start;
+            // 模拟器停发前发出、未等到确认的帧可能仍在写入：等各表行数与入库帧数不再变化再取快照，
+            // 否则快照里会混进写了一半的帧，行数与帧数对不上
+            awaitIdle(writer, commitLatency, deadline);
+            writer.setCommitListener(null);
+
+            Map<String, Long> rowsAfter = writer.rowsByTable();
+            Map<String, Double> rowsPerSecond = new LinkedHashMap<>();
+            for (Map.Entry<String, Long> e : rowsAfter.entrySet()) {
+                rowsPerSecond.put(e.getKey(), (e.getValue() - rowsBefore.getOrDefault(e.getKey(), 0L)) / (elapsedNanos / 1e9));
+            }
+            return new Result(mode, threads, connections, report, commitLatency.sorted(), elapsedNanos, rowsPerSecond);
+        } finally {
+            System.setOut(console);
+        }
+    }
+
+    private static void awaitIdle(IngestWriter writer, LatencyRecorder commitLatency, long deadline) throws InterruptedException {
+        Map<String, Long> rows = writer.rowsByTable();
+        int frames = commitLatency.count();
+        while (System.currentTimeMillis() < deadline) {
+            Thread.sleep(200);
+            Map<String, Long> nowRows = writer.rowsByTable();
+            int nowFrames = commitLatency.count();
+            if (nowRows.equals(rows) && nowFrames == frames) {
+                return;
+            }
+            rows = nowRows;
+            frames = nowFrames;
+        }
+    }
+
+    // 执行建表脚本：跳过注释、建库与 use 语句
+    private void createSchema(DataSource dataSource) throws Exception {
+        StringBuilder sql = new StringBuilder();
+        for (String line : new String(Files.readAllBytes(schema), StandardCharsets.UTF_8).split("\n")) {
+            if (!line.trim().startsWith("--")) {
+                sql.append(line).append('\n');
+            }
+        }
+        try (Connection conn = dataSource.getConnection(); Statement st = conn.createStatement()) {
+            for (String stmt : sql.toString().split(";")) {
+                String s = stmt.trim();
+                String lower = s.toLowerCase();
+                if (s.isEmpty() || lower.startsWith("create database") || lower.startsWith("use ")) {
+                    continue;
+                }
+                st.execute(s);
+            }
+        }
+    }
+
+    /**
+     * 逐帧记录 ACK→入库完成延迟，用于精确分位数
+     */
+    private static final class LatencyRecorder {
+        private long[] values = new long[1 << 16];
+        private int size;
+
+        synchronized void record(long nanos) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = nanos;
+        }
+
+        synchronized int count() {
+            return size;
+        }
+
+        synchronized long[] sorted() {
+            long[] out = Arrays.copyOf(values, size);
+            Arrays.sort(out);
+            return out;
+        }
+    }
+
+    /**
+     * 单轮结果（字段供 Jackson 输出 JSON）
+     */
+    public static final class Result {
+        public final String mode;
+        public final String threads;
+        public final int connections;
+        public final long framesSent;
+        public final long framesAcked;
+        public final long framesCommitted;
+        public final double elapsedSeconds;
+        public final double committedFramesPerSecond;
+        public final double ackP50Ms;
+        public final double ackP99Ms;
+        public final double ackP999Ms;
+        public final double commitP50Ms;
+        public final double commitP99Ms;
+        public final double commitP999Ms;
+        public final Map<String, Double> rowsPerSecond;
+
+        Result(String mode, String threads, int connections, GatewaySimulator.Report report, long[] commitLatencies,
+               long elapsedNanos, Map<String, Double> rowsPerSecond) {
+            this.mode = mode;
+            this.threads = threads;
+            this.connections = connections;
+            this.framesSent = report.sent;
+            this.framesAcked = report.acks;
+            this.framesCommitted = commitLatencies.length;
+            this.elapsedSeconds = elapsedNanos / 1e9;
+            this.committedFramesPerSecond = commitLatencies.length / elapsedSeconds;
+            this.ackP50Ms = report.percentileMs(0.5);
+            this.ackP99Ms = report.percentileMs(0.99);
+            this.ackP999Ms = report.percentileMs(0.999);
+            this.commitP50Ms = percentileMs(commitLatencies, 0.5);
+            this.commitP99Ms = percentileMs(commitLatencies, 0.99);
+            this.commitP999Ms = percentileMs(commitLatencies, 0.999);
+            this.rowsPerSecond = rowsPerSecond;
+        }
+
+        private static double percentileMs(long[] sorted, double q) {
+            if (sorted.length == 0) {
+                return 0;
+            }
+            int idx = (int) Math.min(sorted.length - 1, Math.ceil(q * sorted.length) - 1);
+            return sorted[Math.max(0, idx)] / 1e6;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder rows = new StringBuilder();
+            for (Map.Entry<String, Double> e : rowsPerSecond.entrySet()) {
+                rows.append(String.format(" %s=%.0f", e.getKey(), e.getValue()));
+            }
+            return String.format("[%s/%s] 连接=%d, 发送=%d, 确认=%d, 已入库=%d, 耗时=%.1fs, 持续吞吐=%.1f 帧/s%n"
+                            + "  ACK 延迟(ms): p50=%.3f p99=%.3f p99.9=%.3f%n"
+                            + "  ACK→入库(ms): p50=%.3f p99=%.3f p99.9=%.3f%n"
+                            + "  各表行/s:%s",
+                    mode, threads, connections, framesSent, framesAcked, framesCommitted, elapsedSeconds, committedFramesPerSecond,
+                    ackP50Ms, ackP99Ms, ackP999Ms, commitP50Ms, commitP99Ms, commitP999Ms, rows);
+        }
+    }
+}
@@ -0,0 +1,201 @@
+package com.example.qmx.config;
+
+import com.example.qmx.server.ClusterService;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.StreamUtils;
+
+import javax.servlet.FilterChain;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ClusterForwardFilterTest {
+
+    private HttpServer remote;
+    private final Map<String, String> received = new ConcurrentHashMap<>();
+
+    @BeforeEach
+    void startRemote() throws Exception {
+        remote = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        remote.createContext("/", ex -> {
+            received.put("method", ex.getRequestMethod());
+            received.put("uri", ex.getRequestURI().toString());
+            received.put("from", String.valueOf(ex.getRequestHeaders().getFirst(ClusterService.FORWARDED_HEADER)));
+            received.put("body", new String(StreamUtils.copyToByteArray(ex.getRequestBody()), StandardCharsets.UTF_8));
+            byte[] body = "{\"node\":\"node-2\"}".getBytes(StandardCharsets.UTF_8);
+            ex.getResponseHeaders().set("Content-Type", "application/json");
+            ex.sendResponseHeaders("POST".equals(ex.getRequestMethod()) ? 201 : 200, body.length);
+            try (OutputStream out = ex.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        remote.start();
+    }
+
+    @AfterEach
+    void stopRemote() {
+        remote.stop(0);
+    }
+
+    /**
+     * 查询参数 unitId 属于远端节点：转发并原样回写状态码、Content-Type 与响应体，本节点过滤链不执行
+     */
+    @Test
+    void getWithUnitIdIsForwardedToOwner() throws Exception {
+        ClusterService cluster = cluster("http://127.0.0.1:" + remote.getAddress().getPort());
+        ClusterForwardFilter filter = new ClusterForwardFilter(cluster);
+        int unitId = unitOwnedBy(cluster, "node-2");
+
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/unit/latest");
+        request.setQueryString("unitId=" + unitId);
+        request.setParameter("unitId", String.valueOf(unitId));
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        AtomicReference<String> local = new AtomicReference<>();
+        filter.doFilterInternal(request, response, chain(local));
+
+        assertNull(local.get());
+        assertEquals("GET", received.get("method"));
+        assertEquals("/unit/latest?unitId=" + unitId, received.get("uri"));
+        assertEquals("node-1", received.get("from"));
+        assertEquals(200, response.getStatus());
+        assertEquals("application/json", response.getContentType());
+        assertEquals("node-2", response.getHeader(ClusterService.FORWARDED_HEADER));
+        assertEquals("{\"node\":\"node-2\"}", response.getContentAsString());
+
+        // 本节点负责的网关不转发
+        int localUnit = unitOwnedBy(cluster, "node-1");
+        MockHttpServletRequest own = new MockHttpServletRequest("GET", "/unit/latest");
+        own.setParameter("unitId", String.valueOf(localUnit));
+        filter.doFilterInternal(own, new MockHttpServletResponse(), chain(local));
+        assertEquals("", local.get());
+    }
+
+    /**
+     * 请求体中的 unitId 决定路由，请求体原样转发
+     */
+    @Test
+    void postBodyUnitIdIsForwardedWithBody() throws Exception {
+        ClusterService cluster = cluster("http://127.0.0.1:" + remote.getAddress().getPort());
+        ClusterForwardFilter filter = new ClusterForwardFilter(cluster);
+        String json = "{\"unitId\":" + unitOwnedBy(cluster, "node-2") + ",\"values\":[1,2]}";
+
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/config/write");
+        request.setContentType("application/json");
+        request.setContent(json.getBytes(StandardCharsets.UTF_8));
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        AtomicReference<String> local = new AtomicReference<>();
+        filter.doFilterInternal(request, response, chain(local));
+
+        assertNull(local.get());
+        assertEquals("POST", received.get("method"));
+        assertEquals("/config/write", received.get("uri"));
+        assertEquals(json, received.get("body"));
+        assertEquals(201, response.getStatus());
+        assertEquals("{\"node\":\"node-2\"}", response.getContentAsString());
+    }
+
+    /**
+     * 目标节点连接不上：只读请求退回本节点处理，写请求返回 502 且不在本节点执行
+     */
+    @Test
+    void unreachableOwnerFallsBackOnlyForReads() throws Exception {
+        int closedPort;
+        try (ServerSocket s = new ServerSocket(0)) {
+            closedPort = s.getLocalPort();
+        }
+        ClusterService cluster = cluster("http://127.0.0.1:" + closedPort, 2000);
+        ClusterForwardFilter filter = new ClusterForwardFilter(cluster);
+        int unitId = unitOwnedBy(cluster, "node-2");
+
+        MockHttpServletRequest get = new MockHttpServletRequest("GET", "/unit/latest");
+        get.setParameter("unitId", String.valueOf(unitId));
+        MockHttpServletResponse getResponse = new MockHttpServletResponse();
+        AtomicReference<String> local = new AtomicReference<>();
+        filter.doFilterInternal(get, getResponse, chain(local));
+        assertEquals("", local.get());
+        assertNull(getResponse.getHeader(ClusterService.FORWARDED_HEADER));
+
+        local.set(null);
+        MockHttpServletRequest post = new MockHttpServletRequest("POST", "/sendConfigDataV2");
+        post.setContentType("application/json");
+        post.setContent(("{\"unitId\":" + unitId + "}").getBytes(StandardCharsets.UTF_8));
+        MockHttpServletResponse postResponse = new MockHttpServletResponse();
+        filter.doFilterInternal(post, postResponse, chain(local));
+        assertNull(local.get());
+        assertEquals(502, postResponse.getStatus());
+        assertTrue(postResponse.getContentAsString().contains("\"ok\":false"));
+    }
+
+    /**
+     * 目标节点响应超时：请求可能已在目标节点执行，返回 504，不在本节点重复执行
+     */
+    @Test
+    void slowOwnerReturnsGatewayTimeout() throws Exception {
+        remote.createContext("/sendConfigDataV2", ex -> {
+            try {
+                Thread.sleep(1000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            ex.sendResponseHeaders(200, -1);
+            ex.close();
+        });
+        ClusterService cluster = cluster("http://127.0.0.1:" + remote.getAddress().getPort(), 200);
+        ClusterForwardFilter filter = new ClusterForwardFilter(cluster);
+
+        MockHttpServletRequest post = new MockHttpServletRequest("POST", "/sendConfigDataV2");
+        post.setContentType("application/json");
+        post.setContent(("{\"unitId\":" + unitOwnedBy(cluster, "node-2") + "}").getBytes(StandardCharsets.UTF_8));
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        AtomicReference<String> local = new AtomicReference<>();
+        filter.doFilterInternal(post, response, chain(local));
+
+        assertNull(local.get());
+        assertEquals(504, response.getStatus());
+    }
+
+    private static ClusterService cluster(String node2Url) {
+        return cluster(node2Url, 2000);
+    }
+
+    private static ClusterService cluster(String node2Url, int forwardTimeoutMs) {
+        ClusterService c = new ClusterService();
+        ReflectionTestUtils.setField(c, "enabled", true);
+        ReflectionTestUtils.setField(c, "nodeId", "node-1");
+        ReflectionTestUtils.setField(c, "selfUrl", "http://127.0.0.1:1");
+        ReflectionTestUtils.setField(c, "membership", "static");
+        ReflectionTestUtils.setField(c, "staticNodes", "node-2=" + node2Url);
+        ReflectionTestUtils.setField(c, "virtualNodes", 160);
+        ReflectionTestUtils.setField(c, "forwardTimeoutMs", forwardTimeoutMs);
+        c.init();
+        return c;
+    }
+
+    private static int unitOwnedBy(ClusterService cluster, String node) {
+        for (int unitId = 1; unitId < 1000; unitId++) {
+            if (node.equals(cluster.ringOwner(unitId))) {
+                return unitId;
+            }
+        }
+        throw new IllegalStateException("哈希环上没有属于 " + node + " 的网关号");
+    }
+
+    // 本节点过滤链：记录是否执行，以及执行时读到的请求体
+    private static FilterChain chain(AtomicReference<String> local) {
+        return (req, resp) -> local.set(new String(StreamUtils.copyToByteArray(req.getInputStream()), StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,47 @@
+package com.example.qmx.config;
+
+import org.apache.ibatis.executor.statement.StatementHandler;
+import org.apache.ibatis.plugin.Invocation;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class QueryTimeoutInterceptorTest {
+
+    /**
+     * 作用域内按剩余时间向上取整设置语句超时，作用域外不设置
+     */
+    @Test
+    void setsTimeoutOnlyInsideScope() throws Throwable {
+        QueryTimeoutInterceptor interceptor = new QueryTimeoutInterceptor();
+        StatementHandler handler = mock(StatementHandler.class);
+        Statement inside = mock(Statement.class);
+        Statement outside = mock(Statement.class);
+        when(handler.prepare(any(), any())).thenReturn(inside, outside);
+        Invocation invocation = new Invocation(handler,
+                StatementHandler.class.getMethod("prepare", Connection.class, Integer.class),
+                new Object[]{mock(Connection.class), null});
+
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(1500);
+        QueryTimeoutInterceptor.call(deadline, () -> {
+            try {
+                return interceptor.intercept(invocation);
+            } catch (Throwable t) {
+                throw new IllegalStateException(t);
+            }
+        });
+        verify(inside).setQueryTimeout(2);
+
+        interceptor.intercept(invocation);
+        verify(outside, never()).setQueryTimeout(anyInt());
+    }
+}
@@ -0,0 +1,268 @@
+package com.example.qmx.server;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.data.redis.core.SetOperations;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ClusterServiceTest {
+
+    private final List<HttpServer> servers = new ArrayList<>();
+
+    @AfterEach
+    void stopServers() {
+        for (HttpServer s : servers) {
+            s.stop(0);
+        }
+    }
+
+    @Test
+    void ringIsBalancedAndMovesOnlyKeysOfAddedNode() {
+        ConsistentHashRing three = new ConsistentHashRing(Arrays.asList("node-1", "node-2", "node-3"), 160);
+        ConsistentHashRing four = new ConsistentHashRing(Arrays.asList("node-1", "node-2", "node-3", "node-4"), 160);
+        Map<String, Integer> counts = new HashMap<>();
+        int moved = 0;
+        for (int unitId = 1; unitId <= 3000; unitId++) {
+            counts.merge(three.owner(unitId), 1, Integer::sum);
+            if (!three.owner(unitId).equals(four.owner(unitId))) {
+                moved++;
+                // 新增节点只从原有节点接走网关，原有节点之间不互换
+                assertEquals("node-4", four.owner(unitId));
+            }
+        }
+        for (int c : counts.values()) {
+            assertTrue(c > 700 && c < 1300, "分布不均: " + counts);
+        }
+        assertTrue(moved > 450 && moved < 1050, "迁移数量异常: " + moved);
+    }
+
+    /**
+     * 本机起三个节点，任一节点收到的请求都应由网关号的属主节点应答
+     */
+    @Test
+    void anyNodeAnswersByForwardingToOwner() throws Exception {
+        int n = 3;
+        int[] ports = new int[n];
+        for (int i = 0; i < n; i++) {
+            HttpServer s = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+            servers.add(s);
+            ports[i] = s.getAddress().getPort();
+        }
+        StringBuilder staticNodes = new StringBuilder();
+        for (int i = 0; i < n; i++) {
+            staticNodes.append(i == 0 ? "" : ",").append("node-").append(i + 1).append("=http://127.0.0.1:").append(ports[i]);
+        }
+
+        Map<String, String> forwardedBy = new ConcurrentHashMap<>();
+        ClusterService[] nodes = new ClusterService[n];
+        for (int i = 0; i < n; i++) {
+            ClusterService c = new ClusterService();
+            ReflectionTestUtils.setField(c, "enabled", true);
+            ReflectionTestUtils.setField(c, "nodeId", "node-" + (i + 1));
+            ReflectionTestUtils.setField(c, "selfUrl", "http://127.0.0.1:" + ports[i]);
+            ReflectionTestUtils.setField(c, "membership", "static");
+            ReflectionTestUtils.setField(c, "staticNodes", staticNodes.toString());
+            ReflectionTestUtils.setField(c, "virtualNodes", 160);
+            ReflectionTestUtils.setField(c, "forwardTimeoutMs", 2000);
+            c.init();
+            nodes[i] = c;
+
+            servers.get(i).createContext("/unit/latest", ex -> {
+                int unitId = Integer.parseInt(ex.getRequestURI().getQuery().replace("unitId=", ""));
+                String from = ex.getRequestHeaders().getFirst(ClusterService.FORWARDED_HEADER);
+                byte[] body;
+                if (from != null || c.isLocal(unitId)) {
+                    if (from != null) {
+                        forwardedBy.put(c.getNodeId() + "/" + unitId, from);
+                    }
+                    body = c.getNodeId().getBytes(StandardCharsets.UTF_8);
+                } else {
+                    ResponseEntity<byte[]> resp = c.forward(c.route(unitId), HttpMethod.GET,
+                            ex.getRequestURI().toString(), null, null);
+                    body = resp.getBody();
+                }
+                ex.sendResponseHeaders(200, body.length);
+                try (OutputStream out = ex.getResponseBody()) {
+                    out.write(body);
+                }
+            });
+            servers.get(i).start();
+        }
+
+        for (int unitId = 1; unitId <= 30; unitId++) {
+            String owner = nodes[0].ringOwner(unitId);
+            for (int i = 0; i < n; i++) {
+                assertEquals(owner, nodes[i].ringOwner(unitId), "各节点的哈希环应一致");
+                assertEquals(owner, get("http://127.0.0.1:" + ports[i] + "/unit/latest?unitId=" + unitId));
+                if (!owner.equals("node-" + (i + 1))) {
+                    assertEquals("node-" + (i + 1), forwardedBy.get(owner + "/" + unitId));
+                }
+            }
+        }
+    }
+
+    /**
+     * redis 成员模式：各节点心跳续期带过期时间的键，停止心跳的节点及其认领的网关号随键过期从成员视图中消失
+     */
+    @Test
+    void redisMembershipExpiresSilentNodes() {
+        FakeRedis fake = new FakeRedis();
+        DataServer server2 = mock(DataServer.class);
+        when(server2.boundUnits()).thenReturn(Collections.singleton(7));
+        ClusterService node1 = redisNode("node-1", fake, null);
+        ClusterService node2 = redisNode("node-2", fake, server2);
+
+        node1.heartbeat();
+        assertEquals(new TreeSet<>(Arrays.asList("node-1", "node-2")), membersOf(node1));
+        // 网关 7 的连接在 node-2 上，无论哈希属主是谁都路由到 node-2
+        assertEquals("node-2", node1.route(7));
+
+        // node-2 停止心跳，超过 TTL 后由 Redis 过期删除，不需要其他节点比较时间戳
+        fake.now += 10_001;
+        node1.heartbeat();
+        assertEquals(Collections.singleton("node-1"), membersOf(node1));
+        assertEquals("node-1", node1.route(7));
+        assertFalse(fake.sets.get("qmx:cluster:node-index").contains("node-2"));
+
+        // 恢复心跳后重新加入
+        node2.heartbeat();
+        node1.heartbeat();
+        assertEquals(new TreeSet<>(Arrays.asList("node-1", "node-2")), membersOf(node1));
+
+        // 正常退出立即删除自己的键
+        node2.leave();
+        node1.heartbeat();
+        assertEquals(Collections.singleton("node-1"), membersOf(node1));
+    }
+
+    private static ClusterService redisNode(String nodeId, FakeRedis fake, DataServer dataServer) {
+        ClusterService c = new ClusterService();
+        ReflectionTestUtils.setField(c, "enabled", true);
+        ReflectionTestUtils.setField(c, "nodeId", nodeId);
+        ReflectionTestUtils.setField(c, "selfUrl", "http://127.0.0.1:1/" + nodeId);
+        ReflectionTestUtils.setField(c, "membership", "redis");
+        ReflectionTestUtils.setField(c, "virtualNodes", 160);
+        ReflectionTestUtils.setField(c, "nodeTtlMs", 10_000L);
+        ReflectionTestUtils.setField(c, "redisKeyPrefix", "qmx:cluster");
+        ReflectionTestUtils.setField(c, "forwardTimeoutMs", 2000);
+        ReflectionTestUtils.setField(c, "dataServer", dataServer);
+        @SuppressWarnings("unchecked")
+        ObjectProvider<StringRedisTemplate> provider = mock(ObjectProvider.class);
+        when(provider.getIfAvailable()).thenReturn(fake.template);
+        ReflectionTestUtils.setField(c, "redisProvider", provider);
+        c.init();
+        return c;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Set<String> membersOf(ClusterService c) {
+        return new TreeSet<>(((Map<String, String>) c.describe().get("members")).keySet());
+    }
+
+    /**
+     * 内存版 Redis：只实现成员心跳用到的字符串键（含 PX 过期）与集合操作，时间由测试推进
+     */
+    @SuppressWarnings("unchecked")
+    private static final class FakeRedis {
+        long now;
+        final Map<String, String> values = new HashMap<>();
+        final Map<String, Long> expireAt = new HashMap<>();
+        final Map<String, Set<String>> sets = new HashMap<>();
+        final StringRedisTemplate template = mock(StringRedisTemplate.class);
+
+        FakeRedis() {
+            ValueOperations<String, String> valueOps = mock(ValueOperations.class);
+            // 集合操作的成员参数是可变参数，按方法名直接应答
+            SetOperations<String, String> setOps = mock(SetOperations.class, inv -> {
+                Set<String> set = sets.computeIfAbsent((String) inv.getArgument(0), k -> new HashSet<>());
+                switch (inv.getMethod().getName()) {
+                    case "add":
+                        return Arrays.stream(inv.getArguments()).skip(1).filter(m -> set.add((String) m)).count();
+                    case "remove":
+                        return Arrays.stream(inv.getArguments()).skip(1).filter(set::remove).count();
+                    case "members":
+                        return new HashSet<>(set);
+                    default:
+                        throw new UnsupportedOperationException(inv.getMethod().getName());
+                }
+            });
+            when(template.opsForValue()).thenReturn(valueOps);
+            when(template.opsForSet()).thenReturn(setOps);
+            doAnswer(inv -> {
+                String key = inv.getArgument(0);
+                values.put(key, inv.getArgument(1));
+                expireAt.put(key, now + ((Duration) inv.getArgument(2)).toMillis());
+                return null;
+            }).when(valueOps).set(anyString(), anyString(), any(Duration.class));
+            when(valueOps.get(anyString())).thenAnswer(inv -> get(inv.getArgument(0)));
+            when(valueOps.multiGet(anyCollection())).thenAnswer(inv -> {
+                List<String> out = new ArrayList<>();
+                for (String key : (Collection<String>) inv.getArgument(0)) {
+                    out.add(get(key));
+                }
+                return out;
+            });
+            when(template.delete(anyString())).thenAnswer(inv -> values.remove(inv.<String>getArgument(0)) != null);
+        }
+
+        private String get(String key) {
+            Long exp = expireAt.get(key);
+            if (exp != null && exp <= now) {
+                values.remove(key);
+                expireAt.remove(key);
+            }
+            return values.get(key);
+        }
+    }
+
+    private static String get(String url) throws Exception {
+        HttpURLConnection conn = (HttpURLConnection) new URL(url).openConnection();
+        try (InputStream in = conn.getInputStream()) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buf = new byte[256];
+            int r;
+            while ((r = in.read(buf)) > 0) {
+                out.write(buf, 0, r);
+            }
+            return new String(out.toByteArray(), StandardCharsets.UTF_8);
+        } finally {
+            conn.disconnect();
+        }
+    }
+}
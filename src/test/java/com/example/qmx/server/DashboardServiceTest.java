@@ -0,0 +1,117 @@
+package com.example.qmx.server;
+
+import com.example.qmx.domain.ProductDaily;
+import com.example.qmx.domain.ProductHourly;
+import com.example.qmx.domain.QualityDetection;
+import com.example.qmx.mapper.ProductDailyMapper;
+import com.example.qmx.mapper.ProductHourlyMapper;
+import com.example.qmx.mapper.ProductionSeriesMapper;
+import com.example.qmx.mapper.QualityDetectionMapper;
+import com.example.qmx.mapper.SensorMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Collections;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class DashboardServiceTest {
+
+    private final ProductHourlyMapper hourly = mock(ProductHourlyMapper.class);
+    private final ProductDailyMapper daily = mock(ProductDailyMapper.class);
+    private final QualityDetectionMapper quality = mock(QualityDetectionMapper.class);
+    private final ProductionSeriesMapper series = mock(ProductionSeriesMapper.class);
+    private final SensorMapper sensor = mock(SensorMapper.class);
+    private DashboardService service;
+
+    @BeforeEach
+    void setUp() {
+        service = new DashboardService();
+        ReflectionTestUtils.setField(service, "productHourlyMapper", hourly);
+        ReflectionTestUtils.setField(service, "productDailyMapper", daily);
+        ReflectionTestUtils.setField(service, "qualityDetectionMapper", quality);
+        ReflectionTestUtils.setField(service, "productionSeriesMapper", series);
+        ReflectionTestUtils.setField(service, "sensorMapper", sensor);
+        ReflectionTestUtils.setField(service, "threads", 8);
+        ReflectionTestUtils.setField(service, "queueCapacity", 16);
+        ReflectionTestUtils.setField(service, "queryTimeoutMs", 300L);
+        service.start();
+
+        when(hourly.getLatestProductHourly(anyInt())).thenReturn(hourly(20));
+        when(hourly.sumNumHourly(anyInt())).thenReturn(30L);
+        when(daily.getLatestProductDaily(anyInt())).thenReturn(daily(100));
+        when(quality.getLatestResultByUnit(anyInt())).thenReturn(quality(1));
+        when(quality.countByUnit(1)).thenReturn(3L);
+        when(quality.countPassByUnit(1)).thenReturn(2L);
+        when(series.getHourlyLatestByHour(anyInt(), anyInt())).thenReturn(Collections.emptyList());
+        when(sensor.getLatestByMinuteInRange(anyInt(), any(), any(), anyInt())).thenReturn(Collections.emptyList());
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.stop();
+    }
+
+    /**
+     * 日产量合计查询卡住：只有该字段为 null，其余结果照常返回，总耗时受单查询超时约束
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    void slowSubQueryYieldsPartialResult() {
+        when(daily.sumNumDaily(anyInt())).thenAnswer(inv -> {
+            Thread.sleep(5000);
+            return 0L;
+        });
+        when(series.getDailyLatestByDay(anyInt(), anyInt())).thenThrow(new IllegalStateException("db down"));
+
+        long start = System.nanoTime();
+        Map<String, Object> r = service.dashboard(1, null, 24, 30);
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000L;
+        assertTrue(elapsedMs < 2000, "elapsed " + elapsedMs);
+
+        Map<String, Object> overview = (Map<String, Object>) r.get("overview");
+        assertEquals(20, overview.get("latestHourlyOutput"));
+        assertEquals(30L, overview.get("totalHourlyOutput"));
+        assertEquals(100, overview.get("latestDailyOutput"));
+        assertNull(overview.get("totalDailyOutput"));
+        assertEquals(3L, overview.get("totalQualityCount"));
+        assertEquals(2L, overview.get("totalPassQualityCount"));
+        assertNull(r.get("dailyHistory"));
+        assertEquals(Collections.emptyList(), r.get("hourlyHistory"));
+        assertFalse(r.containsKey("latestStatus"));
+
+        assertEquals(true, r.get("partial"));
+        Map<String, String> errors = (Map<String, String>) r.get("errors");
+        assertEquals("timeout", errors.get("totalDailyOutput"));
+        assertTrue(errors.get("dailyHistory").contains("db down"));
+        assertEquals(2, errors.size());
+    }
+
+    private static ProductHourly hourly(int n) {
+        ProductHourly ph = new ProductHourly();
+        ph.setNumHourly(n);
+        return ph;
+    }
+
+    private static ProductDaily daily(int n) {
+        ProductDaily pd = new ProductDaily();
+        pd.setNumDaily(n);
+        return pd;
+    }
+
+    private static QualityDetection quality(int result) {
+        QualityDetection qd = new QualityDetection();
+        qd.setResult(result);
+        return qd;
+    }
+}
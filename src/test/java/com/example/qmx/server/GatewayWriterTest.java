@@ -0,0 +1,148 @@
+package com.example.qmx.server;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.DataInputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class GatewayWriterTest {
+
+    /**
+     * ACK 优先；参数下发与已组好的下发帧按入队顺序写出，合并后的参数下发排在最近一次入队的位置；
+     * 关闭后入队被拒绝，对应在途请求立即失败
+     */
+    @Test
+    void keepsEnqueueOrderAndRejectsAfterClose() throws Exception {
+        DataResponse dataResponse = mock(DataResponse.class);
+        when(dataResponse.buildConfigDataFrameV2(anyInt(), anyInt(), anyInt(), anyList()))
+                .thenAnswer(inv -> new byte[]{3, (byte) ((List<?>) inv.getArgument(3)).size()});
+        DownlinkManager downlink = new DownlinkManager();
+        ReflectionTestUtils.setField(downlink, "ackTimeoutMs", 3000L);
+
+        try (ServerSocket server = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+             Socket client = new Socket(InetAddress.getLoopbackAddress(), server.getLocalPort());
+             Socket gateway = server.accept()) {
+            GatewayWriter writer = new GatewayWriter(client, dataResponse, downlink);
+            ReentrantLock lock = (ReentrantLock) ReflectionTestUtils.getField(writer, "lock");
+            // 持锁入队，写线程在解锁后一次取出全部帧
+            lock.lock();
+            try {
+                writer.enqueueFrame(downlink.allocateTxId(), new byte[]{2, 1});
+                writer.enqueueConfigItems(1, 0x10, Collections.singletonList(DataResponse.ConfigItem.ofChar(0x01, 1)), false);
+                writer.enqueueFrame(downlink.allocateTxId(), new byte[]{2, 2});
+                writer.enqueueConfigItems(1, 0x10, Collections.singletonList(DataResponse.ConfigItem.ofChar(0x02, 1)), false);
+                writer.enqueueAck(new byte[]{1, 1});
+            } finally {
+                lock.unlock();
+            }
+
+            byte[] wire = new byte[8];
+            new DataInputStream(gateway.getInputStream()).readFully(wire);
+            assertArrayEquals(new byte[]{1, 1, 2, 1, 2, 2, 3, 2}, wire);
+
+            writer.close();
+            int txId = downlink.allocateTxId();
+            CompletableFuture<byte[]> ack = downlink.register(txId, "test", writer);
+            assertFalse(writer.enqueueFrame(txId, new byte[]{2, 3}));
+            assertTrue(ack.isCompletedExceptionally());
+            assertFalse(writer.enqueueAck(new byte[]{1, 2}));
+            assertTrue(writer.enqueueConfigItems(1, 0x10,
+                    Collections.singletonList(DataResponse.ConfigItem.ofChar(0x01, 2))).isCompletedExceptionally());
+        } finally {
+            downlink.shutdown();
+        }
+    }
+
+    /**
+     * 合并后被覆盖的 dataId 记入先入队调用方的结果，后入队调用方不受影响
+     */
+    @Test
+    void supersededItemsAreReportedToEarlierWaiters() throws Exception {
+        DataResponse dataResponse = mock(DataResponse.class);
+        when(dataResponse.buildConfigDataFrameV2(anyInt(), anyInt(), anyInt(), anyList())).thenReturn(new byte[]{3});
+        DownlinkManager downlink = new DownlinkManager();
+        ReflectionTestUtils.setField(downlink, "ackTimeoutMs", 3000L);
+
+        try (ServerSocket server = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+             Socket client = new Socket(InetAddress.getLoopbackAddress(), server.getLocalPort());
+             Socket gateway = server.accept()) {
+            GatewayWriter writer = new GatewayWriter(client, dataResponse, downlink);
+            ReentrantLock lock = (ReentrantLock) ReflectionTestUtils.getField(writer, "lock");
+            CompletableFuture<GatewayWriter.ConfigAck> first;
+            CompletableFuture<GatewayWriter.ConfigAck> second;
+            lock.lock();
+            try {
+                first = writer.enqueueConfigItems(1, 0x10, Arrays.asList(
+                        DataResponse.ConfigItem.ofChar(0x01, 1), DataResponse.ConfigItem.ofChar(0x02, 1)));
+                second = writer.enqueueConfigItems(1, 0x10, Collections.singletonList(DataResponse.ConfigItem.ofChar(0x01, 2)));
+            } finally {
+                lock.unlock();
+            }
+            gateway.getInputStream().read();
+            // 合并帧只登记了一个在途请求，用它的事务ID模拟网关确认；其他连接上相同事务ID的帧不匹配
+            int txId = downlink.allocateTxId() - 1;
+            assertFalse(downlink.complete(txId, new Object(), new byte[]{0x10, 0, 2}));
+            downlink.complete(txId, writer, new byte[]{0x10, 0, 2});
+
+            assertEquals(Collections.singleton(0x01), first.get(1, TimeUnit.SECONDS).getSuperseded());
+            assertTrue(second.get(1, TimeUnit.SECONDS).getSuperseded().isEmpty());
+            writer.close();
+        } finally {
+            downlink.shutdown();
+        }
+    }
+
+    /**
+     * 下发队列满时拒绝新的下发帧，对应在途请求立即失败；合并进已排队的参数下发不占新名额
+     */
+    @Test
+    void rejectsWhenQueueIsFull() throws Exception {
+        DataResponse dataResponse = mock(DataResponse.class);
+        DownlinkManager downlink = new DownlinkManager();
+        ReflectionTestUtils.setField(downlink, "ackTimeoutMs", 3000L);
+
+        try (ServerSocket server = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+             Socket client = new Socket(InetAddress.getLoopbackAddress(), server.getLocalPort());
+             Socket gateway = server.accept()) {
+            GatewayWriter writer = new GatewayWriter(client, dataResponse, downlink, null, false, 2);
+            ReentrantLock lock = (ReentrantLock) ReflectionTestUtils.getField(writer, "lock");
+            lock.lock();
+            try {
+                assertTrue(writer.enqueueFrame(downlink.allocateTxId(), new byte[]{2, 1}));
+                assertFalse(writer.enqueueConfigItems(1, 0x10,
+                        Collections.singletonList(DataResponse.ConfigItem.ofChar(0x01, 1))).isDone());
+                int txId = downlink.allocateTxId();
+                CompletableFuture<byte[]> ack = downlink.register(txId, "test", writer);
+                assertFalse(writer.enqueueFrame(txId, new byte[]{2, 2}));
+                assertTrue(ack.isCompletedExceptionally());
+                assertFalse(writer.enqueueConfigItems(1, 0x10,
+                        Collections.singletonList(DataResponse.ConfigItem.ofChar(0x02, 1))).isDone());
+                assertTrue(writer.enqueueConfigItems(2, 0x10,
+                        Collections.singletonList(DataResponse.ConfigItem.ofChar(0x01, 1))).isCompletedExceptionally());
+            } finally {
+                lock.unlock();
+            }
+            writer.close();
+        } finally {
+            downlink.shutdown();
+        }
+    }
+}
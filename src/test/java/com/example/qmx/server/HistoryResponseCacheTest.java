@@ -0,0 +1,65 @@
+package com.example.qmx.server;
+
+import com.example.qmx.domain.ProductHourly;
+import com.example.qmx.mapper.ProductDailyMapper;
+import com.example.qmx.mapper.ProductHourlyMapper;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class HistoryResponseCacheTest {
+
+    /**
+     * 水位线只在首次访问时回源；入库推进水位线后 ETag 变化、响应体重新查询，未推进时复用
+     */
+    @Test
+    void watermarkDrivesEtagAndBodyReuse() {
+        ProductHourlyMapper hourlyMapper = mock(ProductHourlyMapper.class);
+        ProductHourly latest = new ProductHourly();
+        latest.setId(41L);
+        latest.setTime(LocalDateTime.of(2024, 5, 1, 8, 0));
+        when(hourlyMapper.getLatestProductHourly(1)).thenReturn(latest);
+
+        HistoryResponseCache cache = new HistoryResponseCache();
+        ReflectionTestUtils.setField(cache, "productHourlyMapper", hourlyMapper);
+        ReflectionTestUtils.setField(cache, "productDailyMapper", mock(ProductDailyMapper.class));
+        ReflectionTestUtils.setField(cache, "objectMapper", new ObjectMapper());
+        ReflectionTestUtils.setField(cache, "maxEntries", 16);
+
+        HistoryResponseCache.Watermark w1 = cache.watermark(IngestWriter.TABLE_PRODUCT_HOURLY, 1);
+        assertEquals(41L, w1.id);
+        assertEquals(w1.id, cache.watermark(IngestWriter.TABLE_PRODUCT_HOURLY, 1).id);
+        verify(hourlyMapper, times(1)).getLatestProductHourly(1);
+        String etag1 = cache.etag("hourly", 1, 24, w1);
+
+        AtomicInteger loads = new AtomicInteger();
+        byte[] b1 = cache.body("hourly", 1, 24, w1, () -> Collections.singletonList(loads.incrementAndGet()));
+        byte[] again = cache.body("hourly", 1, 24, w1, () -> Collections.singletonList(loads.incrementAndGet()));
+        assertArrayEquals(b1, again);
+        assertEquals(1, loads.get());
+
+        // 较旧的 id 不会让水位线后退
+        cache.advance(IngestWriter.TABLE_PRODUCT_HOURLY, 1, 40L, null);
+        assertEquals(41L, cache.watermark(IngestWriter.TABLE_PRODUCT_HOURLY, 1).id);
+
+        cache.advance(IngestWriter.TABLE_PRODUCT_HOURLY, 1, 42L, LocalDateTime.of(2024, 5, 1, 9, 0));
+        HistoryResponseCache.Watermark w2 = cache.watermark(IngestWriter.TABLE_PRODUCT_HOURLY, 1);
+        assertEquals(42L, w2.id);
+        assertNotEquals(etag1, cache.etag("hourly", 1, 24, w2));
+        assertEquals("[2]", new String(cache.body("hourly", 1, 24, w2,
+                () -> Collections.singletonList(loads.incrementAndGet()))));
+        verify(hourlyMapper, times(1)).getLatestProductHourly(1);
+    }
+}
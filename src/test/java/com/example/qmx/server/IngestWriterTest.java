@@ -0,0 +1,122 @@
+package com.example.qmx.server;
+
+import com.example.qmx.domain.ProductHourly;
+import com.example.qmx.domain.ProductionSeries;
+import com.example.qmx.domain.Sensor;
+import com.example.qmx.mapper.ProductHourlyMapper;
+import com.example.qmx.mapper.ProductionSeriesMapper;
+import com.example.qmx.mapper.SensorMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class IngestWriterTest {
+
+    /**
+     * 合并批次因一帧坏数据失败：退回逐帧写入，只有坏帧失败，缓存只更新已落库的帧
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    void mergedBatchFailureFallsBackToPerFrame() {
+        SensorMapper sensorMapper = mock(SensorMapper.class);
+        when(sensorMapper.insertBatch(anyList())).thenAnswer(inv -> {
+            List<Sensor> rows = inv.getArgument(0);
+            for (Sensor s : rows) {
+                if (s.getValue() == null) {
+                    throw new IllegalStateException("Column 'value' cannot be null");
+                }
+            }
+            return rows.size();
+        });
+        LatestValueCache cache = mock(LatestValueCache.class);
+
+        IngestWriter writer = new IngestWriter();
+        ReflectionTestUtils.setField(writer, "sensorMapper", sensorMapper);
+        ReflectionTestUtils.setField(writer, "latestValueCache", cache);
+        ReflectionTestUtils.setField(writer, "ingestMetrics", mock(IngestMetrics.class));
+        ReflectionTestUtils.setField(writer, "historyResponseCache", mock(HistoryResponseCache.class));
+
+        IngestWriter.FrameRows good = new IngestWriter.FrameRows(1, System.nanoTime());
+        good.add(sensor(1.5f));
+        IngestWriter.FrameRows bad = new IngestWriter.FrameRows(2, System.nanoTime());
+        bad.add(sensor(null));
+        ReflectionTestUtils.invokeMethod(writer, "write", Arrays.asList(good, bad));
+
+        verify(sensorMapper, times(3)).insertBatch(anyList());
+        verify(cache).putSensor(eq(1), anyList());
+        verify(cache, never()).putSensor(eq(2), anyList());
+        Map<String, Object> stats = writer.stats();
+        assertEquals(1L, stats.get("committedFrames"));
+        assertEquals(1L, stats.get("failedFrames"));
+        assertEquals(1L, ((Map<String, Long>) stats.get("rowsByTable")).get(IngestWriter.TABLE_SENSOR));
+    }
+
+    /**
+     * 时间序列 upsert 失败：不推进最新值缓存与历史水位线，帧记为失败；定时补写成功后再推进
+     */
+    @Test
+    void failedSeriesUpsertIsRetriedBeforeAdvancingCaches() {
+        ProductHourlyMapper hourlyMapper = mock(ProductHourlyMapper.class);
+        doAnswer(inv -> {
+            ((ProductHourly) inv.getArgument(0)).setId(7L);
+            return 1;
+        }).when(hourlyMapper).insert(any(ProductHourly.class));
+        ProductionSeriesMapper seriesMapper = mock(ProductionSeriesMapper.class);
+        when(seriesMapper.upsert(any(ProductionSeries.class)))
+                .thenThrow(new IllegalStateException("Lock wait timeout exceeded"))
+                .thenReturn(1);
+        LatestValueCache cache = mock(LatestValueCache.class);
+        HistoryResponseCache history = mock(HistoryResponseCache.class);
+
+        IngestWriter writer = new IngestWriter();
+        ReflectionTestUtils.setField(writer, "productHourlyMapper", hourlyMapper);
+        ReflectionTestUtils.setField(writer, "productionSeriesMapper", seriesMapper);
+        ReflectionTestUtils.setField(writer, "latestValueCache", cache);
+        ReflectionTestUtils.setField(writer, "ingestMetrics", mock(IngestMetrics.class));
+        ReflectionTestUtils.setField(writer, "historyResponseCache", history);
+        ReflectionTestUtils.setField(writer, "maxPendingSeries", 100);
+
+        IngestWriter.FrameRows frame = new IngestWriter.FrameRows(3, System.nanoTime());
+        ProductHourly ph = new ProductHourly();
+        ph.setNumHourly(120);
+        ph.setTime(LocalDateTime.of(2024, 5, 1, 10, 15));
+        frame.add(ph);
+        ReflectionTestUtils.invokeMethod(writer, "write", Collections.singletonList(frame));
+
+        verify(cache, never()).putHourly(anyInt(), any());
+        verify(history, never()).advance(any(), anyInt(), any(), any());
+        assertEquals(1L, writer.stats().get("failedFrames"));
+        assertEquals(1, writer.stats().get("pendingSeries"));
+
+        writer.retryPendingSeries();
+
+        verify(seriesMapper, times(2)).upsert(any(ProductionSeries.class));
+        verify(cache).putHourly(3, ph);
+        verify(history).advance(IngestWriter.TABLE_PRODUCT_HOURLY, 3, 7L, ph.getTime());
+        assertEquals(0, writer.stats().get("pendingSeries"));
+    }
+
+    private static Sensor sensor(Float value) {
+        Sensor s = new Sensor();
+        s.setDevName("喷涂管路1压力");
+        s.setValue(value);
+        return s;
+    }
+}
@@ -0,0 +1,64 @@
+package com.example.qmx.server;
+
+import com.example.qmx.jfr.DbBatchFlushedEvent;
+import com.example.qmx.jfr.FrameReceivedEvent;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class JfrRecordingServiceTest {
+
+    @Test
+    void recordsFrameEventsBetweenStartAndStop(@TempDir Path dir) throws Exception {
+        JfrRecordingService jfr = new JfrRecordingService();
+        ReflectionTestUtils.setField(jfr, "defaultSettings", "default");
+        ReflectionTestUtils.setField(jfr, "maxAgeMinutes", 5L);
+        ReflectionTestUtils.setField(jfr, "maxSizeMb", 16L);
+        ReflectionTestUtils.setField(jfr, "dumpDir", dir.toString());
+
+        assertThrows(IllegalStateException.class, jfr::stop);
+        assertTrue((Boolean) jfr.start(null).get("running"));
+
+        FrameReceivedEvent received = new FrameReceivedEvent();
+        received.begin();
+        received.txId = 7;
+        received.unitId = 3;
+        received.frameBytes = 120;
+        received.commit();
+        DbBatchFlushedEvent flushed = new DbBatchFlushedEvent();
+        flushed.begin();
+        flushed.table = "sensor";
+        flushed.rows = 12;
+        flushed.inserted = 12;
+        flushed.success = true;
+        flushed.commit();
+
+        Path file = jfr.stop();
+        assertFalse((Boolean) jfr.status().get("running"));
+        assertTrue(Files.size(file) > 0);
+
+        List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+        RecordedEvent r = events.stream()
+                .filter(e -> e.getEventType().getName().equals("com.example.qmx.FrameReceived"))
+                .findFirst().orElseThrow(AssertionError::new);
+        assertEquals(7, r.getInt("txId"));
+        assertEquals(3, r.getInt("unitId"));
+        assertEquals(120, r.getInt("frameBytes"));
+        RecordedEvent f = events.stream()
+                .filter(e -> e.getEventType().getName().equals("com.example.qmx.DbBatchFlushed"))
+                .findFirst().orElseThrow(AssertionError::new);
+        assertEquals("sensor", f.getString("table"));
+        assertTrue(f.getBoolean("success"));
+    }
+}
@@ -0,0 +1,130 @@
+package com.example.qmx.server;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class ProtocolDecoderGeneratorTest {
+
+    private static ProtocolDispatchTable v1(boolean codegen) throws Exception {
+        try (InputStream in = ProtocolDecoderGeneratorTest.class.getResourceAsStream("/protocol-schema.json")) {
+            ProtocolSchema schema = new ObjectMapper().readValue(in, ProtocolSchema.class);
+            schema.validate();
+            return new ProtocolDispatchTable("v1", schema.getVersions().get("v1"), codegen);
+        }
+    }
+
+    /**
+     * 与网关上报一致的帧：报警 19 位、状态 20 个、传感器 6 个、喷涂 3 个、产量 31 个、控制参数定长结构
+     */
+    static byte[] frame(Random rnd, int alarms, int sensors) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        segment(out, rnd, 0x00, alarms, (alarms + 7) / 8);
+        segment(out, rnd, 0x01, 20, 20);
+        segment(out, rnd, 0x02, sensors, sensors * 4);
+        segment(out, rnd, 0x03, 3, 6);
+        segment(out, rnd, 0x04, 31, 62);
+        segment(out, rnd, 0x05, 14, 3 + 2 + 40);
+        return out.toByteArray();
+    }
+
+    private static void segment(ByteArrayOutputStream out, Random rnd, int typeId, int count, int bytes) {
+        out.write(typeId);
+        out.write(count);
+        byte[] data = new byte[bytes];
+        rnd.nextBytes(data);
+        out.write(data, 0, data.length);
+    }
+
+    @Test
+    void generatesDecoderAfterRepeatedLayoutAndMatchesInterpreter() throws Exception {
+        ProtocolDispatchTable table = v1(true);
+        Random rnd = new Random(42);
+        for (int i = 0; i < 3; i++) {
+            byte[] f = frame(rnd, 19, 6);
+            table.decode(f, 0, f.length);
+        }
+        assertEquals(1, table.getSpecializedCount());
+
+        for (int i = 0; i < 200; i++) {
+            byte[] f = frame(rnd, 19, 6);
+            assertEquals(table.decodeGeneric(f, 0, f.length), table.decode(f, 0, f.length));
+        }
+    }
+
+    @Test
+    void fallsBackToInterpreterWhenLayoutDiffers() throws Exception {
+        ProtocolDispatchTable table = v1(true);
+        Random rnd = new Random(7);
+        byte[] f = frame(rnd, 19, 6);
+        ProtocolDecoderGenerator.FrameDecoder d = ProtocolDecoderGenerator.generate(table,
+                ProtocolDecoderGenerator.layoutOf(f, 0, f.length, table));
+        assertNotNull(d);
+
+        // 多一个传感器：长度与段头都不同
+        byte[] other = frame(rnd, 19, 7);
+        assertNull(d.decode(other, 0, other.length));
+        assertEquals(table.decodeGeneric(other, 0, other.length), table.decode(other, 0, other.length));
+
+        // 长度相同但段头不同（报警 17 位与 19 位都占 3 字节）
+        byte[] sameLen = frame(rnd, 17, 6);
+        assertNull(d.decode(sameLen, 0, sameLen.length));
+
+        // 帧前带偏移（PDU 中数据内容从第 3 字节开始）
+        byte[] padded = new byte[f.length + 3];
+        System.arraycopy(f, 0, padded, 3, f.length);
+        assertEquals(table.decodeGeneric(f, 0, f.length), d.decode(padded, 3, f.length));
+    }
+
+    @Test
+    void disabledCodegenKeepsInterpreter() throws Exception {
+        ProtocolDispatchTable table = v1(false);
+        Random rnd = new Random(1);
+        for (int i = 0; i < 10; i++) {
+            byte[] f = frame(rnd, 19, 6);
+            table.decode(f, 0, f.length);
+        }
+        assertEquals(0, table.getSpecializedCount());
+    }
+
+    /**
+     * 重新加载协议描述后旧分发表丢弃已生成的解码类且不再生成，仍可用通用解释器解码
+     */
+    @Test
+    void reloadRetiresDecodersOfReplacedTables() throws Exception {
+        ProtocolSchemaService service = new ProtocolSchemaService();
+        ReflectionTestUtils.setField(service, "codegenEnabled", true);
+        service.apply(schema());
+        ProtocolDispatchTable old = service.defaultTable();
+        Random rnd = new Random(3);
+        for (int i = 0; i < 3; i++) {
+            byte[] f = frame(rnd, 19, 6);
+            old.decode(f, 0, f.length);
+        }
+        assertEquals(1, old.getSpecializedCount());
+
+        service.apply(schema());
+        assertNotSame(old, service.defaultTable());
+        assertEquals(0, old.getSpecializedCount());
+        for (int i = 0; i < 5; i++) {
+            byte[] f = frame(rnd, 19, 6);
+            assertEquals(old.decodeGeneric(f, 0, f.length), old.decode(f, 0, f.length));
+        }
+        assertEquals(0, old.getSpecializedCount());
+    }
+
+    private static ProtocolSchema schema() throws Exception {
+        try (InputStream in = ProtocolDecoderGeneratorTest.class.getResourceAsStream("/protocol-schema.json")) {
+            return new ObjectMapper().readValue(in, ProtocolSchema.class);
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package com.example.qmx.server;
+
+import com.example.qmx.domain.QualityDetection;
+import com.example.qmx.mapper.QualityDetectionMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class QualityResultWriterTest {
+
+    /**
+     * 批次写入重试用尽后该批 resultId 从去重表移除，重试不会被当成重复
+     */
+    @Test
+    void failedBatchReleasesResultIds() {
+        QualityDetectionMapper mapper = mock(QualityDetectionMapper.class);
+        when(mapper.insertIgnoreBatch(anyList())).thenThrow(new IllegalStateException("db down")).thenReturn(1);
+
+        QualityResultWriter writer = writer(mapper, 0);
+        try {
+            assertEquals(QualityResultWriter.SubmitResult.ACCEPTED, writer.submit(result("r-1")));
+            assertEquals(QualityResultWriter.SubmitResult.DUPLICATE, writer.submit(result("r-1")));
+            verify(mapper, timeout(2000).times(1)).insertIgnoreBatch(anyList());
+
+            long deadline = System.currentTimeMillis() + 2000;
+            QualityResultWriter.SubmitResult retry;
+            do {
+                retry = writer.submit(result("r-1"));
+            } while (retry == QualityResultWriter.SubmitResult.DUPLICATE && System.currentTimeMillis() < deadline);
+            assertEquals(QualityResultWriter.SubmitResult.ACCEPTED, retry);
+            verify(mapper, timeout(2000).times(2)).insertIgnoreBatch(anyList());
+        } finally {
+            writer.stop();
+        }
+    }
+
+    /**
+     * 批次写入失败由写线程自动重试，不需要推送方重新提交
+     */
+    @Test
+    void failedBatchIsRetried() {
+        QualityDetectionMapper mapper = mock(QualityDetectionMapper.class);
+        List<String> written = new CopyOnWriteArrayList<>();
+        when(mapper.insertIgnoreBatch(anyList())).thenThrow(new IllegalStateException("db down")).thenAnswer(inv -> {
+            for (QualityDetection qd : inv.<List<QualityDetection>>getArgument(0)) {
+                written.add(qd.getResultId());
+            }
+            return 1;
+        });
+
+        QualityResultWriter writer = writer(mapper, 3);
+        try {
+            assertEquals(QualityResultWriter.SubmitResult.ACCEPTED, writer.submit(result("r-1")));
+            verify(mapper, timeout(2000).times(2)).insertIgnoreBatch(anyList());
+            assertEquals(Collections.singletonList("r-1"), written);
+            assertEquals(QualityResultWriter.SubmitResult.DUPLICATE, writer.submit(result("r-1")));
+        } finally {
+            writer.stop();
+        }
+    }
+
+    /**
+     * 没有 resultId 的结果按来源、时间与结果去重；stop 返回前写完队列中剩余的结果，之后不再入队
+     */
+    @Test
+    void resultsWithoutIdAreDedupedAndStopFlushesQueue() {
+        QualityDetectionMapper mapper = mock(QualityDetectionMapper.class);
+        List<String> written = new CopyOnWriteArrayList<>();
+        when(mapper.insertIgnoreBatch(anyList())).thenAnswer(inv -> {
+            // 放慢写入，stop 时队列中仍有结果
+            Thread.sleep(100);
+            for (QualityDetection qd : inv.<List<QualityDetection>>getArgument(0)) {
+                written.add(qd.getResultId());
+            }
+            return 1;
+        });
+        QualityResultWriter writer = writer(mapper, 0);
+
+        LocalDateTime t = LocalDateTime.of(2024, 1, 1, 8, 0);
+        assertEquals(QualityResultWriter.SubmitResult.ACCEPTED, writer.submit(result(null, "cam-1", t)));
+        assertEquals(QualityResultWriter.SubmitResult.DUPLICATE, writer.submit(result(null, "cam-1", t)));
+        assertEquals(QualityResultWriter.SubmitResult.ACCEPTED, writer.submit(result(null, "cam-2", t)));
+        writer.stop();
+
+        assertEquals(2, written.size());
+        assertTrue(written.get(0).startsWith(QualityResultWriter.DERIVED_ID_PREFIX));
+        assertTrue(written.get(0).length() <= 64);
+        assertEquals(QualityResultWriter.SubmitResult.QUEUE_FULL, writer.submit(result("r-2")));
+    }
+
+    private static QualityResultWriter writer(QualityDetectionMapper mapper, int maxRetries) {
+        QualityResultWriter writer = new QualityResultWriter();
+        ReflectionTestUtils.setField(writer, "qualityDetectionMapper", mapper);
+        ReflectionTestUtils.setField(writer, "batchSize", 10);
+        ReflectionTestUtils.setField(writer, "flushIntervalMs", 20L);
+        ReflectionTestUtils.setField(writer, "queueCapacity", 10);
+        ReflectionTestUtils.setField(writer, "dedupCapacity", 100);
+        ReflectionTestUtils.setField(writer, "maxRetries", maxRetries);
+        ReflectionTestUtils.setField(writer, "retryBackoffMs", 10L);
+        writer.start();
+        return writer;
+    }
+
+    private static QualityDetection result(String resultId, String source, LocalDateTime time) {
+        QualityDetection qd = result(resultId);
+        qd.setSource(source);
+        qd.setTime(time);
+        return qd;
+    }
+
+    private static QualityDetection result(String resultId) {
+        QualityDetection qd = new QualityDetection();
+        qd.setResultId(resultId);
+        qd.setResult(1);
+        return qd;
+    }
+}
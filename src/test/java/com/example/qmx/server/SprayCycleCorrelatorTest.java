@@ -0,0 +1,136 @@
+package com.example.qmx.server;
+
+import com.example.qmx.domain.ControlParameter;
+import com.example.qmx.domain.QualityDetection;
+import com.example.qmx.domain.SprayCycle;
+import com.example.qmx.domain.SprayRecord;
+import com.example.qmx.mapper.ControlParameterMapper;
+import com.example.qmx.mapper.QualityDetectionMapper;
+import com.example.qmx.mapper.SensorMapper;
+import com.example.qmx.mapper.SprayCycleMapper;
+import com.example.qmx.mapper.SprayRecordMapper;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class SprayCycleCorrelatorTest {
+
+    /**
+     * id 顺序与时间顺序不一致：本批停在第一条仍在关联延迟内的结果，水位线不越过它
+     */
+    @Test
+    void stopsAtFirstResultInsideLagWindow() {
+        QualityDetectionMapper quality = mock(QualityDetectionMapper.class);
+        SprayCycleMapper cycles = mock(SprayCycleMapper.class);
+        LocalDateTime now = LocalDateTime.now();
+        when(quality.selectUnitIds()).thenReturn(Collections.singletonList(1));
+        when(cycles.getQualityWatermark(1)).thenReturn(0L);
+        when(quality.selectAfterIdByUnit(eq(1), anyLong(), anyInt())).thenReturn(Arrays.asList(
+                result(1, now.minusMinutes(5)),
+                result(2, now.minusSeconds(1)),
+                result(3, now.minusMinutes(10))));
+
+        SprayCycleCorrelator correlator = correlator(quality, cycles, mock(SprayRecordMapper.class),
+                mock(SensorMapper.class), mock(ControlParameterMapper.class));
+        correlator.correlate();
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<SprayCycle>> captor = ArgumentCaptor.forClass(List.class);
+        verify(cycles, times(1)).insertBatch(captor.capture());
+        assertEquals(1, captor.getValue().size());
+        assertEquals(1L, captor.getValue().get(0).getQualityId());
+    }
+
+    /**
+     * 按网关分别关联：一个网关的结果还在关联延迟内不阻塞其他网关；周期、参数与压力都取自结果所在网关，参数名取自配置
+     */
+    @Test
+    void correlatesEachUnitWithItsOwnData() {
+        QualityDetectionMapper quality = mock(QualityDetectionMapper.class);
+        SprayCycleMapper cycles = mock(SprayCycleMapper.class);
+        SprayRecordMapper spray = mock(SprayRecordMapper.class);
+        SensorMapper sensor = mock(SensorMapper.class);
+        ControlParameterMapper params = mock(ControlParameterMapper.class);
+        LocalDateTime now = LocalDateTime.now();
+        when(quality.selectUnitIds()).thenReturn(Arrays.asList(1, 2));
+        when(quality.selectAfterIdByUnit(eq(1), anyLong(), anyInt()))
+                .thenReturn(Collections.singletonList(result(5, now.minusSeconds(1))));
+        when(quality.selectAfterIdByUnit(eq(2), anyLong(), anyInt()))
+                .thenReturn(Collections.singletonList(result(4, now.minusMinutes(5))));
+        SprayRecord end = record("机器人1进度", now.minusMinutes(6));
+        SprayRecord start = record("机器人1进度", now.minusMinutes(16));
+        when(spray.getLastReachedBefore(eq(2), eq("机器人1进度"), any(), any(), anyDouble())).thenReturn(end);
+        when(spray.getLastResetBefore(eq(2), eq("机器人1进度"), any(), any())).thenReturn(start);
+        ControlParameter speed = new ControlParameter();
+        speed.setValue(42.0);
+        when(params.selectLatestByNameBefore(2, "喷涂速度", start.getTime())).thenReturn(speed);
+        when(sensor.getStatsInRange(2, "管路1", start.getTime(), end.getTime()))
+                .thenReturn(Collections.singletonMap("maxValue", 0.6));
+
+        SprayCycleCorrelator correlator = correlator(quality, cycles, spray, sensor, params);
+        ReflectionTestUtils.setField(correlator, "spraySpeedParam", "喷涂速度");
+        ReflectionTestUtils.setField(correlator, "pipe1PressureDevName", "管路1");
+        correlator.correlate();
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<SprayCycle>> captor = ArgumentCaptor.forClass(List.class);
+        verify(cycles, times(1)).insertBatch(captor.capture());
+        SprayCycle cycle = captor.getValue().get(0);
+        assertEquals(2, cycle.getUnitId());
+        assertEquals(4L, cycle.getQualityId());
+        assertEquals(start.getTime(), cycle.getStartTime());
+        assertEquals(42.0, cycle.getSpraySpeed());
+        assertEquals(0.6, cycle.getPipe1PressureMax());
+        verify(spray, never()).getLastReachedBefore(eq(1), any(), any(), any(), anyDouble());
+    }
+
+    private static SprayCycleCorrelator correlator(QualityDetectionMapper quality, SprayCycleMapper cycles,
+                                                   SprayRecordMapper spray, SensorMapper sensor,
+                                                   ControlParameterMapper params) {
+        SprayCycleCorrelator correlator = new SprayCycleCorrelator();
+        ReflectionTestUtils.setField(correlator, "qualityDetectionMapper", quality);
+        ReflectionTestUtils.setField(correlator, "sprayCycleMapper", cycles);
+        ReflectionTestUtils.setField(correlator, "sprayRecordMapper", spray);
+        ReflectionTestUtils.setField(correlator, "sensorMapper", sensor);
+        ReflectionTestUtils.setField(correlator, "controlParameterMapper", params);
+        ReflectionTestUtils.setField(correlator, "enabled", true);
+        ReflectionTestUtils.setField(correlator, "progressDevNames", new String[]{"机器人1进度"});
+        ReflectionTestUtils.setField(correlator, "completeRate", 100.0);
+        ReflectionTestUtils.setField(correlator, "lagMs", 5000L);
+        ReflectionTestUtils.setField(correlator, "maxCycleMinutes", 30L);
+        ReflectionTestUtils.setField(correlator, "batchSize", 200);
+        return correlator;
+    }
+
+    private static SprayRecord record(String devName, LocalDateTime time) {
+        SprayRecord r = new SprayRecord();
+        r.setDevName(devName);
+        r.setTime(time);
+        return r;
+    }
+
+    private static QualityDetection result(long id, LocalDateTime time) {
+        QualityDetection qd = new QualityDetection();
+        qd.setId(id);
+        qd.setResult(1);
+        qd.setTime(time);
+        return qd;
+    }
+}
@@ -0,0 +1,156 @@
+package com.example.qmx.tools;
+
+import com.example.qmx.server.DataResponse;
+import com.example.qmx.server.ProtocolDispatchTable;
+import com.example.qmx.server.ProtocolSchema;
+import com.example.qmx.server.ProtocolSchemaService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.io.DataInputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GatewaySimulatorTest {
+
+    /**
+     * 模拟器发出的帧按 v1 协议描述能完整解码，且每帧都收到确认
+     */
+    @Test
+    void framesMatchSchemaAndAreAcked() throws Exception {
+        ProtocolSchemaService schemaService = new ProtocolSchemaService();
+        try (InputStream in = GatewaySimulatorTest.class.getResourceAsStream("/protocol-schema.json")) {
+            schemaService.apply(new ObjectMapper().readValue(in, ProtocolSchema.class));
+        }
+        ProtocolDispatchTable table = schemaService.defaultTable();
+        DataResponse dataResponse = new DataResponse();
+        AtomicInteger badFrames = new AtomicInteger();
+        Set<Integer> units = ConcurrentHashMap.newKeySet();
+
+        try (ServerSocket server = new ServerSocket(0)) {
+            Thread acceptor = new Thread(() -> {
+                while (!server.isClosed()) {
+                    try {
+                        Socket s = server.accept();
+                        Thread t = new Thread(() -> serve(s, table, dataResponse, badFrames, units));
+                        t.setDaemon(true);
+                        t.start();
+                    } catch (Exception e) {
+                        return;
+                    }
+                }
+            });
+            acceptor.setDaemon(true);
+            acceptor.start();
+
+            GatewaySimulator sim = new GatewaySimulator("127.0.0.1", server.getLocalPort(), 4, 50, 1000, 1);
+            GatewaySimulator.Report r = sim.run();
+
+            assertEquals(0, r.connectFailures);
+            assertEquals(0, r.errorAcks);
+            assertEquals(0, r.unexpected);
+            assertEquals(r.sent, r.acks);
+            assertTrue(r.acks >= 4 * 40, "吞吐偏低: " + r);
+            assertTrue(r.percentileMs(0.5) <= r.percentileMs(0.99));
+        }
+        assertEquals(0, badFrames.get());
+        assertEquals(4, units.size());
+    }
+
+    /**
+     * 闭环模式：1 秒内未确认的帧记为超时并放弃，迟到的确认记为未匹配，不影响后续帧的收发
+     */
+    @Test
+    void closedLoopCountsTimeoutsAndIgnoresLateAcks() throws Exception {
+        DataResponse dataResponse = new DataResponse();
+        try (ServerSocket server = new ServerSocket(0)) {
+            Thread acceptor = new Thread(() -> {
+                try (Socket socket = server.accept()) {
+                    DataInputStream in = new DataInputStream(socket.getInputStream());
+                    OutputStream out = socket.getOutputStream();
+                    boolean delayed = false;
+                    while (true) {
+                        byte[] mbap = new byte[7];
+                        in.readFully(mbap);
+                        byte[] pdu = new byte[(((mbap[4] & 0xFF) << 8) | (mbap[5] & 0xFF)) - 1];
+                        in.readFully(pdu);
+                        byte[] ack = dataResponse.buildAckFrame(mbap, pdu);
+                        int txId = ((mbap[0] & 0xFF) << 8) | (mbap[1] & 0xFF);
+                        // 事务ID 回绕后不再延迟
+                        if (txId != 3 || delayed) {
+                            synchronized (out) {
+                                out.write(ack);
+                                out.flush();
+                            }
+                            continue;
+                        }
+                        // 第 3 帧的确认在模拟器放弃之后才发出
+                        delayed = true;
+                        Thread late = new Thread(() -> {
+                            try {
+                                Thread.sleep(1300);
+                                synchronized (out) {
+                                    out.write(ack);
+                                    out.flush();
+                                }
+                            } catch (Exception ignore) {
+                                // 模拟器已关闭连接
+                            }
+                        });
+                        late.setDaemon(true);
+                        late.start();
+                    }
+                } catch (Exception ignore) {
+                    // 模拟器关闭连接
+                }
+            });
+            acceptor.setDaemon(true);
+            acceptor.start();
+
+            GatewaySimulator sim = new GatewaySimulator("127.0.0.1", server.getLocalPort(), 1, 0, 2000, 1);
+            GatewaySimulator.Report r = sim.run();
+
+            assertEquals(0, r.connectFailures);
+            assertEquals(1, r.timeouts);
+            assertEquals(1, r.unexpected);
+            assertEquals(r.sent - 1, r.acks);
+            assertTrue(r.acks > 3, "超时后未继续发送: " + r);
+        }
+    }
+
+    private static void serve(Socket s, ProtocolDispatchTable table, DataResponse dataResponse,
+                              AtomicInteger badFrames, Set<Integer> units) {
+        try (Socket socket = s) {
+            DataInputStream in = new DataInputStream(socket.getInputStream());
+            OutputStream out = socket.getOutputStream();
+            while (true) {
+                byte[] mbap = new byte[7];
+                in.readFully(mbap);
+                byte[] pdu = new byte[(((mbap[4] & 0xFF) << 8) | (mbap[5] & 0xFF)) - 1];
+                in.readFully(pdu);
+                units.add(mbap[6] & 0xFF);
+                int dataLen = ((pdu[1] & 0xFF) << 8) | (pdu[2] & 0xFF);
+                Map<Integer, List<Long>> decoded = table.decodeGeneric(pdu, 3, dataLen);
+                if (decoded.size() != 6 || decoded.get(0).size() != 19 || decoded.get(1).size() != 20
+                        || decoded.get(2).size() != 6 || decoded.get(3).size() != 3
+                        || decoded.get(4).size() != 52 || decoded.get(5).size() != 14) {
+                    badFrames.incrementAndGet();
+                }
+                out.write(dataResponse.buildAckFrame(mbap, pdu));
+                out.flush();
+            }
+        } catch (Exception ignore) {
+            // 模拟器关闭连接
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package com.example.qmx.utils;
+
+import com.example.qmx.server.DataResponse;
+import com.example.qmx.tools.FrameReplayer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.DataInputStream;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FrameCaptureLogTest {
+
+    // 上报帧：MBAP(7) + 功能码 0x03 + 数据长度(2) + 数据
+    private static byte[][] uploadFrame(Random rnd, int txId) {
+        int dataLen = 20 + rnd.nextInt(200);
+        byte[] mbap = {(byte) (txId >> 8), (byte) txId, 0, 0, (byte) ((dataLen + 4) >> 8), (byte) (dataLen + 4), 1};
+        byte[] pdu = new byte[3 + dataLen];
+        pdu[0] = 0x03;
+        pdu[1] = (byte) (dataLen >> 8);
+        pdu[2] = (byte) dataLen;
+        for (int i = 3; i < pdu.length; i++) {
+            pdu[i] = (byte) rnd.nextInt();
+        }
+        return new byte[][]{mbap, pdu};
+    }
+
+    private static byte[] concat(byte[][] f) {
+        byte[] out = Arrays.copyOf(f[0], f[0].length + f[1].length);
+        System.arraycopy(f[1], 0, out, f[0].length, f[1].length);
+        return out;
+    }
+
+    @Test
+    void rotatesSegmentsAndReadsBackInOrder(@TempDir Path dir) throws Exception {
+        Random rnd = new Random(1);
+        List<byte[]> written = new ArrayList<>();
+        try (FrameCaptureLog log = new FrameCaptureLog(dir, 16 * 1024, 100)) {
+            for (int i = 0; i < 500; i++) {
+                byte[][] f = uploadFrame(rnd, i);
+                log.append(1_000_000L + i, f[0], f[1]);
+                written.add(concat(f));
+            }
+        }
+        List<Path> segments = FrameCaptureLog.segments(dir);
+        assertTrue(segments.size() > 1, "应发生轮转");
+
+        int i = 0;
+        for (Path segment : segments) {
+            try (FrameCaptureLog.Reader reader = new FrameCaptureLog.Reader(segment)) {
+                FrameCaptureLog.Frame f;
+                while ((f = reader.next()) != null) {
+                    assertEquals(1_000_000L + i, f.getTimeMillis());
+                    assertArrayEquals(written.get(i), f.getBytes());
+                    i++;
+                }
+            }
+        }
+        assertEquals(written.size(), i);
+    }
+
+    @Test
+    void keepsAtMostMaxSegments(@TempDir Path dir) throws Exception {
+        Random rnd = new Random(2);
+        try (FrameCaptureLog log = new FrameCaptureLog(dir, 4 * 1024, 3)) {
+            for (int i = 0; i < 500; i++) {
+                byte[][] f = uploadFrame(rnd, i);
+                log.append(i, f[0], f[1]);
+            }
+        }
+        assertTrue(FrameCaptureLog.segments(dir).size() <= 3);
+    }
+
+    /**
+     * 换段失败时丢弃帧并计数，目录恢复后重试建段、继续抓包
+     */
+    @Test
+    void keepsRetryingAfterRotationFailure(@TempDir Path tmp) throws Exception {
+        Random rnd = new Random(4);
+        Path dir = tmp.resolve("cap");
+        try (FrameCaptureLog log = new FrameCaptureLog(dir, 4 * 1024, 100)) {
+            log.retryIntervalMs = 0;
+            // 等后台预建好下一段
+            long deadline = System.currentTimeMillis() + 5000;
+            while (FrameCaptureLog.segments(dir).size() < 2 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            // 目录被占用为普通文件：已预建的段还能用，之后的建段全部失败
+            Path moved = Files.move(dir, tmp.resolve("cap-moved"));
+            Files.createFile(dir);
+            int i = 0;
+            while (!log.isFailing() && i < 1000) {
+                byte[][] f = uploadFrame(rnd, i++);
+                log.append(i, f[0], f[1]);
+            }
+            assertTrue(log.isFailing(), "应出现换段失败");
+            byte[][] f = uploadFrame(rnd, i);
+            log.append(i, f[0], f[1]);
+            assertTrue(log.getDroppedFrames() >= 1);
+            assertTrue(log.getRotateFailures() >= 1);
+            assertNotNull(log.getLastError());
+
+            Files.delete(dir);
+            Files.createDirectories(dir);
+            long before = log.getFrames();
+            log.append(i, f[0], f[1]);
+            assertFalse(log.isFailing());
+            assertEquals(before + 1, log.getFrames());
+            assertEquals(dir, log.getCurrentSegment().getParent());
+            assertTrue(FrameCaptureLog.segments(moved).size() >= 2);
+        }
+        assertEquals(1, FrameCaptureLog.segments(dir).size());
+    }
+
+    /**
+     * 回放到本地的假接收端：帧内容与抓包一致，每帧都收到确认
+     */
+    @Test
+    void replaysCapturedFramesAtMaxSpeed(@TempDir Path dir) throws Exception {
+        Random rnd = new Random(3);
+        List<byte[]> written = new ArrayList<>();
+        try (FrameCaptureLog log = new FrameCaptureLog(dir, 32 * 1024, 100)) {
+            for (int i = 0; i < 300; i++) {
+                byte[][] f = uploadFrame(rnd, i);
+                log.append(System.currentTimeMillis(), f[0], f[1]);
+                written.add(concat(f));
+            }
+        }
+
+        DataResponse dataResponse = new DataResponse();
+        List<byte[]> received = new CopyOnWriteArrayList<>();
+        try (ServerSocket server = new ServerSocket(0)) {
+            Thread t = new Thread(() -> {
+                try (Socket s = server.accept()) {
+                    DataInputStream in = new DataInputStream(s.getInputStream());
+                    OutputStream out = s.getOutputStream();
+                    while (received.size() < written.size()) {
+                        byte[] mbap = new byte[7];
+                        in.readFully(mbap);
+                        byte[] pdu = new byte[(((mbap[4] & 0xFF) << 8) | (mbap[5] & 0xFF)) - 1];
+                        in.readFully(pdu);
+                        received.add(concat(new byte[][]{mbap, pdu}));
+                        out.write(dataResponse.buildAckFrame(mbap, pdu));
+                    }
+                    out.flush();
+                    // 等回放端读完确认帧后再关闭
+                    s.getInputStream().read();
+                } catch (Exception ignore) {
+                }
+            });
+            t.setDaemon(true);
+            t.start();
+
+            FrameReplayer replayer = new FrameReplayer("127.0.0.1", server.getLocalPort(), 0, 1, null);
+            long sent = replayer.replay(FrameCaptureLog.segments(dir));
+            assertEquals(written.size(), sent);
+            assertEquals(written.size(), replayer.getAcks());
+        }
+        for (int i = 0; i < written.size(); i++) {
+            assertArrayEquals(written.get(i), received.get(i));
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.example.qmx.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ModbusPipelineClientTest {
+
+    /**
+     * 设备不读 socket、发送缓冲区写满时：提交不阻塞调用方，超时仍按时触发（写出不在超时调度线程上进行）
+     */
+    @Test
+    void stalledSocketDoesNotBlockSubmitOrTimeouts() throws Exception {
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+        try (ServerSocket server = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+            ModbusPipelineClient client = new ModbusPipelineClient("127.0.0.1", server.getLocalPort(), 2000, 300, 60000, scheduler);
+            try (Socket device = server.accept()) {
+                int[] values = new int[123];
+                List<CompletableFuture<byte[]>> futures = new ArrayList<>();
+                long start = System.nanoTime();
+                // 约 8MB，远超本机 socket 缓冲区
+                for (int i = 0; i < 32000; i++) {
+                    futures.add(client.writeMultipleRegisters(1, 0, values));
+                }
+                long submitMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                assertTrue(submitMs < 3000, "提交被阻塞: " + submitMs + "ms");
+
+                CompletableFuture<byte[]> last = futures.get(futures.size() - 1);
+                ExecutionException e = assertThrows(ExecutionException.class, () -> last.get(5, TimeUnit.SECONDS));
+                assertInstanceOf(TimeoutException.class, e.getCause());
+            } finally {
+                client.close();
+            }
+        } finally {
+            scheduler.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package com.example.qmx.utils;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 本地 Modbus TCP 从站模拟器（测试与基准用）
+ * <p>
+ * 按真实 PLC 的方式逐个处理请求，每个请求耗时 = 固定往返延迟 + 寄存器数 × 单寄存器延迟；
+ * 寄存器值等于其地址（低 16 位），线圈值为地址奇偶
+ */
+public class ModbusSlaveSimulator implements AutoCloseable {
+
+    private final ServerSocket serverSocket;
+    private final long requestLatencyMicros;
+    private final long perRegisterMicros;
+    private final AtomicInteger requestCount = new AtomicInteger();
+    // 起始地址不小于该值的读请求返回异常码 0x02（非法数据地址）
+    private volatile int addressLimit = 0x10000;
+    private volatile boolean running = true;
+
+    public ModbusSlaveSimulator(long requestLatencyMicros, long perRegisterMicros) throws IOException {
+        this.requestLatencyMicros = requestLatencyMicros;
+        this.perRegisterMicros = perRegisterMicros;
+        this.serverSocket = new ServerSocket(0);
+        Thread acceptor = new Thread(this::acceptLoop, "modbus-slave-sim");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    public int getRequestCount() {
+        return requestCount.get();
+    }
+
+    public void resetRequestCount() {
+        requestCount.set(0);
+    }
+
+    public void setAddressLimit(int addressLimit) {
+        this.addressLimit = addressLimit;
+    }
+
+    private void acceptLoop() {
+        while (running) {
+            try {
+                Socket s = serverSocket.accept();
+                Thread t = new Thread(() -> serve(s), "modbus-slave-sim-conn");
+                t.setDaemon(true);
+                t.start();
+            } catch (IOException e) {
+                return;
+            }
+        }
+    }
+
+    private void serve(Socket s) {
+        try (Socket socket = s) {
+            socket.setTcpNoDelay(true);
+            DataInputStream in = new DataInputStream(socket.getInputStream());
+            OutputStream out = socket.getOutputStream();
+            byte[] mbap = new byte[7];
+            while (running) {
+                in.readFully(mbap);
+                int len = ((mbap[4] & 0xFF) << 8) | (mbap[5] & 0xFF);
+                byte[] pdu = new byte[len - 1];
+                in.readFully(pdu);
+                requestCount.incrementAndGet();
+
+                int fc = pdu[0] & 0xFF;
+                int start = ((pdu[1] & 0xFF) << 8) | (pdu[2] & 0xFF);
+                int qty = ((pdu[3] & 0xFF) << 8) | (pdu[4] & 0xFF);
+                int units = (fc == 0x01 || fc == 0x02) ? (qty + 15) / 16 : qty;
+                TimeUnit.MICROSECONDS.sleep(requestLatencyMicros + units * perRegisterMicros);
+
+                byte[] resp;
+                if (fc <= 0x04 && start >= addressLimit) {
+                    resp = new byte[]{0, 0x02};
+                    fc |= 0x80;
+                } else if (fc == 0x03 || fc == 0x04) {
+                    resp = new byte[2 + qty * 2];
+                    resp[1] = (byte) (qty * 2);
+                    for (int i = 0; i < qty; i++) {
+                        int v = (start + i) & 0xFFFF;
+                        resp[2 + i * 2] = (byte) (v >> 8);
+                        resp[3 + i * 2] = (byte) v;
+                    }
+                } else if (fc == 0x01 || fc == 0x02) {
+                    int bytes = (qty + 7) / 8;
+                    resp = new byte[2 + bytes];
+                    resp[1] = (byte) bytes;
+                    for (int i = 0; i < qty; i++) {
+                        if (((start + i) & 1) == 1) {
+                            resp[2 + i / 8] |= (byte) (1 << (i % 8));
+                        }
+                    }
+                } else {
+                    // 不支持的功能码：异常响应 0x01
+                    resp = new byte[]{0, 0x01};
+                    fc |= 0x80;
+                }
+                resp[0] = (byte) fc;
+
+                byte[] frame = new byte[7 + resp.length];
+                System.arraycopy(mbap, 0, frame, 0, 4);
+                frame[4] = (byte) ((resp.length + 1) >> 8);
+                frame[5] = (byte) (resp.length + 1);
+                frame[6] = mbap[6];
+                System.arraycopy(resp, 0, frame, 7, resp.length);
+                out.write(frame);
+                out.flush();
+            }
+        } catch (IOException | InterruptedException ignore) {
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        running = false;
+        serverSocket.close();
+    }
+}
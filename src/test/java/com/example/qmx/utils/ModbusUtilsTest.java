@@ -0,0 +1,83 @@
+package com.example.qmx.utils;
+
+import com.serotonin.modbus4j.exception.ModbusTransportException;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ModbusUtilsTest {
+
+    /**
+     * 设备返回异常码（非法数据地址）说明链路正常：流水线读多次失败也不打开熔断，后续正常读不受影响
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    void exceptionRepliesDoNotOpenBreaker() throws Exception {
+        try (ModbusSlaveSimulator slave = new ModbusSlaveSimulator(0, 0)) {
+            slave.setAddressLimit(100);
+            for (int i = 0; i < 5; i++) {
+                CompletableFuture<int[]> f = ModbusUtils.readHoldingRegistersPipelined("127.0.0.1", slave.getPort(), 1, 200, 1);
+                ExecutionException e = assertThrows(ExecutionException.class, () -> f.get(5, TimeUnit.SECONDS));
+                assertInstanceOf(ModbusPipelineClient.ExceptionResponseException.class, e.getCause());
+                assertEquals(0x02, ((ModbusPipelineClient.ExceptionResponseException) e.getCause()).getExceptionCode());
+            }
+            Map<String, Object> hosts = (Map<String, Object>) ModbusUtils.getPoolMetrics().get("hosts");
+            Map<String, Object> host = (Map<String, Object>) hosts.get("127.0.0.1:" + slave.getPort());
+            assertEquals("CLOSED", host.get("state"));
+            assertEquals(10, ModbusUtils.readHoldingRegistersPipelined("127.0.0.1", slave.getPort(), 1, 10, 1).get(5, TimeUnit.SECONDS)[0]);
+        }
+    }
+
+    /**
+     * 执行器不限线程数（如每任务一个虚拟线程）时，同一设备同时执行的操作仍不超过信号量名额，超出排队上限的直接失败
+     */
+    @Test
+    void hostLaneBoundsConcurrencyOnUnboundedExecutor() throws Exception {
+        ExecutorService unbounded = Executors.newCachedThreadPool();
+        try {
+            ModbusUtils.HostLane lane = new ModbusUtils.HostLane(2, 10, () -> unbounded);
+            AtomicInteger running = new AtomicInteger();
+            AtomicInteger maxRunning = new AtomicInteger();
+            List<CompletableFuture<Void>> futures = new ArrayList<>();
+            for (int i = 0; i < 20; i++) {
+                CompletableFuture<Void> f = new CompletableFuture<>();
+                lane.submit(() -> {
+                    maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                    try {
+                        Thread.sleep(20);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    running.decrementAndGet();
+                    f.complete(null);
+                }, f);
+                futures.add(f);
+            }
+            int rejected = 0;
+            for (CompletableFuture<Void> f : futures) {
+                try {
+                    f.get(5, TimeUnit.SECONDS);
+                } catch (ExecutionException e) {
+                    assertInstanceOf(ModbusTransportException.class, e.getCause());
+                    rejected++;
+                }
+            }
+            assertEquals(2, maxRunning.get());
+            assertEquals(8, rejected);
+        } finally {
+            unbounded.shutdownNow();
+        }
+    }
+}
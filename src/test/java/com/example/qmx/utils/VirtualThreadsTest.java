@@ -0,0 +1,54 @@
+package com.example.qmx.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class VirtualThreadsTest {
+
+    @Test
+    void platformModeGivesNamedDaemonThreads() throws Exception {
+        Thread t = VirtualThreads.start("gateway-reader-test", false, () -> { });
+        t.join(1000);
+        assertEquals("gateway-reader-test", t.getName());
+        assertTrue(t.isDaemon());
+        assertFalse(VirtualThreads.isVirtual(t));
+
+        ThreadFactory f = VirtualThreads.factory("modbus-poll", false);
+        assertEquals("modbus-poll-1", f.newThread(() -> { }).getName());
+        assertEquals("modbus-poll-2", f.newThread(() -> { }).getName());
+    }
+
+    /**
+     * Java 21 上得到虚拟线程；更低版本退回平台线程，每任务执行器不可用
+     */
+    @Test
+    void virtualModeFollowsJvmSupport() throws Exception {
+        Thread t = VirtualThreads.start("gateway-writer-test", true, () -> { });
+        t.join(1000);
+        assertEquals(VirtualThreads.isSupported(), VirtualThreads.isVirtual(t));
+        assertEquals("gateway-writer-test", t.getName());
+
+        if (!VirtualThreads.isSupported()) {
+            assertFalse(VirtualThreads.use(true));
+            assertThrows(IllegalStateException.class, () -> VirtualThreads.newPerTaskExecutor("modbus-io"));
+            return;
+        }
+        ExecutorService ex = VirtualThreads.newPerTaskExecutor("modbus-io");
+        try {
+            Future<Boolean> onVirtual = ex.submit(() -> VirtualThreads.isVirtual(Thread.currentThread())
+                    && Thread.currentThread().getName().startsWith("modbus-io-"));
+            assertTrue(onVirtual.get(1, TimeUnit.SECONDS));
+        } finally {
+            ex.shutdownNow();
+        }
+    }
+}